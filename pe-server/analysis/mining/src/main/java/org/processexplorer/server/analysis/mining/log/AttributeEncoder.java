@@ -0,0 +1,422 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import com.healthmarketscience.sqlbuilder.CreateTableQuery;
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Reduces the storage size of the attribute columns of an imported log.
+ * <p>
+ * Attributes are imported as varchar or bigint columns. Afterwards, each column is narrowed to the smallest type that
+ * holds all of its values: boolean and integer for textual values that are booleans or numbers, integer for bigint
+ * columns within its range and an enum type for textual columns with only a few distinct values. Postgres stores enum
+ * values as 4 byte references to the labels. The labels are kept in the order of their text, so ranges and orderings
+ * of an enum column are the same as of the textual column. An enum only accepts its labels as values, so the values
+ * of conditions are converted into the type of the column before they are compared.
+ */
+public class AttributeEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttributeEncoder.class);
+
+    // maximum number of distinct values of a column that is stored as enum
+    private static final int MAX_CATEGORIES = 256;
+
+    // postgres limits enum labels to 63 bytes
+    private static final int MAX_LABEL_LENGTH = 63;
+
+    private static final Set<String> KEY_COLUMNS = Set.of("case_id", "original_case_id", "event", "timestamp", "resource");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DatabaseModel db;
+
+    public AttributeEncoder(JdbcTemplate jdbcTemplate, String logName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.db = new DatabaseModel(logName);
+    }
+
+    /**
+     * Narrows the attribute columns of the case attribute and events table. Has to be called after the import and
+     * before the derived tables are generated.
+     */
+    public void narrowAttributes() {
+        narrowColumns(db.caseAttributeTable.getTableNameSQL());
+        narrowColumns(db.eventTable.getTableNameSQL());
+    }
+
+    /**
+     * Removes the enum types of the log. The tables using them have to be dropped before.
+     */
+    public void dropTypes() {
+        dropTypes(db.caseAttributeTable.getTableNameSQL());
+        dropTypes(db.eventTable.getTableNameSQL());
+    }
+
+    /**
+     * Returns true, if the resources of the log are stored in a dictionary table.
+     *
+     * @return
+     */
+    public boolean hasResourceTable() {
+        var count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ?",
+                Integer.class, db.resourceTable.getTableNameSQL());
+        return count != null && count > 0;
+    }
+
+    /**
+     * Replaces the resource names in the events table by references to a resource dictionary. Only required for logs
+     * that were imported before the resources were encoded during the import. Tables and views that depend on the
+     * resource column have to be dropped before. The events table should be compacted afterwards.
+     */
+    public void encodeResources() {
+        var start = System.currentTimeMillis();
+        var events = db.eventTable.getTableNameSQL();
+        var resources = db.resourceTable.getTableNameSQL();
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + resources);
+        jdbcTemplate.execute(new CreateTableQuery(db.resourceTable, true).validate().toString());
+        jdbcTemplate.execute("INSERT INTO " + resources + " (id, name) " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY resource) - 1, resource FROM " + events + " WHERE resource IS NOT NULL GROUP BY resource");
+
+        jdbcTemplate.execute("ALTER TABLE " + events + " ADD COLUMN resource_id integer");
+        jdbcTemplate.execute("UPDATE " + events + " e SET resource_id = r.id FROM " + resources + " r WHERE r.name = e.resource");
+        jdbcTemplate.execute("ALTER TABLE " + events + " DROP COLUMN resource");
+        jdbcTemplate.execute("ALTER TABLE " + events + " RENAME COLUMN resource_id TO resource");
+
+        logger.info("Encoded resources of \"{}\" ({} ms)", events, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Rewrites the events table without the row versions of the updated events. Can not run within a transaction.
+     */
+    public void compactEvents() {
+        var start = System.currentTimeMillis();
+        var events = db.eventTable.getTableNameSQL();
+
+        jdbcTemplate.execute("VACUUM FULL ANALYZE " + events);
+        logger.info("Compacted \"{}\" ({} ms)", events, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Appends the rows of a staging table to a table of the log. The staging table stores the attributes with the
+     * types of the import, while the columns of the log may have been narrowed before. Missing columns are added, enum
+     * types are extended by the new values and columns whose type can not hold the new values are widened again.
+     *
+     * @param staging
+     * @param target
+     * @param order
+     */
+    public void append(String staging, String target, String order) {
+        var start = System.currentTimeMillis();
+        var targetColumns = getColumns(target);
+
+        var names = new ArrayList<String>();
+        var values = new ArrayList<String>();
+
+        for (var column : getColumns(staging).entrySet()) {
+            var name = column.getKey();
+            var type = KEY_COLUMNS.contains(name) ? targetColumns.get(name).get("type").toString() : reconcile(staging, target, name, column.getValue(), targetColumns.get(name));
+
+            names.add(quote(name));
+            values.add("CAST(" + quote(name) + " AS " + type + ")");
+        }
+
+        jdbcTemplate.execute("INSERT INTO " + target + " (" + String.join(", ", names) + ") " +
+                "SELECT " + String.join(", ", values) + " FROM " + staging + " ORDER BY " + order);
+
+        jdbcTemplate.execute("ANALYZE " + target);
+        logger.info("Appended rows of \"{}\" to \"{}\" ({} ms)", staging, target, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Prepares the column of the target table for the values of the staging table and returns its type.
+     *
+     * @param staging
+     * @param target
+     * @param column
+     * @param stagingColumn
+     * @param targetColumn
+     * @return
+     */
+    private String reconcile(String staging, String target, String column, Map<String, Object> stagingColumn, Map<String, Object> targetColumn) {
+        var name = quote(column);
+        var stagingType = stagingColumn.get("type").toString();
+
+        if (targetColumn == null) {
+            jdbcTemplate.execute("ALTER TABLE " + target + " ADD COLUMN " + name + " " + stagingType);
+            return stagingType;
+        }
+
+        var targetType = targetColumn.get("type").toString();
+        if (targetType.equals(stagingType)) {
+            return targetType;
+        }
+
+        if ("e".equals(targetColumn.get("kind").toString())) {
+            if (extendEnum(staging, name, targetType)) {
+                return targetType;
+            }
+        } else if (targetType.equals("integer") && stagingType.equals("bigint")) {
+            if (isTrue("SELECT COALESCE(bool_and(" + name + " BETWEEN " + Integer.MIN_VALUE + " AND " + Integer.MAX_VALUE + "), true) FROM " + staging)) {
+                return targetType;
+            }
+            return widen(target, name, "bigint");
+        } else if (targetType.equals("boolean") && stagingType.startsWith("character varying")) {
+            if (isTrue("SELECT COALESCE(bool_and(" + name + " IN ('true', 'false')), true) FROM " + staging)) {
+                return targetType;
+            }
+        } else if (targetType.equals("integer") && stagingType.startsWith("character varying")) {
+            if (isTrue("SELECT COALESCE(bool_and(" + name + " ~ '^-?[1-9][0-9]{0,8}$' OR " + name + " = '0'), true) FROM " + staging)) {
+                return targetType;
+            }
+        } else if (stagingType.equals("double precision") && (targetType.equals("integer") || targetType.equals("bigint"))) {
+            return widen(target, name, stagingType);
+        } else if (!stagingType.startsWith("character varying")) {
+            return targetType;
+        }
+
+        // the values are stored as text as they would be in a new import
+        return widen(target, name, "VARCHAR(1024)");
+    }
+
+    /**
+     * Adds the new values of a column of the staging table to an enum type. Returns false, if the values can not be
+     * stored in the enum type.
+     *
+     * @param staging
+     * @param name
+     * @param type
+     * @return
+     */
+    private boolean extendEnum(String staging, String name, String type) {
+        var labels = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM pg_enum WHERE enumtypid = CAST(? AS regtype)", Integer.class, type);
+        var values = jdbcTemplate.queryForList("SELECT DISTINCT CAST(" + name + " AS varchar) FROM " + staging + " WHERE " + name + " IS NOT NULL " +
+                "AND CAST(" + name + " AS varchar) NOT IN (SELECT enumlabel FROM pg_enum WHERE enumtypid = CAST('" + type + "' AS regtype)) " +
+                "LIMIT " + (MAX_CATEGORIES + 1), String.class);
+
+        if ((labels == null ? 0 : labels) + values.size() > MAX_CATEGORIES ||
+                !values.stream().allMatch(x -> !x.isEmpty() && x.getBytes(StandardCharsets.UTF_8).length <= MAX_LABEL_LENGTH)) {
+            return false;
+        }
+
+        values.forEach(x -> addLabel(type, x));
+        return true;
+    }
+
+    /**
+     * Adds a label to an enum type before the next larger label, so the labels stay in the order of their text.
+     *
+     * @param type
+     * @param label
+     */
+    private void addLabel(String type, String label) {
+        var next = jdbcTemplate.queryForList("SELECT enumlabel FROM pg_enum WHERE enumtypid = CAST(? AS regtype) " +
+                "AND CAST(enumlabel AS varchar) > ? ORDER BY CAST(enumlabel AS varchar) LIMIT 1", String.class, type, label);
+
+        var position = next.isEmpty() ? "" : " BEFORE '" + next.get(0).replace("'", "''") + "'";
+        jdbcTemplate.execute("ALTER TYPE " + type + " ADD VALUE IF NOT EXISTS '" + label.replace("'", "''") + "'" + position);
+    }
+
+    private String widen(String table, String name, String type) {
+        logger.debug("Column {} of \"{}\" can not hold the appended values, widen column to {}", name, table, type);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + name + " TYPE " + type + " USING CAST(" + name + " AS " + type + ")");
+        return type;
+    }
+
+    private boolean isTrue(String sql) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, Boolean.class));
+    }
+
+    /**
+     * Returns the columns of a table with their formatted type and the kind of the type.
+     *
+     * @param table
+     * @return
+     */
+    private Map<String, Map<String, Object>> getColumns(String table) {
+        var result = new LinkedHashMap<String, Map<String, Object>>();
+        jdbcTemplate.queryForList("SELECT a.attname AS name, format_type(a.atttypid, a.atttypmod) AS type, t.typtype AS kind " +
+                "FROM pg_attribute a JOIN pg_type t ON t.oid = a.atttypid " +
+                "WHERE a.attrelid = CAST(? AS regclass) AND a.attnum > 0 AND NOT a.attisdropped ORDER BY a.attnum", table)
+                .forEach(x -> result.put(x.get("name").toString(), x));
+
+        return result;
+    }
+
+    private void narrowColumns(String table) {
+        var start = System.currentTimeMillis();
+
+        // remove unused types of a previous import, the types of an interrupted run are still in use and kept
+        dropTypes(table);
+        var typeIndex = getTypes(table).stream().mapToInt(x -> Integer.parseInt(x.substring(table.length() + 2)) + 1).max().orElse(0);
+
+        var columns = jdbcTemplate.queryForList("SELECT column_name, data_type FROM information_schema.columns " +
+                "WHERE table_name = ? AND table_schema = 'public' ORDER BY ordinal_position", table);
+
+        var alterations = new ArrayList<String>();
+        var bigintColumns = new ArrayList<String>();
+
+        for (var column : columns) {
+            var name = column.get("column_name").toString();
+            var type = column.get("data_type").toString();
+
+            if (KEY_COLUMNS.contains(name)) {
+                continue;
+            }
+
+            if (type.equals("character varying")) {
+                var alteration = narrowVarchar(table, name, typeIndex + alterations.size());
+                if (alteration != null) {
+                    alterations.add(alteration);
+                }
+            } else if (type.equals("bigint")) {
+                bigintColumns.add(name);
+            }
+        }
+
+        alterations.addAll(narrowBigint(table, bigintColumns));
+
+        // change all columns with a single rewrite of the table
+        if (!alterations.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE " + table + " " + String.join(", ", alterations));
+            jdbcTemplate.execute("ANALYZE " + table);
+        }
+
+        logger.info("Narrowed {} attribute columns of \"{}\" ({} ms)", alterations.size(), table, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns the alteration of a textual column, if it has only a few distinct values, or null.
+     *
+     * @param table
+     * @param column
+     * @param index
+     * @return
+     */
+    private String narrowVarchar(String table, String column, int index) {
+        var name = quote(column);
+        var values = jdbcTemplate.queryForList("SELECT DISTINCT " + name + " FROM " + table + " WHERE " + name + " IS NOT NULL " +
+                "ORDER BY " + name + " LIMIT " + (MAX_CATEGORIES + 1), String.class);
+
+        if (values.isEmpty() || values.size() > MAX_CATEGORIES) {
+            return null;
+        }
+
+        if (values.stream().allMatch(x -> x.equals("true") || x.equals("false"))) {
+            return "ALTER COLUMN " + name + " TYPE boolean USING " + name + "::boolean";
+        } else if (values.stream().allMatch(AttributeEncoder::isInteger)) {
+            return "ALTER COLUMN " + name + " TYPE integer USING " + name + "::integer";
+        } else if (values.stream().allMatch(x -> !x.isEmpty() && x.getBytes(StandardCharsets.UTF_8).length <= MAX_LABEL_LENGTH)) {
+            var type = table + "_e" + index;
+            var labels = values.stream().map(x -> "'" + x.replace("'", "''") + "'").collect(Collectors.joining(", "));
+
+            jdbcTemplate.execute("CREATE TYPE " + type + " AS ENUM (" + labels + ")");
+            return "ALTER COLUMN " + name + " TYPE " + type + " USING " + name + "::" + type;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the alterations of the bigint columns whose values are within the range of integer.
+     *
+     * @param table
+     * @param columns
+     * @return
+     */
+    private List<String> narrowBigint(String table, List<String> columns) {
+        var result = new ArrayList<String>();
+        if (columns.isEmpty()) {
+            return result;
+        }
+
+        var checks = new ArrayList<String>();
+        for (int i = 0; i < columns.size(); i++) {
+            var name = quote(columns.get(i));
+            checks.add("COALESCE(bool_and(" + name + " BETWEEN " + Integer.MIN_VALUE + " AND " + Integer.MAX_VALUE + "), false) AS c" + i);
+        }
+
+        var rows = jdbcTemplate.queryForList("SELECT " + String.join(", ", checks) + " FROM " + table);
+        if (rows.isEmpty()) {
+            return result;
+        }
+
+        for (int i = 0; i < columns.size(); i++) {
+            if (Boolean.TRUE.equals(rows.get(0).get("c" + i))) {
+                result.add("ALTER COLUMN " + quote(columns.get(i)) + " TYPE integer");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the enum types of a table that are not used by any column.
+     *
+     * @param table
+     */
+    private void dropTypes(String table) {
+        var types = jdbcTemplate.queryForList("SELECT typname FROM pg_type t WHERE typtype = 'e' " +
+                "AND NOT EXISTS (SELECT 1 FROM pg_attribute a WHERE a.atttypid = t.oid AND NOT a.attisdropped)", String.class);
+
+        types.stream()
+                .filter(x -> isType(table, x))
+                .forEach(x -> jdbcTemplate.execute("DROP TYPE IF EXISTS " + x));
+    }
+
+    private List<String> getTypes(String table) {
+        return jdbcTemplate.queryForList("SELECT typname FROM pg_type WHERE typtype = 'e'", String.class).stream()
+                .filter(x -> isType(table, x))
+                .collect(Collectors.toList());
+    }
+
+    private boolean isType(String table, String type) {
+        return type.startsWith(table) && type.substring(table.length()).matches("_e[0-9]+");
+    }
+
+    private String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Returns true, if the value is an integer in its canonical form. Values with leading zeros are kept as text.
+     *
+     * @param value
+     * @return
+     */
+    private static boolean isInteger(String value) {
+        try {
+            return String.valueOf(Integer.parseInt(value)).equals(value);
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+}
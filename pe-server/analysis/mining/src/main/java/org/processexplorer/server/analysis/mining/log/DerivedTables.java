@@ -0,0 +1,590 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.common.utils.OutputBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Generates the structures that are derived from the events table of a log, independent of the source format the
+ * log was imported from.
+ * <p>
+ * The cases table is either a view that aggregates the events on every access or a materialized table with indexes
+ * on the commonly filtered columns, which has to be refreshed whenever the events of a case change. Which one is used
+ * is chosen per log. Incremental updates of a view only add the new variants, the occurrences of all variants are
+ * counted again, because the variants of the changed cases before the change are not known.
+ * <p>
+ * The variants table is the dictionary of the distinct activity sequences of the log. Each case references its variant
+ * by id, the ids are assigned in the order of the occurrence of the variants and never collide. Variants without cases
+ * are removed when the cases are updated.
+ * <p>
+ * The graph table always is a table that contains the directly-follows relation of the activities and resources of
+ * each case, including the edges from the artificial start and to the artificial end node. Process maps and transition
+ * metrics read it instead of sorting the events table on every request.
+ * <p>
+ * The variant graph table aggregates the graph table by variant, i.e. it contains the occurrence and the sum, minimum
+ * and maximum of the durations of each edge of a variant. Process maps of filters that select whole variants are the
+ * sum of the edges of the selected variants.
+ * <p>
+ * The structures are generated under separate names and replace the previous ones in a single transaction, so the log
+ * stays queryable, e.g. while a preview is replaced by the structures of the whole log.
+ */
+public class DerivedTables {
+
+    private static final Logger logger = LoggerFactory.getLogger(DerivedTables.class);
+
+    private static final List<String> CASE_INDEX_COLUMNS = List.of("variant_id", "start_time", "end_time", "total_duration");
+
+    private static final String PATH_AGGREGATE = "ARRAY_AGG(CAST(event AS integer) ORDER BY timestamp, lifecycle, event)";
+
+    private static final String START_NODE = "-1";
+    private static final String END_NODE = "-2";
+
+    private static final String STAGING = "_staging";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String logName;
+
+    private final DatabaseModel db;
+
+    private boolean materializeCases = false;
+
+    public DerivedTables(JdbcTemplate jdbcTemplate, String logName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.logName = logName;
+        this.db = new DatabaseModel(logName);
+    }
+
+    /**
+     * Sets whether the cases table is generated as table instead of a view.
+     *
+     * @param materializeCases
+     */
+    public void setMaterializeCases(boolean materializeCases) {
+        this.materializeCases = materializeCases;
+    }
+
+    /**
+     * Generates all derived structures after the events of a log were imported.
+     */
+    public void generate() {
+        generate(materializeCases, "");
+    }
+
+    /**
+     * Generates the derived structures of the cases with ids below the given case id, while the events of the
+     * following cases are still imported. The cases table is always materialized, so it does not pick up the cases
+     * that are written meanwhile. The structures are replaced when they are generated after the import.
+     *
+     * @param nextCaseId
+     */
+    public void generatePreview(int nextCaseId) {
+        generate(true, "WHERE case_id < " + nextCaseId);
+    }
+
+    private void generate(boolean materialized, String where) {
+        var staging = new DatabaseModel(logName + STAGING);
+        drop(staging);
+
+        // the cases reference the variants
+        generateVariantsTable(staging, where);
+
+        if (materialized) {
+            generateCaseTable(staging, where);
+        } else {
+            generateCaseView(staging);
+        }
+
+        generateGraphTable(staging, where);
+        generateVariantGraphTable(staging);
+
+        replace(staging, materialized);
+    }
+
+    /**
+     * Replaces the derived structures of the log by the generated ones in a single transaction. Running queries keep
+     * reading the previous structures, later queries wait for the transaction.
+     *
+     * @param staging
+     * @param materialized
+     */
+    private void replace(DatabaseModel staging, boolean materialized) {
+        var start = System.currentTimeMillis();
+
+        var statements = new ArrayList<String>();
+        statements.add(getDropCases(db));
+        statements.add("DROP TABLE IF EXISTS " + db.variantsTable.getTableNameSQL());
+        statements.add("DROP TABLE IF EXISTS " + db.graphTable.getTableNameSQL());
+        statements.add("DROP TABLE IF EXISTS " + db.variantGraphTable.getTableNameSQL());
+
+        rename(statements, materialized ? "TABLE" : "VIEW", staging.caseTable.getTableNameSQL(), db.caseTable.getTableNameSQL());
+        rename(statements, "TABLE", staging.variantsTable.getTableNameSQL(), db.variantsTable.getTableNameSQL());
+        rename(statements, "TABLE", staging.graphTable.getTableNameSQL(), db.graphTable.getTableNameSQL());
+        rename(statements, "TABLE", staging.variantGraphTable.getTableNameSQL(), db.variantGraphTable.getTableNameSQL());
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // within a transaction of the caller, the statements are committed with the transaction
+            var autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try (var statement = connection.createStatement()) {
+                for (var sql : statements) {
+                    statement.execute(sql);
+                }
+                if (autoCommit) {
+                    connection.commit();
+                }
+            } catch (SQLException ex) {
+                if (autoCommit) {
+                    connection.rollback();
+                }
+                throw ex;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+
+        logger.info("Replaced derived tables of \"{}\" ({} ms)", logName, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds the statements that rename a relation and its indexes, whose names contain the name of the relation.
+     *
+     * @param statements
+     * @param type
+     * @param from
+     * @param to
+     */
+    private void rename(List<String> statements, String type, String from, String to) {
+        statements.add("ALTER " + type + " " + from + " RENAME TO " + to);
+
+        for (var index : jdbcTemplate.queryForList("SELECT indexname FROM pg_indexes WHERE tablename = ?", String.class, from)) {
+            statements.add("ALTER INDEX " + index + " RENAME TO " + index.replace(from, to));
+        }
+    }
+
+    /**
+     * Updates the derived structures of the given cases after their events changed. New cases are added.
+     *
+     * @param caseIds
+     */
+    public void refresh(Collection<Integer> caseIds) {
+        if (caseIds.isEmpty()) {
+            return;
+        }
+
+        var ids = caseIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        refresh("WHERE case_id IN (" + ids + ")");
+    }
+
+    /**
+     * Adds the derived structures of the cases that were appended to the log. The appended cases have ids starting
+     * with the given case id.
+     *
+     * @param firstCaseId
+     */
+    public void append(int firstCaseId) {
+        var start = System.currentTimeMillis();
+        refresh("WHERE case_id >= " + firstCaseId);
+
+        // the statistics are outdated after adding a larger number of cases
+        if (isMaterialized()) {
+            jdbcTemplate.execute("ANALYZE " + db.caseTable.getTableNameSQL());
+        }
+        jdbcTemplate.execute("ANALYZE " + db.variantsTable.getTableNameSQL());
+        jdbcTemplate.execute("ANALYZE " + db.graphTable.getTableNameSQL());
+        jdbcTemplate.execute("ANALYZE " + db.variantGraphTable.getTableNameSQL());
+
+        logger.info("Appended cases starting with {} to the derived tables ({} ms)", firstCaseId, System.currentTimeMillis() - start);
+    }
+
+    private void refresh(String where) {
+        // add the new variants of the cases, their occurrence is counted after the cases were updated
+        jdbcTemplate.execute("INSERT INTO " + db.variantsTable.getTableNameSQL() + " (id, path, length, occurrence) " +
+                "SELECT (SELECT COALESCE(MAX(id), 0) FROM " + db.variantsTable.getTableNameSQL() + ") + ROW_NUMBER() OVER (ORDER BY p.path), p.path, cardinality(p.path), 0 " +
+                "FROM (SELECT DISTINCT path FROM (" + selectPaths(where) + ") x) p " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + db.variantsTable.getTableNameSQL() + " v WHERE v.path = p.path)");
+
+        // variants of the cases before and after the update, the view picks up the changed events by itself, but does
+        // not know the variants before the update, so all variants are counted again
+        Collection<Long> variantIds = null;
+        if (isMaterialized()) {
+            variantIds = new HashSet<>(jdbcTemplate.queryForList("SELECT variant_id FROM " + db.caseTable.getTableNameSQL() + " " + where, Long.class));
+
+            jdbcTemplate.execute("DELETE FROM " + db.caseTable.getTableNameSQL() + " " + where);
+            jdbcTemplate.execute("INSERT INTO " + db.caseTable.getTableNameSQL() + " " + selectCases(db, where));
+
+            variantIds.addAll(jdbcTemplate.queryForList("SELECT variant_id FROM " + db.caseTable.getTableNameSQL() + " " + where, Long.class));
+        }
+        countVariants(variantIds);
+        removeUnusedVariants(variantIds);
+
+        jdbcTemplate.execute("DELETE FROM " + db.graphTable.getTableNameSQL() + " " + where);
+        jdbcTemplate.execute("INSERT INTO " + db.graphTable.getTableNameSQL() + " " + selectGraph(db.eventTable.getTableNameSQL(), where));
+
+        refreshVariantGraph(variantIds);
+    }
+
+    /**
+     * Aggregates the edges of the given variants or of all variants if null again.
+     *
+     * @param variantIds
+     */
+    private void refreshVariantGraph(Collection<Long> variantIds) {
+        var table = db.variantGraphTable.getTableNameSQL();
+
+        if (variantIds == null) {
+            jdbcTemplate.execute("DELETE FROM " + table);
+            jdbcTemplate.execute("INSERT INTO " + table + " " + selectVariantGraph(db, ""));
+        } else if (!variantIds.isEmpty()) {
+            var ids = variantIds.stream().filter(Objects::nonNull).map(String::valueOf).collect(Collectors.joining(","));
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            jdbcTemplate.execute("DELETE FROM " + table + " WHERE variant_id IN (" + ids + ")");
+            jdbcTemplate.execute("INSERT INTO " + table + " " + selectVariantGraph(db, "WHERE c.variant_id IN (" + ids + ")"));
+        }
+    }
+
+    /**
+     * Removes all derived structures, regardless whether they were generated as views or tables.
+     */
+    public void drop() {
+        drop(db);
+        drop(new DatabaseModel(logName + STAGING));
+    }
+
+    private void drop(DatabaseModel tables) {
+        jdbcTemplate.execute(getDropCases(tables));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + tables.variantsTable.getTableNameSQL());
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + tables.graphTable.getTableNameSQL());
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + tables.variantGraphTable.getTableNameSQL());
+    }
+
+    private String getDropCases(DatabaseModel tables) {
+        var table = tables.caseTable.getTableNameSQL();
+        return (isMaterialized(table) ? "DROP TABLE IF EXISTS " : "DROP VIEW IF EXISTS ") + table;
+    }
+
+    /**
+     * Returns true, if all derived structures of the log exist. Logs that were imported by an older version may lack
+     * some of them.
+     *
+     * @return
+     */
+    public boolean exists() {
+        return tableExists(db.variantsTable.getTableNameSQL()) && tableExists(db.graphTable.getTableNameSQL())
+                && tableExists(db.variantGraphTable.getTableNameSQL());
+    }
+
+    /**
+     * Returns true, if the cases table of the log exists as table.
+     *
+     * @return
+     */
+    public boolean isMaterialized() {
+        return isMaterialized(db.caseTable.getTableNameSQL());
+    }
+
+    private boolean isMaterialized(String table) {
+        var count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ? AND table_type = 'BASE TABLE'",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Generates the graph table with the directly-follows relation of the selected cases from the events table.
+     *
+     * @param where
+     */
+    private void generateGraphTable(DatabaseModel tables, String where) {
+        var start = System.currentTimeMillis();
+        var table = tables.graphTable.getTableNameSQL();
+
+        var events = db.eventTable.getTableNameSQL();
+        var partitions = EventTablePartitioning.getHashPartitions(jdbcTemplate, events);
+
+        if (partitions.isEmpty()) {
+            jdbcTemplate.execute("CREATE TABLE " + table + " AS " + selectGraph(events, where));
+        } else {
+            // all events of a case are in the same partition, so the window functions can run per partition
+            jdbcTemplate.execute("CREATE TABLE " + table + " AS " + selectGraph(events, where) + " WITH NO DATA");
+            insertInParallel(table, partitions, where);
+        }
+
+        // create indexes
+        jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + table + " ON " + table + " (case_id)");
+        jdbcTemplate.execute("CREATE INDEX p_source_target_index_" + table + " ON " + table + " (source, target)");
+
+        jdbcTemplate.execute("ANALYZE " + table);
+        logger.info("Generated graph table \"{}\" ({} ms)", table, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Generates the variant graph table from the graph table, which has to be generated before.
+     */
+    private void generateVariantGraphTable(DatabaseModel tables) {
+        var start = System.currentTimeMillis();
+        var table = tables.variantGraphTable.getTableNameSQL();
+
+        jdbcTemplate.execute("CREATE TABLE " + table + " AS " + selectVariantGraph(tables, ""));
+
+        // create indexes
+        jdbcTemplate.execute("CREATE INDEX p_variant_id_index_" + table + " ON " + table + " (variant_id)");
+
+        jdbcTemplate.execute("ANALYZE " + table);
+        logger.info("Generated variant graph table \"{}\" ({} ms)", table, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Inserts the directly-follows relation of each partition of the events table into the graph table, using one
+     * connection per partition up to the number of available processors. Within a transaction of the caller, the
+     * other connections can not see the new table, so the partitions are inserted one after another.
+     *
+     * @param table
+     * @param partitions
+     * @param where
+     */
+    private void insertInParallel(String table, List<String> partitions, String where) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            partitions.forEach(x -> jdbcTemplate.execute("INSERT INTO " + table + " " + selectGraph(x, where)));
+            return;
+        }
+
+        var threads = Math.min(partitions.size(), Runtime.getRuntime().availableProcessors());
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var tasks = new ArrayList<Future<?>>();
+            for (var partition : partitions) {
+                tasks.add(executor.submit(() -> jdbcTemplate.execute("INSERT INTO " + table + " " + selectGraph(partition, where))));
+            }
+
+            for (var task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Generates the variants table with the distinct activity sequences of the selected cases.
+     *
+     * @param where
+     */
+    private void generateVariantsTable(DatabaseModel tables, String where) {
+        var start = System.currentTimeMillis();
+        var table = tables.variantsTable.getTableNameSQL();
+
+        jdbcTemplate.execute("CREATE TABLE " + table + " AS " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY COUNT(*) DESC, path) AS id, path, cardinality(path) AS length, COUNT(*) AS occurrence " +
+                "FROM (" + selectPaths(where) + ") p GROUP BY path");
+
+        // create indexes, paths may exceed the size limit of btree entries
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (id)");
+        jdbcTemplate.execute("CREATE INDEX p_path_index_" + table + " ON " + table + " USING hash (path)");
+
+        jdbcTemplate.execute("ANALYZE " + table);
+        logger.info("Generated variants table \"{}\" ({} ms)", table, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Updates the occurrence of the given variants or of all variants if null.
+     *
+     * @param variantIds
+     */
+    private void countVariants(Collection<Long> variantIds) {
+        var variants = db.variantsTable.getTableNameSQL();
+
+        if (variantIds == null) {
+            jdbcTemplate.execute("UPDATE " + variants + " v SET occurrence = COALESCE(c.occurrence, 0) " +
+                    "FROM " + variants + " v2 LEFT JOIN (SELECT path, COUNT(*) AS occurrence FROM (" + selectPaths("") + ") p GROUP BY path) c ON c.path = v2.path " +
+                    "WHERE v2.id = v.id");
+        } else if (!variantIds.isEmpty()) {
+            var ids = variantIds.stream().filter(Objects::nonNull).map(String::valueOf).collect(Collectors.joining(","));
+            if (ids.isEmpty()) {
+                return;
+            }
+
+            jdbcTemplate.execute("UPDATE " + variants + " v SET occurrence = (SELECT COUNT(*) FROM " + db.caseTable.getTableNameSQL() + " c WHERE c.variant_id = v.id) " +
+                    "WHERE v.id IN (" + ids + ")");
+        }
+    }
+
+    /**
+     * Removes the variants without cases among the given variants or among all variants if null, e.g. after the
+     * cases of a variant changed to another variant. Their edges are removed with the variant graph of the variants.
+     *
+     * @param variantIds
+     */
+    private void removeUnusedVariants(Collection<Long> variantIds) {
+        var variants = db.variantsTable.getTableNameSQL();
+
+        if (variantIds == null) {
+            jdbcTemplate.execute("DELETE FROM " + variants + " WHERE occurrence = 0");
+        } else {
+            var ids = variantIds.stream().filter(Objects::nonNull).map(String::valueOf).collect(Collectors.joining(","));
+            if (!ids.isEmpty()) {
+                jdbcTemplate.execute("DELETE FROM " + variants + " WHERE occurrence = 0 AND id IN (" + ids + ")");
+            }
+        }
+    }
+
+    private boolean tableExists(String table) {
+        var count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private void generateCaseView(DatabaseModel tables) {
+        jdbcTemplate.execute("CREATE OR REPLACE VIEW " + tables.caseTable.getTableNameSQL() + " AS " + selectCases(tables, ""));
+    }
+
+    private void generateCaseTable(DatabaseModel tables, String where) {
+        var start = System.currentTimeMillis();
+        var table = tables.caseTable.getTableNameSQL();
+
+        jdbcTemplate.execute("CREATE TABLE " + table + " AS " + selectCases(tables, where));
+
+        // create indexes
+        jdbcTemplate.execute("CREATE UNIQUE INDEX p_case_id_index_" + table + " ON " + table + " (case_id)");
+        for (var column : CASE_INDEX_COLUMNS) {
+            jdbcTemplate.execute("CREATE INDEX p_" + column + "_index_" + table + " ON " + table + " (" + column + ")");
+        }
+
+        jdbcTemplate.execute("ANALYZE " + table);
+        logger.info("Materialized cases table \"{}\" ({} ms)", table, System.currentTimeMillis() - start);
+    }
+
+    private String selectCases(DatabaseModel tables, String where) {
+        var sql = new OutputBuilder();
+        sql.print("SELECT");
+        sql.print("c.case_id, c.start_time, c.end_time, c.num_events, c.num_users, c.total_duration,");
+        sql.print("CONCAT(':', ARRAY_TO_STRING(c.path, '::'), ':') AS variant,");
+        sql.print("c.resource_variant,");
+        sql.print("v.id AS variant_id,");
+        sql.print("c.resource_variant_id");
+        sql.print("FROM (SELECT");
+        sql.print("%s,", "case_id");
+        sql.print("MIN(timestamp) AS start_time,");
+        sql.print("MAX(timestamp) AS end_time,");
+        sql.print("COUNT(%s) AS %s,", "event", "num_events");
+        sql.print("COUNT(DISTINCT %s) AS %s,", "log.resource", "num_users");
+        sql.print("CAST(%s AS interval) AS %s,", "age(MAX(timestamp), MIN(timestamp))", "total_duration");
+        sql.print("%s AS path,", PATH_AGGREGATE);
+        sql.print("CONCAT(':', STRING_AGG(CAST(r.name AS VARCHAR(255)), '::' ORDER BY timestamp, lifecycle, r.name), ':') AS resource_variant,");
+        sql.print("HASHTEXT(STRING_AGG(CAST(r.name AS VARCHAR(255)), '::' ORDER BY timestamp, lifecycle, r.name)) AS resource_variant_id");
+        sql.print("FROM %s AS log", db.eventTable.getTableNameSQL());
+        sql.print("LEFT JOIN %s AS r ON r.id = log.resource", db.resourceTable.getTableNameSQL());
+        sql.print(where);
+        sql.print("GROUP BY case_id) c");
+        sql.print("LEFT JOIN %s AS v ON v.path = c.path", tables.variantsTable.getTableNameSQL());
+
+        return sql.toString();
+    }
+
+    private String selectPaths(String where) {
+        var sql = new OutputBuilder();
+        sql.print("SELECT case_id, %s AS path", PATH_AGGREGATE);
+        sql.print("FROM %s", db.eventTable.getTableNameSQL());
+        sql.print(where);
+        sql.print("GROUP BY case_id");
+
+        return sql.toString();
+    }
+
+    private String selectVariantGraph(DatabaseModel tables, String where) {
+        var duration = "EXTRACT(EPOCH FROM AGE(g.target_timestamp, g.source_timestamp))";
+
+        var sql = new OutputBuilder();
+        sql.print("SELECT");
+        sql.print("c.variant_id,");
+        sql.print("g.source,");
+        sql.print("g.target,");
+        sql.print("COUNT(*) AS occurrence,");
+        sql.print("COUNT(%s) AS num_durations,", duration);
+        sql.print("CAST(SUM(%s) AS double precision) AS sum_duration,", duration);
+        sql.print("CAST(MIN(%s) AS double precision) AS min_duration,", duration);
+        sql.print("CAST(MAX(%s) AS double precision) AS max_duration", duration);
+        sql.print("FROM %s AS g", tables.graphTable.getTableNameSQL());
+        sql.print("JOIN %s AS c ON c.case_id = g.case_id", tables.caseTable.getTableNameSQL());
+        sql.print(where);
+        sql.print("GROUP BY c.variant_id, g.source, g.target");
+
+        return sql.toString();
+    }
+
+    private String selectGraph(String events, String where) {
+        var sql = new OutputBuilder();
+
+        // edges between subsequent events of a case, the last event is followed by the end node
+        sql.print("SELECT");
+        sql.print("case_id,");
+        sql.print("CAST(event AS integer) AS source,");
+        sql.print("CAST(COALESCE(LEAD(event, 1) OVER w, %s) AS integer) AS target,", END_NODE);
+        sql.print("resource AS source_resource,");
+        sql.print("COALESCE(LEAD(resource, 1) OVER w, %s) AS target_resource,", END_NODE);
+        sql.print("timestamp AS source_timestamp,");
+        sql.print("LEAD(timestamp, 1) OVER w AS target_timestamp");
+        sql.print("FROM %s", events);
+        sql.print(where);
+        sql.print("WINDOW w AS (PARTITION BY case_id ORDER BY timestamp, event)");
+
+        // edges from the start node to the first event of a case
+        sql.print("UNION ALL");
+        sql.print("(SELECT DISTINCT ON (case_id)");
+        sql.print("case_id,");
+        sql.print("%s AS source,", START_NODE);
+        sql.print("CAST(event AS integer) AS target,");
+        sql.print("%s AS source_resource,", START_NODE);
+        sql.print("resource AS target_resource,");
+        sql.print("CAST(NULL AS timestamp) AS source_timestamp,");
+        sql.print("timestamp AS target_timestamp");
+        sql.print("FROM %s", events);
+        sql.print(where);
+        sql.print("ORDER BY case_id, timestamp, event)");
+
+        return sql.toString();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Optimizes the physical layout of the events table after an import.
+ * <p>
+ * The events are stored in the order of the file, so the events of a case are spread over the table and the database
+ * has no statistics until autovacuum analyzes it. The optimizer creates an index in the order of the directly-follows
+ * relation, which also contains the columns of the case aggregation, sorts the table by it and adds a BRIN index on
+ * the timestamp. Finally, it vacuums and analyzes the tables, so the visibility map allows index-only scans and the
+ * first queries are planned with proper statistics.
+ */
+public class EventTableOptimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventTableOptimizer.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final DatabaseModel db;
+
+    private boolean cluster = true;
+
+    public EventTableOptimizer(JdbcTemplate jdbcTemplate, String logName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.db = new DatabaseModel(logName);
+    }
+
+    /**
+     * Sets whether the tables are sorted. Sorting rewrites the tables and blocks all queries of the log meanwhile, the
+     * indexes are created without blocking them.
+     *
+     * @param cluster
+     */
+    public void setCluster(boolean cluster) {
+        this.cluster = cluster;
+    }
+
+    /**
+     * Optimizes the events and case attribute table and returns the time that was required.
+     *
+     * @return
+     */
+    public long optimize() {
+        var start = System.currentTimeMillis();
+        var events = db.eventTable.getTableNameSQL();
+        var caseAttributes = db.caseAttributeTable.getTableNameSQL();
+        var orderIndex = "p_case_order_index_" + events;
+
+        // covers the directly-follows relation and the case aggregation, replaces the plain case id index
+        execute("create covering index", "CREATE INDEX IF NOT EXISTS " + orderIndex + " ON " + events + " (case_id, timestamp, event) INCLUDE (resource, lifecycle)");
+        execute("drop case id index", "DROP INDEX IF EXISTS p_case_id_index_" + events);
+
+        if (cluster) {
+            cluster(events, orderIndex);
+        }
+        execute("create timestamp index", "CREATE INDEX IF NOT EXISTS p_timestamp_brin_index_" + events + " ON " + events + " USING brin (timestamp)");
+        if (cluster) {
+            execute("cluster case attributes", "CLUSTER " + caseAttributes + " USING p_case_id_index_" + caseAttributes);
+        }
+
+        execute("vacuum events", "VACUUM ANALYZE " + events);
+        execute("vacuum case attributes", "VACUUM ANALYZE " + caseAttributes);
+        execute("analyze dictionaries", "ANALYZE " + db.activityTable.getTableNameSQL() + ", " + db.resourceTable.getTableNameSQL());
+
+        var duration = System.currentTimeMillis() - start;
+        logger.info("Optimized layout of \"{}\" ({} ms)", events, duration);
+        return duration;
+    }
+
+    /**
+     * Sorts a table by an index. Partitioned tables can not be clustered as a whole, so each partition is sorted by
+     * its own part of the index.
+     *
+     * @param table
+     * @param index
+     */
+    private void cluster(String table, String index) {
+        var partitions = jdbcTemplate.queryForList("SELECT c.relname AS partition, i.relname AS index FROM pg_inherits h " +
+                "JOIN pg_class i ON i.oid = h.inhrelid " +
+                "JOIN pg_index x ON x.indexrelid = i.oid " +
+                "JOIN pg_class c ON c.oid = x.indrelid " +
+                "WHERE h.inhparent = CAST(? AS regclass)", index);
+
+        if (partitions.isEmpty()) {
+            execute("cluster events", "CLUSTER " + table + " USING " + index);
+        } else {
+            for (var partition : partitions) {
+                execute("cluster " + partition.get("partition"), "CLUSTER " + partition.get("partition") + " USING " + partition.get("index"));
+            }
+        }
+    }
+
+    private void execute(String step, String sql) {
+        var start = System.currentTimeMillis();
+        jdbcTemplate.execute(sql);
+        logger.debug("Layout optimization step \"{}\" ({} ms)", step, System.currentTimeMillis() - start);
+    }
+}
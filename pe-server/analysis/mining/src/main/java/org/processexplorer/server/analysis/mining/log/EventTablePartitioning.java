@@ -0,0 +1,229 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Declarative partitioning of the events table of a log.
+ * <p>
+ * With hash partitioning, the events are distributed by case id, so all events of a case are stored in the same
+ * partition. Queries on single cases only scan one partition and the directly-follows relation can be computed for
+ * each partition on its own. With range partitioning, the events are split by the time period of their timestamp,
+ * which keeps maintenance of old periods cheap and prunes queries filtering on the timestamp. Events without timestamp
+ * are stored in the default partition.
+ * <p>
+ * Indexes created on the events table are created on all of its partitions by the database.
+ */
+public class EventTablePartitioning {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventTablePartitioning.class);
+
+    public enum Type {
+        NONE,
+        HASH,
+        RANGE
+    }
+
+    // supported periods of range partitions and their length
+    private static final Map<String, String> INTERVALS = Map.of(
+            "day", "1 day",
+            "week", "1 week",
+            "month", "1 month",
+            "quarter", "3 months",
+            "year", "1 year");
+
+    private final Type type;
+
+    private final int partitions;
+
+    private final String interval;
+
+    public EventTablePartitioning(Type type, int partitions, String interval) {
+        if (type == Type.RANGE && !INTERVALS.containsKey(interval)) {
+            throw new IllegalArgumentException("Unsupported partition interval \"" + interval + "\", expected one of " + INTERVALS.keySet());
+        }
+
+        this.type = type;
+        this.partitions = Math.max(1, partitions);
+        this.interval = interval;
+    }
+
+    public static EventTablePartitioning none() {
+        return new EventTablePartitioning(Type.NONE, 1, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the clause that has to be appended to the CREATE TABLE statement of the events table.
+     *
+     * @return
+     */
+    public String getPartitionClause() {
+        switch (type) {
+            case HASH:
+                return " PARTITION BY HASH (case_id)";
+            case RANGE:
+                return " PARTITION BY RANGE (timestamp)";
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Creates the partitions of a newly created events table. Range partitions are added for the timestamps of the
+     * events, until then all events are stored in the default partition.
+     *
+     * @param jdbcTemplate
+     * @param table
+     */
+    public void createPartitions(JdbcTemplate jdbcTemplate, String table) {
+        if (type == Type.HASH) {
+            for (int i = 0; i < partitions; i++) {
+                jdbcTemplate.execute("CREATE TABLE " + table + "_p" + i + " PARTITION OF " + table +
+                        " FOR VALUES WITH (MODULUS " + partitions + ", REMAINDER " + i + ")");
+            }
+        } else if (type == Type.RANGE) {
+            jdbcTemplate.execute("CREATE TABLE " + table + "_pdefault PARTITION OF " + table + " DEFAULT");
+        }
+    }
+
+    /**
+     * Adds the range partitions that are required for the timestamps of another table, e.g. the staging table of an
+     * import, before its events are inserted into the events table.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @param source
+     */
+    public void addRangePartitions(JdbcTemplate jdbcTemplate, String table, String source) {
+        if (type != Type.RANGE) {
+            return;
+        }
+
+        var periods = jdbcTemplate.queryForList("SELECT TO_CHAR(p, 'YYYYMMDD') AS name, CAST(p AS varchar) AS lower, " +
+                "CAST(p + INTERVAL '" + INTERVALS.get(interval) + "' AS varchar) AS upper " +
+                "FROM (SELECT DISTINCT DATE_TRUNC('" + interval + "', timestamp) AS p FROM " + source + " WHERE timestamp IS NOT NULL) x " +
+                "ORDER BY p");
+
+        for (var period : periods) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + "_p" + period.get("name") + " PARTITION OF " + table +
+                    " FOR VALUES FROM ('" + period.get("lower") + "') TO ('" + period.get("upper") + "')");
+        }
+    }
+
+    /**
+     * Moves the events from the default partition into range partitions. Required after imports that do not know the
+     * timestamps of the events up front.
+     * <p>
+     * The default partition is detached while the partitions are created, so all steps run in one transaction. The
+     * events are never missing from queries and remain in the default partition, if a step fails.
+     *
+     * @param jdbcTemplate
+     * @param table
+     */
+    public void distribute(JdbcTemplate jdbcTemplate, String table) {
+        if (type != Type.RANGE) {
+            return;
+        }
+
+        var start = System.currentTimeMillis();
+        var partition = table + "_pdefault";
+        var detached = table + "_pdetached";
+
+        var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+        var distributed = transactionTemplate.execute(status -> {
+            // events of a redistribution that was interrupted outside of a transaction
+            if (exists(jdbcTemplate, detached)) {
+                logger.warn("Restoring events of \"{}\" from an interrupted redistribution", table);
+                jdbcTemplate.execute("INSERT INTO " + table + " SELECT * FROM " + detached);
+                jdbcTemplate.execute("DROP TABLE " + detached);
+            }
+
+            var pending = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + partition + " WHERE timestamp IS NOT NULL)", Boolean.class);
+            if (!Boolean.TRUE.equals(pending)) {
+                return false;
+            }
+
+            // partitions overlapping rows of the default partition can not be created while it is attached
+            jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION " + partition);
+            jdbcTemplate.execute("ALTER TABLE " + partition + " RENAME TO " + detached);
+
+            addRangePartitions(jdbcTemplate, table, detached);
+            jdbcTemplate.execute("CREATE TABLE " + partition + " PARTITION OF " + table + " DEFAULT");
+
+            jdbcTemplate.execute("INSERT INTO " + table + " SELECT * FROM " + detached);
+            jdbcTemplate.execute("DROP TABLE " + detached);
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(distributed)) {
+            logger.info("Distributed events of \"{}\" into range partitions ({} ms)", table, System.currentTimeMillis() - start);
+        }
+    }
+
+    private static boolean exists(JdbcTemplate jdbcTemplate, String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    /**
+     * Returns how an existing table is partitioned.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @return
+     */
+    public static Type detectType(JdbcTemplate jdbcTemplate, String table) {
+        var strategies = jdbcTemplate.queryForList("SELECT CAST(t.partstrat AS varchar) FROM pg_partitioned_table t " +
+                "JOIN pg_class c ON c.oid = t.partrelid WHERE c.relname = ?", String.class, table);
+
+        if (strategies.isEmpty()) {
+            return Type.NONE;
+        }
+        return strategies.get(0).equals("h") ? Type.HASH : Type.RANGE;
+    }
+
+    /**
+     * Returns the partitions of a table that is partitioned by hash of the case id or an empty list, if the table is
+     * not partitioned this way.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @return
+     */
+    public static List<String> getHashPartitions(JdbcTemplate jdbcTemplate, String table) {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "JOIN pg_partitioned_table t ON t.partrelid = p.oid " +
+                "WHERE p.relname = ? AND t.partstrat = 'h' " +
+                "ORDER BY c.relname", String.class, table);
+    }
+}
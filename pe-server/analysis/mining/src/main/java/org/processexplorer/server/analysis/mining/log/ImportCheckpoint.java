@@ -0,0 +1,59 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+/**
+ * Position up to which the traces of an import are completely written to the database. An interrupted import is
+ * resumed from here: the traces before are skipped and the rows of later traces are removed, since they may have been
+ * written partially.
+ */
+public class ImportCheckpoint {
+
+    private final long traces;
+
+    private final int nextCaseId;
+
+    public ImportCheckpoint(long traces, int nextCaseId) {
+        this.traces = traces;
+        this.nextCaseId = nextCaseId;
+    }
+
+    /**
+     * Returns the number of traces read from the file, including traces that were skipped.
+     *
+     * @return
+     */
+    public long getTraces() {
+        return traces;
+    }
+
+    /**
+     * Returns the case id of the next trace that is imported.
+     *
+     * @return
+     */
+    public int getNextCaseId() {
+        return nextCaseId;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d traces, next case id %d", traces, nextCaseId);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+/**
+ * Progress of a running import as it is reported to the clients.
+ */
+public class ImportProgress {
+
+    private final String logName;
+
+    private final long traces;
+
+    private final double tracesPerSecond;
+
+    private final double percent;
+
+    public ImportProgress(String logName, long traces, double tracesPerSecond, double percent) {
+        this.logName = logName;
+        this.traces = traces;
+        this.tracesPerSecond = tracesPerSecond;
+        this.percent = percent;
+    }
+
+    public String getLogName() {
+        return logName;
+    }
+
+    /**
+     * Returns the number of traces written by the import.
+     *
+     * @return
+     */
+    public long getTraces() {
+        return traces;
+    }
+
+    public double getTracesPerSecond() {
+        return tracesPerSecond;
+    }
+
+    /**
+     * Returns the part of the file that is written in percent or -1, if the size of the input is unknown.
+     *
+     * @return
+     */
+    public double getPercent() {
+        return percent;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d traces (%.0f traces/s, %.1f %%)", traces, tracesPerSecond, percent);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput and queue depth of a single stage of the import pipeline. A stage may be executed by several threads.
+ */
+public class ImportStageStatistics {
+
+    private final String name;
+
+    private final int threads;
+
+    private final AtomicLong traces = new AtomicLong();
+
+    private final AtomicLong busyTime = new AtomicLong();
+
+    private final AtomicLong waitTime = new AtomicLong();
+
+    private final AtomicLong queueSamples = new AtomicLong();
+
+    private final AtomicLong queueDepthSum = new AtomicLong();
+
+    private final AtomicLong queueDepthMax = new AtomicLong();
+
+    public ImportStageStatistics(String name, int threads) {
+        this.name = name;
+        this.threads = threads;
+    }
+
+    /**
+     * Records the processing of a batch.
+     *
+     * @param numTraces
+     * @param nanos     time spent processing the batch
+     */
+    public void addBusy(int numTraces, long nanos) {
+        traces.addAndGet(numTraces);
+        busyTime.addAndGet(nanos);
+    }
+
+    /**
+     * Records the time the stage was blocked on its input or output queue.
+     *
+     * @param nanos
+     */
+    public void addWait(long nanos) {
+        waitTime.addAndGet(nanos);
+    }
+
+    /**
+     * Records the number of batches waiting in front of the stage.
+     *
+     * @param depth
+     */
+    public void sampleQueue(int depth) {
+        queueSamples.incrementAndGet();
+        queueDepthSum.addAndGet(depth);
+        queueDepthMax.accumulateAndGet(depth, Math::max);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public long getTraces() {
+        return traces.get();
+    }
+
+    public long getBusyMillis() {
+        return busyTime.get() / 1_000_000;
+    }
+
+    public long getWaitMillis() {
+        return waitTime.get() / 1_000_000;
+    }
+
+    /**
+     * Returns the number of traces per second the stage could process with all of its threads if it never had to wait
+     * for the other stages.
+     *
+     * @return
+     */
+    public double getTracesPerSecond() {
+        var busy = busyTime.get();
+        return busy > 0 ? traces.get() * threads * 1e9 / busy : 0;
+    }
+
+    public double getAverageQueueDepth() {
+        var samples = queueSamples.get();
+        return samples > 0 ? (double) queueDepthSum.get() / samples : 0;
+    }
+
+    public long getMaxQueueDepth() {
+        return queueDepthMax.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (%d threads): %d traces, busy %d ms, waiting %d ms, %.0f traces/s, queue depth avg %.1f max %d",
+                name, threads, getTraces(), getBusyMillis(), getWaitMillis(), getTracesPerSecond(), getAverageQueueDepth(), getMaxQueueDepth());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the imported traces and events to report the throughput of an import.
+ */
+public class ImportStatistics {
+
+    private long traces = 0;
+
+    private long events = 0;
+
+    private long startTime;
+
+    private long endTime;
+
+    private long optimizeMillis = 0;
+
+    private final List<ImportStageStatistics> stages = new ArrayList<>();
+
+    public void start() {
+        startTime = System.nanoTime();
+        endTime = 0;
+        optimizeMillis = 0;
+        stages.clear();
+    }
+
+    public void stop() {
+        endTime = System.nanoTime();
+    }
+
+    public void addTrace(int numEvents) {
+        add(1, numEvents);
+    }
+
+    public synchronized void add(long numTraces, long numEvents) {
+        traces += numTraces;
+        events += numEvents;
+    }
+
+    /**
+     * Adds a stage of the import pipeline whose throughput is reported separately.
+     *
+     * @param name
+     * @param threads
+     * @return
+     */
+    public ImportStageStatistics addStage(String name, int threads) {
+        var stage = new ImportStageStatistics(name, threads);
+        stages.add(stage);
+        return stage;
+    }
+
+    public List<ImportStageStatistics> getStages() {
+        return stages;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds (up to now if the import is still running).
+     *
+     * @return
+     */
+    public long getDurationMillis() {
+        return ((endTime > 0 ? endTime : System.nanoTime()) - startTime) / 1_000_000;
+    }
+
+    /**
+     * Returns the time of the layout optimization after the import, which is not part of the throughput.
+     *
+     * @return
+     */
+    public long getOptimizeMillis() {
+        return optimizeMillis;
+    }
+
+    public void setOptimizeMillis(long optimizeMillis) {
+        this.optimizeMillis = optimizeMillis;
+    }
+
+    public double getTracesPerSecond() {
+        return perSecond(traces);
+    }
+
+    public double getEventsPerSecond() {
+        return perSecond(events);
+    }
+
+    private double perSecond(long count) {
+        var duration = getDurationMillis();
+        return duration > 0 ? count * 1000.0 / duration : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d traces, %d events in %d ms (%.0f traces/s, %.0f events/s, %d ms layout optimization)",
+                traces, events, getDurationMillis(), getTracesPerSecond(), getEventsPerSecond(), optimizeMillis);
+    }
+}
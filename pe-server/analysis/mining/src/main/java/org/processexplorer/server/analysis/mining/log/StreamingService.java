@@ -1,13 +1,15 @@
 package org.processexplorer.server.analysis.mining.log;
 
-import com.healthmarketscience.sqlbuilder.BinaryCondition;
-import com.healthmarketscience.sqlbuilder.CustomExpression;
 import com.healthmarketscience.sqlbuilder.InsertQuery;
-import com.healthmarketscience.sqlbuilder.UpdateQuery;
 import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.QueryService;
+import org.processexplorer.server.analysis.query.model.Activity;
 import org.processexplorer.server.analysis.query.model.Event;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
 
 /**
  * @author Alexander Seeliger on 25.08.2020.
@@ -17,49 +19,79 @@ public class StreamingService {
 
     private final JdbcTemplate jdbcTemplate;
 
-    public StreamingService(JdbcTemplate jdbcTemplate) {
+    private final QueryService queryService;
+
+    public StreamingService(JdbcTemplate jdbcTemplate, QueryService queryService) {
         this.jdbcTemplate = jdbcTemplate;
+        this.queryService = queryService;
     }
 
     /**
-     * Adds a new event to an existing case.
+     * Adds a new event to an existing case. Unknown cases and activities are added to the log.
+     * <p>
+     * New activities, resources and cases get the next free id, so events of the same log are added one after another
+     * by holding a lock of the log until the transaction ends.
      *
      * @param logName
      * @param caseId
      * @param event
      */
+    @Transactional
     public void addEvent(String logName, String caseId, Event event) {
         var db = new DatabaseModel(logName);
+        jdbcTemplate.queryForObject("SELECT 1 FROM pg_advisory_xact_lock(hashtext(?))", Integer.class, "stream:" + logName);
+
+        var activityId = getActivityId(db, event.getActivity());
+        var resourceId = getResourceId(db, event.getResource());
+        var id = getCaseId(db, caseId);
+
+        // append event
+        var insertSQL = new InsertQuery(db.eventTable)
+                .addPreparedColumns(db.eventCaseIdCol, db.eventEventCol, db.eventTimestampCol, db.eventResourceCol)
+                .validate().toString();
+
+        jdbcTemplate.update(insertSQL, id, activityId, event.getTimestamp(), resourceId);
+
+        // update case statistics
+        new DerivedTables(jdbcTemplate, logName).refresh(List.of(id));
+        queryService.invalidate(logName);
+    }
+
+    private int getActivityId(DatabaseModel db, Activity activity) {
+        if (activity.getName() == null) {
+            return activity.getId();
+        }
+
+        var ids = jdbcTemplate.queryForList("SELECT id FROM " + db.activityTable.getTableNameSQL() + " WHERE name = ?", Integer.class, activity.getName());
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+
+        return jdbcTemplate.queryForObject("INSERT INTO " + db.activityTable.getTableNameSQL() + " (id, name) " +
+                "SELECT COALESCE(MAX(id) + 1, 0), ? FROM " + db.activityTable.getTableNameSQL() + " RETURNING id", Integer.class, activity.getName());
+    }
+
+    private Integer getResourceId(DatabaseModel db, String resource) {
+        if (resource == null) {
+            return null;
+        }
+
+        var ids = jdbcTemplate.queryForList("SELECT id FROM " + db.resourceTable.getTableNameSQL() + " WHERE name = ?", Integer.class, resource);
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
+
+        return jdbcTemplate.queryForObject("INSERT INTO " + db.resourceTable.getTableNameSQL() + " (id, name) " +
+                "SELECT COALESCE(MAX(id) + 1, 0), ? FROM " + db.resourceTable.getTableNameSQL() + " RETURNING id", Integer.class, resource);
+    }
+
+    private int getCaseId(DatabaseModel db, String caseId) {
+        var ids = jdbcTemplate.queryForList("SELECT case_id FROM " + db.caseAttributeTable.getTableNameSQL() + " WHERE original_case_id = ?", Integer.class, caseId);
+        if (!ids.isEmpty()) {
+            return ids.get(0);
+        }
 
-//        // update entry
-//        var updateSQL = new UpdateQuery(db.eventTable)
-//                .addSetClause(db.eventTargetEventCol, event.getActivity().getId())
-//                .addSetClause(db.eventTargetTimestampCol, event.getTimestamp())
-//                .addSetClause(db.eventTargetResourceCol, event.getResource())
-//                .addCondition(new BinaryCondition(BinaryCondition.Op.EQUAL_TO, db.eventCaseIdCol, caseId))
-//                .addCondition(new BinaryCondition(BinaryCondition.Op.EQUAL_TO, db.eventTargetEventCol, -2));
-//
-//        jdbcTemplate.update(updateSQL.validate().toString());
-//
-//        // append end symbol
-//        var insertSQL = new InsertQuery(db.eventTable)
-//                .addColumn(db.eventCaseIdCol, caseId)
-//                .addColumn(db.eventEventCol, event.getActivity().getId())
-//                .addColumn(db.eventTargetEventCol, -2)
-//                .addColumn(db.eventTimestampCol, event.getTimestamp())
-//                .addColumn(db.eventTargetTimestampCol, null)
-//                .addColumn(db.eventResourceCol, event.getResource())
-//                .addColumn(db.eventTargetResourceCol, null)
-//                .addColumn(db.eventDurationCol, null)
-//                .addColumn(db.eventNumberCol, null);
-//
-//        jdbcTemplate.update(insertSQL.validate().toString());
-//
-//        // update case statistics
-//        var updateStatsSQL = new UpdateQuery(db.eventTable)
-//                .addSetClause(db.eventDurationCol, new CustomExpression("age(" + db.eventEventCol.getColumnNameSQL() + ", " + db.eventTargetEventCol.getColumnNameSQL() + ")"))
-//                .addCondition(new BinaryCondition(BinaryCondition.Op.EQUAL_TO, db.eventCaseIdCol, caseId));
-//
-//        jdbcTemplate.update(updateStatsSQL.validate().toString());
+        return jdbcTemplate.queryForObject("INSERT INTO " + db.caseAttributeTable.getTableNameSQL() + " (case_id, original_case_id) " +
+                "SELECT COALESCE(MAX(case_id) + 1, 0), ? FROM " + db.caseAttributeTable.getTableNameSQL() + " RETURNING case_id", Integer.class, caseId);
     }
-}
\ No newline at end of file
+}
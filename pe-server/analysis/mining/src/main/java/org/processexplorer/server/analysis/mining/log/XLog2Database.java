@@ -19,29 +19,32 @@
 package org.processexplorer.server.analysis.mining.log;
 
 import com.healthmarketscience.sqlbuilder.CreateTableQuery;
-import com.healthmarketscience.sqlbuilder.InsertQuery;
-import org.apache.commons.lang3.StringUtils;
-import org.deckfour.xes.classification.XEventClassifier;
-import org.deckfour.xes.classification.XEventNameClassifier;
-import org.deckfour.xes.extension.std.XConceptExtension;
-import org.deckfour.xes.extension.std.XLifecycleExtension;
-import org.deckfour.xes.extension.std.XOrganizationalExtension;
-import org.deckfour.xes.extension.std.XTimeExtension;
-import org.deckfour.xes.info.XLogInfo;
-import org.deckfour.xes.info.XLogInfoFactory;
-import org.deckfour.xes.model.XAttribute;
-import org.deckfour.xes.model.XAttributeContinuous;
-import org.deckfour.xes.model.XAttributeTimestamp;
+import com.healthmarketscience.sqlbuilder.dbspec.Column;
 import org.deckfour.xes.model.XLog;
+import org.processexplorer.server.analysis.mining.log.reader.EventLogReader;
+import org.processexplorer.server.analysis.mining.log.reader.ImportTrace;
+import org.processexplorer.server.analysis.mining.log.reader.XLogEventLogReader;
+import org.processexplorer.server.analysis.mining.log.writer.BatchLogWriter;
+import org.processexplorer.server.analysis.mining.log.writer.LogWriter;
 import org.processexplorer.server.analysis.query.DatabaseModel;
-import org.processexplorer.server.common.utils.OutputBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.processexplorer.server.analysis.query.DatabaseConstants.*;
 
@@ -54,186 +57,871 @@ public class XLog2Database {
 
     private static final int BUFFER_SIZE = 1000;
 
-    private final String logName;
+    private static final int QUEUE_CAPACITY = 4;
+
+    private static final long POLL_TIMEOUT = 100;
+
+    private static final long PROGRESS_INTERVAL = 1000;
+
+    private static final String TYPE_TIMESTAMP = "timestamp";
+    private static final String TYPE_DOUBLE = "double precision";
+    private static final String TYPE_BIGINT = "bigint";
+    private static final String TYPE_BOOLEAN = "boolean";
+    private static final String TYPE_VARCHAR = "varchar";
 
-    private final XEventClassifier classifier = new XEventNameClassifier();
+    // events without activity name reference the activity with the empty name, so every event of a path has an id
+    private static final String UNNAMED_ACTIVITY = "";
+
+    private static final String APPEND_STAGING = "_append";
+
+    private final String logName;
 
     private final JdbcTemplate jdbcTemplate;
 
     private final DatabaseModel db;
 
+    // tables the rows are written to, the staging tables of an append import
+    private DatabaseModel rows;
+
+    private final LogWriter writer;
+
+    private final ImportStatistics statistics = new ImportStatistics();
+
+    private int encoders = 1;
+
+    private int writers = 1;
+
+    private boolean materializeCases = false;
+
+    private boolean encodeAttributes = false;
+
+    private boolean optimizeLayout = false;
+
+    private boolean append = false;
+
+    // state of an append import, the cases get ids following the ones of the log
+    private boolean appending = false;
+    private int firstCaseId = 0;
+    private Set<String> knownCases;
+    private long skippedTraces = 0;
+
+    // checkpoint to resume an interrupted import from and the traces of the file that are already written
+    private ImportCheckpoint resumeFrom;
+    private long writtenTraces = 0;
+
+    private Consumer<ImportCheckpoint> checkpointListener = x -> {
+    };
+
+    // batches written out of order, the checkpoint only advances over consecutive batches
+    private final TreeMap<Long, ImportBatch> writtenBatches = new TreeMap<>();
+    private long nextCheckpointBatch = 0;
+
+    // number of written traces after which the derived tables are generated for a preview of the log
+    private long previewTraces = 0;
+    private Consumer<ImportCheckpoint> previewListener = x -> {
+    };
+    private Future<?> previewTask;
+    private volatile boolean previewPublished = false;
+
+    private Consumer<ImportProgress> progressListener = x -> {
+    };
+    private long lastProgress = 0;
+
+    private ExecutorService executor;
+
+    private int nextActivityId = 0;
+    private int nextResourceId = 0;
+
+    private EventTablePartitioning partitioning = EventTablePartitioning.none();
+
+    // dictionaries and columns discovered during the import, only modified by the parser stage
+    private final Map<String, Integer> activities = new ConcurrentHashMap<>();
+    private final Map<String, Integer> resources = new ConcurrentHashMap<>();
+    private final Map<String, String> traceAttributes = new LinkedHashMap<>();
+    private final Map<String, String> eventAttributes = new LinkedHashMap<>();
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private List<Object[]> newActivities = new ArrayList<>();
+    private List<Object[]> newResources = new ArrayList<>();
+
+    private List<String> eventColumns;
+    private List<String> traceColumns;
+
     public XLog2Database(JdbcTemplate jdbcTemplate, String logName) {
+        this(jdbcTemplate, logName, new BatchLogWriter(jdbcTemplate));
+    }
+
+    public XLog2Database(JdbcTemplate jdbcTemplate, String logName, LogWriter writer) {
         this.logName = logName;
         this.jdbcTemplate = jdbcTemplate;
+        this.writer = writer;
 
         this.db = new DatabaseModel(logName);
+        this.rows = db;
     }
 
-    public boolean importLog(XLog log) {
-        logger.info("Begin importing event log \"{}\"", this.logName);
+    /**
+     * Sets the number of threads that convert the parsed traces into rows.
+     *
+     * @param encoders
+     */
+    public void setEncoders(int encoders) {
+        this.encoders = Math.max(1, encoders);
+    }
 
-        // read general log properties
-        var logInfo = XLogInfoFactory.createLogInfo(log);
-        var traceAttributes = new ArrayList<>(logInfo.getTraceAttributeInfo().getAttributes());
-        var eventAttributes = getEventAttributes(new ArrayList<>(logInfo.getEventAttributeInfo().getAttributes()));
+    /**
+     * Sets the number of threads (and database connections) that write the rows to the database.
+     *
+     * @param writers
+     */
+    public void setWriters(int writers) {
+        this.writers = Math.max(1, writers);
+    }
 
-        // generate tables
-        generateActivitiesTable(logInfo);
-        generateCaseAttributeTable(traceAttributes);
-        generateEventsTable(eventAttributes);
+    /**
+     * Sets whether the cases table is materialized after the import instead of being generated as view.
+     *
+     * @param materializeCases
+     */
+    public void setMaterializeCases(boolean materializeCases) {
+        this.materializeCases = materializeCases;
+    }
 
-        String insertEventSql = new InsertQuery(db.eventTable)
-                .addPreparedColumnCollection(db.eventTable.getColumns())
-                .validate().toString();
-        String insertTraceSql = "INSERT INTO " + getCaseAttributeTableName(this.logName) + " VALUES (" + StringUtils.repeat("?", ",", traceAttributes.size() + 2) + ");";
+    /**
+     * Sets whether the attribute columns are narrowed to smaller types after the import.
+     *
+     * @param encodeAttributes
+     */
+    public void setEncodeAttributes(boolean encodeAttributes) {
+        this.encodeAttributes = encodeAttributes;
+    }
 
+    /**
+     * Sets whether the physical layout of the events table is optimized after the import.
+     *
+     * @param optimizeLayout
+     */
+    public void setOptimizeLayout(boolean optimizeLayout) {
+        this.optimizeLayout = optimizeLayout;
+    }
+
+    /**
+     * Sets whether the traces are appended to an existing log instead of replacing it. Traces whose case id is already
+     * part of the log are skipped. If the log does not exist, it is imported as usual.
+     *
+     * @param append
+     */
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
+    /**
+     * Sets the checkpoint an interrupted import is resumed from. Appending imports do not change the log until all
+     * traces are read, so they are always started from the beginning.
+     *
+     * @param resumeFrom
+     */
+    public void setResumeFrom(ImportCheckpoint resumeFrom) {
+        this.resumeFrom = resumeFrom;
+    }
+
+    /**
+     * Sets the listener that is notified whenever all traces up to a position of the file are written.
+     *
+     * @param checkpointListener
+     */
+    public void setCheckpointListener(Consumer<ImportCheckpoint> checkpointListener) {
+        this.checkpointListener = checkpointListener;
+    }
+
+    /**
+     * Sets the number of traces after which a preview of the log is generated, while the remaining traces are still
+     * imported. The preview contains the derived tables of the traces that are written up to then. Appending imports
+     * do not generate a preview. The tables of a log with a preview are neither narrowed nor sorted after the import,
+     * since this would block its queries. (0 disables the preview)
+     *
+     * @param previewTraces
+     */
+    public void setPreviewTraces(long previewTraces) {
+        this.previewTraces = Math.max(0, previewTraces);
+    }
+
+    /**
+     * Sets the listener that is notified when the preview of the log is generated.
+     *
+     * @param previewListener
+     */
+    public void setPreviewListener(Consumer<ImportCheckpoint> previewListener) {
+        this.previewListener = previewListener;
+    }
+
+    /**
+     * Sets the listener that is notified about the progress of the import, at most once per second.
+     *
+     * @param progressListener
+     */
+    public void setProgressListener(Consumer<ImportProgress> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Sets how the events table is partitioned.
+     *
+     * @param partitioning
+     */
+    public void setPartitioning(EventTablePartitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    /**
+     * Returns the number of imported traces and events and the throughput of the last import.
+     *
+     * @return
+     */
+    public ImportStatistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean importLog(XLog log) {
         try {
-            var prepInsertEvent = new ArrayList<Object[]>();
-            var prepInsertTrace = new ArrayList<Object[]>();
+            return importLog(new XLogEventLogReader(log));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
 
-            // import events and cases
-            int buffer = 0;
-            for (int i = 0; i < log.size(); i++) {
-                var trace = log.get(i);
+    /**
+     * Imports the log trace by trace and generates the derived tables afterwards.
+     *
+     * @param reader
+     * @return
+     * @throws IOException
+     * @see #importTraces(EventLogReader)
+     * @see #finishImport()
+     */
+    public boolean importLog(EventLogReader reader) throws IOException {
+        importTraces(reader);
+        return finishImport();
+    }
 
-                var caseId = XLogUtils.getAttributeValue(trace.getAttributes().get(XConceptExtension.KEY_NAME)).toString();
+    /**
+     * Writes the traces of the log to the tables. Trace and event attributes that are not declared up front are added
+     * to the tables as soon as they occur. The reader is not used anymore, when this method returns.
+     * <p>
+     * The import runs as a pipeline: the calling thread parses the log and registers new columns and activities, the
+     * encoder threads convert the traces into rows and the writer threads send them to the database. The stages are
+     * connected by bounded queues, so a slow stage blocks the stages in front of it.
+     *
+     * @param reader
+     * @throws IOException
+     */
+    public void importTraces(EventLogReader reader) throws IOException {
+        logger.info("Begin importing event log \"{}\" using {} ({} encoders, {} writers)", this.logName, writer.getClass().getSimpleName(), encoders, writers);
+        statistics.start();
+        failure.set(null);
 
-                // obtain trace attributes
-                var tracePrep = new Object[2 + traceAttributes.size()];
-                tracePrep[0] = i;
-                tracePrep[1] = caseId;
+        var parseStage = statistics.addStage("parse", 1);
+        var encodeStage = statistics.addStage("encode", encoders);
+        var writeStage = statistics.addStage("write", writers);
 
-                for (int j = 0; j < traceAttributes.size(); j++) {
-                    var value = XLogUtils.getAttributeValue(trace.getAttributes().get(traceAttributes.get(j).getKey()));
+        firstCaseId = 0;
+        nextActivityId = 0;
+        nextResourceId = 0;
+        writtenTraces = 0;
+        writtenBatches.clear();
+        nextCheckpointBatch = 0;
+        previewTask = null;
+        previewPublished = false;
+        lastProgress = 0;
 
-                    if (value instanceof Date) {
-                        tracePrep[2 + j] = new java.sql.Timestamp(((Date) value).getTime());
-                    } else {
-                        tracePrep[2 + j] = value;
-                    }
-                }
-                prepInsertTrace.add(tracePrep);
-
-                // obtain events for trace
-                for (var event : trace) {
-                    var timestamp = (Date) XLogUtils.getAttributeValue(event.getAttributes().get(XTimeExtension.KEY_TIMESTAMP));
-                    var eventPrep = new Object[5 + eventAttributes.size()];
-
-                    eventPrep[0] = i;
-                    eventPrep[1] = logInfo.getEventClasses().getClassOf(event).getIndex();
-                    eventPrep[2] = new java.sql.Timestamp(timestamp.getTime());
-                    eventPrep[3] = XLogUtils.getAttributeValue(event.getAttributes().get(XOrganizationalExtension.KEY_RESOURCE));
-                    eventPrep[4] = XLogUtils.getAttributeValue(event.getAttributes().get(XLifecycleExtension.KEY_MODEL));
-
-                    // add additional attributes
-                    int j = 5;
-                    for (var attr : eventAttributes) {
-                        var value = XLogUtils.getAttributeValue(event.getAttributes().get(attr.getKey()));
-                        eventPrep[j] = value;
-                        j++;
-                    }
-
-                    prepInsertEvent.add(eventPrep);
-                }
+        appending = append && tableExists(db.eventTable.getTableNameSQL());
+        var resuming = !append && resumeFrom != null && tableExists(db.eventTable.getTableNameSQL()) && tableExists(db.caseAttributeTable.getTableNameSQL());
 
-                // execute buffer?
-                buffer++;
-                if (buffer >= BUFFER_SIZE) {
-                    jdbcTemplate.batchUpdate(insertEventSql, prepInsertEvent);
-                    jdbcTemplate.batchUpdate(insertTraceSql, prepInsertTrace);
+        if (appending) {
+            prepareAppend(reader);
+        } else if (resuming) {
+            prepareResume();
+        } else {
+            new DerivedTables(jdbcTemplate, logName).drop();
 
-                    prepInsertEvent.clear();
-                    prepInsertTrace.clear();
+            generateActivitiesTable();
+            generateResourcesTable();
+            generateCaseAttributeTable(getColumnTypes(reader.getTraceAttributes(), true));
+            generateEventsTable(getColumnTypes(reader.getEventAttributes(), false));
+        }
 
-                    buffer = 0;
-                }
+        var parsed = new ArrayBlockingQueue<ImportBatch>(QUEUE_CAPACITY * encoders);
+        var encoded = new ArrayBlockingQueue<ImportBatch>(QUEUE_CAPACITY * writers);
+
+        // one additional thread generates the preview
+        executor = Executors.newFixedThreadPool(encoders + writers + 1);
+        try {
+            var encoderTasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < encoders; i++) {
+                encoderTasks.add(executor.submit(() -> runStage(parsed, encoded, this::encode, encodeStage)));
+            }
+
+            var writerTasks = new ArrayList<Future<?>>();
+            for (int i = 0; i < writers; i++) {
+                writerTasks.add(executor.submit(() -> runStage(encoded, null, this::write, writeStage)));
             }
 
-            jdbcTemplate.batchUpdate(insertEventSql, prepInsertEvent);
-            jdbcTemplate.batchUpdate(insertTraceSql, prepInsertTrace);
+            // import events and cases
+            parse(reader, parsed, parseStage);
+
+            // shut down the pipeline stage by stage
+            finishStage(parsed, encoderTasks);
+            finishStage(encoded, writerTasks);
+            awaitPreview();
 
-            prepInsertEvent.clear();
-            prepInsertTrace.clear();
+            checkFailure();
+            statistics.stop();
         } catch (Exception ex) {
+            failure.compareAndSet(null, ex);
             logger.error(ex.getMessage(), ex);
             throw ex;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Moves the traces of an append import into the log or encodes and sorts the tables of a new log and generates
+     * the derived tables, after all traces are written.
+     *
+     * @return
+     */
+    public boolean finishImport() {
+        var derivedTables = new DerivedTables(jdbcTemplate, logName);
+        derivedTables.setMaterializeCases(materializeCases);
+
+        if (appending) {
+            // move the new rows into the log and add the new cases to the derived tables
+            appendRows();
+            derivedTables.append(firstCaseId);
+
+            logger.info("Finished appending to event log \"{}\": {}, {} known traces skipped", this.logName, statistics, skippedTraces);
+            statistics.getStages().forEach(x -> logger.info("Import stage {}", x));
+            return true;
+        }
+
+        // the timestamps of the events are only known after the import
+        partitioning.distribute(jdbcTemplate, db.eventTable.getTableNameSQL());
+
+        // the preview is queried meanwhile, rewriting the tables would block its queries until they are done
+        if (previewPublished && (encodeAttributes || optimizeLayout)) {
+            logger.info("Event log \"{}\" is queryable already, its attribute columns are not narrowed and its tables are not sorted", this.logName);
+        }
+
+        // reduce the size of the attribute columns
+        if (encodeAttributes && !previewPublished) {
+            new AttributeEncoder(jdbcTemplate, logName).narrowAttributes();
+        }
+
+        // sort and index the events and gather statistics
+        if (optimizeLayout) {
+            var optimizer = new EventTableOptimizer(jdbcTemplate, logName);
+            optimizer.setCluster(!previewPublished);
+            statistics.setOptimizeMillis(optimizer.optimize());
         }
 
         // create depending views
-        generateCaseView();
+        derivedTables.generate();
 
-        logger.info("Finished importing event log \"{}\"", this.logName);
+        logger.info("Finished importing event log \"{}\": {}", this.logName, statistics);
+        statistics.getStages().forEach(x -> logger.info("Import stage {}", x));
         return true;
     }
 
-    private void generateCaseView() {
-        // generate directly follows graph
-        var sql = new OutputBuilder();
-        sql.print("CREATE OR REPLACE VIEW " + db.caseTable.getTableNameSQL() + " AS ");
-        sql.print("SELECT");
-        sql.print("%s,", "case_id");
-        sql.print("MIN(timestamp) AS start_time,");
-        sql.print("MAX(timestamp) AS end_time,");
-        sql.print("COUNT(%s) AS %s,", "event", "num_events");
-        sql.print("COUNT(DISTINCT %s) AS %s,", "resource", "num_users");
-        sql.print("CAST(%s AS interval) AS %s,", "age(MAX(timestamp), MIN(timestamp))", "total_duration");
-        sql.print("CONCAT(':', STRING_AGG(CAST(event AS VARCHAR(5)), '::' ORDER BY timestamp, lifecycle, event), ':') AS variant,");
-        sql.print("CONCAT(':', STRING_AGG(CAST(resource AS VARCHAR(255)), '::' ORDER BY timestamp, lifecycle, resource), ':') AS resource_variant,");
-        sql.print("HASHTEXT(STRING_AGG(CAST(event AS VARCHAR(5)), '::' ORDER BY timestamp, lifecycle, event)) AS variant_id,");
-        sql.print("HASHTEXT(STRING_AGG(CAST(resource AS VARCHAR(255)), '::' ORDER BY timestamp, lifecycle, resource)) AS resource_variant_id");
-        sql.print("FROM %s AS log", db.eventTable.getTableNameSQL());
-        sql.print("GROUP BY case_id");
+    /**
+     * Reads the traces, registers new columns and activities and passes the traces in batches to the encoders.
+     *
+     * @param reader
+     * @param output
+     * @param stage
+     * @throws IOException
+     */
+    private void parse(EventLogReader reader, BlockingQueue<ImportBatch> output, ImportStageStatistics stage) throws IOException {
+        int caseId = firstCaseId;
+        long position = 0;
+        long sequence = 0;
+        var batch = new ImportBatch(caseId);
+        var start = System.nanoTime();
+
+        ImportTrace trace;
+        while ((trace = reader.read()) != null) {
+            position++;
 
-        jdbcTemplate.execute(sql.toString());
+            // traces before the checkpoint of a resumed import are already written
+            if (position <= writtenTraces) {
+                continue;
+            }
+
+            // cases that are already part of the log are not appended again
+            if (knownCases != null && !knownCases.add(trace.getCaseId())) {
+                skippedTraces++;
+                continue;
+            }
+
+            register(trace);
+            batch.traces.add(trace);
+
+            statistics.addTrace(trace.getEvents().size());
+            caseId++;
+
+            if (batch.traces.size() >= BUFFER_SIZE) {
+                seal(batch, sequence++, new ImportCheckpoint(position, caseId), reader.getProgress());
+                stage.addBusy(batch.traces.size(), System.nanoTime() - start);
+
+                put(output, batch, stage);
+                if (statistics.getTraces() % (100 * BUFFER_SIZE) == 0) {
+                    logger.debug("Imported {} traces, {} batches waiting for encoders", statistics.getTraces(), output.size());
+                }
+
+                batch = new ImportBatch(caseId);
+                start = System.nanoTime();
+            }
+        }
+
+        if (!batch.traces.isEmpty()) {
+            seal(batch, sequence, new ImportCheckpoint(position, caseId), reader.getProgress());
+            stage.addBusy(batch.traces.size(), System.nanoTime() - start);
+            put(output, batch, stage);
+        }
     }
 
     /**
-     * Drops and create a new events table.
+     * Adds the columns and activities of the trace which were not seen before. The columns have to exist before the
+     * rows of this trace are written.
      *
-     * @param eventAttributes
+     * @param trace
      */
-    private void generateEventsTable(List<XAttribute> eventAttributes) {
-        // drop old table
-        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getEventsTableName(this.logName));
+    private void register(ImportTrace trace) {
+        trace.getAttributes().forEach(this::registerTraceAttribute);
+        for (var event : trace.getEvents()) {
+            event.getAttributes().forEach(this::registerEventAttribute);
+            registerActivity(event.getActivity());
+            registerResource(event.getResource());
+        }
+    }
 
-        eventAttributes.forEach(x -> {
-            if (x instanceof XAttributeContinuous) {
-                db.eventTable.addColumn("\"" + x.getKey() + "\"", "double precision", null, null);
-            } else {
-                db.eventTable.addColumn("\"" + x.getKey() + "\"", "varchar", 1024, null);
+    /**
+     * Stores the current columns and the new activities and resources in the batch. Columns that are added later are not known to
+     * this batch and remain empty for its rows.
+     *
+     * @param batch
+     * @param sequence
+     * @param checkpoint
+     * @param progress
+     */
+    private void seal(ImportBatch batch, long sequence, ImportCheckpoint checkpoint, double progress) {
+        batch.sequence = sequence;
+        batch.checkpoint = checkpoint;
+        batch.progress = progress;
+        batch.traceKeys = new ArrayList<>(traceAttributes.keySet());
+        batch.eventKeys = new ArrayList<>(eventAttributes.keySet());
+        batch.traceColumns = traceColumns;
+        batch.eventColumns = eventColumns;
+        batch.activities = newActivities;
+        batch.resources = newResources;
+
+        newActivities = new ArrayList<>();
+        newResources = new ArrayList<>();
+    }
+
+    /**
+     * Converts the traces of the batch into rows for the case attribute and events table.
+     *
+     * @param batch
+     */
+    private void encode(ImportBatch batch) {
+        int caseId = batch.firstCaseId;
+
+        for (var trace : batch.traces) {
+            // obtain trace attributes
+            var tracePrep = new Object[2 + batch.traceKeys.size()];
+            tracePrep[0] = caseId;
+            tracePrep[1] = trace.getCaseId();
+
+            int j = 2;
+            for (var key : batch.traceKeys) {
+                tracePrep[j] = toSqlValue(trace.getAttributes().get(key));
+                j++;
             }
-        });
+            batch.traceRows.add(tracePrep);
 
-        // create new table
-        String sql = new CreateTableQuery(db.eventTable, true)
-                .validate().toString();
+            // obtain events for trace
+            for (var event : trace.getEvents()) {
+                var eventPrep = new Object[5 + batch.eventKeys.size()];
 
-        jdbcTemplate.execute(sql);
+                eventPrep[0] = caseId;
+                eventPrep[1] = activities.get(getActivityName(event.getActivity()));
+                eventPrep[2] = toSqlValue(event.getTimestamp());
+                eventPrep[3] = event.getResource() == null ? null : resources.get(event.getResource());
+                eventPrep[4] = event.getLifecycle();
 
-        // create index
-        jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + db.eventTable.getTableNameSQL() + " ON " + db.eventTable.getTableNameSQL() + " (case_id)");
+                // add additional attributes
+                j = 5;
+                for (var key : batch.eventKeys) {
+                    eventPrep[j] = toSqlValue(event.getAttributes().get(key));
+                    j++;
+                }
+
+                batch.eventRows.add(eventPrep);
+            }
+
+            caseId++;
+        }
+
+        // the traces are not needed anymore
+        batch.traces.clear();
     }
 
     /**
-     * Only return real event attributes that were not already stored using standard xes extensions.
+     * Writes the rows of the batch to the database.
      *
-     * @param eventAttributes
-     * @return
+     * @param batch
+     */
+    private void write(ImportBatch batch) {
+        writer.write(db.activityTable.getTableNameSQL(), getColumnNames(db.activityTable.getColumns()), batch.activities);
+        writer.write(db.resourceTable.getTableNameSQL(), getColumnNames(db.resourceTable.getColumns()), batch.resources);
+        writer.write(rows.eventTable.getTableNameSQL(), batch.eventColumns, batch.eventRows);
+        writer.write(rows.caseAttributeTable.getTableNameSQL(), batch.traceColumns, batch.traceRows);
+
+        // the rows are not needed anymore, the batch may wait for its predecessors
+        batch.eventRows.clear();
+        batch.traceRows.clear();
+
+        checkpoint(batch);
+    }
+
+    /**
+     * Marks the batch as written and notifies the listeners, if all batches up to a later position are written now.
+     *
+     * @param batch
+     */
+    private synchronized void checkpoint(ImportBatch batch) {
+        writtenBatches.put(batch.sequence, batch);
+
+        ImportBatch last = null;
+        while (writtenBatches.containsKey(nextCheckpointBatch)) {
+            last = writtenBatches.remove(nextCheckpointBatch);
+            nextCheckpointBatch++;
+        }
+
+        if (last == null) {
+            return;
+        }
+
+        var checkpoint = last.checkpoint;
+        checkpointListener.accept(checkpoint);
+
+        // the case ids of a new or resumed import start at 0, so they count the written traces
+        if (previewTraces > 0 && previewTask == null && !appending && checkpoint.getNextCaseId() >= previewTraces) {
+            previewTask = executor.submit(() -> generatePreview(checkpoint));
+        }
+
+        var now = System.currentTimeMillis();
+        if (now - lastProgress >= PROGRESS_INTERVAL) {
+            lastProgress = now;
+
+            var traces = checkpoint.getNextCaseId() - firstCaseId;
+            var duration = statistics.getDurationMillis();
+            progressListener.accept(new ImportProgress(logName, traces, duration > 0 ? traces * 1000.0 / duration : 0,
+                    last.progress < 0 ? -1 : last.progress * 100));
+        }
+    }
+
+    /**
+     * Generates the derived tables of the traces up to the checkpoint and notifies the listener.
+     *
+     * @param checkpoint
+     */
+    private void generatePreview(ImportCheckpoint checkpoint) {
+        var start = System.currentTimeMillis();
+        new DerivedTables(jdbcTemplate, logName).generatePreview(checkpoint.getNextCaseId());
+
+        logger.info("Generated preview of event log \"{}\" with {} cases ({} ms)", this.logName, checkpoint.getNextCaseId(), System.currentTimeMillis() - start);
+        previewPublished = true;
+        previewListener.accept(checkpoint);
+    }
+
+    /**
+     * Waits until the preview is generated, the tables must not change until then. The preview is optional, so a
+     * failure does not abort the import.
+     */
+    private void awaitPreview() {
+        Future<?> task;
+        synchronized (this) {
+            task = previewTask;
+        }
+
+        if (task == null) {
+            return;
+        }
+
+        try {
+            task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", ex);
+        } catch (ExecutionException ex) {
+            logger.error("Could not generate preview of event log \"" + this.logName + "\"", ex.getCause());
+        }
+    }
+
+    /**
+     * Takes batches from the input queue, processes them and passes them to the output queue until the end of the
+     * input is reached or another stage failed.
+     *
+     * @param input
+     * @param output
+     * @param action
+     * @param stage
+     */
+    private void runStage(BlockingQueue<ImportBatch> input, BlockingQueue<ImportBatch> output, Consumer<ImportBatch> action, ImportStageStatistics stage) {
+        try {
+            while (true) {
+                stage.sampleQueue(input.size());
+
+                var batch = take(input, stage);
+                if (batch == ImportBatch.END) {
+                    return;
+                }
+
+                var size = batch.size();
+                var start = System.nanoTime();
+                action.accept(batch);
+                stage.addBusy(size, System.nanoTime() - start);
+
+                if (output != null) {
+                    put(output, batch, stage);
+                }
+            }
+        } catch (Exception ex) {
+            failure.compareAndSet(null, ex);
+        }
+    }
+
+    /**
+     * Signals the end of the input to all threads of a stage and waits until they are finished.
+     *
+     * @param input
+     * @param tasks
      */
-    private List<XAttribute> getEventAttributes(List<XAttribute> eventAttributes) {
-        // remove standard event attributes
-        var attributes = new ArrayList<XAttribute>();
-        for (var attr : eventAttributes) {
-            if (!attr.getKey().equals(XConceptExtension.KEY_NAME) &&
-                    !attr.getKey().equals(XOrganizationalExtension.KEY_RESOURCE) &&
-                    !attr.getKey().equals(XTimeExtension.KEY_TIMESTAMP) &&
-                    !attr.getKey().equals(XLifecycleExtension.KEY_TRANSITION) &&
-                    !attr.getKey().equals("resource")) {
-                attributes.add(attr);
+    private void finishStage(BlockingQueue<ImportBatch> input, List<Future<?>> tasks) {
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                put(input, ImportBatch.END, null);
+            }
+
+            for (var task : tasks) {
+                task.get();
             }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
         }
+    }
 
-        return attributes;
+    private void put(BlockingQueue<ImportBatch> queue, ImportBatch batch, ImportStageStatistics stage) {
+        var start = System.nanoTime();
+        try {
+            while (!queue.offer(batch, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", ex);
+        }
+
+        if (stage != null) {
+            stage.addWait(System.nanoTime() - start);
+        }
+    }
+
+    private ImportBatch take(BlockingQueue<ImportBatch> queue, ImportStageStatistics stage) throws InterruptedException {
+        var start = System.nanoTime();
+
+        ImportBatch batch;
+        while ((batch = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS)) == null) {
+            checkFailure();
+        }
+
+        stage.addWait(System.nanoTime() - start);
+        return batch;
+    }
+
+    /**
+     * Aborts the current stage if another stage of the pipeline failed.
+     */
+    private void checkFailure() {
+        var ex = failure.get();
+        if (ex != null) {
+            throw new IllegalStateException("Import failed: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Adds the activity to the activity dictionary if it was not seen before.
+     *
+     * @param activity
+     */
+    private void registerActivity(String activity) {
+        var name = getActivityName(activity);
+        if (!activities.containsKey(name)) {
+            var id = nextActivityId++;
+            activities.put(name, id);
+            newActivities.add(new Object[]{id, name});
+        }
+    }
+
+    private static String getActivityName(String activity) {
+        return activity == null ? UNNAMED_ACTIVITY : activity;
+    }
+
+    /**
+     * Adds the resource to the resource dictionary if it was not seen before.
+     *
+     * @param resource
+     */
+    private void registerResource(String resource) {
+        if (resource != null && !resources.containsKey(resource)) {
+            var id = nextResourceId++;
+            resources.put(resource, id);
+            newResources.add(new Object[]{id, resource.length() > 1024 ? resource.substring(0, 1024) : resource});
+        }
+    }
+
+    private void registerTraceAttribute(String key, Object value) {
+        var type = traceAttributes.get(key);
+
+        if (type == null) {
+            type = getColumnType(value.getClass(), true);
+            jdbcTemplate.execute("ALTER TABLE " + rows.caseAttributeTable.getTableNameSQL() + " ADD COLUMN \"" + key + "\" " + getColumnDefinition(type));
+
+            traceAttributes.put(key, type);
+            traceColumns = generateTraceColumns();
+        } else if (!isCompatible(type, value)) {
+            widenColumn(rows.caseAttributeTable.getTableNameSQL(), key);
+            traceAttributes.put(key, TYPE_VARCHAR);
+        }
+    }
+
+    private void registerEventAttribute(String key, Object value) {
+        var type = eventAttributes.get(key);
+
+        if (type == null) {
+            type = getColumnType(value.getClass(), false);
+            addEventColumn(key, type);
+            jdbcTemplate.execute("ALTER TABLE " + rows.eventTable.getTableNameSQL() + " ADD COLUMN \"" + key + "\" " + getColumnDefinition(type));
+
+            eventAttributes.put(key, type);
+            eventColumns = getColumnNames(rows.eventTable.getColumns());
+        } else if (!isCompatible(type, value)) {
+            widenColumn(rows.eventTable.getTableNameSQL(), key);
+            eventAttributes.put(key, TYPE_VARCHAR);
+        }
+    }
+
+    /**
+     * Changes the type of a column to varchar, if an attribute occurs with values of different types.
+     *
+     * @param table
+     * @param key
+     */
+    private void widenColumn(String table, String key) {
+        logger.debug("Attribute \"{}\" has values of different types, widen column to varchar", key);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN \"" + key + "\" TYPE " + getColumnDefinition(TYPE_VARCHAR) + " USING \"" + key + "\"::" + getColumnDefinition(TYPE_VARCHAR));
+    }
+
+    /**
+     * Returns the column type that is used to store attribute values of the given java type.
+     *
+     * @param type
+     * @param caseAttribute
+     * @return
+     */
+    private String getColumnType(Class<?> type, boolean caseAttribute) {
+        if (caseAttribute && Date.class.isAssignableFrom(type)) {
+            return TYPE_TIMESTAMP;
+        } else if (Double.class.isAssignableFrom(type)) {
+            return TYPE_DOUBLE;
+        } else if (Long.class.isAssignableFrom(type)) {
+            return TYPE_BIGINT;
+        } else if (Boolean.class.isAssignableFrom(type)) {
+            return TYPE_BOOLEAN;
+        } else {
+            return TYPE_VARCHAR;
+        }
+    }
+
+    private String getColumnDefinition(String type) {
+        return type.equals(TYPE_VARCHAR) ? "VARCHAR(1024)" : type;
+    }
+
+    private boolean isCompatible(String type, Object value) {
+        switch (type) {
+            case TYPE_TIMESTAMP:
+                return value instanceof Date;
+            case TYPE_DOUBLE:
+                return value instanceof Number;
+            case TYPE_BIGINT:
+                return value instanceof Long;
+            case TYPE_BOOLEAN:
+                return value instanceof Boolean;
+            default:
+                return true;
+        }
+    }
+
+    private Object toSqlValue(Object value) {
+        if (value instanceof Date) {
+            return new java.sql.Timestamp(((Date) value).getTime());
+        }
+        return value;
+    }
+
+    /**
+     * Drops and create a new events table. The staging table of an append import is neither partitioned nor indexed.
+     *
+     * @param attributes
+     */
+    private void generateEventsTable(Map<String, String> attributes) {
+        // drop old table
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + rows.eventTable.getTableNameSQL());
+
+        attributes.forEach((key, type) -> {
+            eventAttributes.put(key, type);
+            addEventColumn(key, type);
+        });
+
+        // create new table
+        if (appending) {
+            jdbcTemplate.execute(new CreateTableQuery(rows.eventTable, true).validate().toString().replaceFirst("CREATE TABLE", "CREATE UNLOGGED TABLE"));
+        } else {
+            String sql = new CreateTableQuery(rows.eventTable, true)
+                    .validate().toString() + partitioning.getPartitionClause();
+
+            jdbcTemplate.execute(sql);
+            partitioning.createPartitions(jdbcTemplate, rows.eventTable.getTableNameSQL());
+
+            // create index
+            jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + rows.eventTable.getTableNameSQL() + " ON " + rows.eventTable.getTableNameSQL() + " (case_id)");
+        }
+
+        eventColumns = getColumnNames(rows.eventTable.getColumns());
+    }
+
+    private void addEventColumn(String key, String type) {
+        if (type.equals(TYPE_VARCHAR)) {
+            rows.eventTable.addColumn("\"" + key + "\"", TYPE_VARCHAR, 1024, null);
+        } else {
+            rows.eventTable.addColumn("\"" + key + "\"", type, null, null);
+        }
     }
 
     /**
@@ -241,42 +929,192 @@ public class XLog2Database {
      *
      * @param attributes
      */
-    private void generateCaseAttributeTable(List<XAttribute> attributes) {
+    private void generateCaseAttributeTable(Map<String, String> attributes) {
         // drop old table
-        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getCaseAttributeTableName(this.logName));
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + rows.caseAttributeTable.getTableNameSQL());
 
         // create new table
         var sql = new StringBuilder();
-        sql.append("CREATE TABLE " + getCaseAttributeTableName(this.logName) + " (");
+        sql.append((appending ? "CREATE UNLOGGED TABLE " : "CREATE TABLE ") + rows.caseAttributeTable.getTableNameSQL() + " (");
         sql.append("case_id INTEGER,");
-        sql.append("original_case_id VARCHAR(1024),");
-
-        for (int i = 0; i < attributes.size(); i++) {
-            XAttribute attribute = attributes.get(i);
+        sql.append("original_case_id VARCHAR(1024)");
 
-            if (attribute instanceof XAttributeTimestamp) {
-                sql.append("\"" + attribute.getKey() + "\" timestamp" + (i < attributes.size() - 1 ? "," : ""));
-            } else if (attribute instanceof XAttributeContinuous) {
-                sql.append("\"" + attribute.getKey() + "\" double precision" + (i < attributes.size() - 1 ? "," : ""));
-            } else {
-                sql.append("\"" + attribute.getKey() + "\" VARCHAR(1024)" + (i < attributes.size() - 1 ? "," : ""));
-            }
-        }
+        attributes.forEach((key, type) -> {
+            traceAttributes.put(key, type);
+            sql.append(",\"" + key + "\" " + getColumnDefinition(type));
+        });
 
         sql.append(")");
 
         jdbcTemplate.execute(sql.toString());
 
         // create index
-        jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + db.caseAttributeTable.getTableNameSQL() + " ON " + db.caseAttributeTable.getTableNameSQL() + " (case_id)");
+        if (!appending) {
+            jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + rows.caseAttributeTable.getTableNameSQL() + " ON " + rows.caseAttributeTable.getTableNameSQL() + " (case_id)");
+        }
+
+        traceColumns = generateTraceColumns();
+    }
+
+    /**
+     * Loads the dictionaries and columns of the existing log and creates the staging tables the traces are written to.
+     *
+     * @param reader
+     */
+    private void prepareAppend(EventLogReader reader) {
+        loadDictionaries();
+
+        var nextCaseId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(case_id) + 1, 0) FROM " + db.caseAttributeTable.getTableNameSQL(), Integer.class);
+        firstCaseId = nextCaseId == null ? 0 : nextCaseId;
+        knownCases = new HashSet<>(jdbcTemplate.queryForList("SELECT original_case_id FROM " + db.caseAttributeTable.getTableNameSQL(), String.class));
+        skippedTraces = 0;
+
+        logger.info("Appending to event log \"{}\" with {} cases, {} activities and {} resources", this.logName, knownCases.size(), activities.size(), resources.size());
+
+        // the staging tables use the types of the import, the values are converted when they are moved into the log
+        rows = new DatabaseModel(logName + APPEND_STAGING);
+
+        var traceTypes = getColumnTypes(db.caseAttributeTable.getTableNameSQL(), List.of("case_id", "original_case_id"));
+        getColumnTypes(reader.getTraceAttributes(), true).forEach(traceTypes::putIfAbsent);
+        generateCaseAttributeTable(traceTypes);
+
+        var eventTypes = getColumnTypes(db.eventTable.getTableNameSQL(), List.of("case_id", "event", "timestamp", "resource", "lifecycle"));
+        getColumnTypes(reader.getEventAttributes(), false).forEach(eventTypes::putIfAbsent);
+        generateEventsTable(eventTypes);
+    }
+
+    /**
+     * Loads the dictionaries and columns of the log and removes the rows that were written after the checkpoint.
+     */
+    private void prepareResume() {
+        loadDictionaries();
+
+        firstCaseId = resumeFrom.getNextCaseId();
+        writtenTraces = resumeFrom.getTraces();
+
+        logger.info("Resuming import of event log \"{}\" after {}", this.logName, resumeFrom);
+
+        // the batches after the checkpoint may have been written partially
+        jdbcTemplate.update("DELETE FROM " + db.eventTable.getTableNameSQL() + " WHERE case_id >= ?", firstCaseId);
+        jdbcTemplate.update("DELETE FROM " + db.caseAttributeTable.getTableNameSQL() + " WHERE case_id >= ?", firstCaseId);
+
+        traceAttributes.putAll(getColumnTypes(db.caseAttributeTable.getTableNameSQL(), List.of("case_id", "original_case_id")));
+        traceColumns = generateTraceColumns();
+
+        getColumnTypes(db.eventTable.getTableNameSQL(), List.of("case_id", "event", "timestamp", "resource", "lifecycle")).forEach((key, type) -> {
+            eventAttributes.put(key, type);
+            addEventColumn(key, type);
+        });
+        eventColumns = getColumnNames(db.eventTable.getColumns());
+    }
+
+    /**
+     * Loads the activity and resource dictionaries of the log. Entries that are written afterwards get ids following
+     * the highest existing id.
+     */
+    private void loadDictionaries() {
+        jdbcTemplate.query("SELECT id, name FROM " + db.activityTable.getTableNameSQL(), rs -> {
+            activities.put(rs.getString("name"), rs.getInt("id"));
+            nextActivityId = Math.max(nextActivityId, rs.getInt("id") + 1);
+        });
+        jdbcTemplate.query("SELECT id, name FROM " + db.resourceTable.getTableNameSQL(), rs -> {
+            resources.put(rs.getString("name"), rs.getInt("id"));
+            nextResourceId = Math.max(nextResourceId, rs.getInt("id") + 1);
+        });
+    }
+
+    /**
+     * Moves the rows of the staging tables into the tables of the log.
+     */
+    private void appendRows() {
+        var events = db.eventTable.getTableNameSQL();
+        var staging = rows.eventTable.getTableNameSQL();
+        var encoder = new AttributeEncoder(jdbcTemplate, logName);
+
+        try {
+            // events of new time periods get their own partitions, if the log is partitioned by timestamp
+            if (EventTablePartitioning.detectType(jdbcTemplate, events) == EventTablePartitioning.Type.RANGE) {
+                partitioning.addRangePartitions(jdbcTemplate, events, staging);
+            }
+
+            encoder.append(rows.caseAttributeTable.getTableNameSQL(), db.caseAttributeTable.getTableNameSQL(), "case_id");
+            encoder.append(staging, events, "case_id, timestamp");
+        } finally {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + rows.caseAttributeTable.getTableNameSQL());
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + staging);
+            rows = db;
+        }
     }
 
     /**
-     * Generates the activities name table which stores the mapping between event id and event name.
+     * Returns the types of the attribute columns of an existing table, as they are used by the import.
      *
-     * @param logInfo
+     * @param table
+     * @param keyColumns
+     * @return
      */
-    private void generateActivitiesTable(XLogInfo logInfo) {
+    private Map<String, String> getColumnTypes(String table, List<String> keyColumns) {
+        var result = new LinkedHashMap<String, String>();
+
+        jdbcTemplate.queryForList("SELECT column_name, data_type FROM information_schema.columns " +
+                "WHERE table_name = ? AND table_schema = 'public' ORDER BY ordinal_position", table).forEach(column -> {
+            var name = column.get("column_name").toString();
+            if (keyColumns.contains(name)) {
+                return;
+            }
+
+            switch (column.get("data_type").toString()) {
+                case "timestamp without time zone":
+                    result.put(name, TYPE_TIMESTAMP);
+                    break;
+                case "double precision":
+                    result.put(name, TYPE_DOUBLE);
+                    break;
+                case "integer":
+                case "bigint":
+                    result.put(name, TYPE_BIGINT);
+                    break;
+                case "boolean":
+                    result.put(name, TYPE_BOOLEAN);
+                    break;
+                default:
+                    // text and enum columns
+                    result.put(name, TYPE_VARCHAR);
+            }
+        });
+
+        return result;
+    }
+
+    private Map<String, String> getColumnTypes(Map<String, Class<?>> attributes, boolean caseAttribute) {
+        var result = new LinkedHashMap<String, String>();
+        attributes.forEach((key, type) -> result.put(key, getColumnType(type, caseAttribute)));
+        return result;
+    }
+
+    private boolean tableExists(String table) {
+        var count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables WHERE table_name = ?", Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private List<String> getColumnNames(List<? extends Column> columns) {
+        return columns.stream().map(Column::getColumnNameSQL).collect(Collectors.toList());
+    }
+
+    private List<String> generateTraceColumns() {
+        var columns = new ArrayList<String>();
+        columns.add("case_id");
+        columns.add("original_case_id");
+        traceAttributes.keySet().forEach(x -> columns.add("\"" + x + "\""));
+
+        return columns;
+    }
+
+    /**
+     * Generates the activities name table which stores the mapping between event id and event name. The activities are
+     * added while the events are imported.
+     */
+    private void generateActivitiesTable() {
         // drop old table
         jdbcTemplate.execute("DROP TABLE IF EXISTS " + getActivityTableName(this.logName));
 
@@ -285,18 +1123,61 @@ public class XLog2Database {
                 .validate().toString();
 
         jdbcTemplate.execute(sql);
+    }
 
-        // add all activities
-        List<Object[]> insertValues = new ArrayList<>();
-        for (var eventClass : logInfo.getEventClasses(classifier).getClasses()) {
-            insertValues.add(new Object[]{eventClass.getIndex(), eventClass.getId()});
-        }
+    /**
+     * Generates the resources table which stores the mapping between the resource id of an event and the resource
+     * name. The resources are added while the events are imported.
+     */
+    private void generateResourcesTable() {
+        // drop old table
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getResourceTableName(this.logName));
 
-        var insertSql = new InsertQuery(db.activityTable)
-                .addPreparedColumnCollection(db.activityTable.getColumns())
+        // create new table
+        var sql = new CreateTableQuery(db.resourceTable, true)
                 .validate().toString();
-        jdbcTemplate.batchUpdate(insertSql, insertValues);
+
+        jdbcTemplate.execute(sql);
     }
 
+    /**
+     * A batch of traces as it is passed between the stages of the import pipeline.
+     */
+    private static class ImportBatch {
+
+        // marks the end of the input of a stage
+        private static final ImportBatch END = new ImportBatch(-1);
+
+        private final int firstCaseId;
+
+        // position of the batch in the file and the checkpoint reached after it is written
+        private long sequence;
+        private ImportCheckpoint checkpoint;
+
+        // part of the input that was read when the batch was sealed
+        private double progress;
+
+        private final List<ImportTrace> traces = new ArrayList<>(BUFFER_SIZE);
+
+        // attributes and columns known when the batch was sealed
+        private List<String> traceKeys;
+        private List<String> eventKeys;
+        private List<String> traceColumns;
+        private List<String> eventColumns;
+
+        private List<Object[]> activities;
+        private List<Object[]> resources;
+
+        private final List<Object[]> traceRows = new ArrayList<>(BUFFER_SIZE);
+        private final List<Object[]> eventRows = new ArrayList<>();
+
+        private ImportBatch(int firstCaseId) {
+            this.firstCaseId = firstCaseId;
+        }
+
+        private int size() {
+            return traces.isEmpty() ? traceRows.size() : traces.size();
+        }
+    }
 
 }
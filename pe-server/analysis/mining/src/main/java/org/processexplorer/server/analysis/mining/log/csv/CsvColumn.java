@@ -0,0 +1,154 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * An attribute column of a csv file together with the type inferred from a sample of its values.
+ */
+public class CsvColumn {
+
+    public enum Type {
+        TIMESTAMP("timestamp"),
+        DOUBLE("double precision"),
+        LONG("bigint"),
+        CATEGORICAL("VARCHAR(1024)");
+
+        private final String sqlType;
+
+        Type(String sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        public String getSqlType() {
+            return sqlType;
+        }
+    }
+
+    private final int index;
+
+    private final String name;
+
+    private final Type type;
+
+    private final TimestampFormat timestampFormat;
+
+    private final boolean caseAttribute;
+
+    public CsvColumn(int index, String name, Type type, TimestampFormat timestampFormat, boolean caseAttribute) {
+        this.index = index;
+        this.name = name;
+        this.type = type;
+        this.timestampFormat = timestampFormat;
+        this.caseAttribute = caseAttribute;
+    }
+
+    /**
+     * Infers the type of a column from the non-empty values of a sample. The most specific type that can represent
+     * all values is used.
+     *
+     * @param index
+     * @param name
+     * @param values
+     * @param caseAttribute
+     * @return
+     */
+    public static CsvColumn infer(int index, String name, List<String> values, boolean caseAttribute) {
+        var sample = values.stream().map(String::trim).filter(x -> !x.isEmpty()).collect(Collectors.toList());
+
+        if (sample.isEmpty()) {
+            return new CsvColumn(index, name, Type.CATEGORICAL, null, caseAttribute);
+        } else if (sample.stream().allMatch(CsvColumn::isLong)) {
+            return new CsvColumn(index, name, Type.LONG, null, caseAttribute);
+        } else if (sample.stream().allMatch(CsvColumn::isDouble)) {
+            return new CsvColumn(index, name, Type.DOUBLE, null, caseAttribute);
+        }
+
+        var format = TimestampFormat.detect(sample);
+        if (format != null) {
+            return new CsvColumn(index, name, Type.TIMESTAMP, format, caseAttribute);
+        }
+
+        return new CsvColumn(index, name, Type.CATEGORICAL, null, caseAttribute);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isCaseAttribute() {
+        return caseAttribute;
+    }
+
+    /**
+     * Converts a raw value of this column. Returns null for empty values and throws an IllegalArgumentException if the
+     * value does not match the type of the column.
+     *
+     * @param value
+     * @return
+     */
+    public Object convert(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        switch (type) {
+            case LONG:
+                return Long.parseLong(value.trim());
+            case DOUBLE:
+                return Double.parseDouble(value.trim());
+            case TIMESTAMP:
+                var timestamp = timestampFormat.parse(value);
+                if (timestamp == null) {
+                    throw new IllegalArgumentException("Value \"" + value + "\" does not match timestamp format " + timestampFormat);
+                }
+                return timestamp;
+            default:
+                return value.length() > 1024 ? value.substring(0, 1024) : value;
+        }
+    }
+
+    private static boolean isLong(String value) {
+        try {
+            Long.parseLong(value);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+
+    private static boolean isDouble(String value) {
+        try {
+            Double.parseDouble(value);
+            return true;
+        } catch (NumberFormatException ex) {
+            return false;
+        }
+    }
+}
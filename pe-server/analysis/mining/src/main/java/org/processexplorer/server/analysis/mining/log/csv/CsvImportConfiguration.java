@@ -0,0 +1,161 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes how the columns of a csv file are mapped to an event log. Columns that are not set are detected from the
+ * header using common names (e.g. "case:concept:name", "case_id" for the case id).
+ */
+public class CsvImportConfiguration {
+
+    private Character delimiter;
+
+    private char quote = '"';
+
+    private String charset = "UTF-8";
+
+    private String caseIdColumn;
+
+    private String activityColumn;
+
+    private String timestampColumn;
+
+    private String resourceColumn;
+
+    private String lifecycleColumn;
+
+    private String timestampFormat;
+
+    private List<String> caseAttributeColumns = new ArrayList<>();
+
+    private int sampleSize = 10000;
+
+    /**
+     * Returns the column delimiter or null, if it should be detected from the header.
+     *
+     * @return
+     */
+    public Character getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(Character delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public char getQuote() {
+        return quote;
+    }
+
+    public void setQuote(char quote) {
+        this.quote = quote;
+    }
+
+    public String getCharset() {
+        return charset;
+    }
+
+    public void setCharset(String charset) {
+        this.charset = charset;
+    }
+
+    public String getCaseIdColumn() {
+        return caseIdColumn;
+    }
+
+    public void setCaseIdColumn(String caseIdColumn) {
+        this.caseIdColumn = caseIdColumn;
+    }
+
+    public String getActivityColumn() {
+        return activityColumn;
+    }
+
+    public void setActivityColumn(String activityColumn) {
+        this.activityColumn = activityColumn;
+    }
+
+    public String getTimestampColumn() {
+        return timestampColumn;
+    }
+
+    public void setTimestampColumn(String timestampColumn) {
+        this.timestampColumn = timestampColumn;
+    }
+
+    public String getResourceColumn() {
+        return resourceColumn;
+    }
+
+    public void setResourceColumn(String resourceColumn) {
+        this.resourceColumn = resourceColumn;
+    }
+
+    public String getLifecycleColumn() {
+        return lifecycleColumn;
+    }
+
+    public void setLifecycleColumn(String lifecycleColumn) {
+        this.lifecycleColumn = lifecycleColumn;
+    }
+
+    /**
+     * Returns the pattern (see {@link java.time.format.DateTimeFormatter}) of timestamp values or null, if the format
+     * should be detected from a sample of the file.
+     *
+     * @return
+     */
+    public String getTimestampFormat() {
+        return timestampFormat;
+    }
+
+    public void setTimestampFormat(String timestampFormat) {
+        this.timestampFormat = timestampFormat;
+    }
+
+    /**
+     * Returns the columns that describe a case instead of a single event. They are stored in the case attribute
+     * table.
+     *
+     * @return
+     */
+    public List<String> getCaseAttributeColumns() {
+        return caseAttributeColumns;
+    }
+
+    public void setCaseAttributeColumns(List<String> caseAttributeColumns) {
+        this.caseAttributeColumns = caseAttributeColumns;
+    }
+
+    /**
+     * Returns the number of records that are used to infer the column types.
+     *
+     * @return
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+}
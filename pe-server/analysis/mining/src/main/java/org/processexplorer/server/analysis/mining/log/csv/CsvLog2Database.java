@@ -0,0 +1,648 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import com.healthmarketscience.sqlbuilder.CreateTableQuery;
+import org.processexplorer.server.analysis.mining.log.AttributeEncoder;
+import org.processexplorer.server.analysis.mining.log.DerivedTables;
+import org.processexplorer.server.analysis.mining.log.EventTableOptimizer;
+import org.processexplorer.server.analysis.mining.log.EventTablePartitioning;
+import org.processexplorer.server.analysis.mining.log.ImportStatistics;
+import org.processexplorer.server.analysis.mining.log.writer.BatchLogWriter;
+import org.processexplorer.server.analysis.mining.log.writer.LogWriter;
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.processexplorer.server.analysis.query.DatabaseConstants.*;
+
+/**
+ * Imports an event log from a csv file with one event per record.
+ * <p>
+ * The file is split into line aligned chunks which are memory-mapped and parsed in parallel. The records are written
+ * unordered into a staging table. Afterwards, the activities, cases and events tables are derived from the staging
+ * table in the database, so the memory used by the import does not depend on the size of the file.
+ */
+public class CsvLog2Database {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvLog2Database.class);
+
+    private static final int CHUNK_SIZE = 16 << 20;
+
+    private static final int SAMPLE_SIZE = 4 << 20;
+
+    private static final int BUFFER_SIZE = 10000;
+
+    private static final char[] DELIMITERS = {',', ';', '\t', '|'};
+
+    private static final Set<String> RESERVED_COLUMNS = Set.of("case_id", "original_case_id", "event", "timestamp",
+            "resource", "lifecycle", "case_key", "activity");
+
+    private static final List<String> CASE_ID_COLUMNS = List.of("case:concept:name", "case_id", "caseid", "case id", "case");
+    private static final List<String> ACTIVITY_COLUMNS = List.of("concept:name", "activity", "activity_name", "activity name", "event");
+    private static final List<String> TIMESTAMP_COLUMNS = List.of("time:timestamp", "timestamp", "time", "start_time", "complete_time");
+    private static final List<String> RESOURCE_COLUMNS = List.of("org:resource", "resource", "user");
+    private static final List<String> LIFECYCLE_COLUMNS = List.of("lifecycle:transition", "lifecycle", "transition");
+
+    private final String logName;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final CsvImportConfiguration configuration;
+
+    private final LogWriter writer;
+
+    private final DatabaseModel db;
+
+    private final String stagingTable;
+
+    private final ImportStatistics statistics = new ImportStatistics();
+
+    private final AtomicLong invalidValues = new AtomicLong();
+
+    private final AtomicLong skippedRecords = new AtomicLong();
+
+    private int threads = 1;
+
+    private boolean materializeCases = false;
+
+    private boolean encodeAttributes = false;
+
+    private boolean optimizeLayout = false;
+
+    private EventTablePartitioning partitioning = EventTablePartitioning.none();
+
+    // mapping of the csv columns, determined from the header and the sample
+    private Charset charset;
+    private char delimiter;
+    private int caseIdIndex;
+    private int activityIndex;
+    private int timestampIndex;
+    private int resourceIndex;
+    private int lifecycleIndex;
+    private TimestampFormat timestampFormat;
+    private List<CsvColumn> attributes;
+    private List<String> stagingColumns;
+
+    public CsvLog2Database(JdbcTemplate jdbcTemplate, String logName, CsvImportConfiguration configuration) {
+        this(jdbcTemplate, logName, configuration, new BatchLogWriter(jdbcTemplate));
+    }
+
+    public CsvLog2Database(JdbcTemplate jdbcTemplate, String logName, CsvImportConfiguration configuration, LogWriter writer) {
+        this.logName = logName;
+        this.jdbcTemplate = jdbcTemplate;
+        this.configuration = configuration;
+        this.writer = writer;
+
+        this.db = new DatabaseModel(logName);
+        this.stagingTable = logName.toLowerCase() + "_csv_staging";
+    }
+
+    /**
+     * Sets the number of chunks that are parsed and written in parallel.
+     *
+     * @param threads
+     */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Sets whether the cases table is materialized after the import instead of being generated as view.
+     *
+     * @param materializeCases
+     */
+    public void setMaterializeCases(boolean materializeCases) {
+        this.materializeCases = materializeCases;
+    }
+
+    /**
+     * Sets whether the attribute columns are narrowed to smaller types after the import.
+     *
+     * @param encodeAttributes
+     */
+    public void setEncodeAttributes(boolean encodeAttributes) {
+        this.encodeAttributes = encodeAttributes;
+    }
+
+    /**
+     * Sets whether the physical layout of the events table is optimized after the import.
+     *
+     * @param optimizeLayout
+     */
+    public void setOptimizeLayout(boolean optimizeLayout) {
+        this.optimizeLayout = optimizeLayout;
+    }
+
+    /**
+     * Sets how the events table is partitioned.
+     *
+     * @param partitioning
+     */
+    public void setPartitioning(EventTablePartitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    public ImportStatistics getStatistics() {
+        return statistics;
+    }
+
+    public boolean importLog(Path file) throws IOException {
+        logger.info("Begin importing csv event log \"{}\" using {} ({} threads)", this.logName, writer.getClass().getSimpleName(), threads);
+        statistics.start();
+
+        var derivedTables = new DerivedTables(jdbcTemplate, logName);
+        derivedTables.setMaterializeCases(materializeCases);
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var size = channel.size();
+            charset = Charset.forName(configuration.getCharset());
+
+            // read header and sample to map the columns
+            var sampleSize = Math.min(size, SAMPLE_SIZE);
+            readHeader(decode(channel, 0, sampleSize), sampleSize < size);
+
+            // generate tables
+            derivedTables.drop();
+            generateActivitiesTable();
+            generateResourcesTable();
+            generateEventsTable();
+            generateCaseAttributeTable();
+            generateStagingTable();
+
+            // load all records in parallel
+            var start = System.currentTimeMillis();
+            var chunks = findChunks(file, size);
+            loadChunks(channel, chunks);
+            logger.info("Loaded {} records of \"{}\" in {} chunks ({} ms, {} records skipped, {} invalid values)",
+                    statistics.getEvents(), this.logName, chunks.size(), System.currentTimeMillis() - start, skippedRecords.get(), invalidValues.get());
+
+            // build the event log tables
+            start = System.currentTimeMillis();
+            partitioning.addRangePartitions(jdbcTemplate, db.eventTable.getTableNameSQL(), stagingTable);
+            transform();
+            logger.info("Built event log tables of \"{}\" ({} ms)", this.logName, System.currentTimeMillis() - start);
+
+            statistics.stop();
+        } catch (Exception ex) {
+            logger.error(ex.getMessage(), ex);
+            throw ex;
+        } finally {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + stagingTable);
+        }
+
+        // reduce the size of the attribute columns
+        if (encodeAttributes) {
+            new AttributeEncoder(jdbcTemplate, logName).narrowAttributes();
+        }
+
+        // sort and index the events and gather statistics
+        if (optimizeLayout) {
+            statistics.setOptimizeMillis(new EventTableOptimizer(jdbcTemplate, logName).optimize());
+        }
+
+        // create depending views
+        derivedTables.generate();
+
+        logger.info("Finished importing csv event log \"{}\": {}", this.logName, statistics);
+        return true;
+    }
+
+    /**
+     * Parses the header and infers the mapping and the types of the columns from the sample.
+     *
+     * @param text
+     * @param truncated true, if the text does not contain the whole file and the last record may be incomplete
+     */
+    private void readHeader(CharBuffer text, boolean truncated) {
+        delimiter = configuration.getDelimiter() != null ? configuration.getDelimiter() : detectDelimiter(text);
+
+        var parser = new CsvRecordParser(text, delimiter, configuration.getQuote());
+        var header = parser.next();
+        if (header == null) {
+            throw new IllegalArgumentException("The csv file is empty");
+        }
+        header = header.stream().map(String::trim).collect(Collectors.toList());
+
+        var sample = new ArrayList<List<String>>();
+        List<String> record;
+        while (sample.size() < configuration.getSampleSize() && (record = parser.next()) != null) {
+            sample.add(record);
+        }
+        if (truncated && parser.getPosition() >= text.length() && !sample.isEmpty()) {
+            sample.remove(sample.size() - 1);
+        }
+
+        // standard columns
+        caseIdIndex = findColumn(header, configuration.getCaseIdColumn(), CASE_ID_COLUMNS, "case id");
+        activityIndex = findColumn(header, configuration.getActivityColumn(), ACTIVITY_COLUMNS, "activity");
+        timestampIndex = findColumn(header, configuration.getTimestampColumn(), TIMESTAMP_COLUMNS, "timestamp");
+        resourceIndex = findColumn(header, configuration.getResourceColumn(), RESOURCE_COLUMNS, null);
+        lifecycleIndex = findColumn(header, configuration.getLifecycleColumn(), LIFECYCLE_COLUMNS, null);
+
+        if (configuration.getTimestampFormat() != null) {
+            timestampFormat = new TimestampFormat(configuration.getTimestampFormat());
+        } else {
+            timestampFormat = TimestampFormat.detect(getValues(sample, timestampIndex));
+            if (timestampFormat == null) {
+                throw new IllegalArgumentException("Could not detect the timestamp format of column \"" + header.get(timestampIndex) + "\"");
+            }
+        }
+
+        // additional attributes
+        var standard = new HashSet<>(List.of(caseIdIndex, activityIndex, timestampIndex, resourceIndex, lifecycleIndex));
+        var names = new HashSet<>(RESERVED_COLUMNS);
+
+        attributes = new ArrayList<>();
+        for (int i = 0; i < header.size(); i++) {
+            if (standard.contains(i)) {
+                continue;
+            }
+
+            var name = header.get(i).isEmpty() ? "column_" + i : header.get(i);
+            while (!names.add(name)) {
+                name = name + "_" + i;
+            }
+
+            var caseAttribute = configuration.getCaseAttributeColumns().contains(header.get(i));
+            attributes.add(CsvColumn.infer(i, name, getValues(sample, i), caseAttribute));
+        }
+
+        stagingColumns = new ArrayList<>(List.of("case_key", "activity", "timestamp", "resource", "lifecycle"));
+        attributes.forEach(x -> stagingColumns.add(quote(x.getName())));
+
+        logger.info("Mapped csv columns of \"{}\": case id \"{}\", activity \"{}\", timestamp \"{}\" ({}), attributes {}", this.logName,
+                header.get(caseIdIndex), header.get(activityIndex), header.get(timestampIndex), timestampFormat,
+                attributes.stream().map(x -> x.getName() + ":" + x.getType()).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Returns the delimiter that occurs most often in the header.
+     *
+     * @param text
+     * @return
+     */
+    private char detectDelimiter(CharBuffer text) {
+        var end = 0;
+        while (end < text.length() && text.charAt(end) != '\n') {
+            end++;
+        }
+        var line = text.subSequence(0, end).toString();
+
+        var result = DELIMITERS[0];
+        var count = 0L;
+        for (var delimiter : DELIMITERS) {
+            var c = line.chars().filter(x -> x == delimiter).count();
+            if (c > count) {
+                result = delimiter;
+                count = c;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the configured column or of the first column whose name matches one of the candidates.
+     *
+     * @param header
+     * @param column
+     * @param candidates
+     * @param required   name of the column used in the error message, or null if the column is optional
+     * @return
+     */
+    private int findColumn(List<String> header, String column, List<String> candidates, String required) {
+        if (column != null) {
+            var index = header.indexOf(column);
+            if (index < 0) {
+                throw new IllegalArgumentException("Column \"" + column + "\" does not exist in the csv file");
+            }
+            return index;
+        }
+
+        for (var candidate : candidates) {
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).equalsIgnoreCase(candidate)) {
+                    return i;
+                }
+            }
+        }
+
+        if (required != null) {
+            throw new IllegalArgumentException("Could not detect the " + required + " column of the csv file");
+        }
+        return -1;
+    }
+
+    private List<String> getValues(List<List<String>> sample, int index) {
+        return sample.stream().map(x -> get(x, index)).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * Splits the file into chunks of roughly CHUNK_SIZE bytes that start and end at record boundaries. Line breaks
+     * within quoted fields are respected.
+     *
+     * @param file
+     * @param size
+     * @return
+     * @throws IOException
+     */
+    private List<long[]> findChunks(Path file, long size) throws IOException {
+        var chunks = new ArrayList<long[]>();
+        var quote = (byte) configuration.getQuote();
+
+        try (InputStream in = Files.newInputStream(file)) {
+            var buffer = new byte[1 << 16];
+            var quoted = false;
+            long position = 0;
+            long start = -1;
+
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    var b = buffer[i];
+
+                    if (b == quote) {
+                        quoted = !quoted;
+                    } else if (b == '\n' && !quoted) {
+                        var end = position + i + 1;
+
+                        if (start < 0) {
+                            // end of the header
+                            start = end;
+                        } else if (end - start >= CHUNK_SIZE) {
+                            chunks.add(new long[]{start, end});
+                            start = end;
+                        }
+                    }
+                }
+                position += read;
+            }
+
+            if (start >= 0 && start < size) {
+                chunks.add(new long[]{start, size});
+            }
+        }
+
+        return chunks;
+    }
+
+    private void loadChunks(FileChannel channel, List<long[]> chunks) {
+        var executor = Executors.newFixedThreadPool(threads);
+        try {
+            var tasks = new ArrayList<Future<?>>();
+            for (var chunk : chunks) {
+                tasks.add(executor.submit(() -> {
+                    loadChunk(channel, chunk[0], chunk[1]);
+                    return null;
+                }));
+            }
+
+            for (var task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import was interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause().getMessage(), ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the records of a chunk and writes them to the staging table.
+     *
+     * @param channel
+     * @param start
+     * @param end
+     * @throws IOException
+     */
+    private void loadChunk(FileChannel channel, long start, long end) throws IOException {
+        var parser = new CsvRecordParser(decode(channel, start, end), delimiter, configuration.getQuote());
+        var rows = new ArrayList<Object[]>(BUFFER_SIZE);
+        long count = 0;
+
+        List<String> record;
+        while ((record = parser.next()) != null) {
+            var row = convert(record);
+            if (row == null) {
+                continue;
+            }
+
+            rows.add(row);
+            count++;
+
+            if (rows.size() >= BUFFER_SIZE) {
+                writer.write(stagingTable, stagingColumns, rows);
+                rows.clear();
+            }
+        }
+
+        writer.write(stagingTable, stagingColumns, rows);
+        statistics.add(0, count);
+    }
+
+    /**
+     * Converts a record into a row of the staging table. Records without case id or activity are skipped, values that
+     * do not match the type of their column are stored as null.
+     *
+     * @param record
+     * @return
+     */
+    private Object[] convert(List<String> record) {
+        var caseId = get(record, caseIdIndex);
+        var activity = get(record, activityIndex);
+
+        if (caseId == null || activity == null) {
+            skippedRecords.incrementAndGet();
+            return null;
+        }
+
+        var row = new Object[5 + attributes.size()];
+        row[0] = truncate(caseId);
+        row[1] = truncate(activity);
+        row[3] = truncate(get(record, resourceIndex));
+        row[4] = truncate(get(record, lifecycleIndex));
+
+        var timestamp = get(record, timestampIndex);
+        if (timestamp != null) {
+            row[2] = timestampFormat.parse(timestamp);
+            if (row[2] == null) {
+                invalidValues.incrementAndGet();
+            }
+        }
+
+        for (int i = 0; i < attributes.size(); i++) {
+            var attribute = attributes.get(i);
+            try {
+                row[5 + i] = attribute.convert(get(record, attribute.getIndex()));
+            } catch (IllegalArgumentException ex) {
+                invalidValues.incrementAndGet();
+            }
+        }
+
+        return row;
+    }
+
+    private String get(List<String> record, int index) {
+        if (index < 0 || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private String truncate(String value) {
+        return value != null && value.length() > 1024 ? value.substring(0, 1024) : value;
+    }
+
+    private CharBuffer decode(FileChannel channel, long start, long end) throws IOException {
+        var buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(buffer);
+    }
+
+    /**
+     * Derives the activities, resources, case attribute and events tables from the staging table. The case ids are assigned in
+     * the order of the start time of the cases.
+     */
+    private void transform() {
+        jdbcTemplate.execute("INSERT INTO " + db.activityTable.getTableNameSQL() + " (id, name) " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY activity) - 1, activity FROM " + stagingTable + " GROUP BY activity");
+        jdbcTemplate.execute("INSERT INTO " + db.resourceTable.getTableNameSQL() + " (id, name) " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY resource) - 1, resource FROM " + stagingTable + " WHERE resource IS NOT NULL GROUP BY resource");
+
+        var caseAttributes = attributes.stream().filter(CsvColumn::isCaseAttribute).map(x -> quote(x.getName())).collect(Collectors.toList());
+        jdbcTemplate.execute("INSERT INTO " + db.caseAttributeTable.getTableNameSQL() + " (" + join("case_id", "original_case_id", caseAttributes, null) + ") " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY MIN(timestamp), case_key) - 1, " + join("case_key", null, caseAttributes, "MAX") + " " +
+                "FROM " + stagingTable + " GROUP BY case_key");
+
+        var eventAttributes = attributes.stream().filter(x -> !x.isCaseAttribute()).map(x -> quote(x.getName())).collect(Collectors.toList());
+        jdbcTemplate.execute("INSERT INTO " + db.eventTable.getTableNameSQL() + " (" + join("case_id, event, timestamp, resource, lifecycle", null, eventAttributes, null) + ") " +
+                "SELECT c.case_id, a.id, " + join("s.timestamp, r.id, s.lifecycle", null, eventAttributes.stream().map(x -> "s." + x).collect(Collectors.toList()), null) + " " +
+                "FROM " + stagingTable + " s " +
+                "JOIN " + db.caseAttributeTable.getTableNameSQL() + " c ON c.original_case_id = s.case_key " +
+                "JOIN " + db.activityTable.getTableNameSQL() + " a ON a.name = s.activity " +
+                "LEFT JOIN " + db.resourceTable.getTableNameSQL() + " r ON r.name = s.resource " +
+                "ORDER BY c.case_id, s.timestamp");
+
+        var traces = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + db.caseAttributeTable.getTableNameSQL(), Long.class);
+        statistics.add(traces == null ? 0 : traces, 0);
+    }
+
+    private String join(String first, String second, List<String> columns, String aggregate) {
+        var result = new ArrayList<String>();
+        result.add(first);
+        if (second != null) {
+            result.add(second);
+        }
+        columns.forEach(x -> result.add(aggregate != null ? aggregate + "(" + x + ")" : x));
+
+        return String.join(", ", result);
+    }
+
+    private String quote(String name) {
+        return "\"" + name.replace("\"", "\"\"") + "\"";
+    }
+
+    private void generateActivitiesTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getActivityTableName(this.logName));
+        jdbcTemplate.execute(new CreateTableQuery(db.activityTable, true).validate().toString());
+    }
+
+    private void generateResourcesTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getResourceTableName(this.logName));
+        jdbcTemplate.execute(new CreateTableQuery(db.resourceTable, true).validate().toString());
+    }
+
+    private void generateEventsTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getEventsTableName(this.logName));
+
+        for (var attribute : attributes) {
+            if (attribute.isCaseAttribute()) {
+                continue;
+            }
+
+            if (attribute.getType() == CsvColumn.Type.CATEGORICAL) {
+                db.eventTable.addColumn(quote(attribute.getName()), "varchar", 1024, null);
+            } else {
+                db.eventTable.addColumn(quote(attribute.getName()), attribute.getType().getSqlType(), null, null);
+            }
+        }
+
+        jdbcTemplate.execute(new CreateTableQuery(db.eventTable, true).validate().toString() + partitioning.getPartitionClause());
+        partitioning.createPartitions(jdbcTemplate, db.eventTable.getTableNameSQL());
+        jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + db.eventTable.getTableNameSQL() + " ON " + db.eventTable.getTableNameSQL() + " (case_id)");
+    }
+
+    private void generateCaseAttributeTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + getCaseAttributeTableName(this.logName));
+
+        var sql = new StringBuilder();
+        sql.append("CREATE TABLE " + getCaseAttributeTableName(this.logName) + " (");
+        sql.append("case_id INTEGER,");
+        sql.append("original_case_id VARCHAR(1024)");
+        attributes.stream()
+                .filter(CsvColumn::isCaseAttribute)
+                .forEach(x -> sql.append("," + quote(x.getName()) + " " + x.getType().getSqlType()));
+        sql.append(")");
+
+        jdbcTemplate.execute(sql.toString());
+        jdbcTemplate.execute("CREATE INDEX p_case_id_index_" + db.caseAttributeTable.getTableNameSQL() + " ON " + db.caseAttributeTable.getTableNameSQL() + " (case_id)");
+    }
+
+    /**
+     * Generates an unlogged table that takes the records in the order of the file.
+     */
+    private void generateStagingTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + stagingTable);
+
+        var sql = new StringBuilder();
+        sql.append("CREATE UNLOGGED TABLE " + stagingTable + " (");
+        sql.append("case_key VARCHAR(1024),");
+        sql.append("activity VARCHAR(1024),");
+        sql.append("timestamp TIMESTAMP,");
+        sql.append("resource VARCHAR(1024),");
+        sql.append("lifecycle VARCHAR(1024)");
+        attributes.forEach(x -> sql.append("," + quote(x.getName()) + " " + x.getType().getSqlType()));
+        sql.append(")");
+
+        jdbcTemplate.execute(sql.toString());
+    }
+}
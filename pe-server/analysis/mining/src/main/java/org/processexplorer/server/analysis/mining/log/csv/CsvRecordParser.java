@@ -0,0 +1,109 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the records of a csv chunk into fields. Quoted fields may contain delimiters, line breaks and doubled quotes.
+ */
+public class CsvRecordParser {
+
+    private final CharSequence text;
+
+    private final char delimiter;
+
+    private final char quote;
+
+    private final StringBuilder field = new StringBuilder();
+
+    private int position = 0;
+
+    public CsvRecordParser(CharSequence text, char delimiter, char quote) {
+        this.text = text;
+        this.delimiter = delimiter;
+        this.quote = quote;
+
+        // skip byte order mark
+        if (text.length() > 0 && text.charAt(0) == '\uFEFF') {
+            position = 1;
+        }
+    }
+
+    /**
+     * Returns the position of the next record in the text.
+     *
+     * @return
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Reads the next record or returns null if the end of the text is reached. Empty lines are skipped.
+     *
+     * @return
+     */
+    public List<String> next() {
+        var length = text.length();
+
+        // skip empty lines
+        while (position < length && (text.charAt(position) == '\n' || text.charAt(position) == '\r')) {
+            position++;
+        }
+
+        if (position >= length) {
+            return null;
+        }
+
+        var fields = new ArrayList<String>();
+        var quoted = false;
+        field.setLength(0);
+
+        while (position < length) {
+            var c = text.charAt(position++);
+
+            if (quoted) {
+                if (c == quote) {
+                    if (position < length && text.charAt(position) == quote) {
+                        field.append(quote);
+                        position++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == quote) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Parses timestamp values of a csv column. Values with time zone are converted to the local time of the server, the
+ * same way as timestamps of xes files are stored.
+ */
+public class TimestampFormat {
+
+    private static final List<String> PATTERNS = List.of(
+            "yyyy-MM-dd'T'HH:mm[:ss][.SSSSSSSSS][.SSSSSS][.SSS][XXX][X]",
+            "yyyy-MM-dd HH:mm[:ss][.SSSSSSSSS][.SSSSSS][.SSS][XXX][X]",
+            "yyyy/MM/dd HH:mm[:ss][.SSS]",
+            "dd.MM.yyyy HH:mm[:ss][.SSS]",
+            "dd/MM/yyyy HH:mm[:ss][.SSS]",
+            "MM/dd/yyyy HH:mm[:ss][.SSS]",
+            "dd-MM-yyyy HH:mm[:ss][.SSS]",
+            "yyyy-MM-dd",
+            "dd.MM.yyyy",
+            "dd/MM/yyyy",
+            "MM/dd/yyyy"
+    );
+
+    private final String pattern;
+
+    private final DateTimeFormatter formatter;
+
+    public TimestampFormat(String pattern) {
+        this.pattern = pattern;
+        this.formatter = DateTimeFormatter.ofPattern(pattern);
+    }
+
+    /**
+     * Returns the formats that are tried when a timestamp format is detected from a sample.
+     *
+     * @return
+     */
+    public static List<TimestampFormat> candidates() {
+        return PATTERNS.stream().map(TimestampFormat::new).collect(Collectors.toList());
+    }
+
+    /**
+     * Returns the first format that parses all given values or null.
+     *
+     * @param values
+     * @return
+     */
+    public static TimestampFormat detect(List<String> values) {
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        return candidates().stream()
+                .filter(x -> values.stream().allMatch(v -> x.parse(v) != null))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Parses the value or returns null if the value does not match the format.
+     *
+     * @param value
+     * @return
+     */
+    public Timestamp parse(String value) {
+        try {
+            var parsed = formatter.parseBest(value.trim(), OffsetDateTime::from, LocalDateTime::from, LocalDate::from);
+
+            if (parsed instanceof OffsetDateTime) {
+                return Timestamp.from(((OffsetDateTime) parsed).toInstant());
+            } else if (parsed instanceof LocalDateTime) {
+                return Timestamp.valueOf((LocalDateTime) parsed);
+            } else {
+                return Timestamp.valueOf(((LocalDate) parsed).atStartOfDay());
+            }
+        } catch (DateTimeParseException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
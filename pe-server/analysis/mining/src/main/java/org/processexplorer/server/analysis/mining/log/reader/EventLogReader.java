@@ -0,0 +1,63 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.reader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reads an event log trace by trace, so that the import never has to hold the whole log in memory.
+ */
+public interface EventLogReader extends Closeable {
+
+    /**
+     * Returns the trace attributes (and the java type of their values) that are known before the first trace is read.
+     * Further attributes may be discovered while reading.
+     *
+     * @return
+     */
+    Map<String, Class<?>> getTraceAttributes();
+
+    /**
+     * Returns the additional event attributes (and the java type of their values) that are known before the first
+     * trace is read. Further attributes may be discovered while reading.
+     *
+     * @return
+     */
+    Map<String, Class<?>> getEventAttributes();
+
+    /**
+     * Reads the next trace or returns null if the end of the log is reached.
+     *
+     * @return
+     * @throws IOException
+     */
+    ImportTrace read() throws IOException;
+
+    /**
+     * Returns the part of the input that is read as value between 0 and 1 or -1, if the size of the input is unknown.
+     *
+     * @return
+     */
+    default double getProgress() {
+        return -1;
+    }
+
+}
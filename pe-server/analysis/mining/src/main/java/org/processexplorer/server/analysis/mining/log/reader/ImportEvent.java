@@ -0,0 +1,95 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.reader;
+
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.extension.std.XLifecycleExtension;
+import org.deckfour.xes.extension.std.XOrganizationalExtension;
+import org.deckfour.xes.extension.std.XTimeExtension;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A single event as it is handed from an event log reader to the database import.
+ */
+public class ImportEvent {
+
+    private String activity;
+
+    private Date timestamp;
+
+    private String resource;
+
+    private String lifecycle;
+
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    /**
+     * Returns true if the attribute is stored in a dedicated column of the events table and must not be imported as
+     * additional event attribute.
+     *
+     * @param key
+     * @return
+     */
+    public static boolean isStandardAttribute(String key) {
+        return key.equals(XConceptExtension.KEY_NAME) ||
+                key.equals(XOrganizationalExtension.KEY_RESOURCE) ||
+                key.equals(XTimeExtension.KEY_TIMESTAMP) ||
+                key.equals(XLifecycleExtension.KEY_TRANSITION) ||
+                key.equals("resource");
+    }
+
+    public String getActivity() {
+        return activity;
+    }
+
+    public void setActivity(String activity) {
+        this.activity = activity;
+    }
+
+    public Date getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Date timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public void setResource(String resource) {
+        this.resource = resource;
+    }
+
+    public String getLifecycle() {
+        return lifecycle;
+    }
+
+    public void setLifecycle(String lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.reader;
+
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.extension.std.XLifecycleExtension;
+import org.deckfour.xes.extension.std.XOrganizationalExtension;
+import org.deckfour.xes.extension.std.XTimeExtension;
+import org.deckfour.xes.info.XLogInfoFactory;
+import org.deckfour.xes.model.XAttribute;
+import org.deckfour.xes.model.XAttributeMap;
+import org.deckfour.xes.model.XLog;
+import org.processexplorer.server.analysis.mining.log.XLogUtils;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Adapts an OpenXES log that is already loaded into memory to the trace based import.
+ */
+public class XLogEventLogReader implements EventLogReader {
+
+    private final XLog log;
+
+    private final Map<String, Class<?>> traceAttributes = new LinkedHashMap<>();
+
+    private final Map<String, Class<?>> eventAttributes = new LinkedHashMap<>();
+
+    private int index = 0;
+
+    public XLogEventLogReader(XLog log) {
+        this.log = log;
+
+        var logInfo = XLogInfoFactory.createLogInfo(log);
+        addAttributes(traceAttributes, logInfo.getTraceAttributeInfo().getAttributes(), false);
+        addAttributes(eventAttributes, logInfo.getEventAttributeInfo().getAttributes(), true);
+    }
+
+    @Override
+    public Map<String, Class<?>> getTraceAttributes() {
+        return traceAttributes;
+    }
+
+    @Override
+    public Map<String, Class<?>> getEventAttributes() {
+        return eventAttributes;
+    }
+
+    @Override
+    public double getProgress() {
+        return log.isEmpty() ? 1 : (double) index / log.size();
+    }
+
+    @Override
+    public ImportTrace read() {
+        if (index >= log.size()) {
+            return null;
+        }
+
+        var trace = log.get(index++);
+
+        var result = new ImportTrace();
+        copyAttributes(trace.getAttributes(), result.getAttributes(), false);
+        result.setCaseId(Objects.toString(XLogUtils.getAttributeValue(trace.getAttributes().get(XConceptExtension.KEY_NAME)), null));
+
+        for (var event : trace) {
+            var attributes = event.getAttributes();
+            var timestamp = XLogUtils.getAttributeValue(attributes.get(XTimeExtension.KEY_TIMESTAMP));
+
+            var importEvent = new ImportEvent();
+            importEvent.setActivity(Objects.toString(XLogUtils.getAttributeValue(attributes.get(XConceptExtension.KEY_NAME)), null));
+            importEvent.setTimestamp(timestamp instanceof Date ? (Date) timestamp : null);
+            importEvent.setResource(Objects.toString(XLogUtils.getAttributeValue(attributes.get(XOrganizationalExtension.KEY_RESOURCE)), null));
+            importEvent.setLifecycle(Objects.toString(XLogUtils.getAttributeValue(attributes.get(XLifecycleExtension.KEY_MODEL)), null));
+            copyAttributes(attributes, importEvent.getAttributes(), true);
+
+            result.getEvents().add(importEvent);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release, the log is owned by the caller
+    }
+
+    private void addAttributes(Map<String, Class<?>> target, Collection<XAttribute> attributes, boolean skipStandard) {
+        for (var attribute : attributes) {
+            if (skipStandard && ImportEvent.isStandardAttribute(attribute.getKey())) {
+                continue;
+            }
+
+            var value = XLogUtils.getAttributeValue(attribute);
+            if (value != null && !(value instanceof Collection)) {
+                target.put(attribute.getKey(), value.getClass());
+            }
+        }
+    }
+
+    private void copyAttributes(XAttributeMap attributes, Map<String, Object> target, boolean skipStandard) {
+        for (var attribute : attributes.values()) {
+            if (skipStandard && ImportEvent.isStandardAttribute(attribute.getKey())) {
+                continue;
+            }
+
+            var value = XLogUtils.getAttributeValue(attribute);
+            if (value != null && !(value instanceof Collection)) {
+                target.put(attribute.getKey(), value);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.reader;
+
+import org.deckfour.xes.extension.std.XConceptExtension;
+import org.deckfour.xes.extension.std.XLifecycleExtension;
+import org.deckfour.xes.extension.std.XOrganizationalExtension;
+import org.deckfour.xes.extension.std.XTimeExtension;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streaming XES reader based on StAX. In contrast to the OpenXES parser, only the current trace is kept in memory.
+ */
+public class XesEventLogReader implements EventLogReader {
+
+    private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream inputStream;
+
+    private final XMLStreamReader xml;
+
+    private final DatatypeFactory datatypeFactory;
+
+    private final Map<String, Class<?>> traceAttributes = new LinkedHashMap<>();
+
+    private final Map<String, Class<?>> eventAttributes = new LinkedHashMap<>();
+
+    private boolean atTrace = false;
+
+    // bytes read from the underlying stream and its size, if known
+    private CountingInputStream counter;
+    private long size = -1;
+
+    public XesEventLogReader(InputStream inputStream) throws IOException {
+        this.inputStream = inputStream;
+
+        try {
+            var factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+            this.xml = factory.createXMLStreamReader(inputStream);
+            this.datatypeFactory = DatatypeFactory.newInstance();
+
+            readHeader();
+        } catch (XMLStreamException | DatatypeConfigurationException ex) {
+            throw new IOException("Could not read XES header", ex);
+        }
+    }
+
+    /**
+     * Opens a log from the file system. (xes and xes.gz files are supported)
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static XesEventLogReader open(String file) throws IOException {
+        return open(new FileInputStream(file), Files.size(Path.of(file)), file.endsWith(".gz"));
+    }
+
+    /**
+     * Opens a log from a stream, e.g. while it is uploaded. The size of the stream is used to report the progress,
+     * if it is unknown -1 can be passed.
+     *
+     * @param stream
+     * @param size
+     * @param compressed
+     * @return
+     * @throws IOException
+     */
+    public static XesEventLogReader open(InputStream stream, long size, boolean compressed) throws IOException {
+        var counter = new CountingInputStream(stream);
+        InputStream inputStream = new BufferedInputStream(counter, STREAM_BUFFER_SIZE);
+
+        if (compressed) {
+            inputStream = new GZIPInputStream(inputStream, STREAM_BUFFER_SIZE);
+        }
+
+        var reader = new XesEventLogReader(inputStream);
+        reader.counter = counter;
+        reader.size = size;
+        return reader;
+    }
+
+    @Override
+    public Map<String, Class<?>> getTraceAttributes() {
+        return traceAttributes;
+    }
+
+    @Override
+    public Map<String, Class<?>> getEventAttributes() {
+        return eventAttributes;
+    }
+
+    @Override
+    public double getProgress() {
+        if (counter == null || size <= 0) {
+            return -1;
+        }
+        return Math.min(1, (double) counter.count / size);
+    }
+
+    @Override
+    public ImportTrace read() throws IOException {
+        try {
+            // advance to the next trace element
+            while (!atTrace) {
+                if (!xml.hasNext()) {
+                    return null;
+                }
+
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("trace")) {
+                    atTrace = true;
+                }
+            }
+
+            atTrace = false;
+            return readTrace();
+        } catch (XMLStreamException | IllegalArgumentException ex) {
+            throw new IOException("Could not read XES trace", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Reads everything up to the first trace and collects the global attribute declarations.
+     *
+     * @throws XMLStreamException
+     */
+    private void readHeader() throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+
+            var name = xml.getLocalName();
+            if (name.equals("trace")) {
+                atTrace = true;
+                return;
+            } else if (name.equals("global")) {
+                var scope = xml.getAttributeValue(null, "scope");
+                readGlobal("trace".equals(scope) ? traceAttributes : eventAttributes, "trace".equals(scope));
+            }
+        }
+    }
+
+    private void readGlobal(Map<String, Class<?>> target, boolean traceScope) throws XMLStreamException {
+        while (xml.hasNext()) {
+            var type = xml.next();
+
+            if (type == XMLStreamConstants.END_ELEMENT) {
+                return;
+            } else if (type == XMLStreamConstants.START_ELEMENT) {
+                var key = xml.getAttributeValue(null, "key");
+                var value = readAttributeValue();
+
+                if (key != null && value != null && (traceScope || !ImportEvent.isStandardAttribute(key))) {
+                    target.put(key, value.getClass());
+                }
+            }
+        }
+    }
+
+    private ImportTrace readTrace() throws XMLStreamException {
+        var trace = new ImportTrace();
+
+        while (xml.hasNext()) {
+            var type = xml.next();
+
+            if (type == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (type == XMLStreamConstants.START_ELEMENT) {
+                if (xml.getLocalName().equals("event")) {
+                    trace.getEvents().add(readEvent());
+                } else {
+                    readAttribute(trace.getAttributes());
+                }
+            }
+        }
+
+        trace.setCaseId(Objects.toString(trace.getAttributes().get(XConceptExtension.KEY_NAME), null));
+        return trace;
+    }
+
+    private ImportEvent readEvent() throws XMLStreamException {
+        var event = new ImportEvent();
+        var attributes = new LinkedHashMap<String, Object>();
+
+        while (xml.hasNext()) {
+            var type = xml.next();
+
+            if (type == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (type == XMLStreamConstants.START_ELEMENT) {
+                readAttribute(attributes);
+            }
+        }
+
+        event.setActivity(Objects.toString(attributes.get(XConceptExtension.KEY_NAME), null));
+        var timestamp = attributes.get(XTimeExtension.KEY_TIMESTAMP);
+        event.setTimestamp(timestamp instanceof Date ? (Date) timestamp : null);
+        event.setResource(Objects.toString(attributes.get(XOrganizationalExtension.KEY_RESOURCE), null));
+        event.setLifecycle(Objects.toString(attributes.get(XLifecycleExtension.KEY_MODEL), null));
+
+        attributes.forEach((key, value) -> {
+            if (!ImportEvent.isStandardAttribute(key)) {
+                event.getAttributes().put(key, value);
+            }
+        });
+
+        return event;
+    }
+
+    private void readAttribute(Map<String, Object> target) throws XMLStreamException {
+        var key = xml.getAttributeValue(null, "key");
+        var value = readAttributeValue();
+
+        if (key != null && value != null) {
+            target.put(key, value);
+        }
+    }
+
+    /**
+     * Parses the attribute the reader is positioned on and skips all nested attributes. Lists and containers are not
+     * supported and return null.
+     *
+     * @return
+     * @throws XMLStreamException
+     */
+    private Object readAttributeValue() throws XMLStreamException {
+        var type = xml.getLocalName();
+        var value = xml.getAttributeValue(null, "value");
+
+        skipElement();
+
+        if (value == null) {
+            return null;
+        }
+
+        switch (type) {
+            case "string":
+            case "id":
+                return value;
+            case "date":
+                return parseDate(value);
+            case "int":
+                return Long.parseLong(value.trim());
+            case "float":
+                return Double.parseDouble(value.trim());
+            case "boolean":
+                return Boolean.parseBoolean(value.trim());
+            default:
+                return null;
+        }
+    }
+
+    private Date parseDate(String value) {
+        try {
+            return Date.from(OffsetDateTime.parse(value.trim()).toInstant());
+        } catch (DateTimeParseException ex) {
+            // dates without time zone or with reduced precision
+            return datatypeFactory.newXMLGregorianCalendar(value.trim()).toGregorianCalendar().getTime();
+        }
+    }
+
+    /**
+     * Moves the reader to the end element of the current element.
+     *
+     * @throws XMLStreamException
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            var type = xml.next();
+
+            if (type == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (type == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes that are read from the underlying stream. Compressed files are counted before decompression.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            var result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var result = super.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            var result = super.skip(n);
+            count += result;
+            return result;
+        }
+    }
+}
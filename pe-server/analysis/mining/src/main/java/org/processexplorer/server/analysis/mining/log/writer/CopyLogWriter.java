@@ -0,0 +1,113 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.writer;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes rows using the PostgreSQL COPY protocol. The rows are encoded as CSV and streamed with a single COPY FROM
+ * STDIN per call, which avoids the per statement overhead of batched inserts.
+ */
+public class CopyLogWriter implements LogWriter {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CopyLogWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void write(String table, List<String> columns, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        var sql = "COPY " + table + " (" + String.join(",", columns) + ") FROM STDIN WITH (FORMAT csv)";
+        var csv = encode(rows);
+
+        jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try {
+                var copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+                return copyManager.copyIn(sql, new CharArrayReader(csv.toCharArray()));
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+    }
+
+    /**
+     * Encodes the rows as CSV. Null values are written as unquoted empty fields, all strings are quoted so that empty
+     * strings are not read as null.
+     *
+     * @param rows
+     * @return
+     */
+    private CharArrayWriter encode(List<Object[]> rows) {
+        var csv = new CharArrayWriter(rows.size() * 64);
+
+        for (var row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    csv.append(',');
+                }
+
+                appendValue(csv, row[i]);
+            }
+            csv.append('\n');
+        }
+
+        return csv;
+    }
+
+    private void appendValue(CharArrayWriter csv, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        if (value instanceof Number || value instanceof Boolean) {
+            csv.append(value.toString());
+        } else if (value instanceof Date) {
+            // same local time representation as used by the jdbc driver for batched inserts
+            var timestamp = value instanceof Timestamp ? (Timestamp) value : new Timestamp(((Date) value).getTime());
+            csv.append(timestamp.toString());
+        } else {
+            var text = value.toString();
+
+            csv.append('"');
+            for (int i = 0; i < text.length(); i++) {
+                var c = text.charAt(i);
+                if (c == '"') {
+                    csv.append('"');
+                }
+                csv.append(c);
+            }
+            csv.append('"');
+        }
+    }
+}
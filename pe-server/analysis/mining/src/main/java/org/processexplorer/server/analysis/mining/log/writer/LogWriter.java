@@ -0,0 +1,37 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.mining.log.writer;
+
+import java.util.List;
+
+/**
+ * Writes buffered rows of the import to a database table.
+ */
+public interface LogWriter {
+
+    /**
+     * Appends the given rows to the table. The values of each row are in the same order as the columns.
+     *
+     * @param table
+     * @param columns
+     * @param rows
+     */
+    void write(String table, List<String> columns, List<Object[]> rows);
+
+}
@@ -0,0 +1,73 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Infers the types of csv columns from samples and converts their values.
+ */
+class CsvColumnTest {
+
+    @Test
+    void infersMostSpecificType() {
+        assertEquals(CsvColumn.Type.LONG, infer("1", " 2 ", "", "-3").getType());
+        assertEquals(CsvColumn.Type.DOUBLE, infer("1", "2.5", "1e3").getType());
+        assertEquals(CsvColumn.Type.TIMESTAMP, infer("2020-01-13", "", "2020-02-01").getType());
+        assertEquals(CsvColumn.Type.CATEGORICAL, infer("1", "A").getType());
+        assertEquals(CsvColumn.Type.CATEGORICAL, infer("", " ").getType());
+        assertEquals(CsvColumn.Type.CATEGORICAL, infer().getType());
+    }
+
+    @Test
+    void keepsColumnProperties() {
+        var column = CsvColumn.infer(3, "amount", List.of("1"), true);
+
+        assertEquals(3, column.getIndex());
+        assertEquals("amount", column.getName());
+        assertTrue(column.isCaseAttribute());
+    }
+
+    @Test
+    void convertsValues() {
+        assertEquals(2L, infer("1").convert(" 2 "));
+        assertEquals(2.5, infer("1.5").convert("2.5"));
+        assertEquals(Timestamp.valueOf("2020-01-13 00:00:00"), infer("2020-01-01").convert("2020-01-13"));
+        assertEquals("A", infer("A").convert("A"));
+        assertEquals(1024, ((String) infer("A").convert("x".repeat(2000))).length());
+        assertNull(infer("1").convert(""));
+        assertNull(infer("1").convert(null));
+    }
+
+    @Test
+    void rejectsValuesOfOtherType() {
+        assertThrows(IllegalArgumentException.class, () -> infer("2020-01-01").convert("13.01.2020"));
+        assertThrows(NumberFormatException.class, () -> infer("1").convert("A"));
+    }
+
+    private static CsvColumn infer(String... values) {
+        return CsvColumn.infer(0, "column", List.of(values), false);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Splits csv chunks with quoted fields, different line endings and empty lines into records.
+ */
+class CsvRecordParserTest {
+
+    @Test
+    void splitsRecords() {
+        assertEquals(List.of(List.of("case", "activity", ""), List.of("1", "A", "x")),
+                parse("case,activity,\n1,A,x", ','));
+        assertEquals(List.of(List.of("1", "A;B")), parse("1;\"A;B\"", ';'));
+    }
+
+    @Test
+    void readsQuotedFields() {
+        assertEquals(List.of(List.of("1", "say \"hi\"", "a,b"), List.of("2", "two\nlines", "")),
+                parse("1,\"say \"\"hi\"\"\",\"a,b\"\n2,\"two\nlines\",\"\"", ','));
+    }
+
+    @Test
+    void skipsLineBreaksAndByteOrderMark() {
+        assertEquals(List.of(List.of("a", "b"), List.of("c", "d")), parse("\uFEFFa,b\r\n\r\n\nc,d\r\n", ','));
+        assertEquals(List.of(), parse("\r\n\n", ','));
+    }
+
+    @Test
+    void returnsPositionOfNextRecord() {
+        var parser = new CsvRecordParser("a,b\nc,d\n", ',', '"');
+
+        assertEquals(0, parser.getPosition());
+        parser.next();
+        assertEquals(4, parser.getPosition());
+        parser.next();
+        assertEquals(8, parser.getPosition());
+        assertNull(parser.next());
+    }
+
+    private static List<List<String>> parse(String text, char delimiter) {
+        var parser = new CsvRecordParser(text, delimiter, '"');
+        var result = new ArrayList<List<String>>();
+        for (var record = parser.next(); record != null; record = parser.next()) {
+            result.add(record);
+        }
+        return result;
+    }
+}
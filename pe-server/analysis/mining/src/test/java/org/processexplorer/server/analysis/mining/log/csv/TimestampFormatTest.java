@@ -0,0 +1,68 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.mining.log.csv;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Parses timestamps of the supported formats and detects the format of a sample.
+ */
+class TimestampFormatTest {
+
+    @Test
+    void parsesLocalTimestamps() {
+        assertEquals(Timestamp.valueOf("2020-01-13 10:15:30.123"), new TimestampFormat("yyyy-MM-dd'T'HH:mm[:ss][.SSSSSSSSS][.SSSSSS][.SSS][XXX][X]").parse("2020-01-13T10:15:30.123"));
+        assertEquals(Timestamp.valueOf("2020-01-13 10:15:00"), new TimestampFormat("dd.MM.yyyy HH:mm[:ss][.SSS]").parse(" 13.01.2020 10:15 "));
+        assertEquals(Timestamp.valueOf("2020-01-13 00:00:00"), new TimestampFormat("yyyy-MM-dd").parse("2020-01-13"));
+    }
+
+    @Test
+    void convertsTimestampsWithTimeZone() {
+        var format = new TimestampFormat("yyyy-MM-dd HH:mm[:ss][.SSSSSSSSS][.SSSSSS][.SSS][XXX][X]");
+
+        assertEquals(Timestamp.from(Instant.parse("2020-01-13T10:15:30Z")), format.parse("2020-01-13 10:15:30Z"));
+        assertEquals(Timestamp.from(Instant.parse("2020-01-13T08:15:30Z")), format.parse("2020-01-13 10:15:30+02:00"));
+    }
+
+    @Test
+    void returnsNullForOtherValues() {
+        var format = new TimestampFormat("dd.MM.yyyy HH:mm[:ss][.SSS]");
+
+        assertNull(format.parse("2020-01-13 10:15"));
+        assertNull(format.parse("32.01.2020 10:15"));
+        assertNull(format.parse("text"));
+    }
+
+    @Test
+    void detectsFormatOfAllValues() {
+        assertEquals("yyyy-MM-dd'T'HH:mm[:ss][.SSSSSSSSS][.SSSSSS][.SSS][XXX][X]",
+                TimestampFormat.detect(List.of("2020-01-13T10:15:30", "2020-01-13T10:15:30.500+01:00")).getPattern());
+        assertEquals("dd/MM/yyyy", TimestampFormat.detect(List.of("01/02/2020", "13/02/2020")).getPattern());
+        assertEquals("MM/dd/yyyy", TimestampFormat.detect(List.of("01/02/2020", "02/13/2020")).getPattern());
+        assertNull(TimestampFormat.detect(List.of("13.01.2020", "2020-01-13")));
+        assertNull(TimestampFormat.detect(List.of()));
+    }
+}
@@ -205,6 +205,7 @@ public class MultiPerspectiveTraceClustering {
             }
         }
         jdbcTemplate.batchUpdate(sql, batch);
+        queryService.invalidate(logName);
     }
 
     public EventLogClusters mine(double minSupport, int numClusters, double weight) {
@@ -22,6 +22,8 @@ import com.healthmarketscience.sqlbuilder.AlterTableQuery;
 import org.processexplorer.server.analysis.ml.metric.SequenceMetrics;
 import org.processexplorer.server.analysis.query.DatabaseModel;
 import org.processexplorer.server.analysis.query.QueryService;
+import org.processexplorer.server.analysis.query.memory.ColumnarQueryEngine;
+import org.processexplorer.server.analysis.query.model.Variant;
 import org.processexplorer.server.common.persistence.entity.EventLog;
 import org.processexplorer.server.common.persistence.entity.EventLogFeature;
 import org.processexplorer.server.common.persistence.repository.EventLogFeatureRepository;
@@ -38,6 +40,8 @@ import smile.clustering.HierarchicalClustering;
 import smile.clustering.linkage.WardLinkage;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.Future;
 
 /**
@@ -52,6 +56,7 @@ public class SimpleTraceClustering {
     private final EventLogFeatureRepository eventLogFeatureRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final QueryService queryService;
+    private final ColumnarQueryEngine columnarQueryEngine;
     private final JdbcTemplate jdbcTemplate;
 
     @Autowired
@@ -59,11 +64,13 @@ public class SimpleTraceClustering {
                                  EventLogFeatureRepository eventLogFeatureRepository,
                                  SimpMessagingTemplate messagingTemplate,
                                  QueryService queryService,
+                                 ColumnarQueryEngine columnarQueryEngine,
                                  JdbcTemplate jdbcTemplate) {
         this.eventLogRepository = eventLogRepository;
         this.eventLogFeatureRepository = eventLogFeatureRepository;
         this.messagingTemplate = messagingTemplate;
         this.queryService = queryService;
+        this.columnarQueryEngine = columnarQueryEngine;
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -81,7 +88,7 @@ public class SimpleTraceClustering {
 
         // compute distance matrix
         try {
-            var variants = queryService.getAllPaths(logName, new ArrayList<>());
+            var variants = getVariants(logName);
             double[][] distanceMatrix = new double[variants.size()][variants.size()];
 
             for (int i = 0; i < variants.size(); i++) {
@@ -122,6 +129,7 @@ public class SimpleTraceClustering {
                 batch.add(new Object[]{result[i], variants.get(i).getId()});
             }
             jdbcTemplate.batchUpdate(sql, batch);
+            queryService.invalidate(logName);
         } catch (Exception ex) {
             logger.error("Error during trace clustering.", ex);
 
@@ -151,4 +159,37 @@ public class SimpleTraceClustering {
         return new AsyncResult<>(eventLog);
     }
 
+    /**
+     * Returns the variants of a log with their paths. They are read from the snapshot of the log, if snapshots are
+     * enabled, otherwise from the database.
+     *
+     * @param logName
+     * @return
+     */
+    private List<Variant> getVariants(String logName) {
+        var snapshot = columnarQueryEngine.openSnapshot(logName);
+        if (snapshot == null) {
+            return queryService.getAllPaths(logName, new ArrayList<>());
+        }
+
+        var occurrences = new TreeMap<Integer, Long>();
+        for (int i = 0; i < snapshot.getNumCases(); i++) {
+            occurrences.merge(snapshot.getVariantId(i), 1L, Long::sum);
+        }
+
+        var result = new ArrayList<Variant>();
+        for (var entry : occurrences.entrySet()) {
+            var path = snapshot.getVariantPath(entry.getKey());
+
+            var variant = new Variant();
+            variant.setId(entry.getKey());
+            variant.setOccurrence(entry.getValue());
+            variant.setPathIndex(path == null ? new int[0] : path);
+            result.add(variant);
+        }
+
+        logger.debug("Read {} variants of \"{}\" from its snapshot", result.size(), logName);
+        return result;
+    }
+
 }
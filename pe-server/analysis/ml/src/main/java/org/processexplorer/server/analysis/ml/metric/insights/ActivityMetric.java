@@ -71,7 +71,7 @@ public class ActivityMetric extends ClusterMetric {
                 .addJoins(SelectQuery.JoinType.INNER, db.eventCaseJoin, db.caseCaseAttributeJoin)
                 .addGroupings(db.eventEventCol);
 
-        var result = jdbcTemplate.queryForList(sql.validate().toString());
+        var result = jdbcTemplate.queryForList(sql.validate().toString(), db.getParameters());
 
         var measures = new HashMap<ClusterMetric.Measure, Double>();
 
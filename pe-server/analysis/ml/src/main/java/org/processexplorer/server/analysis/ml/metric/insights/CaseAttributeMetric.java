@@ -85,7 +85,7 @@ public class CaseAttributeMetric extends ClusterMetric {
                 .addCondition(conditions)
                 .addCustomGroupings(calculation);
 
-        var result = jdbcTemplate.queryForList(inner_sql.validate().toString());
+        var result = jdbcTemplate.queryForList(inner_sql.validate().toString(), db.getParameters());
         var measures = new HashMap<ClusterMetric.Measure, Double>();
 
         for (var item : result) {
@@ -20,7 +20,6 @@ package org.processexplorer.server.analysis.ml.metric.insights;
 
 import com.healthmarketscience.sqlbuilder.*;
 import com.healthmarketscience.sqlbuilder.custom.postgresql.PgExtractDatePart;
-import org.processexplorer.server.analysis.query.DatabaseModel;
 import org.processexplorer.server.analysis.query.codes.VisualizationCodes;
 import org.processexplorer.server.analysis.query.model.Insight;
 import org.processexplorer.server.analysis.query.model.InsightValueFormat;
@@ -38,11 +37,8 @@ import static org.processexplorer.server.analysis.query.codes.DomainCodes.TIME_P
  */
 public class CaseDurationMetric extends CaseMetric<CaseMetric.Measure, String> {
 
-    private DatabaseModel db;
-
     public CaseDurationMetric(String logName) {
         super(logName);
-        this.db = new DatabaseModel(logName);
     }
 
     @Override
@@ -77,7 +73,7 @@ public class CaseDurationMetric extends CaseMetric<CaseMetric.Measure, String> {
                 .addCustomFromTable(AliasedObject.toAliasedObject(new CustomExpression(inner_sql.toString()), "a"))
                 .addHaving(new CustomCondition("stddev(a.expr) > 0"));
 
-        var result = jdbcTemplate.queryForList(outer_sql.validate().toString());
+        var result = jdbcTemplate.queryForList(outer_sql.validate().toString(), db.getParameters());
         var measures = new HashMap<String, CaseMetric.Measure>();
 
         for (var item : result) {
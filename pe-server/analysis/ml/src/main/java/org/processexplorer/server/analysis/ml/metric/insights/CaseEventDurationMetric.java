@@ -20,7 +20,6 @@ package org.processexplorer.server.analysis.ml.metric.insights;
 
 import com.healthmarketscience.sqlbuilder.*;
 import com.healthmarketscience.sqlbuilder.custom.postgresql.PgExtractDatePart;
-import org.processexplorer.server.analysis.query.DatabaseModel;
 import org.processexplorer.server.analysis.query.codes.VisualizationCodes;
 import org.processexplorer.server.analysis.query.db.PostgresFunctionCall;
 import org.processexplorer.server.analysis.query.model.Insight;
@@ -39,11 +38,8 @@ import static org.processexplorer.server.analysis.query.codes.DomainCodes.TIME_P
  */
 public class CaseEventDurationMetric extends CaseMetric<CaseMetric.Measure, String> {
 
-    private DatabaseModel db;
-
     public CaseEventDurationMetric(String logName) {
         super(logName);
-        this.db = new DatabaseModel(logName);
     }
 
     @Override
@@ -91,7 +87,7 @@ public class CaseEventDurationMetric extends CaseMetric<CaseMetric.Measure, Stri
                 .addCustomGroupings(new CustomExpression("a.event_id"), sourceActivityTable.findColumnByName("name"))
                 .addHaving(new CustomCondition("stddev(a.expr) > 0"));
 
-        var result = jdbcTemplate.queryForList(db.getGraphTable("event", "-1", "-2") + outer_sql.validate().toString());
+        var result = jdbcTemplate.queryForList(outer_sql.validate().toString(), db.getParameters());
         var measures = new HashMap<String, CaseMetric.Measure>();
 
         for (var item : result) {
@@ -19,7 +19,6 @@
 package org.processexplorer.server.analysis.ml.metric.insights;
 
 import com.healthmarketscience.sqlbuilder.*;
-import org.processexplorer.server.analysis.query.DatabaseModel;
 import org.processexplorer.server.analysis.query.codes.VisualizationCodes;
 import org.processexplorer.server.analysis.query.model.Insight;
 import org.processexplorer.server.analysis.query.model.InsightValueFormat;
@@ -37,11 +36,8 @@ import static org.processexplorer.server.analysis.query.codes.DomainCodes.TIME_P
  */
 public class CaseLengthMetric extends CaseMetric<CaseMetric.Measure, String> {
 
-    private DatabaseModel db;
-
     public CaseLengthMetric(String logName) {
         super(logName);
-        this.db = new DatabaseModel(logName);
     }
 
     @Override
@@ -76,7 +72,7 @@ public class CaseLengthMetric extends CaseMetric<CaseMetric.Measure, String> {
                 .addCustomFromTable(AliasedObject.toAliasedObject(new CustomExpression(inner_sql.toString()), "a"))
                 .addHaving(new CustomCondition("stddev(a.expr) > 0"));
 
-        var result = jdbcTemplate.queryForList(outer_sql.validate().toString());
+        var result = jdbcTemplate.queryForList(outer_sql.validate().toString(), db.getParameters());
         var measures = new HashMap<String, CaseMetric.Measure>();
 
         for (var item : result) {
@@ -22,8 +22,9 @@ import com.healthmarketscience.sqlbuilder.ComboCondition;
 import com.healthmarketscience.sqlbuilder.Condition;
 import com.healthmarketscience.sqlbuilder.NotCondition;
 import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.condition.ConditionOptimizer;
 import org.processexplorer.server.analysis.query.model.Insight;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -35,7 +36,7 @@ import java.util.Map;
 public abstract class CaseMetric<X extends CaseMetric.Measure, Y> implements InsightMetric {
 
     protected DatabaseModel db;
-    protected JdbcTemplate jdbcTemplate;
+    protected NamedParameterJdbcTemplate jdbcTemplate;
     protected final String logName;
 
     protected CaseMetric(String logName) {
@@ -44,7 +45,7 @@ public abstract class CaseMetric<X extends CaseMetric.Measure, Y> implements Ins
     }
 
     @Override
-    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+    public void setJdbcTemplate(NamedParameterJdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -58,7 +59,7 @@ public abstract class CaseMetric<X extends CaseMetric.Measure, Y> implements Ins
         var calculation = getExpression();
 
         var conditions = new ArrayList<>();
-        for (var rule : queryConditions) {
+        for (var rule : ConditionOptimizer.optimize(queryConditions)) {
             conditions.add(rule.getCondition(db));
         }
 
@@ -23,8 +23,9 @@ import com.healthmarketscience.sqlbuilder.Condition;
 import com.healthmarketscience.sqlbuilder.NotCondition;
 import org.processexplorer.server.analysis.ml.metric.StatisticMetrics;
 import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.condition.ConditionOptimizer;
 import org.processexplorer.server.analysis.query.model.Insight;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import java.util.*;
 
@@ -43,7 +44,7 @@ public abstract class ClusterMetric implements InsightMetric {
 
     protected DatabaseModel db;
 
-    protected JdbcTemplate jdbcTemplate;
+    protected NamedParameterJdbcTemplate jdbcTemplate;
 
     protected String logName;
 
@@ -53,7 +54,7 @@ public abstract class ClusterMetric implements InsightMetric {
     }
 
     @Override
-    public void setJdbcTemplate(JdbcTemplate jdbcTemplate) {
+    public void setJdbcTemplate(NamedParameterJdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
@@ -62,7 +63,7 @@ public abstract class ClusterMetric implements InsightMetric {
         var calculation = getExpression();
 
         var conditions = new ArrayList<>();
-        for (var rule : queryConditions) {
+        for (var rule : ConditionOptimizer.optimize(queryConditions)) {
             conditions.add(rule.getCondition(db));
         }
 
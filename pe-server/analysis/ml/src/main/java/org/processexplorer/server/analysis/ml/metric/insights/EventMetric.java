@@ -42,7 +42,7 @@ public abstract class EventMetric extends ClusterMetric {
                 .addCustomGroupings(expr)
                 .addCondition(BinaryCondition.equalTo(db.eventEventCol, eventName));
 
-        var result = jdbcTemplate.queryForList(sql.validate().toString());
+        var result = jdbcTemplate.queryForList(sql.validate().toString(), db.getParameters());
         var measures = new HashMap<Measure, Double>();
 
         for (var item : result) {
@@ -20,13 +20,13 @@ package org.processexplorer.server.analysis.ml.metric.insights;
 
 import org.processexplorer.server.analysis.query.model.Insight;
 import org.processexplorer.server.analysis.query.condition.Condition;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
 import java.util.List;
 
 public interface InsightMetric {
 
-    void setJdbcTemplate(JdbcTemplate jdbcTemplate);
+    void setJdbcTemplate(NamedParameterJdbcTemplate jdbcTemplate);
 
     List<Insight> getInsights(List<Condition> conditions);
 
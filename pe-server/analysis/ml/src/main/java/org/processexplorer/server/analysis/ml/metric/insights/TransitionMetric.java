@@ -57,7 +57,7 @@ public abstract class TransitionMetric extends CaseMetric<CaseMetric.Measure, Tr
                 .addCustomGroupings("a.source", "a.target", "a.source_event_name", "a.target_event_name")
                 .addHaving(new CustomCondition("stddev(a.expr) > 0"));
 
-        var result = jdbcTemplate.queryForList(db.getGraphTable("event", "-1", "-2") + outer_sql.validate().toString());
+        var result = jdbcTemplate.queryForList(outer_sql.validate().toString(), db.getParameters());
         var measures = new HashMap<Edge, CaseMetric.Measure>();
 
         for (var item : result) {
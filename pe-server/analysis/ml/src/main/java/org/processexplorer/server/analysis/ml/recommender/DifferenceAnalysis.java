@@ -20,12 +20,12 @@ package org.processexplorer.server.analysis.ml.recommender;
 
 import org.processexplorer.server.analysis.ml.metric.insights.*;
 import org.processexplorer.server.analysis.query.QueryService;
+import org.processexplorer.server.analysis.query.db.QueryBackend;
 import org.processexplorer.server.analysis.query.model.Insight;
 import org.processexplorer.server.analysis.query.condition.Condition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
@@ -37,12 +37,12 @@ public class DifferenceAnalysis {
     private Logger logger = LoggerFactory.getLogger(DifferenceAnalysis.class);
 
     private QueryService queryService;
-    private JdbcTemplate jdbcTemplate;
+    private QueryBackend queryBackend;
 
     @Autowired
-    public DifferenceAnalysis(QueryService queryService, JdbcTemplate jdbcTemplate) {
+    public DifferenceAnalysis(QueryService queryService, QueryBackend queryBackend) {
         this.queryService = queryService;
-        this.jdbcTemplate = jdbcTemplate;
+        this.queryBackend = queryBackend;
     }
 
     public List<Insight> getInsights(List<InsightMetric> metrics, List<Condition> conditions) {
@@ -50,7 +50,7 @@ public class DifferenceAnalysis {
 
         metrics.parallelStream().forEach(metric -> {
             logger.debug("Compute {} metric", metric.getClass().getCanonicalName());
-            metric.setJdbcTemplate(jdbcTemplate);
+            metric.setJdbcTemplate(queryBackend.getNamedParameterJdbcTemplate());
 
             var insights = metric.getInsights(conditions);
             if (insights.size() > 0) {
@@ -35,6 +35,10 @@ public class DatabaseConstants {
 
     private static final String GRAPH_TABLE = "_graph";
 
+    private static final String VARIANT_GRAPH_TABLE = "_variant_graph";
+
+    private static final String RESOURCES_TABLE = "_resources";
+
     public static String getActivityTableName(String logName) {
         return logName.toLowerCase() + DatabaseConstants.ACTIVITIES_TABLE;
     }
@@ -51,10 +55,18 @@ public class DatabaseConstants {
         return logName.toLowerCase() + DatabaseConstants.GRAPH_TABLE;
     }
 
+    public static String getVariantGraphTableName(String logName) {
+        return logName.toLowerCase() + DatabaseConstants.VARIANT_GRAPH_TABLE;
+    }
+
     public static String getCaseTableName(String logName) {
         return logName.toLowerCase() + CASE_TABLE;
     }
 
+    public static String getResourceTableName(String logName) {
+        return logName.toLowerCase() + RESOURCES_TABLE;
+    }
+
     public static String getVariantsTableName(String logName) {
         return logName.toLowerCase() + VARIANTS_TABLE;
     }
@@ -18,7 +18,23 @@
 
 package org.processexplorer.server.analysis.query;
 
+import com.healthmarketscience.sqlbuilder.BinaryCondition;
+import com.healthmarketscience.sqlbuilder.Condition;
+import com.healthmarketscience.sqlbuilder.CustomCondition;
+import com.healthmarketscience.sqlbuilder.CustomSql;
+import com.healthmarketscience.sqlbuilder.UnaryCondition;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.*;
+import org.processexplorer.server.analysis.query.catalog.AttributeCatalog;
+import org.processexplorer.server.analysis.query.catalog.VariantCatalog;
+import org.processexplorer.server.analysis.query.condition.PathCondition;
+import org.processexplorer.server.analysis.query.condition.ResourcePathCondition;
+import org.springframework.jdbc.core.SqlParameterValue;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static org.processexplorer.server.analysis.query.DatabaseConstants.*;
 
@@ -29,6 +45,15 @@ public class DatabaseModel {
 
     private final String logName;
 
+    // paths of the variants, path conditions are matched by the database if not available
+    private VariantCatalog variantCatalog;
+
+    // types of the case attribute columns, condition values are bound as they are if not available
+    private AttributeCatalog attributeCatalog;
+
+    // values of the conditions, which are bound to the named parameters of the generated queries
+    private final Map<String, Object> parameters = new HashMap<>();
+
     private DbSpec spec = new DbSpec();
     private DbSchema schema = spec.addDefaultSchema();
 
@@ -37,6 +62,11 @@ public class DatabaseModel {
     public DbColumn activityIdCol;
     public DbColumn activityNameCol;
 
+    // resource table
+    public DbTable resourceTable;
+    public DbColumn resourceIdCol;
+    public DbColumn resourceNameCol;
+
     // case table
     public DbTable caseTable;
     public DbColumn caseCaseIdCol;
@@ -50,6 +80,13 @@ public class DatabaseModel {
     public DbColumn caseResourceVariantCol;
     public DbColumn caseResourceVariantIdCol;
 
+    // variants table
+    public DbTable variantsTable;
+    public DbColumn variantsIdCol;
+    public DbColumn variantsPathCol;
+    public DbColumn variantsLengthCol;
+    public DbColumn variantsOccurrenceCol;
+
     // events table
     public DbTable eventTable;
     public DbColumn eventCaseIdCol;
@@ -63,9 +100,22 @@ public class DatabaseModel {
     public DbColumn graphCaseIdCol;
     public DbColumn graphSourceCol;
     public DbColumn graphTargetCol;
+    public DbColumn graphSourceResourceCol;
+    public DbColumn graphTargetResourceCol;
     public DbColumn graphSourceTimestampCol;
     public DbColumn graphTargetTimestampCol;
 
+    // variant graph table
+    public DbTable variantGraphTable;
+    public DbColumn variantGraphVariantIdCol;
+    public DbColumn variantGraphSourceCol;
+    public DbColumn variantGraphTargetCol;
+    public DbColumn variantGraphOccurrenceCol;
+    public DbColumn variantGraphNumDurationsCol;
+    public DbColumn variantGraphSumDurationCol;
+    public DbColumn variantGraphMinDurationCol;
+    public DbColumn variantGraphMaxDurationCol;
+
     // case attribute table
     public DbTable caseAttributeTable;
     public DbColumn caseAttributeCaseIdCol;
@@ -73,6 +123,7 @@ public class DatabaseModel {
 
     // joints
     public DbJoin caseCaseAttributeJoin;
+    public DbJoin caseVariantJoin;
 
     public DbJoin graphCaseJoin;
     public DbJoin graphCaseAttributeJoin;
@@ -80,6 +131,7 @@ public class DatabaseModel {
     public DbJoin eventCaseJoin;
     public DbJoin eventCaseAttributeJoin;
     public DbJoin eventActivityJoin;
+    public DbJoin eventResourceJoin;
 
     public DatabaseModel(String logName) {
         this.logName = logName;
@@ -90,6 +142,12 @@ public class DatabaseModel {
         activityNameCol = activityTable.addColumn("name", "varchar", 1024);
         activityTable.primaryKey(getActivityTableName(logName) + "_pk", "id");
 
+        // resource table
+        resourceTable = schema.addTable(getResourceTableName(logName));
+        resourceIdCol = resourceTable.addColumn("id", "integer", null);
+        resourceNameCol = resourceTable.addColumn("name", "varchar", 1024);
+        resourceTable.primaryKey(getResourceTableName(logName) + "_pk", "id");
+
         // case table
         caseTable = schema.addTable(getCaseTableName(logName));
         caseCaseIdCol = caseTable.addColumn("case_id", "integer", null);
@@ -98,17 +156,24 @@ public class DatabaseModel {
         caseNumEventsCol = caseTable.addColumn("num_events", "bigint", null);
         caseNumUsersCol = caseTable.addColumn("num_users", "bigint", null);
         caseDurationCol = caseTable.addColumn("total_duration", "interval", null);
-        caseVariantIdCol = caseTable.addColumn("variant_id", "integer", null);
+        caseVariantIdCol = caseTable.addColumn("variant_id", "bigint", null);
         caseVariantCol = caseTable.addColumn("variant", "text", null);
         caseResourceVariantCol = caseTable.addColumn("resource_variant", "text", null);
         caseResourceVariantIdCol = caseTable.addColumn("resource_variant_id", "integer", null);
 
+        // variants table
+        variantsTable = schema.addTable(getVariantsTableName(logName));
+        variantsIdCol = variantsTable.addColumn("id", "bigint", null);
+        variantsPathCol = variantsTable.addColumn("path", "integer[]", null);
+        variantsLengthCol = variantsTable.addColumn("length", "integer", null);
+        variantsOccurrenceCol = variantsTable.addColumn("occurrence", "bigint", null);
+
         // events table
         eventTable = schema.addTable(getEventsTableName(logName));
         eventCaseIdCol = eventTable.addColumn("case_id", "integer", null);
-        eventEventCol = eventTable.addColumn("event", "bigint", null);
+        eventEventCol = eventTable.addColumn("event", "integer", null);
         eventTimestampCol = eventTable.addColumn("timestamp", "timestamp", null);
-        eventResourceCol = eventTable.addColumn("resource", "varchar", 1024);
+        eventResourceCol = eventTable.addColumn("resource", "integer", null);
         eventLifecycleCol = eventTable.addColumn("lifecycle", "varchar", 1024);
 
         // graph table
@@ -116,9 +181,22 @@ public class DatabaseModel {
         graphCaseIdCol = graphTable.addColumn("case_id", "integer", null);
         graphSourceCol = graphTable.addColumn("source", "integer", null);
         graphTargetCol = graphTable.addColumn("target", "integer", null);
+        graphSourceResourceCol = graphTable.addColumn("source_resource", "integer", null);
+        graphTargetResourceCol = graphTable.addColumn("target_resource", "integer", null);
         graphSourceTimestampCol = graphTable.addColumn("source_timestamp", "timestamp", null);
         graphTargetTimestampCol = graphTable.addColumn("target_timestamp", "timestamp", null);
 
+        // variant graph table
+        variantGraphTable = schema.addTable(getVariantGraphTableName(logName));
+        variantGraphVariantIdCol = variantGraphTable.addColumn("variant_id", "bigint", null);
+        variantGraphSourceCol = variantGraphTable.addColumn("source", "integer", null);
+        variantGraphTargetCol = variantGraphTable.addColumn("target", "integer", null);
+        variantGraphOccurrenceCol = variantGraphTable.addColumn("occurrence", "bigint", null);
+        variantGraphNumDurationsCol = variantGraphTable.addColumn("num_durations", "bigint", null);
+        variantGraphSumDurationCol = variantGraphTable.addColumn("sum_duration", "double precision", null);
+        variantGraphMinDurationCol = variantGraphTable.addColumn("min_duration", "double precision", null);
+        variantGraphMaxDurationCol = variantGraphTable.addColumn("max_duration", "double precision", null);
+
         // case attribute table
         caseAttributeTable = schema.addTable(getCaseAttributeTableName(logName));
         caseAttributeCaseIdCol = caseAttributeTable.addColumn("case_id", "integer", null);
@@ -135,6 +213,9 @@ public class DatabaseModel {
         caseCaseAttributeJoin = spec.addJoin(null, caseTable.getTableNameSQL(),
                 null, caseAttributeTable.getTableNameSQL(),
                 "case_id");
+        caseVariantJoin = spec.addJoin(null, caseTable.getTableNameSQL(),
+                null, variantsTable.getTableNameSQL(),
+                new String[]{"variant_id"}, new String[]{"id"});
 
         eventCaseJoin = spec.addJoin(null, eventTable.getTableNameSQL(),
                 null, caseTable.getTableNameSQL(),
@@ -145,13 +226,156 @@ public class DatabaseModel {
         eventActivityJoin = spec.addJoin(null, eventTable.getTableNameSQL(),
                 null, activityTable.getTableNameSQL(),
                 new String[]{"event"}, new String[]{"id"});
+        eventResourceJoin = spec.addJoin(null, eventTable.getTableNameSQL(),
+                null, resourceTable.getTableNameSQL(),
+                new String[]{"resource"}, new String[]{"id"});
+    }
+
+    public DatabaseModel(String logName, VariantCatalog variantCatalog) {
+        this(logName);
+        this.variantCatalog = variantCatalog;
+    }
+
+    public DatabaseModel(String logName, VariantCatalog variantCatalog, AttributeCatalog attributeCatalog) {
+        this(logName, variantCatalog);
+        this.attributeCatalog = attributeCatalog;
+    }
+
+    /**
+     * Binds a value to a new named parameter and returns its placeholder, which is used instead of the value in the
+     * generated query. Thus, queries of the same shape have the same text and their plans can be reused. Queries that
+     * contain placeholders have to be executed with the parameters of this model. Strings are bound untyped like the
+     * literals they replace, so the database infers their type from the compared column, e.g. timestamps or enums.
+     *
+     * @param value
+     * @return
+     */
+    public CustomSql bind(Object value) {
+        var name = "p" + parameters.size();
+        parameters.put(name, value instanceof String ? new SqlParameterValue(Types.OTHER, value) : value);
+        return new CustomSql(":" + name);
+    }
+
+    /**
+     * Binds all values to new named parameters, e.g. for IN lists.
+     *
+     * @param values
+     * @return
+     */
+    public Object[] bindAll(Object[] values) {
+        return Arrays.stream(values).map(this::bind).toArray();
+    }
+
+    /**
+     * Converts the values of an attribute condition into the type of the case attribute column and drops the values
+     * that the column can not hold. Returns null, if the type of the column is not known.
+     *
+     * @param attribute
+     * @param values
+     * @return
+     */
+    public Object[] encode(String attribute, Object[] values) {
+        return attributeCatalog == null ? null : attributeCatalog.encode(logName, attribute, values);
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns a condition on the variant id that selects the same cases as the path condition or null, if the paths
+     * of the variants are not available.
+     *
+     * @param condition
+     * @return
+     */
+    public Condition getVariantCondition(PathCondition condition) {
+        return variantCatalog == null ? null : getIdCondition(caseVariantIdCol, variantCatalog.partition(logName, condition));
+    }
+
+    /**
+     * Returns a condition on the resource variant id that selects the same cases as the path condition or null, if
+     * the paths of the resource variants are not available.
+     *
+     * @param condition
+     * @return
+     */
+    public Condition getResourceVariantCondition(ResourcePathCondition condition) {
+        return variantCatalog == null ? null : getIdCondition(caseResourceVariantIdCol, variantCatalog.partition(logName, condition));
+    }
+
+    /**
+     * Selects the ids that are true in the partition. The ids of the smaller side are bound as one array parameter, so
+     * conditions that select most variants are negated.
+     *
+     * @param column
+     * @param partition
+     * @return
+     */
+    public Condition getIdCondition(DbColumn column, Map<Boolean, List<Long>> partition) {
+        if (partition == null) {
+            return null;
+        }
+
+        var selected = partition.get(true);
+        var rejected = partition.get(false);
+        if (selected.isEmpty()) {
+            return new CustomCondition("FALSE");
+        } else if (rejected.isEmpty()) {
+            return UnaryCondition.isNotNull(column);
+        } else if (selected.size() <= rejected.size()) {
+            return getAnyCondition(column, selected.stream().mapToLong(Long::longValue).toArray());
+        } else {
+            return BinaryCondition.notEqualTo(column, new CustomSql("ALL(" + bind(rejected.stream().mapToLong(Long::longValue).toArray()) + ")"));
+        }
+    }
+
+    /**
+     * Returns a condition that selects the rows whose column value is one of the ids. The ids are bound as one array
+     * parameter instead of one parameter per id.
+     *
+     * @param column
+     * @param ids
+     * @return
+     */
+    public Condition getAnyCondition(DbColumn column, long[] ids) {
+        return BinaryCondition.equalTo(column, new CustomSql("ANY(" + bind(ids) + ")"));
     }
 
-    public String getGraphTable(String perspective, String nullSource, String nullTarget) {
-        return getGraphTable(perspective, nullSource, nullTarget, null);
+    /**
+     * Returns a common table expression that exposes the resource perspective of the persisted graph table as source
+     * and target columns, so that queries on the graph table can be used for both perspectives. The resource ids are
+     * decoded to their names, the artificial start and end node are named 'start' and 'end'.
+     *
+     * @return
+     */
+    public String getResourceGraphTable() {
+        var table = graphTable.getTableNameSQL();
+        var resources = resourceTable.getTableNameSQL();
+        return "WITH " + table + " AS (SELECT " +
+                "g.case_id, " +
+                "CASE WHEN g.source_resource = -1 THEN 'start' ELSE s.name END AS source, " +
+                "CASE WHEN g.target_resource = -2 THEN 'end' ELSE t.name END AS target, " +
+                "g.source_timestamp, " +
+                "g.target_timestamp " +
+                "FROM " + table + " g " +
+                "LEFT JOIN " + resources + " s ON s.id = g.source_resource " +
+                "LEFT JOIN " + resources + " t ON t.id = g.target_resource) ";
     }
 
+    /**
+     * Returns a common table expression that computes the directly-follows relation of the given perspective on the
+     * fly. Only required if the events are filtered, otherwise the persisted graph table should be used.
+     *
+     * @param perspective
+     * @param nullSource
+     * @param nullTarget
+     * @param filter   ids of the activities that are kept or null
+     * @return
+     */
     public String getGraphTable(String perspective, String nullSource, String nullTarget, String[] filter) {
+        // the ids are bound as integer array, so they are compared with the integer column
+        var values = filter == null ? null : bind(Arrays.stream(filter).mapToInt(x -> Integer.parseInt(x.trim())).toArray());
         String SQL = "WITH " + getGraphTableName(this.logName) + " AS (SELECT " +
                 "case_id, " +
                 perspective + " AS source, " +
@@ -161,7 +385,7 @@ public class DatabaseModel {
                 "FROM " + this.eventTable.getTableNameSQL() + " ";
 
         if (filter != null) {
-            SQL += "WHERE " + perspective + " IN (" + String.join(", ", filter) + ") ";
+            SQL += "WHERE " + perspective + " = ANY(" + values + ") ";
         }
 
         SQL += "UNION ALL " +
@@ -174,7 +398,7 @@ public class DatabaseModel {
                 "FROM " + this.eventTable.getTableNameSQL() + " ";
 
         if (filter != null) {
-            SQL += "WHERE " + perspective + " IN (" + String.join(", ", filter) + ") ";
+            SQL += "WHERE " + perspective + " = ANY(" + values + ") ";
         }
 
         SQL += "ORDER BY case_id, target_timestamp, target)) ";
@@ -21,9 +21,18 @@ package org.processexplorer.server.analysis.query;
 import com.healthmarketscience.sqlbuilder.*;
 import com.healthmarketscience.sqlbuilder.custom.postgresql.PgExtractDatePart;
 import com.healthmarketscience.sqlbuilder.dbspec.basic.DbColumn;
+import org.processexplorer.server.analysis.query.cache.QueryResultCache;
+import org.processexplorer.server.analysis.query.cache.RefinedCaseSetCache;
+import org.processexplorer.server.analysis.query.catalog.AttributeCatalog;
+import org.processexplorer.server.analysis.query.catalog.LogStatisticsCatalog;
+import org.processexplorer.server.analysis.query.catalog.VariantCatalog;
 import org.processexplorer.server.analysis.query.codes.EventAttributeCodes;
+import org.processexplorer.server.analysis.query.condition.CaseSetCondition;
 import org.processexplorer.server.analysis.query.condition.Condition;
+import org.processexplorer.server.analysis.query.condition.ConditionOptimizer;
 import org.processexplorer.server.analysis.query.db.PostgresFunctionCall;
+import org.processexplorer.server.analysis.query.db.QueryBackend;
+import org.processexplorer.server.analysis.query.memory.ColumnarQueryEngine;
 import org.processexplorer.server.analysis.query.model.*;
 import org.processexplorer.server.analysis.query.request.CaseAttributeValueQuery;
 import org.processexplorer.server.analysis.query.request.CasesQuery;
@@ -37,13 +46,16 @@ import org.processexplorer.server.analysis.query.rowmapper.*;
 import org.processexplorer.server.analysis.query.selection.SelectionOrder;
 import org.processexplorer.server.common.persistence.entity.EventLogAnnotation;
 import org.processexplorer.server.common.persistence.repository.EventLogAnnotationRepository;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -52,15 +64,85 @@ import java.util.stream.Collectors;
 @Service
 public class QueryService {
 
+    // catalog queries, the tables of the logs are queried by the backend
     private final JdbcTemplate jdbcTemplate;
 
     private final EventLogAnnotationRepository eventLogAnnotationRepository;
 
+    private final ColumnarQueryEngine columnarQueryEngine;
+
+    private final QueryBackend queryBackend;
+
+    private final QueryResultCache queryResultCache;
+
+    private final LogStatisticsCatalog logStatisticsCatalog;
+
+    private final VariantCatalog variantCatalog;
+
+    private final AttributeCatalog attributeCatalog;
+
+    private final RefinedCaseSetCache refinedCaseSetCache;
+
+    // logs whose preview is queried, while the cases starting with the given id are still imported
+    private final Map<String, Integer> previews = new ConcurrentHashMap<>();
+
     @Autowired
     public QueryService(JdbcTemplate jdbcTemplate,
-                        EventLogAnnotationRepository eventLogAnnotationRepository) {
+                        EventLogAnnotationRepository eventLogAnnotationRepository,
+                        ColumnarQueryEngine columnarQueryEngine,
+                        QueryBackend queryBackend,
+                        QueryResultCache queryResultCache,
+                        LogStatisticsCatalog logStatisticsCatalog,
+                        VariantCatalog variantCatalog,
+                        AttributeCatalog attributeCatalog,
+                        RefinedCaseSetCache refinedCaseSetCache) {
         this.jdbcTemplate = jdbcTemplate;
         this.eventLogAnnotationRepository = eventLogAnnotationRepository;
+        this.columnarQueryEngine = columnarQueryEngine;
+        this.queryBackend = queryBackend;
+        this.queryResultCache = queryResultCache;
+        this.logStatisticsCatalog = logStatisticsCatalog;
+        this.variantCatalog = variantCatalog;
+        this.attributeCatalog = attributeCatalog;
+        this.refinedCaseSetCache = refinedCaseSetCache;
+    }
+
+    /**
+     * Drops the data and table definitions of a log that are cached for queries, after the log has been changed.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        previews.remove(logName);
+        columnarQueryEngine.invalidate(logName);
+        queryBackend.refresh();
+        queryResultCache.invalidate(logName);
+        logStatisticsCatalog.invalidate(logName);
+        variantCatalog.invalidate(logName);
+        attributeCatalog.invalidate(logName);
+        refinedCaseSetCache.invalidate(logName);
+    }
+
+    /**
+     * Drops the cached data of a log, whose derived tables have been replaced by a preview. The counts of the log only
+     * include the cases of the preview, until the log is invalidated after its import.
+     *
+     * @param logName
+     * @param nextCaseId
+     */
+    public void publishPreview(String logName, int nextCaseId) {
+        invalidate(logName);
+        previews.put(logName, nextCaseId);
+    }
+
+    /**
+     * Drops the cached results that contain the annotations of a log, after its annotations have been changed.
+     *
+     * @param logName
+     */
+    public void invalidateAnnotations(String logName) {
+        queryResultCache.invalidate(logName);
+        logStatisticsCatalog.invalidate(logName);
     }
 
     /**
@@ -80,7 +162,40 @@ public class QueryService {
      * @return
      */
     public Log getLogStatistics(String logName, List<org.processexplorer.server.analysis.query.condition.Condition> conditions) {
-        var db = new DatabaseModel(logName);
+        var result = logStatisticsCatalog.get(logName, this::queryLogStatistics);
+        var optimized = ConditionOptimizer.optimize(conditions);
+        if (optimized == null || optimized.isEmpty()) {
+            return result;
+        }
+
+        // only the counts depend on the conditions
+        var counts = queryResultCache.get(logName, "statistics", optimized, null,
+                () -> queryCounts(logName, optimized),
+                x -> 1);
+
+        result.setNumEvents(counts[0]);
+        result.setNumTraces(counts[1]);
+        return result;
+    }
+
+    /**
+     * Computes the statistics of a log and stores them in the catalog, e.g. after the log has been imported.
+     *
+     * @param logName
+     */
+    public void updateStatistics(String logName) {
+        logStatisticsCatalog.put(logName, queryLogStatistics(logName));
+    }
+
+    private Log queryLogStatistics(String logName) {
+        var inMemory = columnarQueryEngine.getLogStatistics(logName, null);
+        if (inMemory != null) {
+            inMemory.setCaseAttributes(getCaseAttributesDetails(logName));
+            inMemory.setEventAttributes(getEventAttributesDetails(logName));
+            return inMemory;
+        }
+
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
 
         // get activities
         var sqlActivities = new SelectQuery()
@@ -88,48 +203,76 @@ public class QueryService {
                 .addColumns(db.activityNameCol)
                 .addOrdering(db.activityIdCol, OrderObject.Dir.ASCENDING);
 
-        var activities = jdbcTemplate.query(sqlActivities.toString(), new ActivityRowMapper());
+        var activities = queryBackend.getJdbcTemplate().query(sqlActivities.toString(), new ActivityRowMapper());
 
         // get resources
-        var sqlResources = new SelectQuery(true)
-                .addColumns(db.eventResourceCol)
-                .addOrdering(db.eventResourceCol, OrderObject.Dir.ASCENDING);
+        var sqlResources = new SelectQuery()
+                .addColumns(db.resourceNameCol)
+                .addOrdering(db.resourceNameCol, OrderObject.Dir.ASCENDING);
+
+        var resources = queryBackend.getJdbcTemplate().queryForList(sqlResources.toString(), String.class);
+
+        var counts = queryCounts(logName, null);
+
+        var result = new Log();
+        result.setLogName(logName);
+        result.setNumActivities(activities.size());
+        result.setActivities(activities);
+        result.setResources(resources);
+        result.setNumEvents(counts[0]);
+        result.setNumTraces(counts[1]);
+
+        result.setCaseAttributes(getCaseAttributesDetails(logName));
+        result.setEventAttributes(getEventAttributesDetails(logName));
+
+        return result;
+    }
+
+    /**
+     * Returns the number of events and cases that fulfill the conditions.
+     *
+     * @param logName
+     * @param conditions
+     * @return
+     */
+    private long[] queryCounts(String logName, List<org.processexplorer.server.analysis.query.condition.Condition> conditions) {
+        var inMemory = columnarQueryEngine.getLogStatistics(logName, conditions);
+        if (inMemory != null) {
+            return new long[]{inMemory.getNumEvents(), inMemory.getNumTraces()};
+        }
 
-        var resources = jdbcTemplate.queryForList(sqlResources.toString(), String.class);
+        conditions = refine(logName, conditions);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
+        var preview = previews.get(logName);
 
         // get number of events
         var sqlNumEvents = new SelectQuery()
                 .addAliasedColumn(FunctionCall.count().addColumnParams(db.eventCaseIdCol), "num_events")
                 .addJoins(SelectQuery.JoinType.LEFT_OUTER, db.eventCaseJoin, db.caseCaseAttributeJoin);
 
+        // the events of the cases after the preview are written meanwhile
+        if (preview != null) {
+            sqlNumEvents.addCondition(BinaryCondition.lessThan(db.eventCaseIdCol, preview));
+        }
+
         addConditionsToSql(sqlNumEvents, db, conditions);
 
-        var numEvents = jdbcTemplate.queryForObject(sqlNumEvents.toString(), Long.class);
+        var numEvents = queryBackend.getNamedParameterJdbcTemplate().queryForObject(sqlNumEvents.toString(), db.getParameters(), Long.class);
 
         // get number of traces
         var sqlNumTraces = new SelectQuery()
                 .addAliasedColumn(FunctionCall.count().setIsDistinct(true).addColumnParams(db.caseAttributeCaseIdCol), "num_traces")
                 .addJoins(SelectQuery.JoinType.LEFT_OUTER, db.eventCaseJoin, db.caseCaseAttributeJoin);
 
-        addConditionsToSql(sqlNumTraces, db, conditions);
-
-        var numTraces = jdbcTemplate.queryForObject(sqlNumTraces.toString(), Long.class);
-
-        var caseAttributes = getCaseAttributesDetails(logName);
-        var eventAttributes = getEventAttributesDetails(logName);
+        if (preview != null) {
+            sqlNumTraces.addCondition(BinaryCondition.lessThan(db.eventCaseIdCol, preview));
+        }
 
-        var result = new Log();
-        result.setLogName(logName);
-        result.setNumActivities(activities.size());
-        result.setActivities(activities);
-        result.setResources(resources);
-        result.setNumEvents(numEvents);
-        result.setNumTraces(numTraces);
+        addConditionsToSql(sqlNumTraces, db, conditions);
 
-        result.setCaseAttributes(caseAttributes);
-        result.setEventAttributes(eventAttributes);
+        var numTraces = queryBackend.getNamedParameterJdbcTemplate().queryForObject(sqlNumTraces.toString(), db.getParameters(), Long.class);
 
-        return result;
+        return new long[]{numEvents, numTraces};
     }
 
     /**
@@ -140,13 +283,34 @@ public class QueryService {
      * @return
      */
     public List<Variant> getAllPaths(String logName, List<org.processexplorer.server.analysis.query.condition.Condition> conditions) {
+        conditions = ConditionOptimizer.optimize(conditions);
+
+        var inMemory = columnarQueryEngine.getAllPaths(logName, conditions);
+        if (inMemory != null) {
+            return inMemory;
+        }
+
         var logStats = getLogStatistics(logName);
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
+
+        // the occurrence of all variants is stored in the variants table
+        if (conditions == null || conditions.isEmpty()) {
+            var sql = new SelectQuery()
+                    .addAliasedColumn(db.variantsIdCol, "variant_id")
+                    .addColumns(db.variantsPathCol, db.variantsOccurrenceCol)
+                    .addCondition(BinaryCondition.greaterThan(db.variantsOccurrenceCol, 0))
+                    .addOrdering(db.variantsOccurrenceCol, OrderObject.Dir.DESCENDING);
+
+            return queryBackend.getJdbcTemplate().query(sql.validate().toString(), new ExtendedVariantRowMapper(logStats));
+        }
+
+        conditions = refine(logName, conditions);
 
         var sql = new SelectQuery()
-                .addColumns(db.caseVariantIdCol, db.caseVariantCol)
+                .addColumns(db.caseVariantIdCol, db.variantsPathCol)
                 .addAliasedColumn(FunctionCall.count().addColumnParams(db.caseVariantIdCol), "occurrence")
-                .addGroupings(db.caseVariantIdCol, db.caseVariantCol)
+                .addJoins(SelectQuery.JoinType.INNER, db.caseVariantJoin)
+                .addGroupings(db.caseVariantIdCol, db.variantsPathCol)
                 .addCustomOrdering("occurrence", OrderObject.Dir.DESCENDING);
 
         for (var rule : conditions) {
@@ -156,7 +320,7 @@ public class QueryService {
             }
         }
 
-        return jdbcTemplate.query(sql.validate().toString(), new ExtendedVariantRowMapper(logStats));
+        return queryBackend.getNamedParameterJdbcTemplate().query(sql.validate().toString(), db.getParameters(), new ExtendedVariantRowMapper(logStats));
     }
 
     /**
@@ -182,7 +346,7 @@ public class QueryService {
             }
         }
 
-        return jdbcTemplate.query(sql.validate().toString(), new VariantRowMapper());
+        return queryBackend.getNamedParameterJdbcTemplate().query(sql.validate().toString(), db.getParameters(), new VariantRowMapper());
     }
 
     /**
@@ -192,22 +356,96 @@ public class QueryService {
      * @return
      */
     public ProcessMapResult getProcessMap(ProcessMapQuery query) {
-        var db = new DatabaseModel(query.getLogName());
+        query.setConditions(ConditionOptimizer.optimize(query.getConditions()));
+        return queryResultCache.get(query.getLogName(), "process_map", query.getConditions(), query.getActivityFilter(),
+                () -> queryProcessMap(query),
+                x -> x.getProcessMap().getEdges().size() + x.getVariants().size());
+    }
+
+    private ProcessMapResult queryProcessMap(ProcessMapQuery query) {
+        var inMemory = columnarQueryEngine.getProcessMap(query);
+        if (inMemory != null) {
+            return inMemory;
+        }
+
+        // the variant graph only contains the unfiltered directly-follows relation
+        if (query.getActivityFilter() == null) {
+            var byVariants = queryVariantProcessMap(query);
+            if (byVariants != null) {
+                return byVariants;
+            }
+        }
+
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
+        var conditions = refine(query.getLogName(), query.getConditions());
 
-        var sql = getGraphEdgeQuery(query.getLogName(), db.caseVariantIdCol, query.getConditions());
-        var sqlT = db.getGraphTable("event", "-1", "-2", query.getActivityFilter()) + sql.addGroupings(db.graphSourceCol, db.graphTargetCol)
+        var sql = getGraphEdgeQuery(db, db.caseVariantIdCol, conditions);
+        // the persisted graph table only contains the unfiltered directly-follows relation
+        var graphTable = query.getActivityFilter() != null ? db.getGraphTable("event", "-1", "-2", query.getActivityFilter()) : "";
+        var sqlT = graphTable + sql.addGroupings(db.graphSourceCol, db.graphTargetCol)
                 .addJoins(SelectQuery.JoinType.LEFT_OUTER, db.graphCaseJoin, db.graphCaseAttributeJoin)
                 .addCustomOrdering(new CustomSql("occurrence"), OrderObject.Dir.DESCENDING)
                 .toString();
 
-        var edges = jdbcTemplate.query(sqlT, new GraphEdgeRowMapper());
+        var edges = queryBackend.getNamedParameterJdbcTemplate().query(sqlT, db.getParameters(), new GraphEdgeRowMapper());
 
         var graph = new Graph();
         graph.setEdges(edges);
 
         var result = new ProcessMapResult();
         result.setProcessMap(graph);
-        result.setVariants(getAllPathsSimple(db, db.caseVariantIdCol, query.getConditions()));
+        result.setVariants(getAllPathsSimple(db, db.caseVariantIdCol, conditions));
+
+        return result;
+    }
+
+    /**
+     * Returns the process map as sum of the edges of the selected variants, without reading the events of the cases.
+     * Returns null, if the conditions do not select whole variants.
+     *
+     * @param query
+     * @return
+     */
+    private ProcessMapResult queryVariantProcessMap(ProcessMapQuery query) {
+        var partition = variantCatalog.partition(query.getLogName(), query.getConditions());
+        if (partition == null) {
+            return null;
+        }
+
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
+        var edgeVariants = db.getIdCondition(db.variantGraphVariantIdCol, partition);
+        var variants = db.getIdCondition(db.variantsIdCol, partition);
+        if (edgeVariants == null || variants == null) {
+            return null;
+        }
+
+        var sql = new SelectQuery()
+                .addColumns(db.variantGraphSourceCol, db.variantGraphTargetCol)
+                .addAliasedColumn(new CustomSql("SUM(" + db.variantGraphSumDurationCol.getColumnNameSQL() + ") / NULLIF(SUM(" + db.variantGraphNumDurationsCol.getColumnNameSQL() + "), 0)"), "avg_duration")
+                .addAliasedColumn(FunctionCall.min().addColumnParams(db.variantGraphMinDurationCol), "min_duration")
+                .addAliasedColumn(FunctionCall.max().addColumnParams(db.variantGraphMaxDurationCol), "max_duration")
+                .addAliasedColumn(FunctionCall.sum().addColumnParams(db.variantGraphOccurrenceCol), "occurrence")
+                .addAliasedColumn(new CustomSql("string_agg(cast(" + db.variantGraphVariantIdCol.getColumnNameSQL() + " as text), ',')"), "variants")
+                .addCondition(edgeVariants)
+                .addGroupings(db.variantGraphSourceCol, db.variantGraphTargetCol)
+                .addCustomOrdering(new CustomSql("occurrence"), OrderObject.Dir.DESCENDING);
+
+        var edges = queryBackend.getNamedParameterJdbcTemplate().query(sql.validate().toString(), db.getParameters(), new GraphEdgeRowMapper());
+
+        // the occurrence of the variants is the number of their cases
+        var variantSql = new SelectQuery()
+                .addAliasedColumn(db.variantsIdCol, "variant_id")
+                .addAliasedColumn(db.variantsOccurrenceCol, "occurrence")
+                .addCondition(variants)
+                .addCondition(BinaryCondition.greaterThan(db.variantsOccurrenceCol, 0))
+                .addCustomOrdering("occurrence", OrderObject.Dir.DESCENDING);
+
+        var graph = new Graph();
+        graph.setEdges(edges);
+
+        var result = new ProcessMapResult();
+        result.setProcessMap(graph);
+        result.setVariants(queryBackend.getNamedParameterJdbcTemplate().query(variantSql.validate().toString(), db.getParameters(), new VariantRowMapper()));
 
         return result;
     }
@@ -219,22 +457,24 @@ public class QueryService {
      * @return
      */
     public SocialNetworkResult getSocialNetworkGraph(ProcessMapQuery query) {
-        var db = new DatabaseModel(query.getLogName());
+        query.setConditions(ConditionOptimizer.optimize(query.getConditions()));
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
+        var conditions = refine(query.getLogName(), query.getConditions());
 
-        var sql = getGraphEdgeQuery(query.getLogName(), db.caseResourceVariantIdCol, query.getConditions());
-        var sqlT = db.getGraphTable("resource", "'start'", "'end'") + sql.addGroupings(db.graphSourceCol, db.graphTargetCol)
+        var sql = getGraphEdgeQuery(db, db.caseResourceVariantIdCol, conditions);
+        var sqlT = db.getResourceGraphTable() + sql.addGroupings(db.graphSourceCol, db.graphTargetCol)
                 .addJoins(SelectQuery.JoinType.INNER, db.graphCaseJoin, db.graphCaseAttributeJoin)
                 .addCustomOrdering(new CustomSql("occurrence"), OrderObject.Dir.DESCENDING)
                 .toString();
 
-        var edges = jdbcTemplate.query(sqlT, new SocialNetworkEdgeRowMapper());
+        var edges = queryBackend.getNamedParameterJdbcTemplate().query(sqlT, db.getParameters(), new SocialNetworkEdgeRowMapper());
 
         var graph = new SocialNetwork();
         graph.setEdges(edges);
 
         var result = new SocialNetworkResult();
         result.setSocialNetwork(graph);
-        result.setVariants(getAllPathsSimple(db, db.caseResourceVariantIdCol, query.getConditions()));
+        result.setVariants(getAllPathsSimple(db, db.caseResourceVariantIdCol, conditions));
 
         return result;
     }
@@ -266,7 +506,7 @@ public class QueryService {
      * @return
      */
     public List<String> getCaseAttributes(String logName) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
 
         var columns = jdbcTemplate.queryForList("SELECT column_name " +
                         "FROM information_schema.columns " +
@@ -309,7 +549,7 @@ public class QueryService {
      * @return
      */
     public List<String> getEventAttributes(String logName) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
 
         var columns = jdbcTemplate.queryForList("SELECT column_name " +
                 "FROM information_schema.columns " +
@@ -331,7 +571,7 @@ public class QueryService {
      * @return
      */
     public List<String> getCategoricalCaseAttributes(String logName) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
         var attrs = getCaseAttributes(logName);
 
         var categoricalAttrs = new ArrayList<String>();
@@ -342,7 +582,7 @@ public class QueryService {
                         .addAliasedColumn(new CustomSql("CAST(COUNT(DISTINCT \"" + attr + "\") AS float) / COUNT(\"" + attr + "\")"), "occurrence")
                         .addFromTable(db.caseAttributeTable);
 
-                var result = jdbcTemplate.queryForObject(sql.validate().toString(), Double.class);
+                var result = queryBackend.getJdbcTemplate().queryForObject(sql.validate().toString(), Double.class);
                 if (result != null && result <= 0.05) {
                     categoricalAttrs.add(attr);
                 }
@@ -361,7 +601,8 @@ public class QueryService {
      * @return
      */
     public List<Map<String, Object>> getCases(CasesQuery query) {
-        var db = new DatabaseModel(query.getLogName());
+        query.setConditions(ConditionOptimizer.optimize(query.getConditions()));
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
         query.getAttributes().forEach(x -> db.caseAttributeTable.addColumn("\"" + x + "\""));
 
         var sql = new SelectQuery()
@@ -376,14 +617,14 @@ public class QueryService {
         sql = sql.addJoins(SelectQuery.JoinType.INNER, db.caseCaseAttributeJoin);
 
         // add conditions
-        for (var rule : query.getConditions()) {
+        for (var rule : refine(query.getLogName(), query.getConditions())) {
             var condition = rule.getCondition(db);
             if (condition != null) {
                 sql.addCondition(condition);
             }
         }
 
-        return jdbcTemplate.queryForList(sql.validate().toString());
+        return queryBackend.getNamedParameterJdbcTemplate().queryForList(sql.validate().toString(), db.getParameters());
     }
 
     /**
@@ -394,7 +635,8 @@ public class QueryService {
      * @return
      */
     public CaseAttributeValueResult getCaseAttributeValues(CaseAttributeValueQuery query) {
-        var db = new DatabaseModel(query.getLogName());
+        query.setConditions(ConditionOptimizer.optimize(query.getConditions()));
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
 
         // integrated attributes
         if (query.getAttributeName().equals("c_duration")) {
@@ -413,9 +655,9 @@ public class QueryService {
         sql = sql.addJoins(SelectQuery.JoinType.LEFT_OUTER, db.caseCaseAttributeJoin);
 
         // add conditions
-        addConditionsToSql(sql, db, query.getConditions());
+        addConditionsToSql(sql, db, refine(query.getLogName(), query.getConditions()));
 
-        var values = jdbcTemplate.queryForList(sql.validate().toString(), String.class);
+        var values = queryBackend.getNamedParameterJdbcTemplate().queryForList(sql.validate().toString(), db.getParameters(), String.class);
 
         var result = new CaseAttributeValueResult();
         result.setAttributeName(query.getAttributeName());
@@ -437,13 +679,13 @@ public class QueryService {
      * @return
      */
     public List<Long> getClusterValues(String logName) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
 
         var sql = new SelectQuery(true)
                 .addColumns(db.caseAttributeTable.addColumn("cluster_index"))
                 .addFromTable(db.caseAttributeTable);
 
-        return jdbcTemplate.queryForList(sql.validate().toString(), Long.class);
+        return queryBackend.getJdbcTemplate().queryForList(sql.validate().toString(), Long.class);
     }
 
     /**
@@ -453,7 +695,14 @@ public class QueryService {
      * @return
      */
     public DrillDownResult getDrillDown(DrillDownQuery query) {
-        var db = new DatabaseModel(query.getLogName());
+        query.setConditions(ConditionOptimizer.optimize(query.getConditions()));
+        return queryResultCache.get(query.getLogName(), "drill_down", query.getConditions(), query.getSelections(),
+                () -> queryDrillDown(query),
+                x -> x.getData().size() * Math.max(1, query.getSelections().size()));
+    }
+
+    private DrillDownResult queryDrillDown(DrillDownQuery query) {
+        var db = new DatabaseModel(query.getLogName(), variantCatalog, attributeCatalog);
         var result = new DrillDownResult();
 
         var sql = new SelectQuery()
@@ -483,6 +732,13 @@ public class QueryService {
             i++;
         }
 
+        // answer from memory, if the log is loaded
+        var inMemory = columnarQueryEngine.getDrillDown(query);
+        if (inMemory != null) {
+            result.getData().addAll(inMemory);
+            return result;
+        }
+
         // add grouping?
         if (hasGroup) {
             for (var selection : query.getSelections()) {
@@ -494,9 +750,9 @@ public class QueryService {
         }
 
         // add conditions
-        addConditionsToSql(sql, db, query.getConditions());
+        addConditionsToSql(sql, db, refine(query.getLogName(), query.getConditions()));
 
-        var values = jdbcTemplate.queryForList(sql.validate().toString());
+        var values = queryBackend.getNamedParameterJdbcTemplate().queryForList(sql.validate().toString(), db.getParameters());
 
         for (var value : values) {
             var data = new Object[value.size()];
@@ -518,13 +774,13 @@ public class QueryService {
      * @return
      */
     public List<Activity> getActivities(String logName) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
         var query = new SelectQuery()
                 .addColumns(db.activityIdCol, db.activityNameCol)
                 .addOrdering(db.activityIdCol, OrderObject.Dir.ASCENDING)
                 .toString();
 
-        return jdbcTemplate.query(query, new ActivityRowMapper());
+        return queryBackend.getJdbcTemplate().query(query, new ActivityRowMapper());
     }
 
     /**
@@ -535,15 +791,15 @@ public class QueryService {
      * @return
      */
     public Case getSingleCase(String logName, long caseId) {
-        var db = new DatabaseModel(logName);
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
 
         // get case level details
         var caseSQL = new SelectQuery()
                 .addAllColumns()
                 .addJoins(SelectQuery.JoinType.INNER, db.caseCaseAttributeJoin)
-                .addCondition(BinaryCondition.equalTo(db.caseCaseIdCol, caseId));
+                .addCondition(BinaryCondition.equalTo(db.caseCaseIdCol, db.bind(caseId)));
 
-        var singleCase = jdbcTemplate.queryForObject(caseSQL.validate().toString(), new CaseRowMapper());
+        var singleCase = queryBackend.getNamedParameterJdbcTemplate().queryForObject(caseSQL.validate().toString(), db.getParameters(), new CaseRowMapper());
 
         if (singleCase == null) {
             return null;
@@ -551,16 +807,85 @@ public class QueryService {
 
         // get events
         var eventsSQL = new SelectQuery()
-                .addColumns(db.eventCaseIdCol, db.activityIdCol, db.activityNameCol, db.eventResourceCol, db.eventTimestampCol)
+                .addColumns(db.eventCaseIdCol, db.activityIdCol, db.activityNameCol)
+                .addAliasedColumn(db.resourceNameCol, "resource")
+                .addColumns(db.eventTimestampCol)
                 .addJoins(SelectQuery.JoinType.INNER, db.eventActivityJoin)
-                .addCondition(BinaryCondition.equalTo(db.eventCaseIdCol, caseId))
+                .addJoins(SelectQuery.JoinType.LEFT_OUTER, db.eventResourceJoin)
+                .addCondition(BinaryCondition.equalTo(db.eventCaseIdCol, db.bind(caseId)))
                 .addOrderings(db.eventTimestampCol, db.eventEventCol);
 
-        singleCase.setEvents(jdbcTemplate.query(eventsSQL.validate().toString(), new EventRowMapper()));
+        singleCase.setEvents(queryBackend.getNamedParameterJdbcTemplate().query(eventsSQL.validate().toString(), db.getParameters(), new EventRowMapper()));
 
         return singleCase;
     }
 
+    /**
+     * Replaces the conditions by the cases that fulfill them, if there are not more than the maximum number of cases
+     * of the case set cache. The cases of logs in memory are taken from the cached bitmaps of their conditions, filters
+     * on other logs that are refined step by step only evaluate the added condition on the cases of the previous step.
+     *
+     * @param logName
+     * @param conditions
+     * @return
+     */
+    private List<Condition> refine(String logName, List<Condition> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return conditions;
+        }
+
+        var cases = columnarQueryEngine.getCaseIds(logName, conditions, refinedCaseSetCache.getMaximumCases());
+        if (cases == null) {
+            cases = refinedCaseSetCache.get(logName, conditions, (parent, x) -> queryCaseSet(logName, parent, x));
+        }
+        return cases == null ? conditions : List.of(getCaseCondition(cases));
+    }
+
+    /**
+     * Returns the cases that fulfill the conditions, optionally only among the given cases, or null, if there are more
+     * than the maximum number of cases of the case set cache.
+     *
+     * @param logName
+     * @param cases
+     * @param conditions
+     * @return
+     */
+    private RoaringBitmap queryCaseSet(String logName, RoaringBitmap cases, List<Condition> conditions) {
+        var db = new DatabaseModel(logName, variantCatalog, attributeCatalog);
+
+        var sql = new SelectQuery()
+                .addColumns(db.caseCaseIdCol)
+                .addJoins(SelectQuery.JoinType.LEFT_OUTER, db.caseCaseAttributeJoin);
+
+        if (cases != null) {
+            sql.addCondition(getCaseCondition(cases).getCondition(db));
+        }
+        addConditionsToSql(sql, db, conditions);
+
+        // stop reading as soon as the case set gets too large
+        var maximumCases = refinedCaseSetCache.getMaximumCases();
+        var result = new RoaringBitmap();
+        queryBackend.getNamedParameterJdbcTemplate().query(sql.validate().toString() + " LIMIT " + (maximumCases + 1), db.getParameters(),
+                (RowCallbackHandler) rs -> result.add(rs.getInt(1)));
+
+        if (result.getCardinality() > maximumCases) {
+            return null;
+        }
+
+        result.runOptimize();
+        return result;
+    }
+
+    /**
+     * Returns a condition that selects the given cases.
+     *
+     * @param cases
+     * @return
+     */
+    private Condition getCaseCondition(RoaringBitmap cases) {
+        return new CaseSetCondition(cases.toArray());
+    }
+
     /**
      * Adds conditions to an existing select query object.
      *
@@ -586,13 +911,11 @@ public class QueryService {
     /**
      * Returns a select query object for obtaining general statistics about the graph edges.
      *
-     * @param logName
+     * @param db
      * @param conditions
      * @return
      */
-    private SelectQuery getGraphEdgeQuery(String logName, DbColumn variant, List<Condition> conditions) {
-        var db = new DatabaseModel(logName);
-
+    private SelectQuery getGraphEdgeQuery(DatabaseModel db, DbColumn variant, List<Condition> conditions) {
         var sql = new SelectQuery()
                 .addColumns(db.graphSourceCol, db.graphTargetCol)
                 .addAliasedColumn(new ExtractExpression(PgExtractDatePart.EPOCH, FunctionCall.avg().addCustomParams(PostgresFunctionCall.age().addCustomParams(db.graphTargetTimestampCol, db.graphSourceTimestampCol))), "avg_duration")
@@ -0,0 +1,67 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Data versions of the logs, which are increased when a log is changed. A cache remembers the version of a log before
+ * it computes a result and only stores the result, if the version is still the same afterwards.
+ */
+class LogVersions {
+
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the current version of a log.
+     *
+     * @param logName
+     * @return
+     */
+    long get(String logName) {
+        return getVersion(logName).get();
+    }
+
+    /**
+     * Returns whether a log has not been changed since the given version.
+     *
+     * @param logName
+     * @param version
+     * @return
+     */
+    boolean isCurrent(String logName, long version) {
+        return getVersion(logName).get() == version;
+    }
+
+    /**
+     * Increases the version of a log after it has been changed.
+     *
+     * @param logName
+     */
+    void increment(String logName) {
+        getVersion(logName).incrementAndGet();
+    }
+
+    private AtomicLong getVersion(String logName) {
+        return versions.computeIfAbsent(logName, x -> new AtomicLong());
+    }
+}
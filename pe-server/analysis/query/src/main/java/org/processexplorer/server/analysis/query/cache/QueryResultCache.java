@@ -0,0 +1,228 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.processexplorer.server.analysis.query.condition.Condition;
+import org.processexplorer.server.analysis.query.condition.ConditionKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Caches the results of queries, because the same queries are issued again whenever a view of the portal is
+ * rendered.
+ * <p>
+ * Results are stored by log, query type, data version of the log and the canonical form of the conditions and
+ * parameters of the query. The conditions of a query are combined by AND, so their order is ignored. Each log has a
+ * data version, which is increased when the log is changed, so results that are computed while the log is changed are
+ * not stored. The size of the cache is bounded by the weight of the results, i.e. their approximate number of
+ * elements.
+ */
+public class QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    private final Cache<Key, Entry> cache;
+
+    private final LogVersions versions = new LogVersions();
+
+    public QueryResultCache(long maximumWeight, Duration expireAfterAccess) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Entry entry) -> entry.weight)
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached result of a query or executes the query and caches its result.
+     *
+     * @param logName
+     * @param type
+     * @param conditions
+     * @param parameters further parameters of the query besides the conditions
+     * @param query
+     * @param weigher
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String logName, String type, List<Condition> conditions, Object parameters, Supplier<T> query, ToIntFunction<T> weigher) {
+        Key key;
+        try {
+            key = new Key(logName, type, versions.get(logName), ConditionKeys.canonicalize(conditions) + ConditionKeys.canonicalizeValue(parameters));
+        } catch (JsonProcessingException ex) {
+            logger.debug("Query of \"{}\" can not be cached: {}", logName, ex.getMessage());
+            return query.get();
+        }
+
+        var entry = cache.getIfPresent(key);
+        if (entry != null) {
+            entry.hits.incrementAndGet();
+            logger.debug("Answered {} query of \"{}\" from cache, saved {} ms", type, logName, entry.queryTime);
+            return (T) entry.result;
+        }
+
+        var start = System.currentTimeMillis();
+        var result = query.get();
+        var queryTime = System.currentTimeMillis() - start;
+
+        // the log has been changed meanwhile
+        if (result != null && versions.isCurrent(logName, key.version)) {
+            cache.put(key, new Entry(result, Math.max(1, weigher.applyAsInt(result)), queryTime));
+        }
+
+        return result;
+    }
+
+    /**
+     * Drops the results of a log after the log has been changed.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        versions.increment(logName);
+        cache.asMap().keySet().removeIf(x -> x.logName.equals(logName));
+    }
+
+    /**
+     * Returns the statistics of the cached results, e.g. to identify queries that are worth caching.
+     *
+     * @return
+     */
+    public List<EntryStatistics> getStatistics() {
+        var result = new ArrayList<EntryStatistics>();
+        cache.asMap().forEach((key, entry) -> result.add(new EntryStatistics(key.logName, key.type, key.version, entry.weight, entry.queryTime, entry.hits.get(), entry.created)));
+        return result;
+    }
+
+    public double getHitRate() {
+        return cache.stats().hitRate();
+    }
+
+    private static class Key {
+
+        private final String logName;
+        private final String type;
+        private final long version;
+        private final String query;
+
+        Key(String logName, String type, long version, String query) {
+            this.logName = logName;
+            this.type = type;
+            this.version = version;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var key = (Key) o;
+            return version == key.version && logName.equals(key.logName) && type.equals(key.type) && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logName, type, version, query);
+        }
+    }
+
+    private static class Entry {
+
+        private final Object result;
+        private final int weight;
+        private final long queryTime;
+        private final long created = System.currentTimeMillis();
+        private final AtomicLong hits = new AtomicLong();
+
+        Entry(Object result, int weight, long queryTime) {
+            this.result = result;
+            this.weight = weight;
+            this.queryTime = queryTime;
+        }
+    }
+
+    /**
+     * Statistics of a cached result.
+     */
+    public static class EntryStatistics {
+
+        private final String logName;
+        private final String type;
+        private final long version;
+        private final int weight;
+        private final long queryTime;
+        private final long hits;
+        private final long created;
+
+        public EntryStatistics(String logName, String type, long version, int weight, long queryTime, long hits, long created) {
+            this.logName = logName;
+            this.type = type;
+            this.version = version;
+            this.weight = weight;
+            this.queryTime = queryTime;
+            this.hits = hits;
+            this.created = created;
+        }
+
+        public String getLogName() {
+            return logName;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Returns the time in milliseconds that was required to compute the result.
+         *
+         * @return
+         */
+        public long getQueryTime() {
+            return queryTime;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.processexplorer.server.analysis.query.condition.Condition;
+import org.processexplorer.server.analysis.query.condition.ConditionKeys;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * Caches the cases that fulfill the conditions of a filter, so a filter that is refined by one more condition is only
+ * evaluated on the cases of the previous filter instead of the whole log.
+ * <p>
+ * Analysts add the conditions of a filter one at a time and each step sends all conditions again. The case set of a
+ * filter is stored by log, data version and the canonical form of its conditions. If a filter is not cached, but the
+ * filter without one of its conditions is, only the missing condition is evaluated on the cases of the cached filter.
+ * Otherwise the case set is not evaluated when the filter is requested for the first time, so a cold cache does not
+ * cost an additional query. When the same filter is requested again, e.g. by the next query of the same view, it is
+ * evaluated as a whole in the background, while the requests keep evaluating the conditions themselves until the case
+ * set is stored. Only case sets up to a maximum number of cases are stored, for larger filters the cache remembers
+ * that they have to be evaluated as a whole.
+ */
+public class RefinedCaseSetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefinedCaseSetCache.class);
+
+    private final int maximumCases;
+
+    private final Cache<Key, Entry> cache;
+
+    private final LogVersions versions = new LogVersions();
+
+    // evaluates the filters that are requested again in the background
+    private final Executor executor;
+
+    public RefinedCaseSetCache(int maximumCases, long maximumWeight, Duration expireAfterAccess, Executor executor) {
+        if (maximumCases < 0) {
+            throw new IllegalArgumentException("The maximum number of cases of a case set must not be negative, but is " + maximumCases);
+        }
+
+        this.maximumCases = maximumCases;
+        this.executor = executor;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumWeight)
+                .weigher((Key key, Entry entry) -> entry.cases == null ? 1 : Math.max(1, entry.cases.getCardinality()))
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+    }
+
+    /**
+     * Returns the maximum number of cases of a stored case set.
+     *
+     * @return
+     */
+    public int getMaximumCases() {
+        return maximumCases;
+    }
+
+    /**
+     * Returns the cases that fulfill all conditions or null, if they are not known or there are more than the maximum
+     * number of cases. In this case the conditions have to be evaluated by the query itself.
+     * <p>
+     * The query receives the cases of a cached filter and the conditions that have to be evaluated on them, or null
+     * and all conditions, if the filter is evaluated as a whole. It returns the matching cases or null, if there are
+     * more than the maximum number of cases. Filters are evaluated as a whole by the executor of the cache.
+     *
+     * @param logName
+     * @param conditions
+     * @param query
+     * @return
+     */
+    public RoaringBitmap get(String logName, List<Condition> conditions, BiFunction<RoaringBitmap, List<Condition>, RoaringBitmap> query) {
+        if (maximumCases == 0) {
+            return null;
+        }
+
+        TreeMap<String, Condition> canonical;
+        try {
+            canonical = canonicalize(conditions);
+        } catch (JsonProcessingException ex) {
+            logger.debug("Case set of \"{}\" can not be cached: {}", logName, ex.getMessage());
+            return null;
+        }
+
+        var keys = new ArrayList<>(canonical.keySet());
+        var key = new Key(logName, versions.get(logName), keys);
+
+        var entry = cache.getIfPresent(key);
+        if (entry != null && entry.evaluated) {
+            return entry.cases;
+        }
+
+        var result = refine(logName, key, canonical, query);
+        if (result != null) {
+            store(key, result);
+            return result.cases;
+        }
+
+        if (entry == null) {
+            // the filter is evaluated as a whole, if it is requested again
+            cache.asMap().putIfAbsent(key, Entry.REQUESTED);
+        } else if (cache.asMap().replace(key, Entry.REQUESTED, Entry.PENDING)) {
+            evaluate(key, canonical, query);
+        }
+
+        return null;
+    }
+
+    /**
+     * Evaluates a filter as a whole in the background and stores its case set.
+     *
+     * @param key
+     * @param canonical
+     * @param query
+     */
+    private void evaluate(Key key, TreeMap<String, Condition> canonical, BiFunction<RoaringBitmap, List<Condition>, RoaringBitmap> query) {
+        try {
+            executor.execute(() -> {
+                try {
+                    var start = System.currentTimeMillis();
+                    var result = new Entry(query.apply(null, new ArrayList<>(canonical.values())));
+
+                    logger.debug("Evaluated case set of \"{}\" ({} ms)", key.logName, System.currentTimeMillis() - start);
+                    store(key, result);
+                } catch (RuntimeException ex) {
+                    logger.warn("Could not evaluate case set of \"{}\": {}", key.logName, ex.getMessage());
+                    cache.asMap().remove(key, Entry.PENDING);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // the filter is evaluated when it is requested the next time
+            cache.asMap().replace(key, Entry.PENDING, Entry.REQUESTED);
+        }
+    }
+
+    private void store(Key key, Entry entry) {
+        // the log has been changed meanwhile
+        if (versions.isCurrent(key.logName, key.version)) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Evaluates the conditions on the cases of a cached filter that lacks one of them. Returns null, if there is no
+     * such filter.
+     *
+     * @param logName
+     * @param key
+     * @param canonical
+     * @param query
+     * @return
+     */
+    private Entry refine(String logName, Key key, TreeMap<String, Condition> canonical, BiFunction<RoaringBitmap, List<Condition>, RoaringBitmap> query) {
+        for (var i = 0; i < key.conditions.size() && key.conditions.size() > 1; i++) {
+            var conditions = new ArrayList<>(key.conditions);
+            var condition = conditions.remove(i);
+
+            var parent = cache.getIfPresent(new Key(logName, key.version, conditions));
+            if (parent != null && parent.cases != null) {
+                var start = System.currentTimeMillis();
+                var result = query.apply(parent.cases, List.of(canonical.get(condition)));
+
+                logger.debug("Refined case set of \"{}\" from {} cases ({} ms)", logName, parent.cases.getCardinality(), System.currentTimeMillis() - start);
+                return new Entry(result);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Drops the case sets of a log after the log has been changed.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        versions.increment(logName);
+        cache.asMap().keySet().removeIf(x -> x.logName.equals(logName));
+    }
+
+    private TreeMap<String, Condition> canonicalize(List<Condition> conditions) throws JsonProcessingException {
+        var result = new TreeMap<String, Condition>();
+        for (var condition : conditions) {
+            result.put(ConditionKeys.canonicalize(condition), condition);
+        }
+        return result;
+    }
+
+    private static class Key {
+
+        private final String logName;
+        private final long version;
+        private final List<String> conditions;
+
+        Key(String logName, long version, List<String> conditions) {
+            this.logName = logName;
+            this.version = version;
+            this.conditions = conditions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            var key = (Key) o;
+            return version == key.version && logName.equals(key.logName) && conditions.equals(key.conditions);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logName, version, conditions);
+        }
+    }
+
+    private static class Entry {
+
+        // filter that has been requested once, but not been evaluated
+        private static final Entry REQUESTED = new Entry(null, false);
+
+        // filter that is evaluated in the background
+        private static final Entry PENDING = new Entry(null, false);
+
+        // null, if the filter has more than the maximum number of cases
+        private final RoaringBitmap cases;
+        private final boolean evaluated;
+
+        Entry(RoaringBitmap cases) {
+            this(cases, true);
+        }
+
+        private Entry(RoaringBitmap cases, boolean evaluated) {
+            this.cases = cases;
+            this.evaluated = evaluated;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.catalog;
+
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Catalog of the types of the case attribute columns of each log.
+ * <p>
+ * The attribute columns are narrowed after the import, e.g. to boolean, integer or enum columns, while the values of
+ * attribute conditions are sent as text or numbers. The catalog converts the values into the type of the column, so
+ * conditions compare the column itself and its indexes can be used. Values that the column can not hold, e.g. texts
+ * that are no label of an enum, are dropped, as no case has them. The types are loaded with the first attribute
+ * condition and dropped whenever the log changes.
+ */
+@Service
+public class AttributeCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(AttributeCatalog.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // empty, if the columns of the log could not be loaded
+    private final Map<String, Optional<Map<String, Column>>> columns = new ConcurrentHashMap<>();
+
+    public AttributeCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Converts the values of a condition into the type of the case attribute column and drops the values that the
+     * column can not hold. Returns null, if the type of the column is not known.
+     *
+     * @param logName
+     * @param attribute
+     * @param values
+     * @return
+     */
+    public Object[] encode(String logName, String attribute, Object[] values) {
+        var column = columns.computeIfAbsent(logName, this::loadColumns)
+                .map(x -> x.get(attribute))
+                .orElse(null);
+        if (column == null) {
+            return null;
+        }
+
+        var result = new ArrayList<>();
+        for (var value : values) {
+            var encoded = value == null ? null : column.encode(value);
+            if (encoded != null) {
+                result.add(encoded);
+            }
+        }
+        return result.toArray();
+    }
+
+    /**
+     * Drops the column types of a log after it has been changed, they are loaded again with the next condition.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        columns.remove(logName);
+    }
+
+    private Optional<Map<String, Column>> loadColumns(String logName) {
+        var db = new DatabaseModel(logName);
+
+        try {
+            var result = new HashMap<String, Column>();
+            jdbcTemplate.query("SELECT a.attname, format_type(a.atttypid, a.atttypmod), e.enumlabel " +
+                    "FROM pg_attribute a LEFT JOIN pg_enum e ON e.enumtypid = a.atttypid " +
+                    "WHERE a.attrelid = to_regclass(?) AND a.attnum > 0 AND NOT a.attisdropped", (RowCallbackHandler) rs -> {
+                var column = result.computeIfAbsent(rs.getString(1), x -> new Column());
+                column.type = rs.getString(2);
+
+                var label = rs.getString(3);
+                if (label != null) {
+                    column.labels.add(label);
+                }
+            }, db.caseAttributeTable.getTableNameSQL());
+
+            return Optional.of(result);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not load attribute columns of \"{}\", condition values are bound as they are: {}", logName, ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static class Column {
+
+        private String type;
+
+        // labels of an enum column, empty for other types
+        private final Set<String> labels = new HashSet<>();
+
+        /**
+         * Returns the value in the type of the column or null, if the column can not hold the value. Enum labels are
+         * returned as text, which is bound untyped and read as label of the enum of the column.
+         *
+         * @param value
+         * @return
+         */
+        private Object encode(Object value) {
+            var text = value.toString();
+            if (!labels.isEmpty()) {
+                return labels.contains(text) ? text : null;
+            }
+
+            try {
+                switch (type) {
+                    case "boolean":
+                        return value instanceof Boolean ? value : text.equals("true") || text.equals("false") ? Boolean.valueOf(text) : null;
+                    case "smallint":
+                    case "integer":
+                    case "bigint":
+                        return value instanceof Number && !(value instanceof Double || value instanceof Float) ? ((Number) value).longValue() : Long.valueOf(text);
+                    case "real":
+                    case "double precision":
+                        return value instanceof Number ? ((Number) value).doubleValue() : Double.valueOf(text);
+                    default:
+                        return type.startsWith("character varying") || type.equals("text") ? text : value;
+                }
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.catalog;
+
+import org.processexplorer.server.analysis.query.model.Log;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Catalog of the statistics of each log, i.e. its activities, resources, number of events and cases and its attributes
+ * including their annotations. The statistics are computed after an import or with the first query and dropped
+ * whenever the log changes, so unfiltered statistics do not require any query and filtered statistics only require
+ * the counts.
+ */
+@Service
+public class LogStatisticsCatalog {
+
+    private final Map<String, Log> statistics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a copy of the statistics of a log, which are computed by the loader if they are not in the catalog.
+     *
+     * @param logName
+     * @param loader
+     * @return
+     */
+    public Log get(String logName, Function<String, Log> loader) {
+        return copy(statistics.computeIfAbsent(logName, loader));
+    }
+
+    /**
+     * Stores the statistics of a log, e.g. after it has been imported.
+     *
+     * @param logName
+     * @param log
+     */
+    public void put(String logName, Log log) {
+        statistics.put(logName, log);
+    }
+
+    /**
+     * Drops the statistics of a log after it has been changed, they are computed again with the next query.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        statistics.remove(logName);
+    }
+
+    // callers may modify the result
+    private static Log copy(Log log) {
+        var result = new Log();
+        result.setLogName(log.getLogName());
+        result.setNumActivities(log.getNumActivities());
+        result.setNumEvents(log.getNumEvents());
+        result.setNumTraces(log.getNumTraces());
+        result.setActivities(new ArrayList<>(log.getActivities()));
+        result.setResources(new ArrayList<>(log.getResources()));
+        result.setCaseAttributes(new ArrayList<>(log.getCaseAttributes()));
+        result.setEventAttributes(new ArrayList<>(log.getEventAttributes()));
+        return result;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.catalog;
+
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.condition.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog of the distinct paths of each log, i.e. the activity paths of its variants and the resource paths of its
+ * resource variants.
+ * <p>
+ * Path conditions only depend on the path of a case, so they are evaluated once per distinct path instead of matching
+ * a pattern against the variant string of every case. Logs have far less variants than cases, so the conditions are
+ * rewritten into a predicate on the variant id. The paths are loaded with the first path condition and dropped
+ * whenever the log changes.
+ */
+@Service
+public class VariantCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(VariantCatalog.class);
+
+    // conditions that are not translated into SQL
+    private static final Set<Long> IGNORED = Collections.unmodifiableSet(new HashSet<>());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<String, Map<Long, int[]>> variants = new ConcurrentHashMap<>();
+
+    // empty, if the resource paths can not be recovered from their strings
+    private final Map<String, Optional<Map<Long, String[]>>> resourceVariants = new ConcurrentHashMap<>();
+
+    public VariantCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Splits the variant ids of a log into the variants whose path fulfills the condition (true) and the remaining
+     * ones (false). Returns null, if the variants of the log are not available.
+     *
+     * @param logName
+     * @param condition
+     * @return
+     */
+    public Map<Boolean, List<Long>> partition(String logName, PathCondition condition) {
+        try {
+            return partition(variants.computeIfAbsent(logName, this::loadVariants), condition::matches);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not load variants of \"{}\", path conditions are matched by the database: {}", logName, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Splits the resource variant ids of a log into the resource variants whose path fulfills the condition (true)
+     * and the remaining ones (false). Returns null, if the resource variants of the log are not available.
+     *
+     * @param logName
+     * @param condition
+     * @return
+     */
+    public Map<Boolean, List<Long>> partition(String logName, ResourcePathCondition condition) {
+        try {
+            return resourceVariants.computeIfAbsent(logName, this::loadResourceVariants)
+                    .map(x -> partition(x, condition::matches))
+                    .orElse(null);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not load resource variants of \"{}\", path conditions are matched by the database: {}", logName, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Splits the variant ids of a log into the variants that are selected by all conditions (true) and the remaining
+     * ones (false). Returns null, if a condition depends on more than the variant of a case, e.g. on case attributes,
+     * or the variants of the log are not available.
+     *
+     * @param logName
+     * @param conditions
+     * @return
+     */
+    public Map<Boolean, List<Long>> partition(String logName, List<Condition> conditions) {
+        Map<Long, int[]> paths;
+        try {
+            paths = variants.computeIfAbsent(logName, this::loadVariants);
+        } catch (RuntimeException ex) {
+            logger.warn("Could not load variants of \"{}\": {}", logName, ex.getMessage());
+            return null;
+        }
+
+        var selected = IGNORED;
+        if (conditions != null) {
+            for (var condition : conditions) {
+                var matching = select(paths, condition);
+                if (matching == null) {
+                    return null;
+                }
+                selected = intersect(selected, matching);
+            }
+        }
+
+        var result = selected == IGNORED ? paths.keySet() : selected;
+        return paths.keySet().stream()
+                .collect(Collectors.partitioningBy(result::contains));
+    }
+
+    /**
+     * Drops the paths of a log after it has been changed, they are loaded again with the next path condition.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        variants.remove(logName);
+        resourceVariants.remove(logName);
+    }
+
+    /**
+     * Returns the variants that fulfill a condition, null if the condition does not only depend on the variant.
+     *
+     * @param paths
+     * @param condition
+     * @return
+     */
+    private Set<Long> select(Map<Long, int[]> paths, Condition condition) {
+        if (condition instanceof VariantCondition) {
+            var variantIds = ((VariantCondition) condition).getVariantIds();
+            return variantIds == null ? IGNORED : new HashSet<>(Arrays.asList(variantIds));
+        } else if (condition instanceof PathCondition) {
+            var path = (PathCondition) condition;
+            return path.isVariantPredicate() ? new HashSet<>(partition(paths, path::matches).get(true)) : null;
+        } else if (condition instanceof NotCondition) {
+            var inner = ((NotCondition) condition).getCondition();
+            var matching = inner == null ? null : select(paths, inner);
+            if (matching == null || matching == IGNORED) {
+                return null;
+            }
+
+            var result = new HashSet<>(paths.keySet());
+            result.removeAll(matching);
+            return result;
+        } else if (condition instanceof ComboCondition) {
+            var combo = (ComboCondition) condition;
+
+            var result = IGNORED;
+            for (var inner : combo.getConditions()) {
+                var matching = select(paths, inner);
+                if (matching == null) {
+                    return null;
+                } else if (matching == IGNORED) {
+                    continue;
+                }
+
+                if (result == IGNORED) {
+                    result = matching;
+                } else if (combo.getComboType() == ComboType.OR) {
+                    result = new HashSet<>(result);
+                    result.addAll(matching);
+                } else {
+                    result = intersect(result, matching);
+                }
+            }
+            return result;
+        }
+
+        return null;
+    }
+
+    private static Set<Long> intersect(Set<Long> a, Set<Long> b) {
+        if (a == IGNORED) {
+            return b;
+        } else if (b == IGNORED) {
+            return a;
+        }
+
+        var result = new HashSet<>(a);
+        result.retainAll(b);
+        return result;
+    }
+
+    private static <T> Map<Boolean, List<Long>> partition(Map<Long, T> paths, Predicate<T> condition) {
+        return paths.entrySet().parallelStream()
+                .collect(Collectors.partitioningBy(x -> condition.test(x.getValue()),
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+    }
+
+    private Map<Long, int[]> loadVariants(String logName) {
+        var start = System.currentTimeMillis();
+        var db = new DatabaseModel(logName);
+
+        var result = new HashMap<Long, int[]>();
+        jdbcTemplate.query("SELECT id, path FROM " + db.variantsTable.getTableNameSQL(), (RowCallbackHandler) rs -> {
+            var path = (Integer[]) rs.getArray(2).getArray();
+            result.put(rs.getLong(1), Arrays.stream(path).mapToInt(Integer::intValue).toArray());
+        });
+
+        logger.info("Loaded {} variants of \"{}\" ({} ms)", result.size(), logName, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Loads the distinct resource paths of a log. The resource variant ids are hashes of the paths and the names are
+     * joined by colons, so the paths are only used if each id identifies a single path and no name contains colons.
+     *
+     * @param logName
+     * @return
+     */
+    private Optional<Map<Long, String[]>> loadResourceVariants(String logName) {
+        var start = System.currentTimeMillis();
+        var db = new DatabaseModel(logName);
+
+        var separators = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + db.resourceTable.getTableNameSQL() + " WHERE POSITION(':' IN name) > 0)", Boolean.class);
+        if (Boolean.TRUE.equals(separators)) {
+            logger.info("Resource names of \"{}\" contain colons, resource path conditions are matched by the database", logName);
+            return Optional.empty();
+        }
+
+        var strings = new HashMap<Long, String>();
+        var ambiguous = new boolean[1];
+        jdbcTemplate.query("SELECT DISTINCT resource_variant_id, resource_variant FROM " + db.caseTable.getTableNameSQL(), (RowCallbackHandler) rs -> {
+            var id = rs.getLong(1);
+            var noId = rs.wasNull();
+            var path = rs.getString(2);
+
+            // cases without resources have no id, they can not be selected by id
+            ambiguous[0] |= noId || path == null;
+
+            var previous = strings.put(id, path);
+            ambiguous[0] |= previous != null && !previous.equals(path);
+        });
+
+        if (ambiguous[0]) {
+            logger.info("Resource variant ids of \"{}\" are ambiguous, resource path conditions are matched by the database", logName);
+            return Optional.empty();
+        }
+
+        var result = new HashMap<Long, String[]>();
+        strings.forEach((id, path) -> result.put(id, path.length() < 2 ? new String[0] : path.substring(1, path.length() - 1).split("::", -1)));
+
+        logger.info("Loaded {} resource variants of \"{}\" ({} ms)", result.size(), logName, System.currentTimeMillis() - start);
+        return Optional.of(result);
+    }
+}
@@ -73,34 +73,48 @@ public class AttributeCondition extends Condition {
             column = db.caseCaseIdCol;
         }
 
-        // case attribute
+        // case attribute, the values are converted into the type of the column, so the column is compared as it is
+        var bound = values;
         if (column == null) {
             column = db.caseAttributeTable.addColumn("\"" + attribute + "\"");
+            var encoded = db.encode(attribute, values);
+            bound = encoded == null ? values : encoded;
         }
 
         if (values.length == 1) {
             switch (binaryType) {
                 case EQUAL_TO:
-                    return (new BinaryCondition(BinaryCondition.Op.EQUAL_TO, column, values[0]));
+                    return bound.length == 0 ? absent(column) : (new BinaryCondition(BinaryCondition.Op.EQUAL_TO, column, db.bind(bound[0])));
                 case NOT_EQUAL_TO:
-                    return (new NotCondition(new BinaryCondition(BinaryCondition.Op.NOT_EQUAL_TO, column, values[0])));
+                    return bound.length == 0 ? absent(column) : (new NotCondition(new BinaryCondition(BinaryCondition.Op.NOT_EQUAL_TO, column, db.bind(bound[0]))));
             }
         } else {
             switch (binaryType) {
                 case EQUAL_TO:
-                    return (new InCondition(column, values));
+                    return bound.length == 0 ? absent(column) : (new InCondition(column, db.bindAll(bound)));
                 case NOT_EQUAL_TO:
-                    return (new NotCondition(new InCondition(column, values)));
+                    return (new NotCondition(bound.length == 0 ? absent(column) : new InCondition(column, db.bindAll(bound))));
                 case RANGE:
-                    return new BetweenCondition(column, from == null ? stringFrom : from, to == null ? stringTo : to);
+                    return new BetweenCondition(column, db.bind(from == null ? stringFrom : from), db.bind(to == null ? stringTo : to));
                 case INTERVAL_RANGE:
-                    return new BetweenCondition(column, new CustomSql("interval '" + from + " days'"), new CustomSql("interval '" + to + " days'"));
+                    return new BetweenCondition(column, new CustomSql(db.bind(from) + " * interval '1 day'"), new CustomSql(db.bind(to) + " * interval '1 day'"));
             }
         }
 
         return null;
     }
 
+    /**
+     * Returns the comparison of a column with values that it can not hold, which is false for cases with a value and
+     * null for cases without a value.
+     *
+     * @param column
+     * @return
+     */
+    private static com.healthmarketscience.sqlbuilder.Condition absent(DbColumn column) {
+        return BinaryCondition.notEqualTo(column, column);
+    }
+
     public BinaryType getBinaryType() {
         return binaryType;
     }
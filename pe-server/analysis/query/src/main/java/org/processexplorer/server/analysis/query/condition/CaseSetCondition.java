@@ -0,0 +1,73 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.condition;
+
+import com.healthmarketscience.sqlbuilder.BinaryCondition;
+import com.healthmarketscience.sqlbuilder.CustomCondition;
+import com.healthmarketscience.sqlbuilder.CustomSql;
+import org.processexplorer.server.analysis.query.DatabaseModel;
+
+/**
+ * Selects the cases with the given ids, e.g. the cases of a cached filter. An empty set selects no case at all.
+ * <p>
+ * The ids are bound as a single array parameter, so the query has the same shape regardless of the number of cases
+ * and is not restricted by the maximum number of parameters of the database driver.
+ */
+public class CaseSetCondition extends Condition {
+
+    private int[] caseIds;
+
+    public CaseSetCondition() {
+    }
+
+    public CaseSetCondition(int[] caseIds) {
+        this.caseIds = caseIds;
+    }
+
+    /**
+     * Returns a condition that selects no case at all.
+     *
+     * @return
+     */
+    public static CaseSetCondition none() {
+        return new CaseSetCondition(new int[0]);
+    }
+
+    @Override
+    public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
+        if (caseIds == null) {
+            return null;
+        }
+
+        // an empty array is valid, but the constant lets the database skip the query
+        if (caseIds.length == 0) {
+            return new CustomCondition("FALSE");
+        }
+        return BinaryCondition.equalTo(db.caseCaseIdCol, new CustomSql("ANY(" + db.bind(caseIds) + ")"));
+    }
+
+    public int[] getCaseIds() {
+        return caseIds;
+    }
+
+    public void setCaseIds(int[] caseIds) {
+        this.caseIds = caseIds;
+    }
+}
@@ -35,7 +35,8 @@ import org.processexplorer.server.analysis.query.DatabaseModel;
         @JsonSubTypes.Type(value = NotCondition.class, name = "not"),
         @JsonSubTypes.Type(value = ReworkCondition.class, name = "rework"),
         @JsonSubTypes.Type(value = DurationCondition.class, name = "duration"),
-        @JsonSubTypes.Type(value = ResourcePathCondition.class, name = "resourcepath")
+        @JsonSubTypes.Type(value = ResourcePathCondition.class, name = "resourcepath"),
+        @JsonSubTypes.Type(value = CaseSetCondition.class, name = "caseset")
 })
 public abstract class Condition {
 
@@ -0,0 +1,89 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.condition;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Computes the canonical form of conditions, which is used to identify equal conditions in caches and during the
+ * optimization of queries.
+ * <p>
+ * The canonical form is the JSON representation of a condition with its properties sorted by name, so two conditions
+ * have the same form, if they are equal regardless of how they were created.
+ */
+public class ConditionKeys {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true)
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private static final ObjectWriter conditionWriter = objectMapper.writerFor(Condition.class);
+
+    private ConditionKeys() {
+    }
+
+    /**
+     * Returns the canonical form of a condition.
+     *
+     * @param condition
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static String canonicalize(Condition condition) throws JsonProcessingException {
+        return conditionWriter.writeValueAsString(condition);
+    }
+
+    /**
+     * Returns the canonical form of conditions that are combined by AND, so their order is ignored.
+     *
+     * @param conditions
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static String canonicalize(List<Condition> conditions) throws JsonProcessingException {
+        if (conditions == null) {
+            return "[]";
+        }
+
+        var keys = new String[conditions.size()];
+        for (var i = 0; i < keys.length; i++) {
+            keys[i] = canonicalize(conditions.get(i));
+        }
+        return List.of(keys).stream().sorted().collect(Collectors.joining(",", "[", "]"));
+    }
+
+    /**
+     * Returns the canonical form of further parameters of a query, e.g. the options of a process map.
+     *
+     * @param value
+     * @return
+     * @throws JsonProcessingException
+     */
+    public static String canonicalizeValue(Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.condition;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.processexplorer.server.analysis.query.DatabaseModel;
+
+import java.util.*;
+
+/**
+ * Rewrites the conditions of a query into a simpler, canonical form before they are translated into SQL, so equal
+ * filters produce the same query and the same cache key.
+ * <p>
+ * Nested combinations of the same type are flattened and negations are pushed down to the leaves. Variant conditions
+ * of a combination are merged into a single id list, as well as the equality conditions on the same attribute of a
+ * disjunction. Duplicates and conditions that are not translated into SQL are dropped, contradicting variant
+ * conditions select no case at all. Finally, the conditions of a combination are sorted by their canonical form.
+ * <p>
+ * Conditions without SQL are neither true nor false, they are ignored by the enclosing combination like in the
+ * generated query. The rewrite preserves the semantics of the database including null values, e.g. a negation is
+ * never turned into an inequality.
+ */
+public class ConditionOptimizer {
+
+    // results of conditions that are always true or false, only used during the rewrite
+    private static final Condition TRUE = new Constant();
+    private static final Condition FALSE = new Constant();
+
+    /**
+     * Returns the optimized conditions of a query, which are combined by AND. The given conditions are not modified.
+     *
+     * @param conditions
+     * @return
+     */
+    public static List<Condition> optimize(List<Condition> conditions) {
+        if (conditions == null || conditions.isEmpty()) {
+            return conditions;
+        }
+
+        var result = optimize(new ComboCondition(ComboType.AND, conditions));
+        if (result == null || result == TRUE) {
+            return new ArrayList<>();
+        } else if (result == FALSE) {
+            return new ArrayList<>(List.of(CaseSetCondition.none()));
+        } else if (result instanceof ComboCondition && ((ComboCondition) result).getComboType() == ComboType.AND) {
+            return new ArrayList<>(((ComboCondition) result).getConditions());
+        }
+        return new ArrayList<>(List.of(result));
+    }
+
+    /**
+     * Returns the optimized condition, TRUE, FALSE or null, if the condition is not translated into SQL.
+     *
+     * @param condition
+     * @return
+     */
+    private static Condition optimize(Condition condition) {
+        if (condition instanceof VariantCondition) {
+            var variantIds = ((VariantCondition) condition).getVariantIds();
+            if (variantIds == null) {
+                return null;
+            }
+            return variantIds.length == 0 ? FALSE : new VariantCondition(sort(new TreeSet<>(Arrays.asList(variantIds))));
+        } else if (condition instanceof CaseSetCondition) {
+            var caseIds = ((CaseSetCondition) condition).getCaseIds();
+            if (caseIds == null) {
+                return null;
+            }
+            return caseIds.length == 0 ? FALSE : condition;
+        } else if (condition instanceof ClusterCondition) {
+            return ((ClusterCondition) condition).getClusterIndex() == null ? null : condition;
+        } else if (condition instanceof AttributeCondition) {
+            return optimizeAttribute((AttributeCondition) condition);
+        } else if (condition instanceof NotCondition) {
+            var inner = optimize(((NotCondition) condition).getCondition());
+            return inner == null ? null : negate(inner);
+        } else if (condition instanceof ComboCondition) {
+            var combo = (ComboCondition) condition;
+            if (combo.getConditions() == null) {
+                return condition;
+            }
+
+            var conditions = new ArrayList<Condition>();
+            for (var inner : combo.getConditions()) {
+                conditions.add(optimize(inner));
+            }
+            return combine(combo.getComboType() == ComboType.OR ? ComboType.OR : ComboType.AND, conditions);
+        }
+
+        return condition;
+    }
+
+    private static Condition optimizeAttribute(AttributeCondition condition) {
+        var values = condition.getValues();
+        if (values == null) {
+            return condition;
+        }
+
+        // single values are only translated for (in)equality
+        if (values.length == 1 && condition.getBinaryType() != AttributeCondition.BinaryType.EQUAL_TO
+                && condition.getBinaryType() != AttributeCondition.BinaryType.NOT_EQUAL_TO) {
+            return null;
+        }
+
+        if (condition.getBinaryType() != AttributeCondition.BinaryType.EQUAL_TO || values.length < 2) {
+            return condition;
+        }
+        return equalTo(condition.getAttribute(), Arrays.asList(values));
+    }
+
+    /**
+     * Returns the negation of an optimized condition, which is pushed down to the leaves.
+     *
+     * @param condition
+     * @return
+     */
+    private static Condition negate(Condition condition) {
+        if (condition == TRUE) {
+            return FALSE;
+        } else if (condition == FALSE) {
+            return TRUE;
+        } else if (condition instanceof NotCondition) {
+            return ((NotCondition) condition).getCondition();
+        } else if (condition instanceof ComboCondition && ((ComboCondition) condition).getConditions() != null) {
+            var combo = (ComboCondition) condition;
+
+            var conditions = new ArrayList<Condition>();
+            for (var inner : combo.getConditions()) {
+                conditions.add(negate(inner));
+            }
+            return combine(combo.getComboType() == ComboType.OR ? ComboType.AND : ComboType.OR, conditions);
+        } else if (condition instanceof AttributeCondition) {
+            var attribute = (AttributeCondition) condition;
+
+            // both are translated into NOT IN, single values are not
+            if (attribute.getBinaryType() == AttributeCondition.BinaryType.EQUAL_TO && attribute.getValues() != null && attribute.getValues().length > 1) {
+                return new AttributeCondition(attribute.getAttribute(), AttributeCondition.BinaryType.NOT_EQUAL_TO, attribute.getValues());
+            }
+        }
+
+        return new NotCondition(condition);
+    }
+
+    /**
+     * Combines optimized conditions.
+     *
+     * @param type
+     * @param conditions
+     * @return
+     */
+    private static Condition combine(ComboType type, List<Condition> conditions) {
+        var absorbing = type == ComboType.OR ? TRUE : FALSE;
+        var neutral = type == ComboType.OR ? FALSE : TRUE;
+
+        // flatten nested combinations of the same type
+        var flat = new ArrayList<Condition>();
+        for (var condition : conditions) {
+            if (condition instanceof ComboCondition && ((ComboCondition) condition).getComboType() == type) {
+                flat.addAll(((ComboCondition) condition).getConditions());
+            } else {
+                flat.add(condition);
+            }
+        }
+
+        var hasNeutral = false;
+        Set<Long> variants = null;
+        Set<Long> negatedVariants = null;
+        var attributes = new LinkedHashMap<String, List<Object>>();
+        var others = new TreeMap<String, Condition>();
+
+        for (var condition : flat) {
+            if (condition == null) {
+                continue;
+            } else if (condition == absorbing) {
+                return absorbing;
+            } else if (condition == neutral) {
+                hasNeutral = true;
+            } else if (condition instanceof VariantCondition) {
+                variants = merge(type, variants, Arrays.asList(((VariantCondition) condition).getVariantIds()));
+            } else if (isNegatedVariants(condition)) {
+                // the negation of a disjunction is the conjunction of the negations and vice versa
+                var ids = Arrays.asList(((VariantCondition) ((NotCondition) condition).getCondition()).getVariantIds());
+                negatedVariants = merge(type == ComboType.OR ? ComboType.AND : ComboType.OR, negatedVariants, ids);
+            } else if (type == ComboType.OR && isEqualTo(condition)) {
+                var attribute = (AttributeCondition) condition;
+                attributes.computeIfAbsent(attribute.getAttribute(), x -> new ArrayList<>()).addAll(Arrays.asList(attribute.getValues()));
+            } else {
+                others.putIfAbsent(getKey(condition), condition);
+            }
+        }
+
+        if (variants != null) {
+            if (variants.isEmpty()) {
+                // contradicting variants in a conjunction, a disjunction never gets empty
+                return FALSE;
+            }
+            var condition = new VariantCondition(sort(variants));
+            others.putIfAbsent(getKey(condition), condition);
+        }
+
+        if (negatedVariants != null) {
+            if (negatedVariants.isEmpty()) {
+                // the negation of no variant is true
+                if (type == ComboType.OR) {
+                    return TRUE;
+                }
+                hasNeutral = true;
+            } else {
+                var condition = new NotCondition(new VariantCondition(sort(negatedVariants)));
+                others.putIfAbsent(getKey(condition), condition);
+            }
+        }
+
+        for (var attribute : attributes.entrySet()) {
+            var condition = equalTo(attribute.getKey(), attribute.getValue());
+            others.putIfAbsent(getKey(condition), condition);
+        }
+
+        if (others.isEmpty()) {
+            return hasNeutral ? neutral : null;
+        } else if (others.size() == 1) {
+            return others.values().iterator().next();
+        }
+        return new ComboCondition(type, new ArrayList<>(others.values()));
+    }
+
+    private static Set<Long> merge(ComboType type, Set<Long> a, List<Long> b) {
+        if (a == null) {
+            return new TreeSet<>(b);
+        }
+
+        if (type == ComboType.OR) {
+            a.addAll(b);
+        } else {
+            a.retainAll(b);
+        }
+        return a;
+    }
+
+    private static boolean isNegatedVariants(Condition condition) {
+        return condition instanceof NotCondition && ((NotCondition) condition).getCondition() instanceof VariantCondition;
+    }
+
+    private static boolean isEqualTo(Condition condition) {
+        return condition instanceof AttributeCondition
+                && ((AttributeCondition) condition).getBinaryType() == AttributeCondition.BinaryType.EQUAL_TO
+                && ((AttributeCondition) condition).getValues() != null
+                && ((AttributeCondition) condition).getAttribute() != null;
+    }
+
+    /**
+     * Returns an equality condition on the distinct values in canonical order.
+     *
+     * @param attribute
+     * @param values
+     * @return
+     */
+    private static AttributeCondition equalTo(String attribute, List<Object> values) {
+        var distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        distinct.sort(Comparator.comparing(x -> x == null ? "" : x.getClass().getName() + ":" + x));
+        return new AttributeCondition(attribute, AttributeCondition.BinaryType.EQUAL_TO, distinct.toArray());
+    }
+
+    private static Long[] sort(Set<Long> ids) {
+        return new TreeSet<>(ids).toArray(new Long[0]);
+    }
+
+    /**
+     * Returns the canonical form of a condition, which identifies duplicates and orders the conditions.
+     *
+     * @param condition
+     * @return
+     */
+    private static String getKey(Condition condition) {
+        try {
+            return ConditionKeys.canonicalize(condition);
+        } catch (JsonProcessingException ex) {
+            // never equal to another condition
+            return "~" + System.identityHashCode(condition);
+        }
+    }
+
+    private static class Constant extends Condition {
+
+        @Override
+        public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
+            throw new IllegalStateException("Constant conditions are not translated into SQL");
+        }
+    }
+}
@@ -18,9 +18,12 @@
 
 package org.processexplorer.server.analysis.query.condition;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import org.processexplorer.server.analysis.query.DatabaseModel;
 
+import java.util.function.IntPredicate;
+
 /**
  * @author Alexander Seeliger on 24.09.2019.
  */
@@ -41,41 +44,129 @@ public class PathCondition extends Condition {
 
     @Override
     public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
+        if (isVariantPredicate()) {
+            var variants = db.getVariantCondition(this);
+            if (variants != null) {
+                return variants;
+            }
+        }
+
         var path = "";
 
         switch (conditionType) {
             case RESPONSE:
-                return (BinaryCondition.like(db.caseVariantCol, "%:" + start + ":%:" + end + ":%"));
+                return (BinaryCondition.like(db.caseVariantCol, db.bind("%:" + start + ":%:" + end + ":%")));
             case DIRECT_RESPONSE:
-                return (BinaryCondition.like(db.caseVariantCol, "%:" + start + "::" + end + ":%"));
+                return (BinaryCondition.like(db.caseVariantCol, db.bind("%:" + start + "::" + end + ":%")));
             case NO_RESPONSE:
-                return (BinaryCondition.notLike(db.caseVariantCol, "%:" + start + ":%:" + end + ":%"));
+                return (BinaryCondition.notLike(db.caseVariantCol, db.bind("%:" + start + ":%:" + end + ":%")));
             case NO_DIRECT_RESPONSE:
-                return (BinaryCondition.notLike(db.caseVariantCol, "%:" + start + "::" + end + ":%"));
+                return (BinaryCondition.notLike(db.caseVariantCol, db.bind("%:" + start + "::" + end + ":%")));
             case EXISTS:
-                return (BinaryCondition.like(db.caseVariantCol, "%:" + start + ":%"));
+                return (BinaryCondition.like(db.caseVariantCol, db.bind("%:" + start + ":%")));
             case START_END:
                 if (start != null)
                     path += ":" + start + ":";
                 path += "%";
                 if (end != null)
                     path += ":" + end + ":";
-                return (BinaryCondition.like(db.caseVariantCol, path));
+                return (BinaryCondition.like(db.caseVariantCol, db.bind(path)));
             case NO_START_END:
                 if (start != null)
                     path += ":" + start + ":";
                 path += "%";
                 if (end != null)
                     path += ":" + end + ":";
-                return (BinaryCondition.notLike(db.caseVariantCol, path));
+                return (BinaryCondition.notLike(db.caseVariantCol, db.bind(path)));
             case CUSTOM:
             case CUSTOM_EXACT:
-                return (BinaryCondition.like(db.caseVariantCol, start));
+                return (BinaryCondition.like(db.caseVariantCol, db.bind(start)));
         }
 
         return null;
     }
 
+    /**
+     * Returns true, if the condition only depends on the path of a case and can be evaluated per variant.
+     *
+     * @return
+     */
+    @JsonIgnore
+    public boolean isVariantPredicate() {
+        return isVariantPredicate(conditionType);
+    }
+
+    /**
+     * Returns true, if the path of activity ids fulfills the condition. Equivalent to the pattern that is matched
+     * against the variant string of a case.
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(int[] path) {
+        return matches(conditionType, path.length,
+                i -> start != null && path[i] == start,
+                i -> end != null && path[i] == end,
+                start == null, end == null);
+    }
+
+    static boolean isVariantPredicate(ConditionType conditionType) {
+        return conditionType != null && conditionType != ConditionType.CUSTOM && conditionType != ConditionType.CUSTOM_EXACT;
+    }
+
+    /**
+     * Evaluates a condition on a path of the given length, of which the positions of the start and end element are
+     * tested by predicates.
+     *
+     * @param conditionType
+     * @param length
+     * @param isStart
+     * @param isEnd
+     * @param anyStart      true, if the path may begin with any element (START_END only)
+     * @param anyEnd        true, if the path may end with any element (START_END only)
+     * @return
+     */
+    static boolean matches(ConditionType conditionType, int length, IntPredicate isStart, IntPredicate isEnd, boolean anyStart, boolean anyEnd) {
+        switch (conditionType) {
+            case RESPONSE:
+                var started = false;
+                for (int i = 0; i < length; i++) {
+                    if (started && isEnd.test(i)) {
+                        return true;
+                    }
+                    started |= isStart.test(i);
+                }
+                return false;
+            case DIRECT_RESPONSE:
+                for (int i = 0; i + 1 < length; i++) {
+                    if (isStart.test(i) && isEnd.test(i + 1)) {
+                        return true;
+                    }
+                }
+                return false;
+            case NO_RESPONSE:
+                return !matches(ConditionType.RESPONSE, length, isStart, isEnd, anyStart, anyEnd);
+            case NO_DIRECT_RESPONSE:
+                return !matches(ConditionType.DIRECT_RESPONSE, length, isStart, isEnd, anyStart, anyEnd);
+            case EXISTS:
+                for (int i = 0; i < length; i++) {
+                    if (isStart.test(i)) {
+                        return true;
+                    }
+                }
+                return false;
+            case START_END:
+                // the pattern of both elements requires two elements, even if they are equal
+                if (!anyStart && !anyEnd && length < 2) {
+                    return false;
+                }
+                return (anyStart || (length > 0 && isStart.test(0))) && (anyEnd || (length > 0 && isEnd.test(length - 1)));
+            case NO_START_END:
+                return !matches(ConditionType.START_END, length, isStart, isEnd, anyStart, anyEnd);
+            default:
+                throw new IllegalArgumentException("Condition type " + conditionType + " can not be evaluated on paths");
+        }
+    }
 
     public ConditionType getConditionType() {
         return conditionType;
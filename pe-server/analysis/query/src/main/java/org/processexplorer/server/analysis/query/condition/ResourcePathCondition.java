@@ -18,6 +18,7 @@
 
 package org.processexplorer.server.analysis.query.condition;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import org.processexplorer.server.analysis.query.DatabaseModel;
 
@@ -41,41 +42,81 @@ public class ResourcePathCondition extends Condition {
 
     @Override
     public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
+        if (isVariantPredicate()) {
+            var variants = db.getResourceVariantCondition(this);
+            if (variants != null) {
+                return variants;
+            }
+        }
+
         var path = "";
 
         switch (conditionType) {
             case RESPONSE:
-                return (BinaryCondition.like(db.caseResourceVariantCol, "%:" + start + ":%:" + end + ":%"));
+                return (BinaryCondition.like(db.caseResourceVariantCol, db.bind("%:" + start + ":%:" + end + ":%")));
             case DIRECT_RESPONSE:
-                return (BinaryCondition.like(db.caseResourceVariantCol, "%:" + start + "::" + end + ":%"));
+                return (BinaryCondition.like(db.caseResourceVariantCol, db.bind("%:" + start + "::" + end + ":%")));
             case NO_RESPONSE:
-                return (BinaryCondition.notLike(db.caseResourceVariantCol, "%:" + start + ":%:" + end + ":%"));
+                return (BinaryCondition.notLike(db.caseResourceVariantCol, db.bind("%:" + start + ":%:" + end + ":%")));
             case NO_DIRECT_RESPONSE:
-                return (BinaryCondition.notLike(db.caseResourceVariantCol, "%:" + start + "::" + end + ":%"));
+                return (BinaryCondition.notLike(db.caseResourceVariantCol, db.bind("%:" + start + "::" + end + ":%")));
             case EXISTS:
-                return (BinaryCondition.like(db.caseResourceVariantCol, "%:" + start + ":%"));
+                return (BinaryCondition.like(db.caseResourceVariantCol, db.bind("%:" + start + ":%")));
             case START_END:
                 if (start != null)
                     path += ":" + start + ":";
                 path += "%";
                 if (end != null)
                     path += ":" + end + ":";
-                return (BinaryCondition.like(db.caseResourceVariantCol, path));
+                return (BinaryCondition.like(db.caseResourceVariantCol, db.bind(path)));
             case NO_START_END:
                 if (start != null)
                     path += ":" + start + ":";
                 path += "%";
                 if (end != null)
                     path += ":" + end + ":";
-                return (BinaryCondition.notLike(db.caseResourceVariantCol, path));
+                return (BinaryCondition.notLike(db.caseResourceVariantCol, db.bind(path)));
             case CUSTOM:
             case CUSTOM_EXACT:
-                return (BinaryCondition.like(db.caseResourceVariantCol, start));
+                return (BinaryCondition.like(db.caseResourceVariantCol, db.bind(start)));
         }
 
         return null;
     }
 
+    /**
+     * Returns true, if the condition only depends on the resource path of a case and can be evaluated per resource
+     * variant. Names that contain wildcards or separators of the pattern are only matched by the database.
+     *
+     * @return
+     */
+    @JsonIgnore
+    public boolean isVariantPredicate() {
+        return conditionType != null && PathCondition.isVariantPredicate(getPathConditionType())
+                && !containsWildcard(start) && !containsWildcard(end);
+    }
+
+    /**
+     * Returns true, if the path of resource names fulfills the condition. Equivalent to the pattern that is matched
+     * against the resource variant string of a case.
+     *
+     * @param path
+     * @return
+     */
+    public boolean matches(String[] path) {
+        return PathCondition.matches(getPathConditionType(), path.length,
+                i -> start != null && path[i].equals(start),
+                i -> end != null && path[i].equals(end),
+                start == null, end == null);
+    }
+
+    private PathCondition.ConditionType getPathConditionType() {
+        return PathCondition.ConditionType.valueOf(conditionType.name());
+    }
+
+    private static boolean containsWildcard(String value) {
+        return value != null && (value.contains("%") || value.contains("_") || value.contains("\\") || value.contains(":"));
+    }
 
     public ConditionType getConditionType() {
         return conditionType;
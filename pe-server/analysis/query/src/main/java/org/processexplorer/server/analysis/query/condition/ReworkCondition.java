@@ -47,10 +47,10 @@ public class ReworkCondition extends Condition {
     public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
         var query = new SelectQuery()
                 .addColumns(db.eventCaseIdCol)
-                .addCondition(BinaryCondition.equalTo(db.eventEventCol, activity))
+                .addCondition(BinaryCondition.equalTo(db.eventEventCol, db.bind(activity)))
                 .addFromTable(db.eventTable)
                 .addGroupings(db.eventCaseIdCol)
-                .addHaving(ComboCondition.and(BinaryCondition.greaterThanOrEq(FunctionCall.countAll(), min), BinaryCondition.lessThanOrEq(FunctionCall.countAll(), max)));
+                .addHaving(ComboCondition.and(BinaryCondition.greaterThanOrEq(FunctionCall.countAll(), db.bind(min)), BinaryCondition.lessThanOrEq(FunctionCall.countAll(), db.bind(max))));
 
         return new InCondition(db.caseAttributeCaseIdCol, query);
     }
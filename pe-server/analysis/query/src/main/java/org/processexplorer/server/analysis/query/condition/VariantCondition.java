@@ -18,10 +18,11 @@
 
 package org.processexplorer.server.analysis.query.condition;
 
-import com.healthmarketscience.sqlbuilder.BinaryCondition;
-import com.healthmarketscience.sqlbuilder.InCondition;
+import com.healthmarketscience.sqlbuilder.CustomCondition;
 import org.processexplorer.server.analysis.query.DatabaseModel;
 
+import java.util.Arrays;
+
 /**
  * @author Alexander Seeliger on 27.09.2019.
  */
@@ -39,7 +40,11 @@ public class VariantCondition extends Condition {
     @Override
     public com.healthmarketscience.sqlbuilder.Condition getCondition(DatabaseModel db) {
         if (variantIds != null) {
-            return new InCondition(db.caseVariantIdCol, variantIds);
+            // no variant selects no case
+            if (variantIds.length == 0) {
+                return new CustomCondition("FALSE");
+            }
+            return db.getAnyCondition(db.caseVariantIdCol, Arrays.stream(variantIds).mapToLong(Long::longValue).toArray());
         }
         return null;
     }
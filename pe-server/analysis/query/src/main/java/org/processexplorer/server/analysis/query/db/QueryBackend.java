@@ -0,0 +1,53 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * Engine that executes the analytical queries on the tables of the logs. The queries are generated in the PostgreSQL
+ * dialect and the tables are written to PostgreSQL, so an engine has to read the tables of PostgreSQL natively or copy
+ * them, and translate the functions of the dialect.
+ */
+public interface QueryBackend {
+
+    /**
+     * Returns the template that executes the queries.
+     *
+     * @return
+     */
+    JdbcTemplate getJdbcTemplate();
+
+    /**
+     * Returns the template that executes the queries with the parameters that are bound by the conditions, see
+     * {@link org.processexplorer.server.analysis.query.DatabaseModel#bind(Object)}.
+     *
+     * @return
+     */
+    NamedParameterJdbcTemplate getNamedParameterJdbcTemplate();
+
+    /**
+     * Called after tables of a log were created, altered or dropped, so that cached table definitions are reloaded.
+     */
+    default void refresh() {
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.db;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Available engines to execute the analytical queries.
+ */
+public enum QueryBackendType {
+
+    /**
+     * The PostgreSQL database that stores the logs.
+     */
+    POSTGRES;
+
+    /**
+     * Creates the engine.
+     *
+     * @param jdbcTemplate
+     * @return
+     */
+    public QueryBackend create(JdbcTemplate jdbcTemplate) {
+        return new PostgresQueryBackend(jdbcTemplate);
+    }
+
+}
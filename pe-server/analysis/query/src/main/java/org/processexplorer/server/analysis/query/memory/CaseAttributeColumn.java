@@ -0,0 +1,101 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoded case attribute of a columnar event log. Each case stores the index of its value in the
+ * dictionary, cases without value store -1.
+ */
+public class CaseAttributeColumn {
+
+    private final String name;
+
+    private final IntBuffer codes;
+
+    private final List<Object> dictionary;
+
+    // only used while the column is loaded
+    private Map<Object, Integer> index;
+
+    CaseAttributeColumn(String name, IntBuffer codes, int numCases) {
+        this.name = name;
+        this.codes = codes;
+        this.dictionary = new ArrayList<>();
+        this.index = new HashMap<>();
+
+        for (int i = 0; i < numCases; i++) {
+            codes.put(i, -1);
+        }
+    }
+
+    CaseAttributeColumn(String name, IntBuffer codes, List<Object> dictionary) {
+        this.name = name;
+        this.codes = codes;
+        this.dictionary = dictionary;
+    }
+
+    void set(int caseIndex, Object value) {
+        if (value == null) {
+            return;
+        }
+
+        codes.put(caseIndex, index.computeIfAbsent(value, x -> {
+            dictionary.add(x);
+            return dictionary.size() - 1;
+        }));
+    }
+
+    void freeze() {
+        index = null;
+    }
+
+    IntBuffer getCodes() {
+        return codes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the index of the value of a case in the dictionary or -1, if the case has no value.
+     *
+     * @param caseIndex
+     * @return
+     */
+    public int getCode(int caseIndex) {
+        return codes.get(caseIndex);
+    }
+
+    public Object getValue(int caseIndex) {
+        var code = codes.get(caseIndex);
+        return code < 0 ? null : dictionary.get(code);
+    }
+
+    public List<Object> getDictionary() {
+        return dictionary;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.memory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.processexplorer.server.analysis.query.condition.Condition;
+import org.processexplorer.server.analysis.query.condition.ConditionKeys;
+
+import java.util.function.Function;
+
+/**
+ * Caches the case sets of the leaf conditions of a log, so filters that are stacked in the portal only combine the
+ * bitmaps of their conditions instead of scanning the log again.
+ * <p>
+ * Each snapshot of a log has its own cache, which is dropped together with the snapshot when the log changes. The
+ * conditions are stored by their canonical form and the size of the cache is bounded by the size of the bitmaps.
+ */
+class CaseSetCache {
+
+    // maximum size of the bitmaps of a log in bytes
+    private static final long MAXIMUM_SIZE = 64L * 1024 * 1024;
+
+    private final Cache<String, ColumnarConditionEvaluator.Match> cache = Caffeine.newBuilder()
+            .maximumWeight(MAXIMUM_SIZE)
+            .weigher((String key, ColumnarConditionEvaluator.Match match) -> match.getSizeInBytes())
+            .build();
+
+    /**
+     * Returns the cached case set of a condition or evaluates the condition and caches its case set. Conditions that
+     * are not supported are not cached.
+     *
+     * @param condition
+     * @param evaluator
+     * @return
+     */
+    ColumnarConditionEvaluator.Match get(Condition condition, Function<Condition, ColumnarConditionEvaluator.Match> evaluator) {
+        String key;
+        try {
+            key = ConditionKeys.canonicalize(condition);
+        } catch (JsonProcessingException ex) {
+            return evaluator.apply(condition);
+        }
+
+        return cache.get(key, x -> evaluator.apply(condition));
+    }
+}
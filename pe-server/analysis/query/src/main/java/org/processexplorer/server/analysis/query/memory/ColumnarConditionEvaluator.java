@@ -0,0 +1,450 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.processexplorer.server.analysis.query.condition.*;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.RoaringBitmapWriter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates the conditions of a query on a columnar event log and returns the matching cases as compressed bitmap over
+ * the case indexes. Conditions that can not be evaluated in memory yield null, so the query is answered by the
+ * database.
+ * <p>
+ * Each leaf condition is evaluated once per snapshot of the log and its bitmap is cached, combinations and negations of
+ * conditions are bitmap operations on the cached bitmaps. The cached bitmaps are shared, so they are never modified.
+ * Like in SQL, a condition is unknown for cases without value, which is kept separately so that negations do not
+ * select them.
+ */
+public class ColumnarConditionEvaluator {
+
+    private final ColumnarEventLog log;
+
+    public ColumnarConditionEvaluator(ColumnarEventLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Returns the cases that fulfill all conditions or null, if a condition is not supported.
+     *
+     * @param conditions
+     * @return
+     */
+    public RoaringBitmap evaluate(List<Condition> conditions) {
+        var result = all();
+
+        if (conditions == null) {
+            return result.matches;
+        }
+
+        for (var condition : conditions) {
+            var match = evaluate(condition);
+            if (match == null) {
+                return null;
+            } else if (match != Match.IGNORED) {
+                result = and(result, match);
+            }
+        }
+
+        return result.matches;
+    }
+
+    private Match evaluate(Condition condition) {
+        if (condition instanceof NotCondition) {
+            var inner = ((NotCondition) condition).getCondition();
+            var match = inner == null ? null : evaluate(inner);
+            if (match == null || match == Match.IGNORED) {
+                return null;
+            }
+            return not(match);
+        } else if (condition instanceof ComboCondition) {
+            return evaluateCombo((ComboCondition) condition);
+        }
+
+        return log.getCaseSets().get(condition, x -> optimize(evaluateLeaf(x)));
+    }
+
+    /**
+     * Compresses the runs of consecutive cases in the bitmaps of a leaf condition before it is cached.
+     *
+     * @param match
+     * @return
+     */
+    private Match optimize(Match match) {
+        if (match != null && match != Match.IGNORED) {
+            match.matches.runOptimize();
+            match.unknown.runOptimize();
+        }
+        return match;
+    }
+
+    private Match evaluateLeaf(Condition condition) {
+        if (condition instanceof VariantCondition) {
+            return evaluateVariant((VariantCondition) condition);
+        } else if (condition instanceof CaseSetCondition) {
+            return evaluateCaseSet((CaseSetCondition) condition);
+        } else if (condition instanceof ClusterCondition) {
+            var cluster = (ClusterCondition) condition;
+            return cluster.getClusterIndex() == null ? Match.IGNORED : evaluateEqual("cluster_index", new Object[]{cluster.getClusterIndex()});
+        } else if (condition instanceof AttributeCondition) {
+            return evaluateAttribute((AttributeCondition) condition);
+        } else if (condition instanceof DurationCondition) {
+            return evaluateDuration((DurationCondition) condition);
+        } else if (condition instanceof ReworkCondition) {
+            return evaluateRework((ReworkCondition) condition);
+        } else if (condition instanceof PathCondition) {
+            return evaluatePath((PathCondition) condition);
+        }
+
+        return null;
+    }
+
+    private Match evaluateVariant(VariantCondition condition) {
+        if (condition.getVariantIds() == null) {
+            return Match.IGNORED;
+        }
+
+        var variants = new HashSet<Long>(Arrays.asList(condition.getVariantIds()));
+        return scan(i -> variants.contains((long) log.getVariantId(i)));
+    }
+
+    private Match evaluateCaseSet(CaseSetCondition condition) {
+        if (condition.getCaseIds() == null) {
+            return Match.IGNORED;
+        }
+
+        var cases = RoaringBitmap.bitmapOf(condition.getCaseIds());
+        return scan(i -> cases.contains(log.getCaseId(i)));
+    }
+
+    /**
+     * Evaluates a path condition once per variant and selects the cases of the matching variants.
+     *
+     * @param condition
+     * @return
+     */
+    private Match evaluatePath(PathCondition condition) {
+        if (!condition.isVariantPredicate()) {
+            return null;
+        }
+
+        var variants = log.getVariantPaths().entrySet().parallelStream()
+                .filter(x -> condition.matches(x.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        return scan(i -> variants.contains(log.getVariantId(i)));
+    }
+
+    private Match evaluateCombo(ComboCondition condition) {
+        Match result = null;
+        for (var inner : condition.getConditions()) {
+            var match = evaluate(inner);
+            if (match == null) {
+                return null;
+            } else if (match == Match.IGNORED) {
+                continue;
+            }
+
+            if (result == null) {
+                result = match;
+            } else {
+                result = condition.getComboType() == ComboType.OR ? or(result, match) : and(result, match);
+            }
+        }
+
+        return result == null ? Match.IGNORED : result;
+    }
+
+    private Match evaluateAttribute(AttributeCondition condition) {
+        var values = condition.getValues();
+        if (values == null) {
+            return null;
+        }
+
+        if (values.length == 1) {
+            // the database negates the inequality, so both types select equal values
+            switch (condition.getBinaryType()) {
+                case EQUAL_TO:
+                case NOT_EQUAL_TO:
+                    return evaluateEqual(condition.getAttribute(), values);
+                default:
+                    return null;
+            }
+        }
+
+        switch (condition.getBinaryType()) {
+            case EQUAL_TO:
+                return evaluateEqual(condition.getAttribute(), values);
+            case NOT_EQUAL_TO:
+                var match = evaluateEqual(condition.getAttribute(), values);
+                return match == null ? null : not(match);
+            case RANGE:
+                if (condition.getFrom() == null || condition.getTo() == null) {
+                    return null;
+                }
+                return evaluateValue(condition.getAttribute(), x -> x instanceof Number
+                        && ((Number) x).doubleValue() >= condition.getFrom() && ((Number) x).doubleValue() <= condition.getTo());
+            case INTERVAL_RANGE:
+                if (!condition.getAttribute().equals("c_duration") || condition.getFrom() == null || condition.getTo() == null) {
+                    return null;
+                }
+                var from = condition.getFrom() * 86400.0;
+                var to = condition.getTo() * 86400.0;
+                return scanDuration(x -> x >= from && x <= to);
+            default:
+                return null;
+        }
+    }
+
+    private Match evaluateEqual(String attribute, Object[] values) {
+        return evaluateValue(attribute, x -> {
+            for (var value : values) {
+                if (isEqual(x, value)) {
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Evaluates a predicate on the values of a case attribute or the case id. The predicate is evaluated once per
+     * distinct value.
+     *
+     * @param attribute
+     * @param predicate
+     * @return
+     */
+    private Match evaluateValue(String attribute, Predicate<Object> predicate) {
+        if (attribute.equals("c_id")) {
+            return scan(i -> predicate.test(log.getCaseId(i)));
+        }
+
+        var column = log.getCaseAttribute(attribute);
+        if (column == null || !isComparable(column)) {
+            return null;
+        }
+
+        var dictionary = column.getDictionary();
+        var matchingCodes = new boolean[dictionary.size()];
+        for (int i = 0; i < matchingCodes.length; i++) {
+            matchingCodes[i] = predicate.test(dictionary.get(i));
+        }
+
+        var matches = RoaringBitmapWriter.writer().get();
+        var unknown = RoaringBitmapWriter.writer().get();
+        for (int i = 0; i < log.getNumCases(); i++) {
+            var code = column.getCode(i);
+            if (code < 0) {
+                unknown.add(i);
+            } else if (matchingCodes[code]) {
+                matches.add(i);
+            }
+        }
+
+        return new Match(matches.get(), unknown.get());
+    }
+
+    /**
+     * Selects the cases in which the time from the first event of an activity to the last event of another activity
+     * is within the given bounds.
+     *
+     * @param condition
+     * @return
+     */
+    private Match evaluateDuration(DurationCondition condition) {
+        if (condition.getMinDuration() == null && condition.getMaxDuration() == null) {
+            return null;
+        }
+
+        var from = condition.getFrom() == null ? -1 : condition.getFrom();
+        var to = condition.getTo() == null ? -2 : condition.getTo();
+        var min = condition.getMinDuration() == null ? Double.NEGATIVE_INFINITY : getSeconds(condition.getMinDuration(), condition.getUnit());
+        var max = condition.getMaxDuration() == null ? Double.POSITIVE_INFINITY : getSeconds(condition.getMaxDuration(), condition.getUnit());
+
+        return scan(i -> {
+            var start = Long.MAX_VALUE;
+            var end = Long.MIN_VALUE;
+            for (int e = log.getFirstEvent(i); e < log.getEndEvent(i); e++) {
+                var timestamp = log.getTimestamp(e);
+                if (timestamp == ColumnarEventLog.NO_TIMESTAMP) {
+                    continue;
+                }
+                if (from == -1 || log.getActivity(e) == from) {
+                    start = Math.min(start, timestamp);
+                }
+                if (to == -2 || log.getActivity(e) == to) {
+                    end = Math.max(end, timestamp);
+                }
+            }
+
+            if (start == Long.MAX_VALUE || end == Long.MIN_VALUE) {
+                return false;
+            }
+
+            var duration = (end - start) / 1000.0;
+            return duration >= min && duration <= max;
+        });
+    }
+
+    private Match evaluateRework(ReworkCondition condition) {
+        if (condition.getActivity() == null) {
+            return null;
+        }
+
+        int activity = condition.getActivity();
+        return scan(i -> {
+            var count = 0;
+            for (int e = log.getFirstEvent(i); e < log.getEndEvent(i); e++) {
+                if (log.getActivity(e) == activity) {
+                    count++;
+                }
+            }
+            return count > 0 && count >= condition.getMin() && count <= condition.getMax();
+        });
+    }
+
+    private double getSeconds(long duration, String unit) {
+        if (unit.equals("days")) {
+            return duration * 60 * 60 * 24;
+        } else if (unit.equals("hours")) {
+            return duration * 60 * 60;
+        } else {
+            return duration * 60;
+        }
+    }
+
+    private Match scan(IntPredicate predicate) {
+        var matches = RoaringBitmapWriter.writer().get();
+        for (int i = 0; i < log.getNumCases(); i++) {
+            if (predicate.test(i)) {
+                matches.add(i);
+            }
+        }
+        return new Match(matches.get(), new RoaringBitmap());
+    }
+
+    private Match scanDuration(DoublePredicate predicate) {
+        var matches = RoaringBitmapWriter.writer().get();
+        var unknown = RoaringBitmapWriter.writer().get();
+        for (int i = 0; i < log.getNumCases(); i++) {
+            var duration = log.getDuration(i);
+            if (Double.isNaN(duration)) {
+                unknown.add(i);
+            } else if (predicate.test(duration)) {
+                matches.add(i);
+            }
+        }
+        return new Match(matches.get(), unknown.get());
+    }
+
+    /**
+     * Returns true, if the values of the column can be compared like in the database. Temporal values are compared by
+     * the database using its own parsing of the literals.
+     *
+     * @param column
+     * @return
+     */
+    private boolean isComparable(CaseAttributeColumn column) {
+        for (var value : column.getDictionary()) {
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isEqual(Object value, Object literal) {
+        if (literal == null) {
+            return false;
+        }
+
+        if (value instanceof Number) {
+            if (literal instanceof Number) {
+                return ((Number) value).doubleValue() == ((Number) literal).doubleValue();
+            }
+            try {
+                return ((Number) value).doubleValue() == Double.parseDouble(literal.toString());
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        } else if (value instanceof Boolean) {
+            return value.toString().equalsIgnoreCase(literal.toString());
+        }
+
+        return value.toString().equals(literal.toString());
+    }
+
+    private Match all() {
+        return new Match(RoaringBitmap.bitmapOfRange(0, log.getNumCases()), new RoaringBitmap());
+    }
+
+    private Match not(Match match) {
+        var matches = RoaringBitmap.flip(RoaringBitmap.or(match.matches, match.unknown), 0L, log.getNumCases());
+        return new Match(matches, match.unknown);
+    }
+
+    private Match and(Match a, Match b) {
+        var matches = RoaringBitmap.and(a.matches, b.matches);
+
+        // unknown, if one side is unknown and the other one is not false
+        var aUnknown = RoaringBitmap.and(a.unknown, RoaringBitmap.or(b.matches, b.unknown));
+        var bUnknown = RoaringBitmap.and(b.unknown, RoaringBitmap.or(a.matches, a.unknown));
+
+        return new Match(matches, RoaringBitmap.or(aUnknown, bUnknown));
+    }
+
+    private Match or(Match a, Match b) {
+        var matches = RoaringBitmap.or(a.matches, b.matches);
+        var unknown = RoaringBitmap.andNot(RoaringBitmap.or(a.unknown, b.unknown), matches);
+        return new Match(matches, unknown);
+    }
+
+    /**
+     * Cases for which a condition is true and cases for which it is unknown.
+     */
+    static class Match {
+
+        // conditions that are not translated into SQL
+        private static final Match IGNORED = new Match(null, null);
+
+        private final RoaringBitmap matches;
+
+        private final RoaringBitmap unknown;
+
+        private Match(RoaringBitmap matches, RoaringBitmap unknown) {
+            this.matches = matches;
+            this.unknown = unknown;
+        }
+
+        int getSizeInBytes() {
+            return matches == null ? 1 : (int) Math.min(Integer.MAX_VALUE, matches.getLongSizeInBytes() + unknown.getLongSizeInBytes());
+        }
+    }
+}
@@ -0,0 +1,427 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.model.Activity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot of the events and cases of a log in primitive columns, which is used to answer queries without the
+ * database.
+ * <p>
+ * The cases are sorted by case id. The events are sorted by case, timestamp and activity, the events of the case at
+ * index i are stored from caseOffsets[i] to caseOffsets[i + 1]. Activities and resources are stored by their id in
+ * the dictionaries of the log, timestamps as epoch milliseconds. The columns are either stored on the heap or mapped
+ * from a snapshot file, see {@link EventLogSnapshot}.
+ */
+public class ColumnarEventLog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarEventLog.class);
+
+    public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    public static final int NO_RESOURCE = -1;
+
+    private static final int FETCH_SIZE = 10000;
+
+    // estimated memory of an event and a case (without attributes) in bytes
+    private static final long EVENT_BYTES = 16;
+    private static final long CASE_BYTES = 12;
+
+    /**
+     * Provides the storage of the columns while a log is loaded.
+     */
+    interface ColumnAllocator {
+
+        IntBuffer allocateInts(int size);
+
+        LongBuffer allocateLongs(int size);
+
+    }
+
+    private static final ColumnAllocator HEAP = new ColumnAllocator() {
+        @Override
+        public IntBuffer allocateInts(int size) {
+            return IntBuffer.wrap(new int[size]);
+        }
+
+        @Override
+        public LongBuffer allocateLongs(int size) {
+            return LongBuffer.wrap(new long[size]);
+        }
+    };
+
+    private final String logName;
+
+    private final int numCases;
+    private final int numEvents;
+
+    private final IntBuffer caseIds;
+    private final IntBuffer caseOffsets;
+    private final IntBuffer variantIds;
+
+    private final IntBuffer activities;
+    private final LongBuffer timestamps;
+    private final IntBuffer resources;
+
+    private final List<Activity> activityDictionary;
+    private final List<String> resourceNames;
+    private final Map<Integer, int[]> variantPaths;
+    private final Map<String, CaseAttributeColumn> caseAttributes;
+
+    private final CaseSetCache caseSets = new CaseSetCache();
+
+    ColumnarEventLog(String logName, int numCases, int numEvents,
+                     IntBuffer caseIds, IntBuffer caseOffsets, IntBuffer variantIds,
+                     IntBuffer activities, LongBuffer timestamps, IntBuffer resources,
+                     List<Activity> activityDictionary, List<String> resourceNames,
+                     Map<Integer, int[]> variantPaths, Map<String, CaseAttributeColumn> caseAttributes) {
+        this.logName = logName;
+        this.numCases = numCases;
+        this.numEvents = numEvents;
+        this.caseIds = caseIds;
+        this.caseOffsets = caseOffsets;
+        this.variantIds = variantIds;
+        this.activities = activities;
+        this.timestamps = timestamps;
+        this.resources = resources;
+        this.activityDictionary = activityDictionary;
+        this.resourceNames = resourceNames;
+        this.variantPaths = variantPaths;
+        this.caseAttributes = caseAttributes;
+    }
+
+    /**
+     * Loads the events, cases and case attributes of a log onto the heap. Logs that do not fit into the available
+     * memory are rejected.
+     *
+     * @param jdbcTemplate
+     * @param logName
+     * @return
+     */
+    public static ColumnarEventLog load(JdbcTemplate jdbcTemplate, String logName) {
+        return load(jdbcTemplate, logName, HEAP);
+    }
+
+    /**
+     * Loads the events, cases and case attributes of a log into the columns provided by the allocator.
+     *
+     * @param jdbcTemplate
+     * @param logName
+     * @param allocator
+     * @return
+     */
+    static ColumnarEventLog load(JdbcTemplate jdbcTemplate, String logName, ColumnAllocator allocator) {
+        var start = System.currentTimeMillis();
+        var db = new DatabaseModel(logName);
+        var events = db.eventTable.getTableNameSQL();
+        var cases = db.caseTable.getTableNameSQL();
+        var attributes = db.caseAttributeTable.getTableNameSQL();
+
+        var numEvents = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + events, Integer.class);
+        var numCases = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + cases, Integer.class);
+        var attributeColumns = getAttributeColumns(jdbcTemplate, attributes);
+
+        if (allocator == HEAP) {
+            var required = numEvents * EVENT_BYTES + numCases * (CASE_BYTES + 4L * attributeColumns.size());
+            var runtime = Runtime.getRuntime();
+            var available = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            if (required > available / 2) {
+                throw new IllegalStateException("Event log \"" + logName + "\" requires about " + (required >> 20) + " MB, which exceeds the available memory");
+            }
+        }
+
+        // cases, rows that are added meanwhile are ignored
+        var caseIds = allocator.allocateInts(numCases);
+        var variantIds = allocator.allocateInts(numCases);
+        var caseCount = new int[1];
+        stream(jdbcTemplate, "SELECT case_id, variant_id FROM " + cases + " ORDER BY case_id", rs -> {
+            if (caseCount[0] < numCases) {
+                caseIds.put(caseCount[0], rs.getInt(1));
+                variantIds.put(caseCount[0], rs.getInt(2));
+                caseCount[0]++;
+            }
+        });
+
+        var loadedCases = caseCount[0];
+
+        // events, sorted like the directly-follows relation
+        var caseOffsets = allocator.allocateInts(loadedCases + 1);
+        var activities = allocator.allocateInts(numEvents);
+        var timestamps = allocator.allocateLongs(numEvents);
+        var resources = allocator.allocateInts(numEvents);
+        var eventCount = new int[1];
+        var caseIndex = new int[]{-1};
+        stream(jdbcTemplate, "SELECT case_id, event, timestamp, resource FROM " + events + " ORDER BY case_id, timestamp, event", rs -> {
+            var caseId = rs.getInt(1);
+            while (caseIndex[0] + 1 < loadedCases && caseIds.get(caseIndex[0] + 1) <= caseId) {
+                caseIndex[0]++;
+                caseOffsets.put(caseIndex[0], eventCount[0]);
+            }
+
+            // events of cases that are not part of the cases table
+            if (caseIndex[0] < 0 || caseIds.get(caseIndex[0]) != caseId || eventCount[0] >= numEvents) {
+                return;
+            }
+
+            var i = eventCount[0]++;
+            activities.put(i, rs.getInt(2));
+            var timestamp = rs.getTimestamp(3);
+            timestamps.put(i, timestamp == null ? NO_TIMESTAMP : timestamp.getTime());
+            var resource = rs.getInt(4);
+            resources.put(i, rs.wasNull() ? NO_RESOURCE : resource);
+        });
+
+        for (int i = caseIndex[0] + 1; i <= loadedCases; i++) {
+            caseOffsets.put(i, eventCount[0]);
+        }
+
+        // dictionaries
+        var activityDictionary = new ArrayList<Activity>();
+        jdbcTemplate.query("SELECT id, name FROM " + db.activityTable.getTableNameSQL() + " ORDER BY id",
+                (RowCallbackHandler) rs -> activityDictionary.add(new Activity(rs.getInt(1), rs.getString(2))));
+
+        var resourceNames = jdbcTemplate.queryForList("SELECT name FROM " + db.resourceTable.getTableNameSQL() + " ORDER BY name", String.class);
+
+        var variantPaths = new HashMap<Integer, int[]>();
+        jdbcTemplate.query("SELECT id, path FROM " + db.variantsTable.getTableNameSQL(), (RowCallbackHandler) rs -> {
+            var path = (Integer[]) rs.getArray(2).getArray();
+            variantPaths.put(rs.getInt(1), Arrays.stream(path).mapToInt(Integer::intValue).toArray());
+        });
+
+        // case attributes, enum columns are read as text
+        var caseAttributes = new LinkedHashMap<String, CaseAttributeColumn>();
+        attributeColumns.keySet().forEach(x -> caseAttributes.put(x, new CaseAttributeColumn(x, allocator.allocateInts(loadedCases), loadedCases)));
+
+        if (!attributeColumns.isEmpty()) {
+            var columns = new StringBuilder("case_id");
+            attributeColumns.forEach((name, type) -> columns.append(type.equals("USER-DEFINED") ? ", CAST(\"" + name + "\" AS varchar)" : ", \"" + name + "\""));
+
+            // both tables are sorted by case id
+            var index = new int[1];
+            stream(jdbcTemplate, "SELECT " + columns + " FROM " + attributes + " ORDER BY case_id", rs -> {
+                var caseId = rs.getInt(1);
+                while (index[0] < loadedCases && caseIds.get(index[0]) < caseId) {
+                    index[0]++;
+                }
+                if (index[0] >= loadedCases || caseIds.get(index[0]) != caseId) {
+                    return;
+                }
+
+                int j = 2;
+                for (var column : caseAttributes.values()) {
+                    column.set(index[0], rs.getObject(j++));
+                }
+            });
+        }
+        caseAttributes.values().forEach(CaseAttributeColumn::freeze);
+
+        logger.info("Loaded event log \"{}\" into memory: {} cases, {} events ({} ms)", logName, loadedCases, eventCount[0], System.currentTimeMillis() - start);
+
+        return new ColumnarEventLog(logName, loadedCases, eventCount[0], caseIds, caseOffsets, variantIds,
+                activities, timestamps, resources, activityDictionary, resourceNames, variantPaths, caseAttributes);
+    }
+
+    /**
+     * Returns the attribute columns of the case attribute table and their data type. The original case ids are not
+     * loaded, they are unique and not used as attribute.
+     *
+     * @param jdbcTemplate
+     * @param table
+     * @return
+     */
+    private static Map<String, String> getAttributeColumns(JdbcTemplate jdbcTemplate, String table) {
+        var result = new LinkedHashMap<String, String>();
+        jdbcTemplate.query("SELECT column_name, data_type FROM information_schema.columns " +
+                "WHERE table_name = ? AND table_schema = 'public' ORDER BY ordinal_position", (RowCallbackHandler) rs -> {
+            if (!rs.getString(1).equals("case_id") && !rs.getString(1).equals("original_case_id")) {
+                result.put(rs.getString(1), rs.getString(2));
+            }
+        }, table);
+
+        return result;
+    }
+
+    /**
+     * Reads the result of a query in chunks instead of loading all rows at once.
+     *
+     * @param jdbcTemplate
+     * @param sql
+     * @param handler
+     */
+    private static void stream(JdbcTemplate jdbcTemplate, String sql, RowCallbackHandler handler) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            // the driver only uses a cursor within a transaction
+            var autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            try (var statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(FETCH_SIZE);
+                try (var rs = statement.executeQuery()) {
+                    while (rs.next()) {
+                        handler.processRow(rs);
+                    }
+                }
+            } finally {
+                connection.commit();
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    public String getLogName() {
+        return logName;
+    }
+
+    public int getNumCases() {
+        return numCases;
+    }
+
+    /**
+     * Returns the cached case sets of the conditions on this snapshot.
+     *
+     * @return
+     */
+    CaseSetCache getCaseSets() {
+        return caseSets;
+    }
+
+    public int getNumEvents() {
+        return numEvents;
+    }
+
+    public int getCaseId(int caseIndex) {
+        return caseIds.get(caseIndex);
+    }
+
+    public int getVariantId(int caseIndex) {
+        return variantIds.get(caseIndex);
+    }
+
+    public int getFirstEvent(int caseIndex) {
+        return caseOffsets.get(caseIndex);
+    }
+
+    /**
+     * Returns the index following the last event of a case.
+     *
+     * @param caseIndex
+     * @return
+     */
+    public int getEndEvent(int caseIndex) {
+        return caseOffsets.get(caseIndex + 1);
+    }
+
+    public int getActivity(int event) {
+        return activities.get(event);
+    }
+
+    public long getTimestamp(int event) {
+        return timestamps.get(event);
+    }
+
+    public int getResource(int event) {
+        return resources.get(event);
+    }
+
+    /**
+     * Returns the duration of a case from its first to its last timestamp in seconds or NaN, if its events have no
+     * timestamps.
+     *
+     * @param caseIndex
+     * @return
+     */
+    public double getDuration(int caseIndex) {
+        var min = Long.MAX_VALUE;
+        var max = Long.MIN_VALUE;
+        for (int i = getFirstEvent(caseIndex); i < getEndEvent(caseIndex); i++) {
+            var timestamp = timestamps.get(i);
+            if (timestamp != NO_TIMESTAMP) {
+                min = Math.min(min, timestamp);
+                max = Math.max(max, timestamp);
+            }
+        }
+
+        return min > max ? Double.NaN : (max - min) / 1000.0;
+    }
+
+    public List<Activity> getActivityDictionary() {
+        return activityDictionary;
+    }
+
+    public List<String> getResourceNames() {
+        return resourceNames;
+    }
+
+    public int[] getVariantPath(int variantId) {
+        return variantPaths.get(variantId);
+    }
+
+    public CaseAttributeColumn getCaseAttribute(String name) {
+        return caseAttributes.get(name);
+    }
+
+    Map<Integer, int[]> getVariantPaths() {
+        return variantPaths;
+    }
+
+    Map<String, CaseAttributeColumn> getCaseAttributes() {
+        return caseAttributes;
+    }
+
+    IntBuffer getCaseIdColumn() {
+        return caseIds;
+    }
+
+    IntBuffer getCaseOffsetColumn() {
+        return caseOffsets;
+    }
+
+    IntBuffer getVariantIdColumn() {
+        return variantIds;
+    }
+
+    IntBuffer getActivityColumn() {
+        return activities;
+    }
+
+    LongBuffer getTimestampColumn() {
+        return timestamps;
+    }
+
+    IntBuffer getResourceColumn() {
+        return resources;
+    }
+}
@@ -0,0 +1,579 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.processexplorer.server.analysis.query.condition.Condition;
+import org.processexplorer.server.analysis.query.model.Graph;
+import org.processexplorer.server.analysis.query.model.GraphEdge;
+import org.processexplorer.server.analysis.query.model.Log;
+import org.processexplorer.server.analysis.query.model.Variant;
+import org.processexplorer.server.analysis.query.request.DrillDownQuery;
+import org.processexplorer.server.analysis.query.request.ProcessMapQuery;
+import org.processexplorer.server.analysis.query.result.ProcessMapResult;
+import org.processexplorer.server.analysis.query.selection.CaseAttributeSelection;
+import org.processexplorer.server.analysis.query.selection.CountCasesSelection;
+import org.processexplorer.server.analysis.query.selection.CountVariantsSelection;
+import org.processexplorer.server.analysis.query.selection.DurationSelection;
+import org.processexplorer.server.analysis.query.selection.Selection;
+import org.processexplorer.server.analysis.query.selection.SelectionOrder;
+import org.roaringbitmap.RoaringBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Answers queries of logs that are enabled for the in-memory engine from a columnar snapshot of the log instead of the
+ * database.
+ * <p>
+ * The snapshot is loaded with the first query and dropped whenever the log changes. If a snapshot directory is set,
+ * the snapshot is written to a binary file and memory-mapped, so logs that exceed the heap can be queried. All methods return null, if the
+ * log is not enabled, can not be loaded or the query contains conditions or selections that are only supported by the
+ * database, so the caller falls back to SQL.
+ */
+@Service
+public class ColumnarQueryEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(ColumnarQueryEngine.class);
+
+    // source and target of the artificial start and end edges
+    private static final int START = -1;
+    private static final int END = -2;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Set<String> enabled = ConcurrentHashMap.newKeySet();
+
+    private final Map<String, ColumnarEventLog> snapshots = new ConcurrentHashMap<>();
+
+    private volatile Path snapshotDirectory;
+
+    public ColumnarQueryEngine(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Sets the directory of the snapshot files, logs are loaded onto the heap if no directory is set.
+     *
+     * @param snapshotDirectory
+     */
+    public void setSnapshotDirectory(Path snapshotDirectory) {
+        this.snapshotDirectory = snapshotDirectory;
+    }
+
+    /**
+     * Writes the snapshot file of a log, e.g. after an import, so the log can be mapped with the next query.
+     *
+     * @param logName
+     */
+    public void writeSnapshot(String logName) {
+        var file = getSnapshotFile(logName);
+        if (file == null || !enabled.contains(logName)) {
+            return;
+        }
+
+        snapshots.remove(logName);
+        EventLogSnapshot.write(jdbcTemplate, logName, file);
+    }
+
+    /**
+     * Returns the snapshot of a log for analyses that read the whole log, regardless whether the queries of the log are
+     * answered from memory. The snapshot file is mapped and written before, if it is missing. The mapped snapshot is
+     * kept until the log changes, like the snapshots of the queries. Returns null, if no snapshot directory is set.
+     *
+     * @param logName
+     * @return
+     */
+    public ColumnarEventLog openSnapshot(String logName) {
+        if (getSnapshotFile(logName) == null) {
+            return null;
+        }
+        return snapshots.computeIfAbsent(logName, this::load);
+    }
+
+    /**
+     * Answers the queries of a log from memory, the log is loaded with the next query.
+     *
+     * @param logName
+     */
+    public void enable(String logName) {
+        enabled.add(logName);
+    }
+
+    /**
+     * Answers the queries of a log from the database and releases its snapshot.
+     *
+     * @param logName
+     */
+    public void disable(String logName) {
+        enabled.remove(logName);
+        snapshots.remove(logName);
+    }
+
+    public boolean isEnabled(String logName) {
+        return enabled.contains(logName);
+    }
+
+    /**
+     * Drops the snapshot of a log after it has been changed, it is reloaded with the next query.
+     *
+     * @param logName
+     */
+    public void invalidate(String logName) {
+        snapshots.remove(logName);
+
+        var file = getSnapshotFile(logName);
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ex) {
+                logger.error("Could not delete snapshot of event log \"" + logName + "\"", ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the snapshot of a log or null, if the log is not enabled or can not be loaded. Logs that fail to load
+     * are disabled, so they are not loaded again with every query.
+     *
+     * @param logName
+     * @return
+     */
+    private ColumnarEventLog get(String logName) {
+        if (logName == null || !enabled.contains(logName)) {
+            return null;
+        }
+
+        try {
+            return snapshots.computeIfAbsent(logName, this::load);
+        } catch (RuntimeException ex) {
+            logger.error("Could not load event log \"" + logName + "\" into memory, queries are answered by the database", ex);
+            enabled.remove(logName);
+            return null;
+        }
+    }
+
+    private ColumnarEventLog load(String logName) {
+        var file = getSnapshotFile(logName);
+        if (file == null) {
+            return ColumnarEventLog.load(jdbcTemplate, logName);
+        }
+
+        if (!Files.exists(file)) {
+            EventLogSnapshot.write(jdbcTemplate, logName, file);
+        }
+        return EventLogSnapshot.open(file);
+    }
+
+    private Path getSnapshotFile(String logName) {
+        var directory = snapshotDirectory;
+        return directory == null ? null : directory.resolve(logName + ".snapshot");
+    }
+
+    /**
+     * Returns the ids of the cases that fulfill the conditions, so queries that are answered by the database can reuse
+     * the cached case sets of the conditions. Returns null, if there are more than the maximum number of cases.
+     *
+     * @param logName
+     * @param conditions
+     * @param maximumCases
+     * @return
+     */
+    public RoaringBitmap getCaseIds(String logName, List<Condition> conditions, int maximumCases) {
+        var log = get(logName);
+        if (log == null) {
+            return null;
+        }
+
+        var cases = new ColumnarConditionEvaluator(log).evaluate(conditions);
+        if (cases == null || cases.getCardinality() > maximumCases) {
+            return null;
+        }
+
+        var result = new RoaringBitmap();
+        for (var it = cases.getIntIterator(); it.hasNext(); ) {
+            result.add(log.getCaseId(it.next()));
+        }
+        result.runOptimize();
+        return result;
+    }
+
+    /**
+     * Returns the number of events and cases that fulfill the conditions, as well as the activities and resources of
+     * the log.
+     *
+     * @param logName
+     * @param conditions
+     * @return
+     */
+    public Log getLogStatistics(String logName, List<Condition> conditions) {
+        var log = get(logName);
+        if (log == null) {
+            return null;
+        }
+
+        var cases = new ColumnarConditionEvaluator(log).evaluate(conditions);
+        if (cases == null) {
+            return null;
+        }
+
+        long numEvents = 0;
+        long numTraces = 0;
+        for (var it = cases.getIntIterator(); it.hasNext(); ) {
+            var i = it.next();
+            var events = log.getEndEvent(i) - log.getFirstEvent(i);
+            if (events > 0) {
+                numEvents += events;
+                numTraces++;
+            }
+        }
+
+        var result = new Log();
+        result.setLogName(logName);
+        result.setNumActivities(log.getActivityDictionary().size());
+        result.setActivities(log.getActivityDictionary());
+        result.setResources(log.getResourceNames());
+        result.setNumEvents(numEvents);
+        result.setNumTraces(numTraces);
+
+        return result;
+    }
+
+    /**
+     * Returns the variants of the cases that fulfill the conditions with their path, ordered by occurrence.
+     *
+     * @param logName
+     * @param conditions
+     * @return
+     */
+    public List<Variant> getAllPaths(String logName, List<Condition> conditions) {
+        var log = get(logName);
+        if (log == null) {
+            return null;
+        }
+
+        var cases = new ColumnarConditionEvaluator(log).evaluate(conditions);
+        if (cases == null) {
+            return null;
+        }
+
+        var result = getVariants(log, cases);
+        for (var variant : result) {
+            var pathIndex = log.getVariantPath((int) variant.getId());
+            if (pathIndex == null) {
+                pathIndex = new int[0];
+            }
+
+            var path = new String[pathIndex.length];
+            for (int i = 0; i < pathIndex.length; i++) {
+                path[i] = log.getActivityDictionary().get(pathIndex[i]).getName();
+            }
+
+            variant.setPath(path);
+            variant.setPathIndex(pathIndex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the directly-follows graph of the cases that fulfill the conditions. The cases are processed in
+     * parallel, each thread collects its own edges which are merged afterwards.
+     *
+     * @param query
+     * @return
+     */
+    public ProcessMapResult getProcessMap(ProcessMapQuery query) {
+        var log = get(query.getLogName());
+        if (log == null) {
+            return null;
+        }
+
+        var cases = new ColumnarConditionEvaluator(log).evaluate(query.getConditions());
+        if (cases == null) {
+            return null;
+        }
+
+        var filter = getActivityFilter(query.getActivityFilter(), log.getActivityDictionary().size());
+
+        var edges = cases.stream().parallel().collect(
+                () -> new HashMap<Long, EdgeStatistics>(),
+                (map, i) -> addEdges(log, i, filter, map),
+                (a, b) -> b.forEach((key, value) -> a.merge(key, value, EdgeStatistics::merge)));
+
+        var graphEdges = edges.entrySet().stream()
+                .map(x -> x.getValue().toGraphEdge((int) (x.getKey() >> 32), (int) (long) x.getKey()))
+                .sorted(Comparator.comparingLong(GraphEdge::getOccurrence).reversed())
+                .collect(Collectors.toList());
+
+        var graph = new Graph();
+        graph.setEdges(graphEdges);
+
+        var result = new ProcessMapResult();
+        result.setProcessMap(graph);
+        result.setVariants(getVariants(log, cases));
+
+        return result;
+    }
+
+    /**
+     * Returns a drill down on the case attributes of the cases that fulfill the conditions.
+     *
+     * @param query
+     * @return
+     */
+    public List<Object[]> getDrillDown(DrillDownQuery query) {
+        var log = get(query.getLogName());
+        if (log == null) {
+            return null;
+        }
+
+        var selections = query.getSelections();
+        var columns = new CaseAttributeColumn[selections.size()];
+        var hasGroup = false;
+        for (int i = 0; i < columns.length; i++) {
+            var selection = selections.get(i);
+            if (selection instanceof CaseAttributeSelection) {
+                columns[i] = log.getCaseAttribute(((CaseAttributeSelection) selection).getAttributeName());
+                if (columns[i] == null) {
+                    return null;
+                }
+            } else if (!(selection instanceof CountCasesSelection || selection instanceof CountVariantsSelection || selection instanceof DurationSelection)) {
+                return null;
+            }
+
+            hasGroup |= selection.isGroup();
+        }
+
+        var cases = new ColumnarConditionEvaluator(log).evaluate(query.getConditions());
+        if (cases == null) {
+            return null;
+        }
+
+        var result = new ArrayList<Object[]>();
+        if (hasGroup) {
+            var groups = new LinkedHashMap<List<Object>, List<Integer>>();
+            for (var it = cases.getIntIterator(); it.hasNext(); ) {
+                var i = it.next();
+                var key = new ArrayList<Object>();
+                for (var column : columns) {
+                    if (column != null) {
+                        key.add(column.getValue(i));
+                    }
+                }
+                groups.computeIfAbsent(key, x -> new ArrayList<>()).add(i);
+            }
+
+            // aggregations without grouping return a single row, even if no case is selected
+            if (groups.isEmpty() && Arrays.stream(columns).allMatch(Objects::isNull)) {
+                groups.put(List.of(), List.of());
+            }
+
+            for (var group : groups.entrySet()) {
+                var row = new Object[columns.length];
+                var key = group.getKey().iterator();
+                for (int i = 0; i < columns.length; i++) {
+                    row[i] = columns[i] != null ? key.next() : aggregate(log, selections.get(i), group.getValue());
+                }
+                result.add(row);
+            }
+        } else {
+            for (var it = cases.getIntIterator(); it.hasNext(); ) {
+                var i = it.next();
+                var row = new Object[columns.length];
+                for (int j = 0; j < columns.length; j++) {
+                    row[j] = columns[j].getValue(i);
+                }
+                result.add(row);
+            }
+        }
+
+        result.sort(getOrdering(selections));
+        return result;
+    }
+
+    private Object aggregate(ColumnarEventLog log, Selection selection, List<Integer> cases) {
+        if (selection instanceof CountCasesSelection) {
+            return (long) cases.size();
+        } else if (selection instanceof CountVariantsSelection) {
+            return cases.stream().mapToInt(log::getVariantId).distinct().count();
+        }
+
+        var durations = cases.stream().mapToDouble(log::getDuration).filter(x -> !Double.isNaN(x)).summaryStatistics();
+        return durations.getCount() == 0 ? null : durations.getAverage();
+    }
+
+    /**
+     * Returns the ordering of the drill down rows. Like in the database, null values are sorted as the largest values.
+     *
+     * @param selections
+     * @return
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Comparator<Object[]> getOrdering(List<Selection> selections) {
+        Comparator<Object[]> result = (a, b) -> 0;
+        for (int i = 0; i < selections.size(); i++) {
+            if (selections.get(i).getOrdering() == null) {
+                continue;
+            }
+
+            var index = i;
+            Comparator<Object> values = Comparator.nullsLast((a, b) -> a instanceof Comparable && a.getClass() == b.getClass()
+                    ? ((Comparable) a).compareTo(b) : a.toString().compareTo(b.toString()));
+            if (selections.get(i).getOrdering() == SelectionOrder.DESC) {
+                values = values.reversed();
+            }
+
+            result = result.thenComparing(x -> x[index], values);
+        }
+        return result;
+    }
+
+    private List<Variant> getVariants(ColumnarEventLog log, RoaringBitmap cases) {
+        var occurrences = new HashMap<Integer, Long>();
+        for (var it = cases.getIntIterator(); it.hasNext(); ) {
+            var i = it.next();
+            occurrences.merge(log.getVariantId(i), 1L, Long::sum);
+        }
+
+        return occurrences.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue().reversed())
+                .map(x -> {
+                    var variant = new Variant();
+                    variant.setId(x.getKey());
+                    variant.setOccurrence(x.getValue());
+                    return variant;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private boolean[] getActivityFilter(String[] activityFilter, int numActivities) {
+        if (activityFilter == null) {
+            return null;
+        }
+
+        var result = new boolean[numActivities];
+        for (var activity : activityFilter) {
+            var id = Integer.parseInt(activity.trim());
+            if (id >= 0 && id < numActivities) {
+                result[id] = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the directly-follows edges of a case, including the edges from the start and to the end of the case.
+     *
+     * @param log
+     * @param caseIndex
+     * @param filter
+     * @param edges
+     */
+    private void addEdges(ColumnarEventLog log, int caseIndex, boolean[] filter, Map<Long, EdgeStatistics> edges) {
+        var variant = log.getVariantId(caseIndex);
+        var source = START;
+        var sourceTimestamp = ColumnarEventLog.NO_TIMESTAMP;
+
+        for (int e = log.getFirstEvent(caseIndex); e < log.getEndEvent(caseIndex); e++) {
+            var target = log.getActivity(e);
+            if (filter != null && (target >= filter.length || !filter[target])) {
+                continue;
+            }
+
+            var targetTimestamp = log.getTimestamp(e);
+            addEdge(edges, source, target, sourceTimestamp, targetTimestamp, variant);
+
+            source = target;
+            sourceTimestamp = targetTimestamp;
+        }
+
+        if (source != START) {
+            addEdge(edges, source, END, ColumnarEventLog.NO_TIMESTAMP, ColumnarEventLog.NO_TIMESTAMP, variant);
+        }
+    }
+
+    private void addEdge(Map<Long, EdgeStatistics> edges, int source, int target, long sourceTimestamp, long targetTimestamp, int variant) {
+        var key = ((long) source << 32) | (target & 0xffffffffL);
+        var edge = edges.computeIfAbsent(key, x -> new EdgeStatistics());
+
+        edge.occurrence++;
+        edge.variants.add(variant);
+
+        if (sourceTimestamp != ColumnarEventLog.NO_TIMESTAMP && targetTimestamp != ColumnarEventLog.NO_TIMESTAMP) {
+            var duration = (targetTimestamp - sourceTimestamp) / 1000.0;
+            edge.durations++;
+            edge.sumDuration += duration;
+            edge.minDuration = Math.min(edge.minDuration, duration);
+            edge.maxDuration = Math.max(edge.maxDuration, duration);
+        }
+    }
+
+    /**
+     * Occurrence, durations in seconds and variants of an edge.
+     */
+    private static class EdgeStatistics {
+
+        private long occurrence;
+
+        private long durations;
+
+        private double sumDuration;
+
+        private double minDuration = Double.POSITIVE_INFINITY;
+
+        private double maxDuration = Double.NEGATIVE_INFINITY;
+
+        private final Set<Integer> variants = new HashSet<>();
+
+        private EdgeStatistics merge(EdgeStatistics other) {
+            occurrence += other.occurrence;
+            durations += other.durations;
+            sumDuration += other.sumDuration;
+            minDuration = Math.min(minDuration, other.minDuration);
+            maxDuration = Math.max(maxDuration, other.maxDuration);
+            variants.addAll(other.variants);
+            return this;
+        }
+
+        private GraphEdge toGraphEdge(int source, int target) {
+            var result = new GraphEdge();
+            result.setSourceEvent(source);
+            result.setTargetEvent(target);
+            result.setOccurrence(occurrence);
+            result.setVariants(variants.stream().mapToInt(Integer::intValue).sorted().toArray());
+
+            // edges without timestamps have no duration, like null values that are read from the database
+            if (durations > 0) {
+                result.setAvgDuration((long) (sumDuration / durations));
+                result.setMinDuration((long) minDuration);
+                result.setMaxDuration((long) maxDuration);
+            }
+            return result;
+        }
+    }
+}
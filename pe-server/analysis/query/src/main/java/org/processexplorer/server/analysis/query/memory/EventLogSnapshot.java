@@ -0,0 +1,404 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.processexplorer.server.analysis.query.model.Activity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Binary snapshot of a columnar event log, which is memory-mapped instead of loaded onto the heap. Thus, logs that
+ * exceed the heap can be queried and the snapshot is available without the database after a restart.
+ * <p>
+ * The file starts with a header, followed by the columns of the log as little-endian int and long arrays and the
+ * metadata, i.e. the offsets of the columns, the dictionaries of the activities and resources, the variants and the
+ * dictionaries of the case attributes. The columns are read directly from the page cache.
+ */
+public class EventLogSnapshot {
+
+    private static final long MAGIC = 0x5045534e41505348L;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 32;
+
+    // tags of the values of case attribute dictionaries
+    private static final byte STRING = 0;
+    private static final byte INTEGER = 1;
+    private static final byte LONG = 2;
+    private static final byte SHORT = 3;
+    private static final byte DOUBLE = 4;
+    private static final byte FLOAT = 5;
+    private static final byte DECIMAL = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte TIMESTAMP = 8;
+    private static final byte DATE = 9;
+
+    private EventLogSnapshot() {
+    }
+
+    /**
+     * Writes the snapshot of a log. The snapshot is written to a temporary file first, which replaces an existing
+     * snapshot once it is complete.
+     *
+     * @param jdbcTemplate
+     * @param logName
+     * @param file
+     */
+    public static void write(JdbcTemplate jdbcTemplate, String logName, Path file) {
+        write(logName, file, allocator -> ColumnarEventLog.load(jdbcTemplate, logName, allocator));
+    }
+
+    /**
+     * Writes the snapshot of a log, whose columns are loaded into the columns provided by the allocator.
+     *
+     * @param logName
+     * @param file
+     * @param loader
+     */
+    static void write(String logName, Path file, Function<ColumnarEventLog.ColumnAllocator, ColumnarEventLog> loader) {
+        Path temp = null;
+
+        try {
+            var directory = file.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+
+            try (var channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var allocator = new FileAllocator(channel);
+                var header = allocator.map(HEADER_BYTES);
+
+                // the columns are streamed from the database into the file
+                var log = loader.apply(allocator);
+
+                var metadataOffset = allocator.position;
+                var out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel.position(metadataOffset))));
+                writeMetadata(out, log, allocator.offsets);
+                out.flush();
+
+                header.putLong(0, MAGIC);
+                header.putInt(8, VERSION);
+                header.putInt(12, log.getNumCases());
+                header.putInt(16, log.getNumEvents());
+                header.putLong(24, metadataOffset);
+
+                for (var buffer : allocator.buffers) {
+                    buffer.force();
+                }
+                channel.force(true);
+            }
+
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write snapshot of event log \"" + logName + "\"", ex);
+        } finally {
+            try {
+                if (temp != null) {
+                    Files.deleteIfExists(temp);
+                }
+            } catch (IOException ignored) {
+                // the temporary file is only left behind
+            }
+        }
+    }
+
+    /**
+     * Opens the snapshot of a log. The columns are mapped read-only, only the dictionaries are read onto the heap.
+     *
+     * @param file
+     * @return
+     */
+    public static ColumnarEventLog open(Path file) {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getLong(0) != MAGIC || header.getInt(8) != VERSION) {
+                throw new IllegalStateException("File \"" + file + "\" is not a snapshot of this version");
+            }
+
+            var numCases = header.getInt(12);
+            var numEvents = header.getInt(16);
+
+            var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(header.getLong(24)))));
+            var logName = readString(in);
+
+            var caseIds = mapInts(channel, in.readLong(), numCases);
+            var caseOffsets = mapInts(channel, in.readLong(), numCases + 1);
+            var variantIds = mapInts(channel, in.readLong(), numCases);
+            var activities = mapInts(channel, in.readLong(), numEvents);
+            var timestamps = mapLongs(channel, in.readLong(), numEvents);
+            var resources = mapInts(channel, in.readLong(), numEvents);
+
+            var activityDictionary = new ArrayList<Activity>();
+            for (int i = in.readInt(); i > 0; i--) {
+                activityDictionary.add(new Activity(in.readInt(), readString(in)));
+            }
+
+            var resourceNames = new ArrayList<String>();
+            for (int i = in.readInt(); i > 0; i--) {
+                resourceNames.add(readString(in));
+            }
+
+            var variantPaths = new HashMap<Integer, int[]>();
+            for (int i = in.readInt(); i > 0; i--) {
+                var id = in.readInt();
+                var path = new int[in.readInt()];
+                for (int j = 0; j < path.length; j++) {
+                    path[j] = in.readInt();
+                }
+                variantPaths.put(id, path);
+            }
+
+            var caseAttributes = new LinkedHashMap<String, CaseAttributeColumn>();
+            for (int i = in.readInt(); i > 0; i--) {
+                var name = readString(in);
+                var codes = mapInts(channel, in.readLong(), numCases);
+                var dictionary = new ArrayList<>();
+                for (int j = in.readInt(); j > 0; j--) {
+                    dictionary.add(readValue(in));
+                }
+                caseAttributes.put(name, new CaseAttributeColumn(name, codes, dictionary));
+            }
+
+            return new ColumnarEventLog(logName, numCases, numEvents, caseIds, caseOffsets, variantIds,
+                    activities, timestamps, resources, activityDictionary, resourceNames, variantPaths, caseAttributes);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open snapshot \"" + file + "\"", ex);
+        }
+    }
+
+    private static void writeMetadata(DataOutputStream out, ColumnarEventLog log, Map<Buffer, Long> offsets) throws IOException {
+        writeString(out, log.getLogName());
+
+        out.writeLong(offsets.get(log.getCaseIdColumn()));
+        out.writeLong(offsets.get(log.getCaseOffsetColumn()));
+        out.writeLong(offsets.get(log.getVariantIdColumn()));
+        out.writeLong(offsets.get(log.getActivityColumn()));
+        out.writeLong(offsets.get(log.getTimestampColumn()));
+        out.writeLong(offsets.get(log.getResourceColumn()));
+
+        out.writeInt(log.getActivityDictionary().size());
+        for (var activity : log.getActivityDictionary()) {
+            out.writeInt(activity.getId());
+            writeString(out, activity.getName());
+        }
+
+        out.writeInt(log.getResourceNames().size());
+        for (var resource : log.getResourceNames()) {
+            writeString(out, resource);
+        }
+
+        out.writeInt(log.getVariantPaths().size());
+        for (var variant : log.getVariantPaths().entrySet()) {
+            out.writeInt(variant.getKey());
+            out.writeInt(variant.getValue().length);
+            for (var activity : variant.getValue()) {
+                out.writeInt(activity);
+            }
+        }
+
+        out.writeInt(log.getCaseAttributes().size());
+        for (var column : log.getCaseAttributes().values()) {
+            writeString(out, column.getName());
+            out.writeLong(offsets.get(column.getCodes()));
+            out.writeInt(column.getDictionary().size());
+            for (var value : column.getDictionary()) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        var tag = in.readByte();
+        switch (tag) {
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case SHORT:
+                return in.readShort();
+            case DOUBLE:
+                return in.readDouble();
+            case FLOAT:
+                return in.readFloat();
+            case DECIMAL:
+                return new BigDecimal(readString(in));
+            case BOOLEAN:
+                return in.readBoolean();
+            case TIMESTAMP:
+                var timestamp = new Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case STRING:
+                return readString(in);
+            default:
+                throw new IllegalStateException("Unknown value tag " + tag);
+        }
+    }
+
+    // strings are not limited in length like modified utf-8, null is stored with length -1
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        var length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        var bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static IntBuffer mapInts(FileChannel channel, long offset, int size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, checkSize(4L * size)).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static LongBuffer mapLongs(FileChannel channel, long offset, int size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, checkSize(8L * size)).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+    }
+
+    // a single mapping is limited to 2 GB
+    private static long checkSize(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Column of " + (bytes >> 20) + " MB exceeds the maximum size of a mapped column");
+        }
+        return bytes;
+    }
+
+    /**
+     * Places the columns of a log one after another in the snapshot file and remembers their offsets.
+     */
+    private static class FileAllocator implements ColumnarEventLog.ColumnAllocator {
+
+        private final FileChannel channel;
+
+        private final Map<Buffer, Long> offsets = new IdentityHashMap<>();
+
+        private final List<MappedByteBuffer> buffers = new ArrayList<>();
+
+        private long position = 0;
+
+        FileAllocator(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        MappedByteBuffer map(long bytes) {
+            try {
+                var buffer = channel.map(FileChannel.MapMode.READ_WRITE, position, checkSize(bytes));
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffers.add(buffer);
+
+                // columns are aligned to 8 bytes
+                position += (bytes + 7) & ~7L;
+                return buffer;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public IntBuffer allocateInts(int size) {
+            var offset = position;
+            var buffer = map(4L * size).asIntBuffer();
+            offsets.put(buffer, offset);
+            return buffer;
+        }
+
+        @Override
+        public LongBuffer allocateLongs(int size) {
+            var offset = position;
+            var buffer = map(8L * size).asLongBuffer();
+            offsets.put(buffer, offset);
+            return buffer;
+        }
+    }
+}
@@ -24,11 +24,13 @@ public class ExtendedVariantRowMapper implements RowMapper<Variant> {
         result.setId(rs.getLong("variant_id"));
         result.setOccurrence(rs.getLong("occurrence"));
 
-        var path = rs.getString("variant").split("::");
-        var pathIndex = new int[path.length];
+        // the element type of the array depends on the driver of the query backend
+        var activities = (Object[]) rs.getArray("path").getArray();
+        var path = new String[activities.length];
+        var pathIndex = new int[activities.length];
 
-        for (int i = 0; i < path.length; i++) {
-            var index = Integer.parseInt(path[i].replace(":", ""));
+        for (int i = 0; i < activities.length; i++) {
+            var index = ((Number) activities[i]).intValue();
 
             path[i] = logStats.getActivities().get(index).getName();
             pathIndex[i] = index;
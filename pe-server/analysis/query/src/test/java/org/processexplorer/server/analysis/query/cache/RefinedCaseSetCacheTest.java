@@ -0,0 +1,213 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.cache;
+
+import org.junit.jupiter.api.Test;
+import org.processexplorer.server.analysis.query.condition.AttributeCondition;
+import org.processexplorer.server.analysis.query.condition.Condition;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks when the case set cache evaluates a filter as a whole, refines a cached parent filter or returns a stored
+ * case set.
+ */
+class RefinedCaseSetCacheTest {
+
+    private static final String LOG = "log";
+
+    @Test
+    void evaluatesFilterWhenRequestedAgain() {
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), Runnable::run);
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1, 2, 3));
+
+        assertNull(cache.get(LOG, List.of(eq("a"), eq("b")), query));
+        assertEquals(0, query.calls.size());
+
+        // the request itself evaluates the conditions, the case set is stored for the following requests
+        assertNull(cache.get(LOG, List.of(eq("b"), eq("a")), query));
+        assertEquals(1, query.calls.size());
+        assertNull(query.calls.get(0).parent);
+        assertEquals(2, query.calls.get(0).conditions.size());
+
+        assertArrayEquals(new int[]{1, 2, 3}, cache.get(LOG, List.of(eq("a"), eq("b")), query).toArray());
+        assertEquals(1, query.calls.size());
+    }
+
+    @Test
+    void evaluatesFilterInBackground() {
+        var tasks = new ArrayList<Runnable>();
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), tasks::add);
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1, 2));
+
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertEquals(1, tasks.size());
+        assertEquals(0, query.calls.size());
+
+        tasks.get(0).run();
+        assertEquals(1, query.calls.size());
+        assertArrayEquals(new int[]{1, 2}, cache.get(LOG, List.of(eq("a")), query).toArray());
+    }
+
+    @Test
+    void discardsCaseSetOfChangedLog() {
+        var tasks = new ArrayList<Runnable>();
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), tasks::add);
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1));
+
+        cache.get(LOG, List.of(eq("a")), query);
+        cache.get(LOG, List.of(eq("a")), query);
+        cache.invalidate(LOG);
+        tasks.get(0).run();
+
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    void retriesRejectedEvaluation() {
+        var rejected = new boolean[]{true};
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), x -> {
+            if (rejected[0]) {
+                throw new RejectedExecutionException();
+            }
+            x.run();
+        });
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1));
+
+        cache.get(LOG, List.of(eq("a")), query);
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertEquals(0, query.calls.size());
+
+        rejected[0] = false;
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertArrayEquals(new int[]{1}, cache.get(LOG, List.of(eq("a")), query).toArray());
+        assertEquals(1, query.calls.size());
+    }
+
+    @Test
+    void refinesCachedParent() {
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), Runnable::run);
+        var parent = RoaringBitmap.bitmapOf(1, 2, 3, 4);
+
+        cache.get(LOG, List.of(eq("a")), new RecordingQuery(parent));
+        cache.get(LOG, List.of(eq("a")), new RecordingQuery(parent));
+
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(2, 4));
+        assertArrayEquals(new int[]{2, 4}, cache.get(LOG, List.of(eq("b"), eq("a")), query).toArray());
+        assertEquals(1, query.calls.size());
+        assertArrayEquals(parent.toArray(), query.calls.get(0).parent.toArray());
+        assertEquals(1, query.calls.get(0).conditions.size());
+        assertEquals("b", ((AttributeCondition) query.calls.get(0).conditions.get(0)).getAttribute());
+
+        // the refined filter is cached as well
+        assertArrayEquals(new int[]{2, 4}, cache.get(LOG, List.of(eq("a"), eq("b")), query).toArray());
+        assertEquals(1, query.calls.size());
+    }
+
+    @Test
+    void doesNotRefineLargeFilter() {
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), Runnable::run);
+        var large = new RecordingQuery(null);
+
+        cache.get(LOG, List.of(eq("a")), large);
+        assertNull(cache.get(LOG, List.of(eq("a")), large));
+        assertNull(cache.get(LOG, List.of(eq("a")), large));
+        assertEquals(1, large.calls.size());
+
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1));
+        assertNull(cache.get(LOG, List.of(eq("a"), eq("b")), query));
+        assertEquals(0, query.calls.size());
+    }
+
+    @Test
+    void invalidatesLog() {
+        var cache = new RefinedCaseSetCache(10, 1000, Duration.ofHours(1), Runnable::run);
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1));
+
+        cache.get(LOG, List.of(eq("a")), query);
+        cache.get(LOG, List.of(eq("a")), query);
+        cache.get("other", List.of(eq("a")), query);
+        cache.get("other", List.of(eq("a")), query);
+        assertEquals(2, query.calls.size());
+
+        cache.invalidate(LOG);
+
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertNull(cache.get(LOG, List.of(eq("a"), eq("b")), query));
+        assertNotNull(cache.get("other", List.of(eq("a")), query));
+        assertEquals(2, query.calls.size());
+    }
+
+    @Test
+    void disablesCache() {
+        var cache = new RefinedCaseSetCache(0, 1000, Duration.ofHours(1), Runnable::run);
+        var query = new RecordingQuery(RoaringBitmap.bitmapOf(1));
+
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertNull(cache.get(LOG, List.of(eq("a")), query));
+        assertEquals(0, query.calls.size());
+    }
+
+    @Test
+    void rejectsNegativeMaximum() {
+        assertThrows(IllegalArgumentException.class, () -> new RefinedCaseSetCache(-1, 1000, Duration.ofHours(1), Runnable::run));
+    }
+
+    private static AttributeCondition eq(String attribute) {
+        return new AttributeCondition(attribute, AttributeCondition.BinaryType.EQUAL_TO, new Object[]{1});
+    }
+
+    private static class RecordingQuery implements BiFunction<RoaringBitmap, List<Condition>, RoaringBitmap> {
+
+        private final RoaringBitmap result;
+        private final List<Call> calls = new ArrayList<>();
+
+        RecordingQuery(RoaringBitmap result) {
+            this.result = result;
+        }
+
+        @Override
+        public RoaringBitmap apply(RoaringBitmap parent, List<Condition> conditions) {
+            calls.add(new Call(parent, conditions));
+            return result;
+        }
+    }
+
+    private static class Call {
+
+        private final RoaringBitmap parent;
+        private final List<Condition> conditions;
+
+        Call(RoaringBitmap parent, List<Condition> conditions) {
+            this.parent = parent;
+            this.conditions = conditions;
+        }
+    }
+}
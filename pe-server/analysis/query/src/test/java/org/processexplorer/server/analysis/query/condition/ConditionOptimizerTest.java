@@ -0,0 +1,174 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.condition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the rewrites of the condition optimizer by the canonical form of the optimized conditions.
+ */
+class ConditionOptimizerTest {
+
+    @Test
+    void flattensNestedCombinations() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(and(and(eq("x", 1), eq("y", 2)), variants(3L, 1L, 3L))));
+
+        assertOptimized(List.of(eq("x", 1), eq("y", 2), variants(1L, 3L)), result);
+    }
+
+    @Test
+    void intersectsVariantsOfConjunction() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(variants(1L, 2L, 3L), and(variants(2L, 3L, 4L))));
+
+        assertOptimized(List.of(variants(2L, 3L)), result);
+    }
+
+    @Test
+    void unitesVariantsOfDisjunction() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(or(variants(2L), variants(1L), or(variants(3L)))));
+
+        assertOptimized(List.of(variants(1L, 2L, 3L)), result);
+    }
+
+    @Test
+    void mergesEqualityConditionsOfDisjunction() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(or(eq("x", "b"), eq("x", "a", "b"), eq("y", 1))));
+
+        assertOptimized(List.of(or(eq("x", "a", "b"), eq("y", 1))), result);
+    }
+
+    @Test
+    void prunesContradictingVariants() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(variants(1L), variants(2L), eq("x", 1)));
+
+        assertEquals(1, result.size());
+        assertTrue(result.get(0) instanceof CaseSetCondition);
+        assertArrayEquals(new int[0], ((CaseSetCondition) result.get(0)).getCaseIds());
+    }
+
+    @Test
+    void prunesEmptyVariantList() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(variants(), eq("x", 1)));
+
+        assertOptimized(List.of(CaseSetCondition.none()), result);
+    }
+
+    @Test
+    void removesDoubleNegation() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(not(not(eq("x", 1)))));
+
+        assertOptimized(List.of(eq("x", 1)), result);
+    }
+
+    @Test
+    void pushesNegationDown() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(not(or(eq("x", 1, 2), variants(5L)))));
+
+        assertOptimized(List.of(notEq("x", 1, 2), not(variants(5L))), result);
+    }
+
+    @Test
+    void keepsNegationOfSingleValue() throws Exception {
+        // a single value is compared by equality, so the negation also selects the cases without value
+        var result = ConditionOptimizer.optimize(List.of(not(eq("x", 1))));
+
+        assertOptimized(List.of(not(eq("x", 1))), result);
+    }
+
+    @Test
+    void mergesNegatedVariants() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(not(variants(1L)), not(variants(2L, 3L))));
+
+        assertOptimized(List.of(not(variants(1L, 2L, 3L))), result);
+    }
+
+    @Test
+    void disjunctionOfDisjointNegatedVariantsIsTrue() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(or(not(variants(1L)), not(variants(2L))), eq("y", 1)));
+
+        assertOptimized(List.of(eq("y", 1)), result);
+    }
+
+    @Test
+    void dropsConditionsWithoutSql() throws Exception {
+        var result = ConditionOptimizer.optimize(List.of(new VariantCondition(), new ClusterCondition(), or(new ClusterCondition(), eq("x", 1))));
+
+        assertOptimized(List.of(eq("x", 1)), result);
+    }
+
+    @Test
+    void removesDuplicatesAndSorts() throws Exception {
+        var a = ConditionOptimizer.optimize(List.of(eq("b", 1), eq("a", 1), eq("a", 1)));
+        var b = ConditionOptimizer.optimize(List.of(and(eq("a", 1), eq("b", 1))));
+
+        assertEquals(2, a.size());
+        assertEquals(ConditionKeys.canonicalize(a.get(0)), ConditionKeys.canonicalize(b.get(0)));
+        assertEquals(ConditionKeys.canonicalize(a.get(1)), ConditionKeys.canonicalize(b.get(1)));
+    }
+
+    @Test
+    void doesNotModifyConditions() throws Exception {
+        var conditions = List.<Condition>of(and(eq("x", 1), not(or(eq("y", 1, 2), variants(2L, 1L)))));
+        var before = ConditionKeys.canonicalize(conditions);
+
+        ConditionOptimizer.optimize(conditions);
+
+        assertEquals(before, ConditionKeys.canonicalize(conditions));
+    }
+
+    @Test
+    void returnsEmptyConditions() {
+        assertNull(ConditionOptimizer.optimize(null));
+        assertTrue(ConditionOptimizer.optimize(new ArrayList<>()).isEmpty());
+    }
+
+    private static void assertOptimized(List<Condition> expected, List<Condition> actual) throws Exception {
+        assertEquals(ConditionKeys.canonicalize(expected), ConditionKeys.canonicalize(actual));
+    }
+
+    private static VariantCondition variants(Long... ids) {
+        return new VariantCondition(ids);
+    }
+
+    private static AttributeCondition eq(String attribute, Object... values) {
+        return new AttributeCondition(attribute, AttributeCondition.BinaryType.EQUAL_TO, values);
+    }
+
+    private static AttributeCondition notEq(String attribute, Object... values) {
+        return new AttributeCondition(attribute, AttributeCondition.BinaryType.NOT_EQUAL_TO, values);
+    }
+
+    private static ComboCondition and(Condition... conditions) {
+        return new ComboCondition(ComboType.AND, new ArrayList<>(List.of(conditions)));
+    }
+
+    private static ComboCondition or(Condition... conditions) {
+        return new ComboCondition(ComboType.OR, new ArrayList<>(List.of(conditions)));
+    }
+
+    private static NotCondition not(Condition condition) {
+        return new NotCondition(condition);
+    }
+}
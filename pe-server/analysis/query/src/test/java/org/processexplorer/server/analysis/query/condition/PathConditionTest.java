@@ -0,0 +1,160 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.condition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the evaluation of path conditions on the paths of variants with the LIKE patterns, which are matched
+ * against the variant strings of the cases.
+ */
+class PathConditionTest {
+
+    // 1 is a prefix of 11, which must not be matched by the patterns
+    private static final int[] ACTIVITIES = {1, 2, 11};
+
+    @Test
+    void matchesLikePatterns() {
+        var paths = paths(4);
+
+        for (var type : PathCondition.ConditionType.values()) {
+            if (!PathCondition.isVariantPredicate(type)) {
+                continue;
+            }
+
+            for (var start : values(type)) {
+                for (var end : values(type)) {
+                    var condition = new PathCondition();
+                    condition.setConditionType(type);
+                    condition.setStart(start);
+                    condition.setEnd(end);
+
+                    for (var path : paths) {
+                        var variant = toVariant(path);
+                        assertEquals(like(variant, type, start, end), condition.matches(path),
+                                type + " " + start + " " + end + " on " + variant);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesDirectResponse() {
+        var condition = new PathCondition();
+        condition.setConditionType(PathCondition.ConditionType.DIRECT_RESPONSE);
+        condition.setStart(1);
+        condition.setEnd(2);
+
+        assertTrue(condition.matches(new int[]{2, 1, 2}));
+        assertFalse(condition.matches(new int[]{1, 11, 2}));
+        assertFalse(condition.matches(new int[]{2, 1}));
+    }
+
+    @Test
+    void customConditionsAreNoVariantPredicates() {
+        var condition = new PathCondition();
+        condition.setConditionType(PathCondition.ConditionType.CUSTOM);
+        condition.setStart(1);
+
+        assertFalse(condition.isVariantPredicate());
+        assertThrows(IllegalArgumentException.class, () -> condition.matches(new int[]{1}));
+    }
+
+    /**
+     * Returns the pattern of a condition like the query, start and end are only optional for start and end conditions.
+     *
+     * @param type
+     * @param start
+     * @param end
+     * @return
+     */
+    static String pattern(PathCondition.ConditionType type, Object start, Object end) {
+        switch (type) {
+            case RESPONSE:
+            case NO_RESPONSE:
+                return "%:" + start + ":%:" + end + ":%";
+            case DIRECT_RESPONSE:
+            case NO_DIRECT_RESPONSE:
+                return "%:" + start + "::" + end + ":%";
+            case EXISTS:
+                return "%:" + start + ":%";
+            default:
+                return (start != null ? ":" + start + ":" : "") + "%" + (end != null ? ":" + end + ":" : "");
+        }
+    }
+
+    /**
+     * Returns the result of the LIKE or NOT LIKE operator of the condition type.
+     *
+     * @param value
+     * @param type
+     * @param start
+     * @param end
+     * @return
+     */
+    static boolean like(String value, PathCondition.ConditionType type, Object start, Object end) {
+        var regex = Arrays.stream(pattern(type, start, end).split("%", -1)).map(Pattern::quote).collect(Collectors.joining(".*"));
+        return Pattern.matches(regex, value) != type.name().startsWith("NO_");
+    }
+
+    private static List<Integer> values(PathCondition.ConditionType type) {
+        var result = new ArrayList<Integer>();
+        for (var activity : ACTIVITIES) {
+            result.add(activity);
+        }
+        if (type == PathCondition.ConditionType.START_END || type == PathCondition.ConditionType.NO_START_END) {
+            result.add(null);
+        }
+        return result;
+    }
+
+    private static String toVariant(int[] path) {
+        if (path.length == 0) {
+            return "::";
+        }
+        return Arrays.stream(path).mapToObj(x -> ":" + x + ":").collect(Collectors.joining());
+    }
+
+    private static List<int[]> paths(int maximumLength) {
+        var result = new ArrayList<int[]>();
+        result.add(new int[0]);
+        for (var i = 0; i < result.size(); i++) {
+            var path = result.get(i);
+            if (path.length == maximumLength) {
+                continue;
+            }
+            for (var activity : ACTIVITIES) {
+                var next = Arrays.copyOf(path, path.length + 1);
+                next[path.length] = activity;
+                result.add(next);
+            }
+        }
+        return result;
+    }
+}
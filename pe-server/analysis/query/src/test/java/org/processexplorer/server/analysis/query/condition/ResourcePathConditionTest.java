@@ -0,0 +1,101 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.condition;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the evaluation of resource path conditions on the resource paths with the LIKE patterns, which are matched
+ * against the resource variant strings of the cases.
+ */
+class ResourcePathConditionTest {
+
+    private static final String[] RESOURCES = {"a", "b", "ab"};
+
+    @Test
+    void matchesLikePatterns() {
+        var paths = paths(4);
+
+        for (var type : ResourcePathCondition.ConditionType.values()) {
+            var pathType = PathCondition.ConditionType.valueOf(type.name());
+            if (!PathCondition.isVariantPredicate(pathType)) {
+                continue;
+            }
+
+            for (var start : values(pathType)) {
+                for (var end : values(pathType)) {
+                    var condition = new ResourcePathCondition();
+                    condition.setConditionType(type);
+                    condition.setStart(start);
+                    condition.setEnd(end);
+                    assertTrue(condition.isVariantPredicate());
+
+                    for (var path : paths) {
+                        var variant = path.length == 0 ? "::" : ":" + String.join("::", path) + ":";
+                        assertEquals(PathConditionTest.like(variant, pathType, start, end), condition.matches(path),
+                                type + " " + start + " " + end + " on " + variant);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void namesWithWildcardsAreNoVariantPredicates() {
+        for (var name : List.of("a%", "a_b", "a:b", "a\\b")) {
+            var condition = new ResourcePathCondition();
+            condition.setConditionType(ResourcePathCondition.ConditionType.EXISTS);
+            condition.setStart(name);
+
+            assertFalse(condition.isVariantPredicate(), name);
+        }
+    }
+
+    private static List<String> values(PathCondition.ConditionType type) {
+        var result = new ArrayList<String>(Arrays.asList(RESOURCES));
+        if (type == PathCondition.ConditionType.START_END || type == PathCondition.ConditionType.NO_START_END) {
+            result.add(null);
+        }
+        return result;
+    }
+
+    private static List<String[]> paths(int maximumLength) {
+        var result = new ArrayList<String[]>();
+        result.add(new String[0]);
+        for (var i = 0; i < result.size(); i++) {
+            var path = result.get(i);
+            if (path.length == maximumLength) {
+                continue;
+            }
+            for (var resource : RESOURCES) {
+                var next = Arrays.copyOf(path, path.length + 1);
+                next[path.length] = resource;
+                result.add(next);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.junit.jupiter.api.Test;
+import org.processexplorer.server.analysis.query.condition.*;
+import org.processexplorer.server.analysis.query.model.Activity;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the case sets of conditions on the columnar event log against the semantics of the database, in which a
+ * condition on a missing value is unknown and neither the condition nor its negation selects the case.
+ */
+class ColumnarConditionEvaluatorTest {
+
+    private static final int A = 0;
+    private static final int B = 1;
+    private static final int C = 2;
+
+    private static final int NONE = ColumnarEventLog.NO_RESOURCE;
+
+    private final ColumnarConditionEvaluator evaluator = new ColumnarConditionEvaluator(createLog());
+
+    @Test
+    void selectsAllCasesWithoutConditions() {
+        assertCases(new int[]{0, 1, 2, 3});
+        assertCases(new int[]{0, 1, 2, 3}, new ClusterCondition());
+    }
+
+    @Test
+    void selectsEqualValues() {
+        assertCases(new int[]{0, 2}, eq("region", "north"));
+        assertCases(new int[]{0, 1, 2}, eq("region", "north", "south"));
+        assertCases(new int[]{0, 3}, eq("amount", "5"));
+        assertCases(new int[]{1}, eq("c_id", 20));
+    }
+
+    @Test
+    void negationDoesNotSelectUnknownCases() {
+        assertCases(new int[]{1}, not(eq("region", "north")));
+        assertCases(new int[]{1}, attribute("region", AttributeCondition.BinaryType.NOT_EQUAL_TO, "north", "east"));
+        assertCases(new int[]{1}, not(not(not(eq("region", "north")))));
+    }
+
+    @Test
+    void combinesUnknownCasesLikeSql() {
+        // NULL OR TRUE is true, so no case remains unknown
+        assertCases(new int[]{1}, not(or(eq("region", "north"), eq("amount", 5))));
+
+        // NULL AND FALSE is false, NULL AND TRUE is unknown
+        assertCases(new int[]{0, 1, 3}, not(and(eq("region", "north"), eq("amount", 7))));
+    }
+
+    @Test
+    void selectsDurations() {
+        var duration = new AttributeCondition("c_duration", AttributeCondition.BinaryType.INTERVAL_RANGE, new Object[0]);
+        duration.setFrom(0L);
+        duration.setTo(1L);
+
+        assertCases(new int[]{0, 1, 2}, duration);
+        assertCases(new int[0], not(duration));
+    }
+
+    @Test
+    void selectsVariantsCasesAndPaths() {
+        var path = new PathCondition();
+        path.setConditionType(PathCondition.ConditionType.EXISTS);
+        path.setStart(2);
+
+        assertCases(new int[]{0, 2}, new VariantCondition(new Long[]{1L}));
+        assertCases(new int[]{1, 3}, new CaseSetCondition(new int[]{20, 40, 50}));
+        assertCases(new int[]{1}, path);
+        assertCases(new int[]{0, 2}, new VariantCondition(new Long[]{1L, 2L}), not(path));
+    }
+
+    @Test
+    void returnsNullForUnsupportedConditions() {
+        assertNull(evaluator.evaluate(List.of(eq("missing", 1))));
+        assertNull(evaluator.evaluate(List.of(eq("region", "north"), not(new ClusterCondition()))));
+        assertNull(evaluator.evaluate(List.of(or(eq("region", "north"), attribute("amount", AttributeCondition.BinaryType.RANGE, 1)))));
+    }
+
+    @Test
+    void doesNotModifyCachedCaseSets() {
+        assertCases(new int[]{0, 2}, eq("region", "north"));
+        assertCases(new int[]{2}, eq("region", "north"), new CaseSetCondition(new int[]{30}));
+        assertCases(new int[]{1}, not(eq("region", "north")));
+        assertCases(new int[]{0, 2}, eq("region", "north"));
+    }
+
+    /**
+     * Creates a log of four cases on the heap:
+     * <pre>
+     * case  variant  path         region  amount  timestamps
+     * 10    1        A, B         north   5       0 s, 60 s
+     * 20    2        A, C, B      south   7       0 s, 30 s, 90 s
+     * 30    1        A, B         north   -       0 s, 120 s
+     * 40    3        B            -       5       -
+     * </pre>
+     *
+     * @return
+     */
+    private static ColumnarEventLog createLog() {
+        var caseAttributes = new LinkedHashMap<String, CaseAttributeColumn>();
+        caseAttributes.put("region", column("region", "north", "south", "north", null));
+        caseAttributes.put("amount", column("amount", 5, 7, null, 5));
+
+        return new ColumnarEventLog("log", 4, 8,
+                IntBuffer.wrap(new int[]{10, 20, 30, 40}),
+                IntBuffer.wrap(new int[]{0, 2, 5, 7, 8}),
+                IntBuffer.wrap(new int[]{1, 2, 1, 3}),
+                IntBuffer.wrap(new int[]{A, B, A, C, B, A, B, B}),
+                LongBuffer.wrap(new long[]{0, 60_000, 0, 30_000, 90_000, 0, 120_000, ColumnarEventLog.NO_TIMESTAMP}),
+                IntBuffer.wrap(new int[]{0, NONE, 0, NONE, NONE, 0, NONE, 0}),
+                List.of(new Activity(A, "A"), new Activity(B, "B"), new Activity(C, "C")),
+                List.of("clerk"),
+                Map.of(1, new int[]{A, B}, 2, new int[]{A, C, B}, 3, new int[]{B}),
+                caseAttributes);
+    }
+
+    private static CaseAttributeColumn column(String name, Object... values) {
+        var column = new CaseAttributeColumn(name, IntBuffer.wrap(new int[values.length]), values.length);
+        for (int i = 0; i < values.length; i++) {
+            column.set(i, values[i]);
+        }
+        column.freeze();
+        return column;
+    }
+
+    private void assertCases(int[] expected, Condition... conditions) {
+        var cases = evaluator.evaluate(new ArrayList<>(List.of(conditions)));
+        assertNotNull(cases);
+        assertArrayEquals(expected, cases.toArray());
+    }
+
+    private static AttributeCondition eq(String attribute, Object... values) {
+        return attribute(attribute, AttributeCondition.BinaryType.EQUAL_TO, values);
+    }
+
+    private static AttributeCondition attribute(String attribute, AttributeCondition.BinaryType type, Object... values) {
+        return new AttributeCondition(attribute, type, values);
+    }
+
+    private static ComboCondition and(Condition... conditions) {
+        return new ComboCondition(ComboType.AND, new ArrayList<>(List.of(conditions)));
+    }
+
+    private static ComboCondition or(Condition... conditions) {
+        return new ComboCondition(ComboType.OR, new ArrayList<>(List.of(conditions)));
+    }
+
+    private static NotCondition not(Condition condition) {
+        return new NotCondition(condition);
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.server.analysis.query.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.processexplorer.server.analysis.query.condition.AttributeCondition;
+import org.processexplorer.server.analysis.query.condition.NotCondition;
+import org.processexplorer.server.analysis.query.model.Activity;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Writes the snapshot of a log and compares the memory-mapped log with the log on the heap.
+ */
+class EventLogSnapshotTest {
+
+    private static final String LOG_NAME = "log";
+
+    private static final ColumnarEventLog.ColumnAllocator HEAP = new ColumnarEventLog.ColumnAllocator() {
+        @Override
+        public IntBuffer allocateInts(int size) {
+            return IntBuffer.wrap(new int[size]);
+        }
+
+        @Override
+        public LongBuffer allocateLongs(int size) {
+            return LongBuffer.wrap(new long[size]);
+        }
+    };
+
+    private static final int A = 0;
+    private static final int B = 1;
+    private static final int C = 2;
+
+    private static final int NONE = ColumnarEventLog.NO_RESOURCE;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsWrittenLog() {
+        var file = directory.resolve("log.snapshot");
+        EventLogSnapshot.write(LOG_NAME, file, EventLogSnapshotTest::createLog);
+
+        var expected = createLog(HEAP);
+        var actual = EventLogSnapshot.open(file);
+
+        assertEquals(expected.getLogName(), actual.getLogName());
+        assertEquals(expected.getNumCases(), actual.getNumCases());
+        assertEquals(expected.getNumEvents(), actual.getNumEvents());
+
+        for (int i = 0; i < expected.getNumCases(); i++) {
+            assertEquals(expected.getCaseId(i), actual.getCaseId(i));
+            assertEquals(expected.getVariantId(i), actual.getVariantId(i));
+            assertEquals(expected.getFirstEvent(i), actual.getFirstEvent(i));
+            assertEquals(expected.getEndEvent(i), actual.getEndEvent(i));
+            assertArrayEquals(expected.getVariantPath(expected.getVariantId(i)), actual.getVariantPath(actual.getVariantId(i)));
+        }
+
+        for (int i = 0; i < expected.getNumEvents(); i++) {
+            assertEquals(expected.getActivity(i), actual.getActivity(i));
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(expected.getResource(i), actual.getResource(i));
+        }
+
+        assertEquals(names(expected), names(actual));
+        assertEquals(expected.getResourceNames(), actual.getResourceNames());
+        assertEquals(expected.getVariantPaths().keySet(), actual.getVariantPaths().keySet());
+
+        for (var name : List.of("region", "amount")) {
+            var column = actual.getCaseAttribute(name);
+            assertEquals(expected.getCaseAttribute(name).getDictionary(), column.getDictionary());
+            for (int i = 0; i < expected.getNumCases(); i++) {
+                assertEquals(expected.getCaseAttribute(name).getValue(i), column.getValue(i));
+            }
+        }
+    }
+
+    @Test
+    void keepsTypesOfAttributeValues() {
+        var values = new Object[]{"text", 1, 2L, (short) 3, 4.5, 5.5f, new BigDecimal("6.50"), true, timestamp(), new Date(86_400_000L)};
+        var file = directory.resolve("log.snapshot");
+
+        EventLogSnapshot.write(LOG_NAME, file, allocator -> {
+            var log = createLog(allocator);
+            var column = new CaseAttributeColumn("values", allocator.allocateInts(log.getNumCases()), log.getNumCases());
+            for (var value : values) {
+                column.set(0, value);
+            }
+            column.freeze();
+            log.getCaseAttributes().put(column.getName(), column);
+            return log;
+        });
+
+        var dictionary = EventLogSnapshot.open(file).getCaseAttribute("values").getDictionary();
+        assertArrayEquals(values, dictionary.toArray());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i].getClass(), dictionary.get(i).getClass());
+        }
+    }
+
+    @Test
+    void evaluatesConditionsOnSnapshot() {
+        var file = directory.resolve("log.snapshot");
+        EventLogSnapshot.write(LOG_NAME, file, EventLogSnapshotTest::createLog);
+
+        var evaluator = new ColumnarConditionEvaluator(EventLogSnapshot.open(file));
+        var condition = new AttributeCondition("region", AttributeCondition.BinaryType.EQUAL_TO, new Object[]{"north"});
+
+        assertArrayEquals(new int[]{0, 2}, evaluator.evaluate(List.of(condition)).toArray());
+        assertArrayEquals(new int[]{1}, evaluator.evaluate(List.of(new NotCondition(condition))).toArray());
+    }
+
+    @Test
+    void replacesExistingSnapshot() throws IOException {
+        var file = directory.resolve("log.snapshot");
+        Files.write(file, new byte[]{1, 2, 3});
+
+        EventLogSnapshot.write(LOG_NAME, file, EventLogSnapshotTest::createLog);
+        EventLogSnapshot.write(LOG_NAME, file, EventLogSnapshotTest::createLog);
+
+        assertEquals(4, EventLogSnapshot.open(file).getNumCases());
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(file), files.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws IOException {
+        var file = directory.resolve("other.snapshot");
+        Files.write(file, new byte[64]);
+
+        assertThrows(IllegalStateException.class, () -> EventLogSnapshot.open(file));
+    }
+
+    @Test
+    void keepsOpenedSnapshot() {
+        var file = directory.resolve(LOG_NAME + ".snapshot");
+        EventLogSnapshot.write(LOG_NAME, file, EventLogSnapshotTest::createLog);
+
+        var engine = new ColumnarQueryEngine(null);
+        engine.setSnapshotDirectory(directory);
+
+        var snapshot = engine.openSnapshot(LOG_NAME);
+        assertEquals(4, snapshot.getNumCases());
+        assertSame(snapshot, engine.openSnapshot(LOG_NAME));
+
+        engine.invalidate(LOG_NAME);
+        assertFalse(Files.exists(file));
+    }
+
+    /**
+     * Creates a log of four cases in the columns provided by the allocator:
+     * <pre>
+     * case  variant  path         region  amount  timestamps
+     * 10    1        A, B         north   5       0 s, 60 s
+     * 20    2        A, C, B      south   7       0 s, 30 s, 90 s
+     * 30    1        A, B         north   -       0 s, 120 s
+     * 40    3        B            -       5       -
+     * </pre>
+     *
+     * @param allocator
+     * @return
+     */
+    private static ColumnarEventLog createLog(ColumnarEventLog.ColumnAllocator allocator) {
+        var caseAttributes = new LinkedHashMap<String, CaseAttributeColumn>();
+        caseAttributes.put("region", column(allocator, "region", "north", "south", "north", null));
+        caseAttributes.put("amount", column(allocator, "amount", 5, 7, null, 5));
+
+        var timestamps = allocator.allocateLongs(8);
+        var values = new long[]{0, 60_000, 0, 30_000, 90_000, 0, 120_000, ColumnarEventLog.NO_TIMESTAMP};
+        for (int i = 0; i < values.length; i++) {
+            timestamps.put(i, values[i]);
+        }
+
+        return new ColumnarEventLog(LOG_NAME, 4, 8,
+                ints(allocator, 10, 20, 30, 40),
+                ints(allocator, 0, 2, 5, 7, 8),
+                ints(allocator, 1, 2, 1, 3),
+                ints(allocator, A, B, A, C, B, A, B, B),
+                timestamps,
+                ints(allocator, 0, NONE, 0, NONE, NONE, 0, NONE, 0),
+                List.of(new Activity(A, "A"), new Activity(B, "B"), new Activity(C, "C")),
+                List.of("clerk"),
+                Map.of(1, new int[]{A, B}, 2, new int[]{A, C, B}, 3, new int[]{B}),
+                caseAttributes);
+    }
+
+    private static IntBuffer ints(ColumnarEventLog.ColumnAllocator allocator, int... values) {
+        var result = allocator.allocateInts(values.length);
+        for (int i = 0; i < values.length; i++) {
+            result.put(i, values[i]);
+        }
+        return result;
+    }
+
+    private static CaseAttributeColumn column(ColumnarEventLog.ColumnAllocator allocator, String name, Object... values) {
+        var column = new CaseAttributeColumn(name, allocator.allocateInts(values.length), values.length);
+        for (int i = 0; i < values.length; i++) {
+            column.set(i, values[i]);
+        }
+        column.freeze();
+        return column;
+    }
+
+    private static List<String> names(ColumnarEventLog log) {
+        return log.getActivityDictionary().stream().map(x -> x.getId() + ":" + x.getName()).collect(Collectors.toList());
+    }
+
+    private static Timestamp timestamp() {
+        var timestamp = new Timestamp(1_600_000_000_000L);
+        timestamp.setNanos(123_456_789);
+        return timestamp;
+    }
+}
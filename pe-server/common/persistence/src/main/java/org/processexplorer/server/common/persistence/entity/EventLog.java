@@ -60,6 +60,9 @@ public class EventLog implements Serializable {
     @Column(name = "processing")
     private boolean processing;
 
+    @Column(name = "preview")
+    private boolean preview;
+
     @Column(name = "error_message")
     @Lob()
     @Type(type = "org.hibernate.type.TextType")
@@ -141,6 +144,14 @@ public class EventLog implements Serializable {
         this.processing = processing;
     }
 
+    public boolean isPreview() {
+        return preview;
+    }
+
+    public void setPreview(boolean preview) {
+        this.preview = preview;
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
@@ -0,0 +1,134 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.processexplorer.server.common.persistence.entity;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * A running import of an event log. The record is removed when the import is finished or failed, so a remaining
+ * record marks an import that was interrupted by a restart. It stores the last checkpoint of the import, i.e. the
+ * number of traces of the file whose rows are completely written and the case id of the next trace.
+ */
+@Entity
+@Table(name = "_meta_event_log_import_job")
+public class EventLogImportJob implements Serializable {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private long id;
+
+    @Column(name = "log_name")
+    private String logName;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "append")
+    private boolean append;
+
+    @Column(name = "traces")
+    private long traces;
+
+    @Column(name = "next_case_id")
+    private int nextCaseId;
+
+    @Column(name = "creation_date")
+    private Timestamp creationDate;
+
+    @Column(name = "checkpoint_date")
+    private Timestamp checkpointDate;
+
+    protected EventLogImportJob() {
+    }
+
+    public EventLogImportJob(String logName, String fileName, boolean append) {
+        this.logName = logName;
+        this.fileName = fileName;
+        this.append = append;
+        this.creationDate = Timestamp.from(Instant.now());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getLogName() {
+        return logName;
+    }
+
+    public void setLogName(String logName) {
+        this.logName = logName;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public boolean isAppend() {
+        return append;
+    }
+
+    public void setAppend(boolean append) {
+        this.append = append;
+    }
+
+    public long getTraces() {
+        return traces;
+    }
+
+    public void setTraces(long traces) {
+        this.traces = traces;
+    }
+
+    public int getNextCaseId() {
+        return nextCaseId;
+    }
+
+    public void setNextCaseId(int nextCaseId) {
+        this.nextCaseId = nextCaseId;
+    }
+
+    public Timestamp getCreationDate() {
+        return creationDate;
+    }
+
+    public void setCreationDate(Timestamp creationDate) {
+        this.creationDate = creationDate;
+    }
+
+    public Timestamp getCheckpointDate() {
+        return checkpointDate;
+    }
+
+    public void setCheckpointDate(Timestamp checkpointDate) {
+        this.checkpointDate = checkpointDate;
+    }
+}
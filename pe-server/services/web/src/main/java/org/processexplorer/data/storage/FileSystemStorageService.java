@@ -28,6 +28,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -67,6 +68,39 @@ public class FileSystemStorageService implements StorageService {
         }
     }
 
+    @Override
+    public OutputStream create(String filename) {
+        String cleanFilename = StringUtils.cleanPath(filename);
+        if (cleanFilename.contains("..")) {
+            // This is a security check
+            throw new StorageException(
+                    "Cannot store file with relative path outside current directory "
+                            + cleanFilename);
+        }
+        try {
+            return Files.newOutputStream(this.rootLocation.resolve(cleanFilename));
+        } catch (IOException e) {
+            throw new StorageException("Failed to store file " + cleanFilename, e);
+        }
+    }
+
+    @Override
+    public void move(String source, String target) {
+        String cleanTarget = StringUtils.cleanPath(target);
+        if (cleanTarget.contains("..")) {
+            // This is a security check
+            throw new StorageException(
+                    "Cannot store file with relative path outside current directory "
+                            + cleanTarget);
+        }
+        try {
+            Files.move(this.rootLocation.resolve(StringUtils.cleanPath(source)), this.rootLocation.resolve(cleanTarget),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new StorageException("Failed to move file " + source + " to " + cleanTarget, e);
+        }
+    }
+
     @Override
     public Stream<Path> loadAll() {
         try {
@@ -21,6 +21,7 @@ package org.processexplorer.data.storage;
 import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.OutputStream;
 import java.nio.file.Path;
 import java.util.stream.Stream;
 
@@ -29,6 +30,10 @@ public interface StorageService {
 
     void store(MultipartFile file);
 
+    OutputStream create(String filename);
+
+    void move(String source, String target);
+
     Stream<Path> loadAll();
 
     Path load(String filename);
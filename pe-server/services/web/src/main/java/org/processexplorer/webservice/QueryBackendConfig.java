@@ -0,0 +1,66 @@
+/*
+ * ProcessExplorer
+ * Copyright (C) 2021  Alexander Seeliger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package org.processexplorer.webservice;
+
+import org.processexplorer.server.analysis.query.cache.QueryResultCache;
+import org.processexplorer.server.analysis.query.cache.RefinedCaseSetCache;
+import org.processexplorer.server.analysis.query.db.QueryBackend;
+import org.processexplorer.webservice.properties.ApplicationProperties;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Creates the engine that executes the analytical queries on the logs and the caches of their results and filtered
+ * case sets.
+ */
+@Configuration
+public class QueryBackendConfig {
+
+    @Bean
+    public QueryBackend queryBackend(JdbcTemplate jdbcTemplate, ApplicationProperties properties) {
+        return properties.getQueryBackend().create(jdbcTemplate);
+    }
+
+    @Bean
+    public QueryResultCache queryResultCache(ApplicationProperties properties) {
+        return new QueryResultCache(properties.getQueryCacheWeight(), properties.getQueryCacheExpiration());
+    }
+
+    @Bean
+    public RefinedCaseSetCache refinedCaseSetCache(ApplicationProperties properties, @Qualifier("caseSetExecutor") Executor caseSetExecutor) {
+        return new RefinedCaseSetCache(properties.getCaseSetCacheCases(), properties.getCaseSetCacheWeight(), properties.getQueryCacheExpiration(), caseSetExecutor);
+    }
+
+    // evaluates one case set at a time, filters that do not fit into the queue are evaluated when requested again
+    @Bean("caseSetExecutor")
+    public Executor caseSetExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("CASESET-");
+        executor.setQueueCapacity(16);
+
+        // the executor is initialized by the container
+        return executor;
+    }
+}
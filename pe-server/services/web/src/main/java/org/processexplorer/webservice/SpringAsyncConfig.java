@@ -18,6 +18,7 @@
 
 package org.processexplorer.webservice;
 
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -32,14 +33,14 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class SpringAsyncConfig implements AsyncConfigurer {
 
+    // also used by services to continue work in the background
+    @Bean("taskExecutor")
     @Override
     public Executor getAsyncExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setThreadNamePrefix("CUSTOM-");
 
-        // Initialize the executor
-        executor.initialize();
-
+        // the executor is initialized by the container
         return executor;
     }
 }
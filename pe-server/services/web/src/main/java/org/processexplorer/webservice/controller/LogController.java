@@ -18,16 +18,21 @@
 
 package org.processexplorer.webservice.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.processexplorer.server.analysis.mining.log.csv.CsvImportConfiguration;
 import org.processexplorer.server.analysis.query.model.Log;
 import org.processexplorer.server.common.persistence.entity.EventLog;
 import org.processexplorer.server.common.persistence.entity.EventLogAnnotation;
 import org.processexplorer.webservice.services.LogAnnotationService;
 import org.processexplorer.webservice.services.LogService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
 import java.util.List;
 
 @RestController()
@@ -55,14 +60,51 @@ public class LogController {
 
     @PostMapping("/upload")
     public EventLog uploadLog(@RequestParam("file") MultipartFile file,
-                              @RequestParam("logName") String logName) {
+                              @RequestParam("logName") String logName,
+                              @RequestParam(value = "append", defaultValue = "false") boolean append) {
         // store and import log
-        return logService.storeLog(file, logName);
+        return logService.storeLog(file, logName, append);
+    }
+
+    @PostMapping(value = "/upload_stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public EventLog streamLog(HttpServletRequest request,
+                              @RequestParam("fileName") String fileName,
+                              @RequestParam("logName") String logName,
+                              @RequestParam(value = "append", defaultValue = "false") boolean append) throws IOException {
+        // import log while it is uploaded
+        return logService.streamLog(request.getInputStream(), request.getContentLengthLong(), fileName, logName, append);
+    }
+
+    @GetMapping("/csv_configuration")
+    public ResponseEntity<CsvImportConfiguration> getCsvConfiguration(@RequestParam("logName") String logName) {
+        return ResponseEntity.ok(logService.getCsvConfiguration(logName));
+    }
+
+    @PostMapping("/csv_configuration")
+    public ResponseEntity<Void> setCsvConfiguration(@RequestParam("logName") String logName,
+                                                    @RequestBody CsvImportConfiguration configuration) throws JsonProcessingException {
+        logService.setCsvConfiguration(logName, configuration);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/case_table")
+    public ResponseEntity<Void> setMaterializedCases(@RequestParam("logName") String logName,
+                                                     @RequestParam("materialized") boolean materialized) {
+        logService.setMaterializedCases(logName, materialized);
+        return ResponseEntity.ok().build();
+    }
+
+    @PostMapping("/query_engine")
+    public ResponseEntity<Void> setInMemoryQueries(@RequestParam("logName") String logName,
+                                                   @RequestParam("inMemory") boolean inMemory) {
+        logService.setInMemoryQueries(logName, inMemory);
+        return ResponseEntity.ok().build();
     }
 
     @GetMapping("/import")
-    public ResponseEntity<Void> importLog(@RequestParam("logName") String logName) {
-        logService.importLog(logName);
+    public ResponseEntity<Void> importLog(@RequestParam("logName") String logName,
+                                          @RequestParam(value = "append", defaultValue = "false") boolean append) {
+        logService.importLog(logName, append);
         return ResponseEntity.ok().build();
     }
 
@@ -22,6 +22,7 @@ import org.processexplorer.server.analysis.ml.simulation.SensitivityAnalysis;
 import org.processexplorer.server.analysis.ml.simulation.SensitivityResult;
 import org.processexplorer.server.analysis.ml.simulation.SensitivityValue;
 import org.processexplorer.server.analysis.query.QueryService;
+import org.processexplorer.server.analysis.query.cache.QueryResultCache;
 import org.processexplorer.server.analysis.query.condition.Condition;
 import org.processexplorer.server.analysis.query.model.Case;
 import org.processexplorer.server.analysis.query.model.Log;
@@ -48,11 +49,13 @@ public class QueryController {
 
     private final QueryService queryService;
     private final SensitivityAnalysis sensitivityAnalysis;
+    private final QueryResultCache queryResultCache;
 
     @Autowired
-    public QueryController(QueryService queryService, SensitivityAnalysis sensitivityAnalysis) {
+    public QueryController(QueryService queryService, SensitivityAnalysis sensitivityAnalysis, QueryResultCache queryResultCache) {
         this.queryService = queryService;
         this.sensitivityAnalysis = sensitivityAnalysis;
+        this.queryResultCache = queryResultCache;
     }
 
     @GetMapping("/query/statistics")
@@ -104,4 +107,9 @@ public class QueryController {
 
         return ResponseEntity.ok(singleCase);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/query/cache")
+    public ResponseEntity<List<QueryResultCache.EntryStatistics>> getCacheStatistics() {
+        return ResponseEntity.ok(queryResultCache.getStatistics());
+    }
+}
@@ -19,8 +19,13 @@
 package org.processexplorer.webservice.properties;
 
 
+import org.processexplorer.server.analysis.mining.log.EventTablePartitioning;
+import org.processexplorer.server.analysis.mining.log.writer.LogWriterType;
+import org.processexplorer.server.analysis.query.db.QueryBackendType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+
 /**
  * @author Alexander Seeliger on 10.08.2020.
  */
@@ -29,6 +34,37 @@ public class ApplicationProperties {
 
     private String aprilBaseUri = "http://localhost:5000";
 
+    private LogWriterType importWriter = LogWriterType.BATCH;
+
+    private int importEncoders = 2;
+
+    private int importWriters = 2;
+
+    private long importPreviewTraces = 10000;
+
+    private boolean materializeCases = false;
+
+    private boolean encodeAttributes = true;
+
+    private boolean optimizeLayout = true;
+
+    private EventTablePartitioning.Type eventPartitioning = EventTablePartitioning.Type.NONE;
+
+    private int eventPartitions = 16;
+
+    private String eventPartitionInterval = "month";
+
+    private QueryBackendType queryBackend = QueryBackendType.POSTGRES;
+
+    private String snapshotLocation = "";
+
+    private long queryCacheWeight = 1000000;
+
+    private Duration queryCacheExpiration = Duration.ofHours(1);
+
+    private int caseSetCacheCases = 10000;
+
+    private long caseSetCacheWeight = 10000000;
 
     public String getAprilBaseUri() {
         return aprilBaseUri;
@@ -37,4 +73,141 @@ public class ApplicationProperties {
     public void setAprilBaseUri(String aprilBaseUri) {
         this.aprilBaseUri = aprilBaseUri;
     }
+
+    public LogWriterType getImportWriter() {
+        return importWriter;
+    }
+
+    public void setImportWriter(LogWriterType importWriter) {
+        this.importWriter = importWriter;
+    }
+
+    public int getImportEncoders() {
+        return importEncoders;
+    }
+
+    public void setImportEncoders(int importEncoders) {
+        this.importEncoders = importEncoders;
+    }
+
+    public int getImportWriters() {
+        return importWriters;
+    }
+
+    public void setImportWriters(int importWriters) {
+        this.importWriters = importWriters;
+    }
+
+    public long getImportPreviewTraces() {
+        return importPreviewTraces;
+    }
+
+    public void setImportPreviewTraces(long importPreviewTraces) {
+        this.importPreviewTraces = importPreviewTraces;
+    }
+
+    public boolean isMaterializeCases() {
+        return materializeCases;
+    }
+
+    public void setMaterializeCases(boolean materializeCases) {
+        this.materializeCases = materializeCases;
+    }
+
+    public boolean isEncodeAttributes() {
+        return encodeAttributes;
+    }
+
+    public void setEncodeAttributes(boolean encodeAttributes) {
+        this.encodeAttributes = encodeAttributes;
+    }
+
+    public boolean isOptimizeLayout() {
+        return optimizeLayout;
+    }
+
+    public void setOptimizeLayout(boolean optimizeLayout) {
+        this.optimizeLayout = optimizeLayout;
+    }
+
+    public EventTablePartitioning.Type getEventPartitioning() {
+        return eventPartitioning;
+    }
+
+    public void setEventPartitioning(EventTablePartitioning.Type eventPartitioning) {
+        this.eventPartitioning = eventPartitioning;
+    }
+
+    public int getEventPartitions() {
+        return eventPartitions;
+    }
+
+    public void setEventPartitions(int eventPartitions) {
+        this.eventPartitions = eventPartitions;
+    }
+
+    public String getEventPartitionInterval() {
+        return eventPartitionInterval;
+    }
+
+    public void setEventPartitionInterval(String eventPartitionInterval) {
+        this.eventPartitionInterval = eventPartitionInterval;
+    }
+
+    public QueryBackendType getQueryBackend() {
+        return queryBackend;
+    }
+
+    public void setQueryBackend(QueryBackendType queryBackend) {
+        this.queryBackend = queryBackend;
+    }
+
+    public String getSnapshotLocation() {
+        return snapshotLocation;
+    }
+
+    public void setSnapshotLocation(String snapshotLocation) {
+        this.snapshotLocation = snapshotLocation;
+    }
+
+    public long getQueryCacheWeight() {
+        return queryCacheWeight;
+    }
+
+    public void setQueryCacheWeight(long queryCacheWeight) {
+        this.queryCacheWeight = queryCacheWeight;
+    }
+
+    public Duration getQueryCacheExpiration() {
+        return queryCacheExpiration;
+    }
+
+    public void setQueryCacheExpiration(Duration queryCacheExpiration) {
+        this.queryCacheExpiration = queryCacheExpiration;
+    }
+
+    public int getCaseSetCacheCases() {
+        return caseSetCacheCases;
+    }
+
+    public void setCaseSetCacheCases(int caseSetCacheCases) {
+        this.caseSetCacheCases = caseSetCacheCases;
+    }
+
+    public long getCaseSetCacheWeight() {
+        return caseSetCacheWeight;
+    }
+
+    public void setCaseSetCacheWeight(long caseSetCacheWeight) {
+        this.caseSetCacheWeight = caseSetCacheWeight;
+    }
+
+    /**
+     * Returns the partitioning of the events table of newly imported logs.
+     *
+     * @return
+     */
+    public EventTablePartitioning createEventPartitioning() {
+        return new EventTablePartitioning(eventPartitioning, eventPartitions, eventPartitionInterval);
+    }
 }
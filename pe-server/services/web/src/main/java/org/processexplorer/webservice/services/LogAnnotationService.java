@@ -18,6 +18,7 @@
 
 package org.processexplorer.webservice.services;
 
+import org.processexplorer.server.analysis.query.QueryService;
 import org.processexplorer.server.common.persistence.repository.EventLogAnnotationRepository;
 import org.processexplorer.server.common.persistence.entity.EventLogAnnotation;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,9 +31,12 @@ public class LogAnnotationService {
 
     private final EventLogAnnotationRepository eventLogAnnotationRepository;
 
+    private final QueryService queryService;
+
     @Autowired
-    public LogAnnotationService(EventLogAnnotationRepository eventLogAnnotationRepository) {
+    public LogAnnotationService(EventLogAnnotationRepository eventLogAnnotationRepository, QueryService queryService) {
         this.eventLogAnnotationRepository = eventLogAnnotationRepository;
+        this.queryService = queryService;
     }
 
     public Iterable<EventLogAnnotation> findByLogName(String logName) {
@@ -41,15 +45,23 @@ public class LogAnnotationService {
 
     public Iterable<EventLogAnnotation> saveAll(List<EventLogAnnotation> annotations) {
         this.eventLogAnnotationRepository.deleteAllByLogName(annotations.get(0).getLogName());
-        return this.eventLogAnnotationRepository.saveAll(annotations);
+        var result = this.eventLogAnnotationRepository.saveAll(annotations);
+
+        // the annotations are part of the statistics and drill down results
+        this.queryService.invalidateAnnotations(annotations.get(0).getLogName());
+        return result;
     }
 
     public EventLogAnnotation save(EventLogAnnotation annotation) {
-        return this.eventLogAnnotationRepository.save(annotation);
+        var result = this.eventLogAnnotationRepository.save(annotation);
+        this.queryService.invalidateAnnotations(annotation.getLogName());
+        return result;
     }
 
     public void deleteById(Long id) {
+        var annotation = this.eventLogAnnotationRepository.findById(id);
         this.eventLogAnnotationRepository.deleteById(id);
+        annotation.ifPresent(x -> this.queryService.invalidateAnnotations(x.getLogName()));
     }
 
 }
@@ -18,26 +18,59 @@
 
 package org.processexplorer.webservice.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.commons.io.input.TeeInputStream;
+import org.processexplorer.data.storage.StorageException;
 import org.processexplorer.data.storage.StorageService;
+import org.processexplorer.server.analysis.mining.log.AttributeEncoder;
+import org.processexplorer.server.analysis.mining.log.DerivedTables;
+import org.processexplorer.server.analysis.mining.log.ImportCheckpoint;
 import org.processexplorer.server.analysis.mining.log.XLog2Database;
-import org.processexplorer.server.analysis.mining.log.XLogUtils;
+import org.processexplorer.server.analysis.mining.log.csv.CsvImportConfiguration;
+import org.processexplorer.server.analysis.mining.log.csv.CsvLog2Database;
+import org.processexplorer.server.analysis.mining.log.reader.EventLogReader;
+import org.processexplorer.server.analysis.mining.log.reader.XesEventLogReader;
 import org.processexplorer.server.analysis.query.DatabaseModel;
 import org.processexplorer.server.analysis.query.QueryService;
+import org.processexplorer.server.analysis.query.memory.ColumnarQueryEngine;
 import org.processexplorer.server.analysis.query.model.Log;
 import org.processexplorer.server.common.persistence.entity.EventLog;
+import org.processexplorer.server.common.persistence.entity.EventLogFeature;
+import org.processexplorer.server.common.persistence.entity.EventLogImportJob;
 import org.processexplorer.server.common.persistence.repository.*;
+import org.processexplorer.webservice.properties.ApplicationProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * @author Alexander Seeliger on 26.09.2019.
@@ -45,16 +78,24 @@ import java.util.concurrent.Future;
 @Service
 public class LogService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LogService.class);
+
     private final EventLogRepository eventLogRepository;
     private final EventLogFeatureRepository eventLogFeatureRepository;
     private final EventLogArtifactRepository eventLogArtifactRepository;
     private final EventLogAnnotationRepository eventLogAnnotationRepository;
     private final EventLogRecommendationRepository eventLogRecommendationRepository;
+    private final EventLogImportJobRepository eventLogImportJobRepository;
 
     private final SimpMessagingTemplate messagingTemplate;
     private final StorageService storageService;
     private final QueryService queryService;
+    private final ColumnarQueryEngine columnarQueryEngine;
     private final JdbcTemplate jdbcTemplate;
+    private final ApplicationProperties properties;
+
+    // runs the phases of streamed imports that follow the upload
+    private final Executor taskExecutor;
 
     @Autowired
     public LogService(EventLogRepository eventLogRepository,
@@ -62,37 +103,42 @@ public class LogService {
                       EventLogArtifactRepository eventLogArtifactRepository,
                       EventLogAnnotationRepository eventLogAnnotationRepository,
                       EventLogRecommendationRepository eventLogRecommendationRepository,
+                      EventLogImportJobRepository eventLogImportJobRepository,
                       SimpMessagingTemplate messagingTemplate,
                       StorageService storageService,
                       QueryService queryService,
-                      JdbcTemplate jdbcTemplate) {
+                      ColumnarQueryEngine columnarQueryEngine,
+                      JdbcTemplate jdbcTemplate,
+                      ApplicationProperties properties,
+                      @Qualifier("taskExecutor") Executor taskExecutor) {
         this.eventLogRepository = eventLogRepository;
         this.eventLogFeatureRepository = eventLogFeatureRepository;
         this.eventLogArtifactRepository = eventLogArtifactRepository;
         this.eventLogAnnotationRepository = eventLogAnnotationRepository;
         this.eventLogRecommendationRepository = eventLogRecommendationRepository;
+        this.eventLogImportJobRepository = eventLogImportJobRepository;
         this.messagingTemplate = messagingTemplate;
         this.storageService = storageService;
         this.queryService = queryService;
+        this.columnarQueryEngine = columnarQueryEngine;
         this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+        this.taskExecutor = taskExecutor;
     }
 
     /**
-     * Stores an event log file to the system in a temporary location for import.
+     * Stores an event log file to the system in a temporary location for import. Files that are appended to an
+     * existing log replace the file of the log, the log stays available until the import.
      *
      * @param file
      * @param logName
+     * @param append
      * @return
      */
-    public EventLog storeLog(MultipartFile file, String logName) {
+    public EventLog storeLog(MultipartFile file, String logName, boolean append) {
         storageService.store(file);
 
-        var eventLog = new EventLog(logName);
-        eventLog.setFileName(file.getOriginalFilename());
-        eventLog.setImported(false);
-        eventLog.setProcessed(false);
-        eventLog.setType((file.getOriginalFilename().endsWith(".xes") || file.getOriginalFilename().endsWith(".xes.gz")) ? "xes" : "csv");
-        eventLog = eventLogRepository.save(eventLog);
+        var eventLog = saveLog(file.getOriginalFilename(), logName, append);
 
         // report finished process
         messagingTemplate.convertAndSend("/notifications/logs/stored", eventLog);
@@ -100,40 +146,238 @@ public class LogService {
     }
 
     /**
-     * Imports an event log to the database.
+     * Imports an event log while it is uploaded. The xes importer reads the request body, which is written to the file
+     * of the log at the same time, so the upload is neither buffered nor read from the disk again. Csv logs are
+     * imported after the file is stored completely.
+     * <p>
+     * Returns as soon as the upload is consumed, the remaining phases of the import run in the background and are
+     * reported like the ones of an import of a stored file. The upload replaces the file of the log only after its
+     * whole body has arrived, a broken upload removes the partial file and the job of its import.
+     *
+     * @param inputStream
+     * @param size
+     * @param fileName
+     * @param logName
+     * @param append
+     * @return
+     * @throws IOException
+     */
+    public EventLog streamLog(InputStream inputStream, long size, String fileName, String logName, boolean append) throws IOException {
+        var eventLog = saveLog(fileName, logName, append);
+        var partialFileName = getPartialFileName(fileName);
+
+        if (!eventLog.getType().equals("xes")) {
+            try {
+                try (var outputStream = storageService.create(partialFileName)) {
+                    inputStream.transferTo(outputStream);
+                }
+                completeUpload(fileName, size);
+            } catch (IOException | RuntimeException ex) {
+                storageService.delete(partialFileName);
+                throw ex;
+            }
+
+            var job = createJob(eventLog, append);
+            taskExecutor.execute(() -> runImport(eventLogRepository.findByLogName(logName), job));
+            return eventLog;
+        }
+
+        var job = createJob(eventLog, append);
+        eventLog = startImport(eventLog);
+
+        XLog2Database log2db;
+        try {
+            try (var outputStream = storageService.create(partialFileName)) {
+                var upload = new TeeInputStream(inputStream, outputStream);
+                log2db = importTraces(eventLog, job,
+                        () -> XesEventLogReader.open(new CloseShieldInputStream(upload), size, fileName.endsWith(".gz")));
+
+                // the parser stops at the end of the log element, the rest of the upload is stored nevertheless
+                upload.transferTo(OutputStream.nullOutputStream());
+            }
+            completeUpload(fileName, size);
+        } catch (IOException | RuntimeException ex) {
+            // the import of a broken upload can not be resumed, so its job is removed with the partial file
+            storageService.delete(partialFileName);
+            failImport(eventLog, job, ex);
+            finishImport(eventLog, job);
+            throw ex;
+        }
+
+        if (log2db == null) {
+            return finishImport(eventLog, job);
+        }
+
+        // the returned record is not changed by the background phases
+        taskExecutor.execute(() -> {
+            var current = eventLogRepository.findByLogName(logName);
+            if (current != null) {
+                finishTraces(current, job, log2db);
+                finishImport(current, job);
+            }
+        });
+        return eventLog;
+    }
+
+    /**
+     * Returns the name under which an upload is stored until its whole body has arrived.
+     *
+     * @param fileName
+     * @return
+     */
+    private static String getPartialFileName(String fileName) {
+        return fileName + ".part";
+    }
+
+    /**
+     * Replaces the stored file of the log by the uploaded file, if the whole body has arrived.
      *
+     * @param fileName
+     * @param size
+     * @throws IOException
+     */
+    private void completeUpload(String fileName, long size) throws IOException {
+        var partialFileName = getPartialFileName(fileName);
+        if (size >= 0 && Files.size(storageService.load(partialFileName)) != size) {
+            throw new StorageException("Upload of file " + fileName + " is incomplete");
+        }
+
+        storageService.move(partialFileName, fileName);
+    }
+
+    /**
+     * Creates or updates the record of an event log for a new file.
+     *
+     * @param fileName
      * @param logName
+     * @param append
+     * @return
+     */
+    private EventLog saveLog(String fileName, String logName, boolean append) {
+        var eventLog = append ? eventLogRepository.findByLogName(logName) : null;
+        if (eventLog == null) {
+            eventLog = new EventLog(logName);
+            eventLog.setImported(false);
+            eventLog.setProcessed(false);
+        }
+
+        eventLog.setFileName(fileName);
+        eventLog.setType((fileName.endsWith(".xes") || fileName.endsWith(".xes.gz")) ? "xes" : "csv");
+        return eventLogRepository.save(eventLog);
+    }
+
+    /**
+     * Imports an event log to the database. When appending, only the cases of the file that are not part of the log
+     * yet are added and the derived tables are updated incrementally.
+     *
+     * @param logName
+     * @param append
      * @return
      */
     @Async
-    public Future<EventLog> importLog(String logName) {
-        // get event log
+    public Future<EventLog> importLog(String logName, boolean append) {
         var eventLog = eventLogRepository.findByLogName(logName);
-        eventLog.setProcessing(true);
-        eventLog.setErrorMessage(null);
-        eventLog = eventLogRepository.save(eventLog);
+        return new AsyncResult<>(runImport(eventLog, createJob(eventLog, append)));
+    }
 
-        // report processing
-        messagingTemplate.convertAndSend("/notifications/logs/import_started", eventLog);
+    /**
+     * Creates the record of a new import, which replaces the record of an interrupted one.
+     *
+     * @param eventLog
+     * @param append
+     * @return
+     */
+    private EventLogImportJob createJob(EventLog eventLog, boolean append) {
+        var previousJob = eventLogImportJobRepository.findByLogName(eventLog.getLogName());
+        if (previousJob != null) {
+            eventLogImportJobRepository.delete(previousJob);
+        }
+
+        return eventLogImportJobRepository.save(new EventLogImportJob(eventLog.getLogName(), eventLog.getFileName(), append));
+    }
+
+    /**
+     * Resumes the imports that were interrupted by a restart from their last checkpoint.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeImports() {
+        for (var job : eventLogImportJobRepository.findAll()) {
+            var eventLog = eventLogRepository.findByLogName(job.getLogName());
+
+            // the log was deleted or another file was uploaded in the meantime
+            if (eventLog == null || !Objects.equals(eventLog.getFileName(), job.getFileName())) {
+                eventLogImportJobRepository.delete(job);
+                continue;
+            }
+
+            // the upload of the file was interrupted, so only a part of the file is stored
+            var partialFileName = getPartialFileName(job.getFileName());
+            if (Files.exists(storageService.load(partialFileName))) {
+                storageService.delete(partialFileName);
+                failImport(eventLog, job, new StorageException("Upload of file " + job.getFileName() + " was interrupted"));
+                finishImport(eventLog, job);
+                continue;
+            }
+
+            logger.info("Resuming interrupted import of event log \"{}\" after {} traces", job.getLogName(), job.getTraces());
+            runImport(eventLog, job);
+        }
+    }
+
+    /**
+     * Runs an import of the stored file of the log and records its checkpoints in the job, which is removed
+     * afterwards.
+     *
+     * @param eventLog
+     * @param job
+     * @return
+     */
+    private EventLog runImport(EventLog eventLog, EventLogImportJob job) {
+        var fileName = storageService.load(eventLog.getFileName()).toFile().getAbsolutePath();
+        return runImport(eventLog, job, () -> XesEventLogReader.open(fileName));
+    }
+
+    /**
+     * Runs an import and records its checkpoints in the job, which is removed afterwards. Xes logs are read from the
+     * given reader.
+     *
+     * @param eventLog
+     * @param job
+     * @param xesReader
+     * @return
+     */
+    private EventLog runImport(EventLog eventLog, EventLogImportJob job, Callable<EventLogReader> xesReader) {
+        var logName = job.getLogName();
+        var append = job.isAppend();
+
+        eventLog = startImport(eventLog);
 
         // load file from storage service
         var fileName = storageService.load(eventLog.getFileName()).toFile().getAbsolutePath();
 
         // read log
         if (eventLog.getType().equals("xes")) {
+            var log2db = importTraces(eventLog, job, xesReader);
+            if (log2db != null) {
+                finishTraces(eventLog, job, log2db);
+            }
+        } else if (eventLog.getType().equals("csv") && append) {
+            eventLog.setErrorMessage("Appending is only supported for xes logs");
+        } else if (eventLog.getType().equals("csv")) {
             try {
-                var log = XLogUtils.readLog(fileName);
-
-                // import log to database
-                var log2db = new XLog2Database(jdbcTemplate, logName);
-                log2db.importLog(log);
+                // import log to database using the stored column mapping
+                var log2db = new CsvLog2Database(jdbcTemplate, logName, getCsvConfiguration(logName), properties.getImportWriter().create(jdbcTemplate));
+                log2db.setThreads(properties.getImportEncoders());
+                log2db.setMaterializeCases(isMaterializedCases(logName));
+                log2db.setEncodeAttributes(properties.isEncodeAttributes());
+                log2db.setOptimizeLayout(properties.isOptimizeLayout());
+                log2db.setPartitioning(properties.createEventPartitioning());
+                log2db.importLog(Path.of(fileName));
 
                 // update database
                 eventLog.setImported(true);
                 eventLog.setProcessed(true);
-
-                // delete file
-                //            storageService.delete(eventLog.getFileName());
             } catch (Exception ex) {
                 eventLog.setImported(false);
                 eventLog.setProcessed(false);
@@ -145,12 +389,368 @@ public class LogService {
             eventLog.setErrorMessage("Not supported");
         }
 
-        eventLog.setProcessing(false);
+        return finishImport(eventLog, job);
+    }
+
+    /**
+     * Marks the log as being imported.
+     *
+     * @param eventLog
+     * @return
+     */
+    private EventLog startImport(EventLog eventLog) {
+        eventLog.setProcessing(true);
+        eventLog.setPreview(false);
+        eventLog.setErrorMessage(null);
         eventLog = eventLogRepository.save(eventLog);
 
+        // report processing
+        messagingTemplate.convertAndSend("/notifications/logs/import_started", eventLog);
+        return eventLog;
+    }
+
+    /**
+     * Writes the traces of a xes log to the database while they are read. Returns the importer, which finishes the
+     * import afterwards, or null, if the import failed.
+     *
+     * @param eventLog
+     * @param job
+     * @param xesReader
+     * @return
+     */
+    private XLog2Database importTraces(EventLog eventLog, EventLogImportJob job, Callable<EventLogReader> xesReader) {
+        var logName = job.getLogName();
+
+        try (var reader = xesReader.call()) {
+            // import log to database while it is read
+            var log2db = new XLog2Database(jdbcTemplate, logName, properties.getImportWriter().create(jdbcTemplate));
+            log2db.setEncoders(properties.getImportEncoders());
+            log2db.setWriters(properties.getImportWriters());
+            log2db.setMaterializeCases(isMaterializedCases(logName));
+            log2db.setEncodeAttributes(properties.isEncodeAttributes());
+            log2db.setOptimizeLayout(properties.isOptimizeLayout());
+            log2db.setPartitioning(properties.createEventPartitioning());
+            log2db.setAppend(job.isAppend());
+            log2db.setResumeFrom(job.getTraces() > 0 ? new ImportCheckpoint(job.getTraces(), job.getNextCaseId()) : null);
+            log2db.setCheckpointListener(checkpoint -> saveCheckpoint(job, checkpoint));
+            log2db.setPreviewTraces(properties.getImportPreviewTraces());
+            log2db.setPreviewListener(checkpoint -> publishPreview(logName, checkpoint));
+            log2db.setProgressListener(progress -> messagingTemplate.convertAndSend("/notifications/logs/import_progress", progress));
+            log2db.importTraces(reader);
+            return log2db;
+        } catch (Exception ex) {
+            failImport(eventLog, job, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Generates the derived tables of a xes log after its traces are written.
+     *
+     * @param eventLog
+     * @param job
+     * @param log2db
+     */
+    private void finishTraces(EventLog eventLog, EventLogImportJob job, XLog2Database log2db) {
+        try {
+            log2db.finishImport();
+
+            // update database
+            eventLog.setImported(true);
+            eventLog.setProcessed(true);
+
+            // delete file
+            //            storageService.delete(eventLog.getFileName());
+        } catch (Exception ex) {
+            failImport(eventLog, job, ex);
+        }
+    }
+
+    private void failImport(EventLog eventLog, EventLogImportJob job, Exception ex) {
+        // a failed append leaves the existing cases of the log untouched
+        if (!job.isAppend()) {
+            eventLog.setImported(false);
+            eventLog.setProcessed(false);
+        }
+        eventLog.setErrorMessage(ex.getMessage());
+    }
+
+    /**
+     * Stores the result of an import, removes its job and prepares the queries of the log.
+     *
+     * @param eventLog
+     * @param job
+     * @return
+     */
+    private EventLog finishImport(EventLog eventLog, EventLogImportJob job) {
+        var logName = job.getLogName();
+        var result = eventLog;
+
+        // the derived tables of the whole log replace the preview
+        eventLog = updateLog(logName, x -> {
+            x.setImported(result.isImported());
+            x.setProcessed(result.isProcessed());
+            x.setErrorMessage(result.getErrorMessage());
+            x.setProcessing(false);
+            x.setPreview(false);
+        });
+        eventLogImportJobRepository.delete(job);
+        queryService.invalidate(logName);
+
+        // the log was deleted meanwhile
+        if (eventLog == null) {
+            return result;
+        }
+
+        // write the snapshot and the statistics up front instead of with the first query
+        if (eventLog.isImported()) {
+            try {
+                columnarQueryEngine.writeSnapshot(logName);
+                queryService.updateStatistics(logName);
+            } catch (RuntimeException ex) {
+                logger.error(ex.getMessage(), ex);
+            }
+        }
+
         // report finished process
         messagingTemplate.convertAndSend("/notifications/logs/import_finished", eventLog);
-        return new AsyncResult<>(eventLog);
+        return eventLog;
+    }
+
+    /**
+     * Marks the log as queryable while its import continues.
+     *
+     * @param logName
+     * @param checkpoint
+     */
+    private void publishPreview(String logName, ImportCheckpoint checkpoint) {
+        var eventLog = updateLog(logName, x -> {
+            x.setImported(true);
+            x.setPreview(true);
+        });
+        queryService.publishPreview(logName, checkpoint.getNextCaseId());
+
+        // report preview
+        if (eventLog != null) {
+            messagingTemplate.convertAndSend("/notifications/logs/preview_ready", eventLog);
+        }
+    }
+
+    /**
+     * Changes the current record of a log, so the changes of the import and the preview, which run in different
+     * threads, do not overwrite each other. Returns the saved record or null, if the log does not exist anymore.
+     *
+     * @param logName
+     * @param update
+     * @return
+     */
+    private synchronized EventLog updateLog(String logName, Consumer<EventLog> update) {
+        var eventLog = eventLogRepository.findByLogName(logName);
+        if (eventLog == null) {
+            return null;
+        }
+
+        update.accept(eventLog);
+        return eventLogRepository.save(eventLog);
+    }
+
+    private void saveCheckpoint(EventLogImportJob job, ImportCheckpoint checkpoint) {
+        job.setTraces(checkpoint.getTraces());
+        job.setNextCaseId(checkpoint.getNextCaseId());
+        job.setCheckpointDate(Timestamp.from(Instant.now()));
+        eventLogImportJobRepository.save(job);
+    }
+
+    /**
+     * Returns the column mapping that is used to import a csv event log.
+     *
+     * @param logName
+     * @return
+     */
+    public CsvImportConfiguration getCsvConfiguration(String logName) {
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "csv_configuration");
+        if (feature == null) {
+            return new CsvImportConfiguration();
+        }
+
+        try {
+            var objectMapper = new ObjectMapper();
+            return objectMapper.readValue(feature.getValues(), CsvImportConfiguration.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Invalid csv configuration of event log " + logName, ex);
+        }
+    }
+
+    /**
+     * Stores the column mapping that is used to import a csv event log.
+     *
+     * @param logName
+     * @param configuration
+     */
+    public void setCsvConfiguration(String logName, CsvImportConfiguration configuration) throws JsonProcessingException {
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "csv_configuration");
+        if (feature == null) {
+            feature = new EventLogFeature();
+            feature.setEventLog(eventLogRepository.findByLogName(logName));
+            feature.setFeature("csv_configuration");
+        }
+
+        var objectMapper = new ObjectMapper();
+        feature.setValues(objectMapper.writeValueAsString(configuration));
+
+        eventLogFeatureRepository.save(feature);
+    }
+
+    /**
+     * Returns true, if the cases table of the event log is materialized instead of being a view.
+     *
+     * @param logName
+     * @return
+     */
+    public boolean isMaterializedCases(String logName) {
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "case_table");
+        if (feature == null) {
+            return properties.isMaterializeCases();
+        }
+
+        return feature.getValues().equals("materialized");
+    }
+
+    /**
+     * Changes whether the cases table of the event log is materialized. If the log is already imported, the cases
+     * table is regenerated.
+     *
+     * @param logName
+     * @param materialized
+     */
+    public void setMaterializedCases(String logName, boolean materialized) {
+        var eventLog = eventLogRepository.findByLogName(logName);
+
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "case_table");
+        if (feature == null) {
+            feature = new EventLogFeature();
+            feature.setEventLog(eventLog);
+            feature.setFeature("case_table");
+        }
+
+        feature.setValues(materialized ? "materialized" : "view");
+        eventLogFeatureRepository.save(feature);
+
+        if (eventLog.isImported()) {
+            var derivedTables = new DerivedTables(jdbcTemplate, logName);
+            derivedTables.setMaterializeCases(materialized);
+            derivedTables.generate();
+            queryService.invalidate(logName);
+        }
+    }
+
+    /**
+     * Returns true, if the queries of the event log are answered from memory instead of the database.
+     *
+     * @param logName
+     * @return
+     */
+    public boolean isInMemoryQueries(String logName) {
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "query_engine");
+        return feature != null && feature.getValues().equals("memory");
+    }
+
+    /**
+     * Changes whether the queries of the event log are answered from memory. The log is loaded into memory with the
+     * next query.
+     *
+     * @param logName
+     * @param inMemory
+     */
+    public void setInMemoryQueries(String logName, boolean inMemory) {
+        var feature = eventLogFeatureRepository.findByEventLogLogNameAndFeature(logName, "query_engine");
+        if (feature == null) {
+            feature = new EventLogFeature();
+            feature.setEventLog(eventLogRepository.findByLogName(logName));
+            feature.setFeature("query_engine");
+        }
+
+        feature.setValues(inMemory ? "memory" : "database");
+        eventLogFeatureRepository.save(feature);
+
+        if (inMemory) {
+            columnarQueryEngine.enable(logName);
+        } else {
+            columnarQueryEngine.disable(logName);
+        }
+    }
+
+    /**
+     * Enables the in-memory queries of the event logs that use them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void enableInMemoryQueries() {
+        if (!properties.getSnapshotLocation().isEmpty()) {
+            columnarQueryEngine.setSnapshotDirectory(Path.of(properties.getSnapshotLocation()));
+        }
+
+        for (var eventLog : eventLogRepository.findAll()) {
+            if (isInMemoryQueries(eventLog.getLogName())) {
+                columnarQueryEngine.enable(eventLog.getLogName());
+            }
+        }
+    }
+
+    /**
+     * Upgrades the tables of imported event logs that were imported by an older version: the resources are moved to
+     * a dictionary and missing derived tables are generated. Runs in the background after the start, each log is
+     * upgraded in its own transaction. Logs with a pending import are skipped, their import generates the tables.
+     */
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void upgradeLogTables() {
+        var transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(Objects.requireNonNull(jdbcTemplate.getDataSource())));
+
+        for (var eventLog : eventLogRepository.findAll()) {
+            var logName = eventLog.getLogName();
+            if (!eventLog.isImported() || eventLogImportJobRepository.findByLogName(logName) != null) {
+                continue;
+            }
+
+            try {
+                var encoder = new AttributeEncoder(jdbcTemplate, logName);
+                var encoded = transactionTemplate.execute(status -> upgradeLogTables(logName, encoder));
+
+                // the updated events are compacted after the commit
+                if (Boolean.TRUE.equals(encoded)) {
+                    encoder.compactEvents();
+                }
+                queryService.invalidate(logName);
+            } catch (RuntimeException ex) {
+                logger.error("Could not upgrade tables of event log \"{}\"", logName, ex);
+            }
+        }
+    }
+
+    /**
+     * Upgrades the tables of a single log and returns true, if its resources were encoded.
+     *
+     * @param logName
+     * @param encoder
+     * @return
+     */
+    private boolean upgradeLogTables(String logName, AttributeEncoder encoder) {
+        var derivedTables = new DerivedTables(jdbcTemplate, logName);
+        derivedTables.setMaterializeCases(derivedTables.isMaterialized());
+
+        if (!encoder.hasResourceTable()) {
+            logger.info("Encoding resources of event log \"{}\"", logName);
+
+            // the derived tables depend on the resource column
+            derivedTables.drop();
+            encoder.encodeResources();
+            derivedTables.generate();
+            return true;
+        } else if (!derivedTables.exists()) {
+            logger.info("Generating missing derived tables of event log \"{}\"", logName);
+            derivedTables.generate();
+        }
+        return false;
     }
 
     /**
@@ -193,14 +793,19 @@ public class LogService {
         eventLogArtifactRepository.deleteAllByLogName(logName);
         eventLogFeatureRepository.deleteAllByEventLogLogName(logName);
         eventLogRecommendationRepository.deleteAllByEventLogLogName(logName);
+        eventLogImportJobRepository.deleteAllByLogName(logName);
         eventLogRepository.delete(eventLog);
+        columnarQueryEngine.disable(logName);
 
         // remove data tables
         var db = new DatabaseModel(logName);
-        jdbcTemplate.execute("DROP VIEW IF EXISTS " + db.caseTable.getTableNameSQL());
+        new DerivedTables(jdbcTemplate, logName).drop();
         jdbcTemplate.execute("DROP TABLE IF EXISTS " + db.caseAttributeTable.getTableNameSQL());
         jdbcTemplate.execute("DROP TABLE IF EXISTS " + db.activityTable.getTableNameSQL());
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + db.resourceTable.getTableNameSQL());
         jdbcTemplate.execute("DROP TABLE IF EXISTS " + db.eventTable.getTableNameSQL());
+        new AttributeEncoder(jdbcTemplate, logName).dropTypes();
+        queryService.invalidate(logName);
 
         // report finished deletion
         messagingTemplate.convertAndSend("/notifications/logs/deleted", logName);
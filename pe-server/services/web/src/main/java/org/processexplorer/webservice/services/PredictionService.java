@@ -24,6 +24,7 @@ import com.healthmarketscience.sqlbuilder.BinaryCondition;
 import com.healthmarketscience.sqlbuilder.UpdateQuery;
 import org.processexplorer.data.prediction.*;
 import org.processexplorer.server.analysis.query.DatabaseModel;
+import org.processexplorer.server.analysis.query.QueryService;
 import org.processexplorer.server.common.persistence.entity.EventLogFeature;
 import org.processexplorer.server.common.persistence.entity.EventLogModel;
 import org.processexplorer.server.common.persistence.entity.EventLogModelState;
@@ -68,16 +69,20 @@ public class PredictionService {
 
     private final JdbcTemplate jdbcTemplate;
 
+    private final QueryService queryService;
+
     @Autowired
     public PredictionService(EventLogModelRepository eventLogModelRepository,
                              EventLogRepository eventLogRepository,
-                             EventLogFeatureRepository eventLogFeatureRepository, ApplicationProperties properties, SimpMessagingTemplate messagingTemplate, JdbcTemplate jdbcTemplate) {
+                             EventLogFeatureRepository eventLogFeatureRepository, ApplicationProperties properties, SimpMessagingTemplate messagingTemplate, JdbcTemplate jdbcTemplate,
+                             QueryService queryService) {
         this.eventLogModelRepository = eventLogModelRepository;
         this.eventLogRepository = eventLogRepository;
         this.eventLogFeatureRepository = eventLogFeatureRepository;
         this.properties = properties;
         this.messagingTemplate = messagingTemplate;
         this.jdbcTemplate = jdbcTemplate;
+        this.queryService = queryService;
     }
 
     /**
@@ -121,6 +126,7 @@ public class PredictionService {
 
         // set all cases as closed
         jdbcTemplate.execute(new UpdateQuery(db.caseAttributeTable).addSetClause(caseStateCol, 0).validate().toString());
+        queryService.invalidate(logName);
 
         // save feature
         var eventLog = eventLogRepository.findByLogName(logName);
@@ -187,6 +193,8 @@ public class PredictionService {
             logger.error("Prediction for {} event log caused exception.", configuration.getLogName(), ex);
         }
 
+        queryService.invalidate(configuration.getLogName());
+
         // report processing
         messagingTemplate.convertAndSend("/notifications/predictions/prediction_finished", eventLog);
     }
@@ -306,14 +314,15 @@ public class PredictionService {
                         "          AND t.case_id = t2.case_id\n" +
                         "        ORDER BY t.timestamp DESC, t.event DESC\n" +
                         "        LIMIT 1) AS current_event,\n" +
-                        "       (SELECT t.resource\n" +
+                        "       (SELECT r.name\n" +
                         "        FROM %s t\n" +
+                        "                 LEFT JOIN %s r ON r.id = t.resource\n" +
                         "        WHERE t.case_id = t2.case_id\n" +
                         "        ORDER BY t.timestamp DESC, t.event DESC\n" +
                         "        LIMIT 1) AS current_resource\n" +
                         "FROM %s t2, %s t3\n" +
                         "WHERE (t2.state = 1 AND t2.prediction IS NOT NULL AND t2.case_id = t3.case_id)", db.eventTable.getTableNameSQL(),
-                db.activityTable.getTableNameSQL(), db.eventTable.getTableNameSQL(), db.caseAttributeTable.getTableNameSQL(), db.caseTable.getTableNameSQL());
+                db.activityTable.getTableNameSQL(), db.eventTable.getTableNameSQL(), db.resourceTable.getTableNameSQL(), db.caseAttributeTable.getTableNameSQL(), db.caseTable.getTableNameSQL());
 
         return jdbcTemplate.query(sqlOutput.toString(), new OpenCaseRowMapper());
     }